@@ -16,6 +16,7 @@ package org.grlea.log.adapters.commons;
 // limitations under the License.
 
 import org.grlea.log.DebugLevel;
+import org.grlea.log.NamedLoggerPool;
 import org.grlea.log.SimpleLog;
 import org.grlea.log.SimpleLogger;
 
@@ -87,7 +88,12 @@ import org.apache.commons.logging.Log;
  * When logger names cannot be interpreted as class names, each logger name that cannot be
  * interpreted will be printed with a warning to {@link System#err}. You can supress these warnings
  * by setting the system property <code>org.grlea.log.adapters.commons.supressWarnings</code> to
- * <code>true</code>.
+ * <code>true</code>. At most ten of these warnings are printed each minute.
+ * </p>
+ *
+ * <p>
+ * All the adapters created with the same logger name share one <code>SimpleLogger</code>, so the
+ * logger name is only interpreted the first time it is used.
  * </p>
  *
  * <p><b>Object Rendering</b></p>
@@ -121,7 +127,17 @@ public class
 CommonsLoggingAdapter
 implements Log
 {
-   private static final String SUPRESS_WARNINGS_PROPERTY = "org.grlea.log.adapters.commons.supressWarnings";
+   /** The <code>SimpleLogger</code> for each logger name, shared by all the adapters. */
+   private static final NamedLoggerPool loggers = new NamedLoggerPool(
+      new NamedLoggerPool.Factory()
+      {
+         public Object
+         create(SimpleLogger logger, String loggerName)
+         {
+            return logger;
+         }
+      },
+      Log.class, "org.grlea.log.adapters.commons.supressWarnings", "CommonsLoggingAdapter");
 
    private static SimpleLog log = null;
 
@@ -131,40 +147,7 @@ implements Log
    CommonsLoggingAdapter(String loggerName)
    {
       initLog();
-
-      SimpleLogger newLogger;
-      try
-      {
-         Class loggingClass = Class.forName(loggerName);
-         newLogger = new SimpleLogger(loggingClass);
-      }
-      catch (Exception e)
-      {
-         boolean supressWarnings = false;
-         try
-         {
-            String supressWarningsString = System.getProperty(SUPRESS_WARNINGS_PROPERTY);
-            supressWarnings =
-               supressWarningsString != null && supressWarningsString.toLowerCase().equals("true");
-         }
-         catch (Exception e1)
-         {
-            System.err.println("WARNING: Simple Log (CommonsLoggingAdapter): " +
-                               "Failed to read system property '" + SUPRESS_WARNINGS_PROPERTY + "'");
-         }
-
-         if (!supressWarnings)
-         {
-            System.err.println("WARNING: Simple Log (CommonsLoggingAdapter): " +
-                               "Failed to find class for logger name '" + loggerName + "'. " +
-                               "Using class '" + Log.class.getName() + "' and instanceId '" +
-                               loggerName +"'.");
-         }
-
-         newLogger = new SimpleLogger(Log.class, loggerName);
-      }
-
-      this.logger = newLogger;
+      this.logger = (SimpleLogger) loggers.get(loggerName);
    }
 
    private static void
@@ -22,7 +22,6 @@ import org.grlea.log.SimpleLogger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.impl.MarkerIgnoringBase;
-import org.slf4j.impl.MessageFormatter;
 
 /**
  * <p>
@@ -91,15 +90,20 @@ import org.slf4j.impl.MessageFormatter;
  * When logger names cannot be interpreted as class names, each logger name that cannot be
  * interpreted will be printed with a warning to {@link System#err}. You can supress these warnings
  * by setting the system property <code>org.grlea.log.adapters.slf4j.supressWarnings</code> to
- * <code>true</code>.
+ * <code>true</code>. At most ten of these warnings are printed each minute.
  * </p>
  *
  * <p><b>Object Rendering</b></p>
  *
  * <p>
  * Messages submitted to the <code>Slf4jAdapter</code> using
- * {@link #debug(String, Object) the format + argument(s) methods} are interpreted using the
- * {@link MessageFormatter} that is provided in SLF4J.
+ * {@link #debug(String, Object) the format + argument(s) methods} are passed straight to the
+ * parameterized methods of {@link SimpleLogger}, e.g.
+ * {@link SimpleLogger#db(DebugLevel, String, Object)}, which check the level first and then put
+ * the message together directly in the line being printed. Placeholders, escapes and braces that
+ * aren't placeholders are treated by the same rules as in SLF4J's <code>MessageFormatter</code>.
+ * The only difference is that arrays are printed element by element rather than with their
+ * <code>toString()</code>.
  * </p>
  *
  * @author Graham Lea
@@ -167,28 +171,19 @@ extends MarkerIgnoringBase
    public void
    error(String messageFormat, Object argument)
    {
-      if (log.wouldLog(DebugLevel.L2_ERROR))
-      {
-         log.db(DebugLevel.L2_ERROR, MessageFormatter.format(messageFormat, argument));
-      }
+      log.db(DebugLevel.L2_ERROR, messageFormat, argument);
    }
 
    public void
    error(String messageFormat, Object argument1, Object argument2)
    {
-      if (log.wouldLog(DebugLevel.L2_ERROR))
-      {
-         log.db(DebugLevel.L2_ERROR, MessageFormatter.format(messageFormat, argument1, argument2));
-      }
+      log.db(DebugLevel.L2_ERROR, messageFormat, argument1, argument2);
    }
 
    public void
    error(String messageFormat, Object[] arguments)
    {
-      if (log.wouldLog(DebugLevel.L2_ERROR))
-      {
-         log.db(DebugLevel.L2_ERROR, MessageFormatter.format(messageFormat, arguments));
-      }
+      log.db(DebugLevel.L2_ERROR, messageFormat, arguments);
    }
 
    public void
@@ -207,28 +202,19 @@ extends MarkerIgnoringBase
    public void
    warn(String messageFormat, Object argument)
    {
-      if (log.wouldLog(DebugLevel.L3_WARN))
-      {
-         log.db(DebugLevel.L3_WARN, MessageFormatter.format(messageFormat, argument));
-      }
+      log.db(DebugLevel.L3_WARN, messageFormat, argument);
    }
 
    public void
    warn(String messageFormat, Object argument1, Object argument2)
    {
-      if (log.wouldLog(DebugLevel.L3_WARN))
-      {
-         log.db(DebugLevel.L3_WARN, MessageFormatter.format(messageFormat, argument1, argument2));
-      }
+      log.db(DebugLevel.L3_WARN, messageFormat, argument1, argument2);
    }
 
    public void
    warn(String messageFormat, Object[] arguments)
    {
-      if (log.wouldLog(DebugLevel.L3_WARN))
-      {
-         log.db(DebugLevel.L3_WARN, MessageFormatter.format(messageFormat, arguments));
-      }
+      log.db(DebugLevel.L3_WARN, messageFormat, arguments);
    }
 
    public void
@@ -247,28 +233,19 @@ extends MarkerIgnoringBase
    public void
    info(String messageFormat, Object argument)
    {
-      if (log.wouldLog(DebugLevel.L4_INFO))
-      {
-         log.db(DebugLevel.L4_INFO, MessageFormatter.format(messageFormat, argument));
-      }
+      log.db(DebugLevel.L4_INFO, messageFormat, argument);
    }
 
    public void
    info(String messageFormat, Object argument1, Object argument2)
    {
-      if (log.wouldLog(DebugLevel.L4_INFO))
-      {
-         log.db(DebugLevel.L4_INFO, MessageFormatter.format(messageFormat, argument1, argument2));
-      }
+      log.db(DebugLevel.L4_INFO, messageFormat, argument1, argument2);
    }
 
    public void
    info(String messageFormat, Object[] arguments)
    {
-      if (log.wouldLog(DebugLevel.L4_INFO))
-      {
-         log.db(DebugLevel.L4_INFO, MessageFormatter.format(messageFormat, arguments));
-      }
+      log.db(DebugLevel.L4_INFO, messageFormat, arguments);
    }
 
    public void
@@ -287,28 +264,19 @@ extends MarkerIgnoringBase
    public void
    debug(String messageFormat, Object argument)
    {
-      if (log.wouldLog(DebugLevel.L5_DEBUG))
-      {
-         log.db(DebugLevel.L5_DEBUG, MessageFormatter.format(messageFormat, argument));
-      }
+      log.db(DebugLevel.L5_DEBUG, messageFormat, argument);
    }
 
    public void
    debug(String messageFormat, Object argument1, Object argument2)
    {
-      if (log.wouldLog(DebugLevel.L5_DEBUG))
-      {
-         log.db(DebugLevel.L5_DEBUG, MessageFormatter.format(messageFormat, argument1, argument2));
-      }
+      log.db(DebugLevel.L5_DEBUG, messageFormat, argument1, argument2);
    }
 
    public void
    debug(String messageFormat, Object[] arguments)
    {
-      if (log.wouldLog(DebugLevel.L5_DEBUG))
-      {
-         log.db(DebugLevel.L5_DEBUG, MessageFormatter.format(messageFormat, arguments));
-      }
+      log.db(DebugLevel.L5_DEBUG, messageFormat, arguments);
    }
 
    public void
@@ -15,6 +15,7 @@ package org.grlea.log.adapters.slf4j;
 // See the License for the specific language governing permissions and
 // limitations under the License.
 
+import org.grlea.log.NamedLoggerPool;
 import org.grlea.log.SimpleLogger;
 
 import org.slf4j.Logger;
@@ -26,6 +27,12 @@ import org.slf4j.ILoggerFactory;
  * instances.
  * </p>
  *
+ * <p>
+ * Only one adapter is created for each logger name, and it is returned every time the same name is
+ * requested, so frameworks that ask for a logger on every request don't create (and register with
+ * Simple Log) a new <code>SimpleLogger</code> each time. (See {@link NamedLoggerPool}.)
+ * </p>
+ *
  * @author Graham Lea
  * @version $Revision: 1.2 $
  */
@@ -33,51 +40,21 @@ public class
 Slf4jAdapterFactory
 implements ILoggerFactory
 {
-   private static final String SUPRESS_WARNINGS_PROPERTY =
-      "org.grlea.log.adapters.slf4j.supressWarnings";
-
-   /**
-    * Creates a new <code>Slf4jAdapterFactory</code>.
-    */
-   public
-   Slf4jAdapterFactory()
-   {}
-
-   public final Logger
-   getLogger(String loggerName)
-   {
-      SimpleLogger newLogger;
-      try
-      {
-         Class loggingClass = Class.forName(loggerName);
-         newLogger = new SimpleLogger(loggingClass);
-      }
-      catch (Exception e)
+   /** The adapter created for each logger name. */
+   private final NamedLoggerPool adapters = new NamedLoggerPool(
+      new NamedLoggerPool.Factory()
       {
-         boolean supressWarnings = false;
-         try
+         public Object
+         create(SimpleLogger logger, String loggerName)
          {
-            String supressWarningsString = System.getProperty(SUPRESS_WARNINGS_PROPERTY);
-            supressWarnings =
-               supressWarningsString != null && supressWarningsString.toLowerCase().equals("true");
-         }
-         catch (Exception e1)
-         {
-            System.err.println("WARNING: Simple Log (Slf4jAdapterFA): " +
-                               "Failed to read system property '" + SUPRESS_WARNINGS_PROPERTY + "'");
-         }
-
-         if (!supressWarnings)
-         {
-            System.err.println("WARNING: Simple Log (Slf4jAdapterFA): " +
-                               "Failed to find class for logger loggerName '" + loggerName + "'. " +
-                               "Using class '" + Logger.class.getName() + "' and instanceId '" +
-                               loggerName +"'.");
+            return new Slf4jAdapter(logger, loggerName);
          }
+      },
+      Logger.class, "org.grlea.log.adapters.slf4j.supressWarnings", "Slf4jAdapterFactory");
 
-         newLogger = new SimpleLogger(Logger.class, loggerName);
-      }
-
-      return new Slf4jAdapter(newLogger, loggerName);
+   public final Logger
+   getLogger(String loggerName)
+   {
+      return (Logger) adapters.get(loggerName);
    }
-}
\ No newline at end of file
+}
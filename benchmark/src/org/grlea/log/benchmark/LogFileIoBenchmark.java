@@ -0,0 +1,109 @@
+package org.grlea.log.benchmark;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import org.grlea.log.DebugLevel;
+import org.grlea.log.SimpleLog;
+import org.grlea.log.SimpleLogger;
+
+import java.io.File;
+import java.util.Properties;
+
+/**
+ * <p>Compares the speed of logging to a plain log file under each of the
+ * <code>simplelog.logFile.io</code> settings.</p>
+ *
+ * <p>Usage: <code>LogFileIoBenchmark [lines [directory]]</code></p>
+ *
+ * <p>The log files are written into the given directory (by default, the working directory) and
+ * deleted afterwards.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+public class
+LogFileIoBenchmark
+{
+   /** The I/O settings compared by the benchmark. */
+   private static final String[] IO_SETTINGS = {"stream", "mapped", "direct"};
+
+   /** The number of lines logged by default. */
+   private static final int DEFAULT_LINES = 200000;
+
+   /** The number of lines logged before measuring, so that the JVM can warm up. */
+   private static final int WARM_UP_LINES = 20000;
+
+   /**
+    * The number of milliseconds to wait between runs, so that the operating system can write out
+    * the output of the previous run.
+    */
+   private static final long PAUSE = 5000;
+
+   public static void
+   main(String[] args)
+   throws Exception
+   {
+      int lines = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_LINES;
+      File directory = new File(args.length > 1 ? args[1] : ".").getAbsoluteFile();
+
+      System.out.println("Logging " + lines + " lines to " + directory);
+      for (int i = 0; i < IO_SETTINGS.length; i++)
+      {
+         String io = IO_SETTINGS[i];
+         System.gc();
+         Thread.sleep(PAUSE);
+         long time = run(io, lines, directory);
+         long linesPerSecond = time == 0 ? lines * 1000L : lines * 1000L / time;
+         System.out.println(io + ": " + time + " ms (" + linesPerSecond + " lines/s)");
+      }
+   }
+
+   /**
+    * Logs the given number of lines using the given I/O setting and returns how many milliseconds
+    * it took.
+    */
+   private static long
+   run(String io, int lines, File directory)
+   {
+      File logFile = new File(directory, "io-benchmark-" + io + ".log");
+
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.logFile", logFile.getPath());
+      properties.setProperty("simplelog.logFile.append", "false");
+      properties.setProperty("simplelog.logFile.io", io);
+      SimpleLog log = new SimpleLog(properties);
+      SimpleLogger logger = new SimpleLogger(log, LogFileIoBenchmark.class);
+
+      try
+      {
+         for (int i = 0; i < WARM_UP_LINES; i++)
+         {
+            logger.dbo(DebugLevel.L4_INFO, "warmUp", i);
+         }
+
+         long start = System.currentTimeMillis();
+         for (int i = 0; i < lines; i++)
+         {
+            logger.dbo(DebugLevel.L4_INFO, "line", i);
+         }
+         return System.currentTimeMillis() - start;
+      }
+      finally
+      {
+         logFile.delete();
+      }
+   }
+}
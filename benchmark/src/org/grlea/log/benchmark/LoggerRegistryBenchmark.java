@@ -0,0 +1,124 @@
+package org.grlea.log.benchmark;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import org.grlea.log.SimpleLog;
+import org.grlea.log.SimpleLogger;
+
+import java.util.Properties;
+
+/**
+ * <p>Measures the cost of creating many short-lived instance loggers (e.g. one per request) from
+ * several threads at once, while the properties are reloaded in the background.</p>
+ *
+ * <p>Usage: <code>LoggerRegistryBenchmark [loggers [threads]]</code></p>
+ *
+ * <p>Each logger logs one (disabled) line and is then dropped. The benchmark reports how long it
+ * took to create all the loggers, how many reloads were done in that time, and how long a reload
+ * takes once the creation has finished.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+public class
+LoggerRegistryBenchmark
+{
+   /** The number of loggers created by default. */
+   private static final int DEFAULT_LOGGERS = 1000000;
+
+   /** The number of threads creating loggers by default. */
+   private static final int DEFAULT_THREADS = 4;
+
+   /** The number of milliseconds between reloads while the loggers are being created. */
+   private static final long RELOAD_PERIOD = 10;
+
+   public static void
+   main(String[] args)
+   throws Exception
+   {
+      int loggers = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_LOGGERS;
+      int threadCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_THREADS;
+
+      final Properties properties = new Properties();
+      properties.setProperty("org.grlea.log.benchmark", "Info");
+      final SimpleLog log = new SimpleLog(properties);
+
+      System.out.println("Creating " + loggers + " instance loggers on " + threadCount +
+                         " threads");
+
+      final int loggersPerThread = loggers / threadCount;
+      Thread[] threads = new Thread[threadCount];
+      for (int i = 0; i < threadCount; i++)
+      {
+         final String prefix = "T" + i + ".";
+         threads[i] = new Thread()
+         {
+            public void
+            run()
+            {
+               for (int j = 0; j < loggersPerThread; j++)
+               {
+                  SimpleLogger logger =
+                     new SimpleLogger(log, LoggerRegistryBenchmark.class, prefix + j);
+                  logger.debug("Request");
+               }
+            }
+         };
+      }
+
+      long start = System.currentTimeMillis();
+      for (int i = 0; i < threadCount; i++)
+      {
+         threads[i].start();
+      }
+
+      // Change the level of every logger over and over while they're being created
+      int reloads = 0;
+      while (isAnyAlive(threads))
+      {
+         properties.setProperty("org.grlea.log.benchmark",
+                                reloads % 2 == 0 ? "Warn" : "Info");
+         log.reloadProperties();
+         reloads++;
+         Thread.sleep(RELOAD_PERIOD);
+      }
+      long creationTime = System.currentTimeMillis() - start;
+
+      System.out.println("Creation: " + creationTime + " ms (" +
+                         (creationTime == 0 ? 0 : loggersPerThread * threadCount * 1000L /
+                                                  creationTime) + " loggers/s, " +
+                         reloads + " reloads)");
+
+      System.gc();
+      properties.setProperty("org.grlea.log.benchmark", "Error");
+      start = System.currentTimeMillis();
+      log.reloadProperties();
+      System.out.println("Reload after GC: " + (System.currentTimeMillis() - start) + " ms");
+   }
+
+   private static boolean
+   isAnyAlive(Thread[] threads)
+   {
+      for (int i = 0; i < threads.length; i++)
+      {
+         if (threads[i].isAlive())
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+}
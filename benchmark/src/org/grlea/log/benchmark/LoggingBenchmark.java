@@ -0,0 +1,547 @@
+package org.grlea.log.benchmark;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import org.grlea.log.DebugLevel;
+import org.grlea.log.SimpleLog;
+import org.grlea.log.SimpleLogger;
+import org.grlea.log.adapters.commons.CommonsLoggingAdapter;
+import org.grlea.log.adapters.slf4j.Slf4jAdapterFactory;
+
+import org.apache.commons.logging.Log;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * <p>Measures the throughput of the core logging paths, so that the numbers can be compared between
+ * releases.</p>
+ *
+ * <p>Usage: <code>LoggingBenchmark [max threads [milliseconds per run [directory [filter]]]]</code>
+ * </p>
+ *
+ * <p>Every case is run with 1, 2, 4 (and so on) threads up to the maximum number of threads (by
+ * default, the number of processors, but at least 2). Each run lasts for the given number of
+ * milliseconds (by default, 1000) and is preceded by a single-threaded warm-up run of the same
+ * length. Only cases whose names contain the filter (if one is given) are run.</p>
+ *
+ * <p>The cases cover:</p>
+ * <ul>
+ *    <li><code>db</code>, <code>dbo</code>, <code>dbe</code>, <code>entry</code> and
+ *        <code>exit</code> from instance and non-instance loggers, with the level enabled, to the
+ *        console, a plain log file and a rolled log file;</li>
+ *    <li>the same calls with the level disabled (which don't depend on the output); and</li>
+ *    <li>the SLF4J and commons-logging adapters, with the level enabled and disabled, to a plain
+ *        log file.</li>
+ * </ul>
+ *
+ * <p>Console output is thrown away so that the speed of the terminal doesn't affect the results.
+ * Rolled log files use the 'os' durability, so that the results show the cost of getting lines to
+ * the operating system rather than the speed of the storage device. The log files are written into
+ * the given directory (by default, the working directory) and deleted afterwards.</p>
+ *
+ * <p>The results are printed as one line per run, giving the case, the number of threads, the total
+ * number of calls per second and the average time each call took.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+public class
+LoggingBenchmark
+{
+   /** The logging calls measured from {@link SimpleLogger}s. */
+   private static final String[] CALLS = {"db", "dbo", "dbe", "entry", "exit"};
+
+   /** The outputs that enabled logging calls are measured with. */
+   private static final String[] OUTPUTS = {"console", "file", "rollover"};
+
+   /** The number of milliseconds each run lasts by default. */
+   private static final long DEFAULT_RUN_TIME = 1000;
+
+   /** The width of the case name column in the results. */
+   private static final int NAME_WIDTH = 36;
+
+   /** The exception logged by the <code>dbe</code> cases. */
+   private static final Throwable EXCEPTION = new Exception("Benchmark exception");
+
+   /** The console that the results are printed on. */
+   private static final PrintStream out = System.out;
+
+   public static void
+   main(String[] args)
+   throws Exception
+   {
+      int maxThreads =
+         args.length > 0 ? Integer.parseInt(args[0])
+                         : Math.max(2, Runtime.getRuntime().availableProcessors());
+      long runTime = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_RUN_TIME;
+      File directory = new File(args.length > 2 ? args[2] : ".").getAbsoluteFile();
+      String filter = args.length > 3 ? args[3] : "";
+
+      out.println("Simple Log benchmark, " + new Date());
+      out.println("Java " + System.getProperty("java.version") + " (" +
+                  System.getProperty("java.vm.name") + "), " +
+                  Runtime.getRuntime().availableProcessors() + " processors");
+      out.println("Up to " + maxThreads + " threads, " + runTime + " ms per run, files in " +
+                  directory);
+      out.println();
+      out.println(pad("Case", NAME_WIDTH) + "\tThreads\tCalls/s\tns/call");
+
+      // The console is replaced so that console output can be thrown away.
+      PrintStream console = System.err;
+      System.setErr(new PrintStream(new NullOutputStream()));
+      try
+      {
+         List cases = createCases(directory);
+         for (Iterator iter = cases.iterator(); iter.hasNext();)
+         {
+            Case benchmarkCase = (Case) iter.next();
+            if (benchmarkCase.name.indexOf(filter) == -1)
+            {
+               continue;
+            }
+
+            try
+            {
+               benchmarkCase.setUp();
+               run(benchmarkCase, 1, runTime);
+               for (int threads = 1; threads <= maxThreads; threads *= 2)
+               {
+                  long[] result = run(benchmarkCase, threads, runTime);
+                  printResult(benchmarkCase.name, threads, result[0], result[1], runTime);
+               }
+            }
+            finally
+            {
+               benchmarkCase.tearDown();
+            }
+         }
+      }
+      finally
+      {
+         AdapterCase.cleanUp();
+         System.setErr(console);
+      }
+   }
+
+   /**
+    * Creates all the cases, in the order they are run.
+    */
+   private static List
+   createCases(File directory)
+   {
+      List cases = new ArrayList();
+      for (int i = 0; i < OUTPUTS.length; i++)
+      {
+         for (int j = 0; j < CALLS.length; j++)
+         {
+            cases.add(new SimpleLoggerCase(OUTPUTS[i], CALLS[j], false, true, directory));
+            cases.add(new SimpleLoggerCase(OUTPUTS[i], CALLS[j], true, true, directory));
+         }
+      }
+      for (int j = 0; j < CALLS.length; j++)
+      {
+         cases.add(new SimpleLoggerCase("console", CALLS[j], false, false, directory));
+         cases.add(new SimpleLoggerCase("console", CALLS[j], true, false, directory));
+      }
+      cases.add(new AdapterCase("slf4j", directory));
+      cases.add(new AdapterCase("commons", directory));
+      return cases;
+   }
+
+   /**
+    * Calls the given case from the given number of threads for the given number of milliseconds
+    * and returns the total number of calls made and the actual number of milliseconds taken.
+    */
+   private static long[]
+   run(final Case benchmarkCase, int threadCount, long runTime)
+   throws InterruptedException
+   {
+      final Run run = new Run();
+      final long[] counts = new long[threadCount];
+      Thread[] threads = new Thread[threadCount];
+      for (int i = 0; i < threadCount; i++)
+      {
+         final int threadIndex = i;
+         threads[i] = new Thread(benchmarkCase.name + "-" + i)
+         {
+            public void
+            run()
+            {
+               run.awaitStart();
+               long count = 0;
+               while (!run.stopped)
+               {
+                  benchmarkCase.call(count++);
+               }
+               counts[threadIndex] = count;
+            }
+         };
+         threads[i].start();
+      }
+
+      long start = run.start();
+      Thread.sleep(runTime);
+      run.stopped = true;
+      for (int i = 0; i < threadCount; i++)
+      {
+         threads[i].join();
+      }
+      long time = System.currentTimeMillis() - start;
+
+      long total = 0;
+      for (int i = 0; i < threadCount; i++)
+      {
+         total += counts[i];
+      }
+      return new long[] {total, time};
+   }
+
+   private static void
+   printResult(String name, int threads, long calls, long time, long runTime)
+   {
+      if (time <= 0)
+      {
+         time = runTime;
+      }
+      long callsPerSecond = calls * 1000L / time;
+      long nanosPerCall = calls == 0 ? 0 : time * 1000000L * threads / calls;
+      out.println(pad(name, NAME_WIDTH) + "\t" + threads + "\t" + callsPerSecond + "\t" +
+                  nanosPerCall);
+   }
+
+   private static String
+   pad(String text, int width)
+   {
+      StringBuffer padded = new StringBuffer(width);
+      padded.append(text);
+      while (padded.length() < width)
+      {
+         padded.append(' ');
+      }
+      return padded.toString();
+   }
+
+   /**
+    * Lets the threads of one run start at the same moment and tells them when to stop.
+    */
+   private static final class
+   Run
+   {
+      private boolean started = false;
+
+      volatile boolean stopped = false;
+
+      synchronized void
+      awaitStart()
+      {
+         while (!started)
+         {
+            try
+            {
+               wait();
+            }
+            catch (InterruptedException e)
+            {
+               return;
+            }
+         }
+      }
+
+      synchronized long
+      start()
+      {
+         started = true;
+         notifyAll();
+         return System.currentTimeMillis();
+      }
+   }
+
+   /**
+    * A piece of logging code that is measured.
+    */
+   private abstract static class
+   Case
+   {
+      final String name;
+
+      Case(String name)
+      {
+         this.name = name;
+      }
+
+      /**
+       * Prepares the case to be run.
+       */
+      abstract void
+      setUp()
+      throws Exception;
+
+      /**
+       * Makes one call to the code being measured. The given number is different (for each thread)
+       * in every call.
+       */
+      abstract void
+      call(long number);
+
+      /**
+       * Closes any files the case opened and deletes them.
+       */
+      abstract void
+      tearDown();
+   }
+
+   /**
+    * Measures one of the {@link #CALLS} on a {@link SimpleLogger}.
+    */
+   private static final class
+   SimpleLoggerCase
+   extends Case
+   {
+      private final String output;
+      private final String call;
+      private final boolean instance;
+      private final boolean enabled;
+      private final File logFile;
+
+      private SimpleLog log;
+      private SimpleLogger logger;
+
+      SimpleLoggerCase(String output, String call, boolean instance, boolean enabled,
+                       File directory)
+      {
+         super((enabled ? output : "disabled") + "." + call + (instance ? ".instance" : ""));
+         this.output = output;
+         this.call = call;
+         this.instance = instance;
+         this.enabled = enabled;
+         this.logFile = new File(directory, "logging-benchmark.log");
+      }
+
+      void
+      setUp()
+      {
+         Properties properties = new Properties();
+         properties.setProperty("simplelog.defaultLevel", enabled ? "5" : "4");
+         properties.setProperty("simplelog.defaultTrace", String.valueOf(enabled));
+         if (output.equals("file") || output.equals("rollover"))
+         {
+            logFile.delete();
+            properties.setProperty("simplelog.logFile", logFile.getPath());
+         }
+         if (output.equals("rollover"))
+         {
+            properties.setProperty("simplelog.rollover", "fileSize");
+            properties.setProperty("simplelog.rollover.fileSize.size", "1T");
+            properties.setProperty("simplelog.rollover.durability", "os");
+         }
+
+         log = new SimpleLog(properties);
+         logger = instance ? new SimpleLogger(log, LoggingBenchmark.class, "instance")
+                           : new SimpleLogger(log, LoggingBenchmark.class);
+      }
+
+      void
+      call(long number)
+      {
+         if (call == "db")
+         {
+            logger.db(DebugLevel.L5_DEBUG, "Message");
+         }
+         else if (call == "dbo")
+         {
+            logger.dbo(DebugLevel.L5_DEBUG, "number", number);
+         }
+         else if (call == "dbe")
+         {
+            logger.dbe(DebugLevel.L5_DEBUG, EXCEPTION);
+         }
+         else if (call == "entry")
+         {
+            logger.entry("call()");
+         }
+         else
+         {
+            logger.exit("call()");
+         }
+      }
+
+      void
+      tearDown()
+      {
+         closeLog(log);
+         log = null;
+         logger = null;
+         deleteLogFile(logFile);
+      }
+   }
+
+   /**
+    * <p>Measures logging through one of the adapters, at a level that is enabled (INFO, with and
+    * without a parameter) and one that isn't (DEBUG).</p>
+    *
+    * <p>The adapters use the default <code>SimpleLog</code>, which can only be set up once, so all the
+    * adapter cases share one log file.</p>
+    */
+   private static final class
+   AdapterCase
+   extends Case
+   {
+      private static SimpleLog defaultLog;
+
+      private static File defaultLogFile;
+
+      private final String adapter;
+
+      private Logger slf4jLogger;
+
+      private Log commonsLogger;
+
+      AdapterCase(String adapter, File directory)
+      {
+         super(adapter);
+         this.adapter = adapter;
+         synchronized (AdapterCase.class)
+         {
+            if (defaultLogFile == null)
+            {
+               defaultLogFile = new File(directory, "logging-benchmark-adapters.log");
+            }
+         }
+      }
+
+      void
+      setUp()
+      {
+         synchronized (AdapterCase.class)
+         {
+            if (defaultLog == null)
+            {
+               defaultLogFile.delete();
+               Properties properties = new Properties();
+               properties.setProperty("simplelog.defaultLevel", "4");
+               properties.setProperty("simplelog.logFile", defaultLogFile.getPath());
+               defaultLog = new SimpleLog(properties);
+               SimpleLog.setDefaultInstance(defaultLog);
+            }
+         }
+
+         if (adapter.equals("slf4j"))
+         {
+            slf4jLogger = new Slf4jAdapterFactory().getLogger(LoggingBenchmark.class.getName());
+         }
+         else
+         {
+            commonsLogger = new CommonsLoggingAdapter(LoggingBenchmark.class.getName());
+         }
+      }
+
+      void
+      call(long number)
+      {
+         // Two thirds of the calls are logged.
+         int kind = (int) (number % 3);
+         if (slf4jLogger != null)
+         {
+            if (kind == 0)
+            {
+               slf4jLogger.info("Message");
+            }
+            else if (kind == 1)
+            {
+               slf4jLogger.info("Message {}", "parameter");
+            }
+            else
+            {
+               slf4jLogger.debug("Message {}", "parameter");
+            }
+         }
+         else
+         {
+            if (kind == 2)
+            {
+               commonsLogger.debug("Message");
+            }
+            else
+            {
+               commonsLogger.info("Message");
+            }
+         }
+      }
+
+      void
+      tearDown()
+      {
+         slf4jLogger = null;
+         commonsLogger = null;
+      }
+
+      /**
+       * Closes and deletes the log file shared by the adapter cases, if it was created.
+       */
+      static synchronized void
+      cleanUp()
+      {
+         if (defaultLog != null)
+         {
+            closeLog(defaultLog);
+            deleteLogFile(defaultLogFile);
+         }
+      }
+   }
+
+   /**
+    * Closes the output of the given log, if it is writing to a file.
+    */
+   private static void
+   closeLog(SimpleLog log)
+   {
+      if (log != null && log.getWriter() != null)
+      {
+         log.getWriter().close();
+      }
+   }
+
+   private static void
+   deleteLogFile(File logFile)
+   {
+      logFile.delete();
+      new File(logFile.getPath() + "-CREATED").delete();
+   }
+
+   /**
+    * Throws away everything written to it.
+    */
+   private static final class
+   NullOutputStream
+   extends OutputStream
+   {
+      public void
+      write(int b)
+      {}
+
+      public void
+      write(byte[] b, int off, int len)
+      {}
+   }
+}
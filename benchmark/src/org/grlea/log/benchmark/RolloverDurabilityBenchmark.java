@@ -0,0 +1,116 @@
+package org.grlea.log.benchmark;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import org.grlea.log.DebugLevel;
+import org.grlea.log.SimpleLog;
+import org.grlea.log.SimpleLogger;
+
+import java.io.File;
+import java.util.Properties;
+
+/**
+ * <p>Compares the speed of logging to a rolled log file under each of the
+ * <code>simplelog.rollover.durability</code> settings.</p>
+ *
+ * <p>Usage: <code>RolloverDurabilityBenchmark [lines [directory]]</code></p>
+ *
+ * <p>The log files are written into the given directory (by default, the working directory) and
+ * deleted afterwards. The speed of the 'sync' durability depends heavily on the storage device, so
+ * the benchmark should be run on the kind of disk the logs will be written to.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+public class
+RolloverDurabilityBenchmark
+{
+   /** The durabilities compared by the benchmark. */
+   private static final String[] DURABILITIES = {"sync", "os", "interval"};
+
+   /** The number of lines logged by default. */
+   private static final int DEFAULT_LINES = 20000;
+
+   /** The number of lines logged before measuring, so that the JVM can warm up. */
+   private static final int WARM_UP_LINES = 2000;
+
+   /** One in how many lines is logged as an error (and so synced under every durability). */
+   private static final int ERROR_FREQUENCY = 1000;
+
+   public static void
+   main(String[] args)
+   throws Exception
+   {
+      int lines = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_LINES;
+      File directory = new File(args.length > 1 ? args[1] : ".").getAbsoluteFile();
+
+      System.out.println("Logging " + lines + " lines (one error every " + ERROR_FREQUENCY +
+                         ") to " + directory);
+      for (int i = 0; i < DURABILITIES.length; i++)
+      {
+         String durability = DURABILITIES[i];
+         long time = run(durability, lines, directory);
+         long linesPerSecond = time == 0 ? lines * 1000L : lines * 1000L / time;
+         System.out.println(durability + ": " + time + " ms (" + linesPerSecond + " lines/s)");
+      }
+   }
+
+   /**
+    * Logs the given number of lines using the given durability and returns how many milliseconds it
+    * took.
+    */
+   private static long
+   run(String durability, int lines, File directory)
+   {
+      File logFile = new File(directory, "durability-benchmark-" + durability + ".log");
+      File creationTimeFile = new File(logFile.getPath() + "-CREATED");
+
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.logFile", logFile.getPath());
+      properties.setProperty("simplelog.rollover", "fileSize");
+      properties.setProperty("simplelog.rollover.fileSize.size", "1T");
+      properties.setProperty("simplelog.rollover.durability", durability);
+      SimpleLog log = new SimpleLog(properties);
+      SimpleLogger logger = new SimpleLogger(log, RolloverDurabilityBenchmark.class);
+
+      try
+      {
+         for (int i = 0; i < WARM_UP_LINES; i++)
+         {
+            logger.dbo(DebugLevel.L4_INFO, "warmUp", i);
+         }
+
+         long start = System.currentTimeMillis();
+         for (int i = 0; i < lines; i++)
+         {
+            if (i % ERROR_FREQUENCY == 0)
+            {
+               logger.dbo(DebugLevel.L2_ERROR, "line", i);
+            }
+            else
+            {
+               logger.dbo(DebugLevel.L4_INFO, "line", i);
+            }
+         }
+         return System.currentTimeMillis() - start;
+      }
+      finally
+      {
+         logFile.delete();
+         creationTimeFile.delete();
+      }
+   }
+}
@@ -0,0 +1,122 @@
+package org.grlea.log.benchmark;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import org.grlea.log.DebugLevel;
+import org.grlea.log.SimpleLog;
+import org.grlea.log.SimpleLogger;
+
+import java.io.File;
+import java.util.Properties;
+
+/**
+ * <p>Measures the throughput of logging to a rolled log file from 1 to 64 threads at once.</p>
+ *
+ * <p>Usage: <code>RolloverThroughputBenchmark [lines per thread [directory]]</code></p>
+ *
+ * <p>The 'interval' durability is used, so that the results show the cost of getting lines into
+ * the <code>RolloverManager</code> rather than the speed of the storage device. The log files are
+ * written into the given directory (by default, the working directory) and deleted afterwards.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+public class
+RolloverThroughputBenchmark
+{
+   /** The numbers of threads the benchmark is run with. */
+   private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+
+   /** The number of lines logged by each thread by default. */
+   private static final int DEFAULT_LINES = 20000;
+
+   public static void
+   main(String[] args)
+   throws Exception
+   {
+      int lines = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_LINES;
+      File directory = new File(args.length > 1 ? args[1] : ".").getAbsoluteFile();
+      File logFile = new File(directory, "throughput-benchmark.log");
+      File creationTimeFile = new File(logFile.getPath() + "-CREATED");
+
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.logFile", logFile.getPath());
+      properties.setProperty("simplelog.rollover", "fileSize");
+      properties.setProperty("simplelog.rollover.fileSize.size", "1T");
+      properties.setProperty("simplelog.rollover.durability", "interval");
+      SimpleLog log = new SimpleLog(properties);
+      SimpleLogger logger = new SimpleLogger(log, RolloverThroughputBenchmark.class);
+
+      try
+      {
+         System.out.println("Logging " + lines + " lines per thread to " + directory);
+
+         // Warm up
+         run(logger, 4, lines);
+
+         for (int i = 0; i < THREAD_COUNTS.length; i++)
+         {
+            int threadCount = THREAD_COUNTS[i];
+            long time = run(logger, threadCount, lines);
+            long totalLines = (long) threadCount * lines;
+            long linesPerSecond = time == 0 ? totalLines * 1000L : totalLines * 1000L / time;
+            System.out.println(threadCount + " threads: " + time + " ms (" + linesPerSecond +
+                               " lines/s)");
+         }
+      }
+      finally
+      {
+         logFile.delete();
+         creationTimeFile.delete();
+      }
+   }
+
+   /**
+    * Logs the given number of lines from each of the given number of threads and returns how many
+    * milliseconds it took.
+    */
+   private static long
+   run(final SimpleLogger logger, int threadCount, final int lines)
+   throws InterruptedException
+   {
+      Thread[] threads = new Thread[threadCount];
+      for (int i = 0; i < threadCount; i++)
+      {
+         threads[i] = new Thread("Logger-" + i)
+         {
+            public void
+            run()
+            {
+               for (int line = 0; line < lines; line++)
+               {
+                  logger.dbo(DebugLevel.L4_INFO, "line", line);
+               }
+            }
+         };
+      }
+
+      long start = System.currentTimeMillis();
+      for (int i = 0; i < threadCount; i++)
+      {
+         threads[i].start();
+      }
+      for (int i = 0; i < threadCount; i++)
+      {
+         threads[i].join();
+      }
+      return System.currentTimeMillis() - start;
+   }
+}
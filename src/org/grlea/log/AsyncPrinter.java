@@ -0,0 +1,431 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Date;
+
+/**
+ * <p>Takes log output off the logging thread by capturing log events into a fixed-size ring
+ * buffer that is emptied, in batches, by a single daemon thread.</p>
+ *
+ * <p>Logging threads only copy the event's format and data into a pre-allocated slot. (The data
+ * is copied, rather than kept, because <code>SimpleLogger</code> reuses its data arrays.) A
+ * parameterized message or primitive value is copied into a holder kept with the slot, so the
+ * message is only put together, and its arguments' <code>toString()</code> methods only called, on
+ * the printing thread. The printing thread formats each event and writes it to the
+ * <code>SimpleLog</code>'s output, flushing
+ * the output once per batch rather than once per line. When the buffer is full, logging threads
+ * wait for space to become available, so no output is ever discarded.</p>
+ *
+ * <p>The printer doesn't register a shutdown hook of its own: <code>SimpleLog</code>'s shutdown
+ * hook calls {@link #shutdown()} to print the events still queued before it closes the log
+ * file.</p>
+ *
+ * @version $Revision$
+ * @author $Author$
+ */
+final class
+AsyncPrinter
+implements Runnable
+{
+   /** The <code>SimpleLog</code> whose output this printer writes. */
+   private final SimpleLog log;
+
+   /** The formats of the events in the ring buffer. */
+   private final LogFormat[] formats;
+
+   /**
+    * The data of the events in the ring buffer. The arrays are swapped with those in
+    * {@link #batchData} as events are printed, so that they can be reused.
+    */
+   private final Object[][] data;
+
+   /**
+    * The holders that parameterized messages in the ring buffer are copied into, or
+    * <code>null</code> where none has been needed yet. Swapped with {@link #batchMessages} along
+    * with the data.
+    */
+   private final ParameterizedMessage[] messages;
+
+   /**
+    * The holders that primitive values in the ring buffer are copied into, or <code>null</code>
+    * where none has been needed yet. Swapped with {@link #batchValues} along with the data.
+    */
+   private final PrimitiveValue[] values;
+
+   /** The formats of the batch currently being printed. Only used by the printing thread. */
+   private final LogFormat[] batchFormats;
+
+   /** The data of the batch currently being printed. Only used by the printing thread. */
+   private final Object[][] batchData;
+
+   /** The message holders of the batch currently being printed. */
+   private final ParameterizedMessage[] batchMessages;
+
+   /** The primitive value holders of the batch currently being printed. */
+   private final PrimitiveValue[] batchValues;
+
+   /** An object to synchronize on when accessing or modifying the ring buffer. */
+   private final Object BUFFER_LOCK = new Object();
+
+   /** The index of the oldest event in the ring buffer. */
+   private int head = 0;
+
+   /** The number of events currently in the ring buffer. */
+   private int count = 0;
+
+   /** The total number of events that have ever been put into the ring buffer. */
+   private long eventsQueued = 0;
+
+   /** The total number of events that have been printed. */
+   private long eventsPrinted = 0;
+
+   /** Whether this printer is still accepting events. */
+   private boolean running = true;
+
+   /** The thread that prints the events. */
+   private final Thread thread;
+
+   /**
+    * Creates and starts a new <code>AsyncPrinter</code>.
+    *
+    * @param log the <code>SimpleLog</code> whose output this printer will write.
+    *
+    * @param bufferSize the maximum number of events that can be waiting to be printed.
+    */
+   AsyncPrinter(SimpleLog log, int bufferSize)
+   {
+      if (bufferSize < 1)
+         throw new IllegalArgumentException("bufferSize must be greater than 0.");
+
+      this.log = log;
+      this.formats = new LogFormat[bufferSize];
+      this.data = new Object[bufferSize][];
+      this.messages = new ParameterizedMessage[bufferSize];
+      this.values = new PrimitiveValue[bufferSize];
+      this.batchFormats = new LogFormat[bufferSize];
+      this.batchData = new Object[bufferSize][];
+      this.batchMessages = new ParameterizedMessage[bufferSize];
+      this.batchValues = new PrimitiveValue[bufferSize];
+
+      thread = new Thread(this, "SimpleLog Async Printer");
+      thread.setDaemon(true);
+      thread.start();
+   }
+
+   /**
+    * Returns the maximum number of events that can be waiting to be printed by this printer.
+    */
+   int
+   getBufferSize()
+   {
+      return formats.length;
+   }
+
+   /**
+    * Queues an event to be printed. If the buffer is full, this method will wait until there is
+    * room in the buffer. If this printer has been shut down, or if this method is called by the
+    * printing thread itself (e.g. from an object's <code>toString()</code>), the event is printed
+    * immediately instead, to the output destination of the given configuration.
+    *
+    * @param configuration the configuration that the format was taken from
+    *
+    * @param format the format to use to print the event
+    *
+    * @param eventData the data of the event
+    */
+   void
+   print(Configuration configuration, LogFormat format, Object[] eventData)
+   {
+      if (Thread.currentThread() == thread)
+      {
+         log.println(format, eventData, true, configuration);
+         return;
+      }
+
+      captureMutableValues(eventData);
+
+      synchronized (BUFFER_LOCK)
+      {
+         while (running && count == formats.length)
+         {
+            try
+            {
+               BUFFER_LOCK.wait();
+            }
+            catch (InterruptedException e)
+            {
+               // Print it ourselves rather than lose it.
+               Thread.currentThread().interrupt();
+               break;
+            }
+         }
+
+         if (running && count != formats.length)
+         {
+            int tail = (head + count) % formats.length;
+            formats[tail] = format;
+            copy(eventData, tail);
+            count++;
+            eventsQueued++;
+            BUFFER_LOCK.notifyAll();
+            return;
+         }
+      }
+
+      log.println(format, eventData, true, configuration);
+   }
+
+   /**
+    * Copies the given event data into the slot at the given index of the ring buffer, replacing
+    * the slot's data array if it is <code>null</code> or the wrong size. Any parameterized message
+    * or primitive value is copied into the slot's own holder, because the
+    * <code>SimpleLogger</code> reuses its holders.
+    */
+   private void
+   copy(Object[] eventData, int index)
+   {
+      Object[] slot = data[index];
+      if (slot == null || slot.length != eventData.length)
+      {
+         slot = new Object[eventData.length];
+         slot[0] = new Date();
+         data[index] = slot;
+      }
+
+      // The date object is reused by the SimpleLogger, so copy its value
+      ((Date) slot[0]).setTime(((Date) eventData[0]).getTime());
+      System.arraycopy(eventData, 1, slot, 1, eventData.length - 1);
+
+      for (int i = 5; i < slot.length; i++)
+      {
+         Object value = slot[i];
+         if (value instanceof ParameterizedMessage)
+         {
+            if (messages[index] == null)
+            {
+               messages[index] = new ParameterizedMessage();
+            }
+            slot[i] = messages[index].set((ParameterizedMessage) value);
+         }
+         else if (value instanceof PrimitiveValue)
+         {
+            if (values[index] == null)
+            {
+               values[index] = new PrimitiveValue();
+            }
+            slot[i] = values[index].set((PrimitiveValue) value);
+         }
+      }
+   }
+
+   /**
+    * Replaces any values in the event data that might change before the event is printed with
+    * values that won't. The first five slots (date, thread, class, instance ID and level) are
+    * created by the <code>SimpleLogger</code> and never change. Parameterized messages and
+    * primitive values are left for {@link #copy} to copy into the slot's holders.
+    */
+   private void
+   captureMutableValues(Object[] eventData)
+   {
+      for (int i = 5; i < eventData.length; i++)
+      {
+         Object value = eventData[i];
+         if (value == null || value instanceof LogValue || isImmutable(value))
+         {
+            continue;
+         }
+
+         if (value instanceof Date)
+         {
+            eventData[i] = new Date(((Date) value).getTime());
+         }
+         else
+         {
+            // LogFormat prints any other object using toString(), so this gives the same output.
+            eventData[i] = String.valueOf(value);
+         }
+      }
+   }
+
+   /**
+    * Returns whether the given value is of a type that is known not to change once created.
+    */
+   private static boolean
+   isImmutable(Object value)
+   {
+      return value instanceof String ||
+             value instanceof Throwable ||
+             value instanceof Integer ||
+             value instanceof Long ||
+             value instanceof Short ||
+             value instanceof Byte ||
+             value instanceof Double ||
+             value instanceof Float ||
+             value instanceof Boolean ||
+             value instanceof Character ||
+             value instanceof BigInteger ||
+             value instanceof BigDecimal;
+   }
+
+   /**
+    * Waits until all the events queued before this method was called have been printed.
+    */
+   void
+   flush()
+   {
+      synchronized (BUFFER_LOCK)
+      {
+         long target = eventsQueued;
+         while (eventsPrinted < target && thread.isAlive())
+         {
+            try
+            {
+               BUFFER_LOCK.wait(100);
+            }
+            catch (InterruptedException e)
+            {
+               Thread.currentThread().interrupt();
+               return;
+            }
+         }
+      }
+   }
+
+   /**
+    * Stops this printer from accepting new events, prints all the events already queued and then
+    * stops the printing thread.
+    */
+   void
+   shutdown()
+   {
+      synchronized (BUFFER_LOCK)
+      {
+         running = false;
+         BUFFER_LOCK.notifyAll();
+      }
+
+      if (Thread.currentThread() != thread)
+      {
+         try
+         {
+            thread.join();
+         }
+         catch (InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+         }
+      }
+   }
+
+   /**
+    * Prints events from the ring buffer, in batches, until this printer is shut down and the
+    * buffer is empty.
+    */
+   public void
+   run()
+   {
+      while (true)
+      {
+         int batchSize;
+         synchronized (BUFFER_LOCK)
+         {
+            while (running && count == 0)
+            {
+               try
+               {
+                  BUFFER_LOCK.wait();
+               }
+               catch (InterruptedException e)
+               {
+                  // Ignore - only shutdown() stops the printer.
+               }
+            }
+
+            if (count == 0)
+            {
+               BUFFER_LOCK.notifyAll();
+               return;
+            }
+
+            // Take everything in the buffer, so the logging threads can carry on filling it.
+            batchSize = count;
+            for (int i = 0; i < batchSize; i++)
+            {
+               int index = (head + i) % formats.length;
+               batchFormats[i] = formats[index];
+               formats[index] = null;
+
+               Object[] printedData = batchData[i];
+               batchData[i] = data[index];
+               data[index] = printedData;
+
+               ParameterizedMessage printedMessage = batchMessages[i];
+               batchMessages[i] = messages[index];
+               messages[index] = printedMessage;
+
+               PrimitiveValue printedValue = batchValues[i];
+               batchValues[i] = values[index];
+               values[index] = printedValue;
+            }
+            head = (head + batchSize) % formats.length;
+            count = 0;
+            BUFFER_LOCK.notifyAll();
+         }
+
+         for (int i = 0; i < batchSize; i++)
+         {
+            try
+            {
+               log.println(batchFormats[i], batchData[i], false);
+            }
+            catch (Throwable t)
+            {
+               SimpleLog.printError("Error while printing asynchronous log output", t, true);
+            }
+            batchFormats[i] = null;
+
+            // Keep the array (and its date) for reuse, but not the arguments
+            Object[] printedData = batchData[i];
+            for (int j = 1; j < printedData.length; j++)
+            {
+               printedData[j] = null;
+            }
+            if (batchMessages[i] != null)
+            {
+               batchMessages[i].clear();
+            }
+         }
+
+         try
+         {
+            log.flushOutput();
+         }
+         catch (Throwable t)
+         {
+            SimpleLog.printError("Error while flushing asynchronous log output", t, true);
+         }
+
+         synchronized (BUFFER_LOCK)
+         {
+            eventsPrinted += batchSize;
+            BUFFER_LOCK.notifyAll();
+         }
+      }
+   }
+}
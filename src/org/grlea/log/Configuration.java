@@ -0,0 +1,393 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.text.DateFormat;
+
+/**
+ * <p>The settings a {@link SimpleLog} uses to print each line: where the output goes, the message
+ * formats and the defaults for new loggers.</p>
+ *
+ * <p>A <code>Configuration</code> never changes once it has been created. Changing a setting
+ * creates a new <code>Configuration</code> (using one of the <code>with</code> methods), which the
+ * <code>SimpleLog</code> then publishes with a single write to a volatile field. A thread printing a
+ * line reads that field once and uses the same <code>Configuration</code> for the whole line, so it
+ * never sees a half-applied change and never needs a lock to read the settings.</p>
+ *
+ * @version $Revision$
+ * @author $Author$
+ */
+final class
+Configuration
+{
+   /** The destination of the output, or <code>null</code> if there is no output. */
+   private PrintWriter out;
+
+   /**
+    * The writer (a {@link DirectFileWriter} or a <code>RolloverManager</code> writing through one)
+    * that lines are written straight to, bypassing the print writer, or <code>null</code> if lines
+    * are printed through the print writer.
+    */
+   private Writer lineWriter;
+
+   /**
+    * The <code>RolloverManager</code> that the print writer is printing to, which is synced after
+    * every Fatal or Error message, or <code>null</code> if rollover is not in use.
+    */
+   private Writer rolloverWriter;
+
+   /** The console. */
+   private PrintStream console;
+
+   /** Whether the print writer is printing straight to the console. */
+   private boolean printWriterGoesToConsole;
+
+   /** Whether output is going to the console as well as a log file. */
+   private boolean pipingOutputToConsole;
+
+   /** The default level of loggers. */
+   private DebugLevel defaultLevel;
+
+   /** The default trace flag of loggers. */
+   private boolean defaultTracing;
+
+   /** The levels and trace flags set for packages and classes, or <code>null</code> if none. */
+   private LevelIndex levelIndex;
+
+   /** The date format used in all the message formats. */
+   private DateFormat dateFormat;
+
+   /** Message format for a simple debug message. */
+   private LogFormat dbFormat;
+
+   /** Message format for a debug object message. */
+   private LogFormat dboFormat;
+
+   /** Message format for a debug exception message. */
+   private LogFormat dbeFormat;
+
+   /** Message format for a trace entry message. */
+   private LogFormat entryFormat;
+
+   /** Message format for a trace exit message. */
+   private LogFormat exitFormat;
+
+   /** Message format for a simple debug message (instance version). */
+   private LogFormat dbFormat4Instance;
+
+   /** Message format for a debug object message (instance version). */
+   private LogFormat dboFormat4Instance;
+
+   /** Message format for a debug exception message (instance version). */
+   private LogFormat dbeFormat4Instance;
+
+   /** Message format for a trace entry message (instance version). */
+   private LogFormat entryFormat4Instance;
+
+   /** Message format for a trace exit message (instance version). */
+   private LogFormat exitFormat4Instance;
+
+   /**
+    * Creates a new <code>Configuration</code> that prints to the given console, with the default
+    * level and trace flag and no message formats.
+    *
+    * @param console the console to print to
+    */
+   Configuration(PrintStream console)
+   {
+      this.out = new PrintWriter(console, true);
+      this.console = console;
+      this.printWriterGoesToConsole = true;
+      this.pipingOutputToConsole = false;
+      this.defaultLevel = DebugLevel.L4_INFO;
+      this.defaultTracing = false;
+   }
+
+   /**
+    * Creates a copy of the given <code>Configuration</code>, to be changed before it is returned
+    * from one of the <code>with</code> methods.
+    */
+   private
+   Configuration(Configuration original)
+   {
+      this.out = original.out;
+      this.lineWriter = original.lineWriter;
+      this.rolloverWriter = original.rolloverWriter;
+      this.console = original.console;
+      this.printWriterGoesToConsole = original.printWriterGoesToConsole;
+      this.pipingOutputToConsole = original.pipingOutputToConsole;
+      this.defaultLevel = original.defaultLevel;
+      this.defaultTracing = original.defaultTracing;
+      this.levelIndex = original.levelIndex;
+      this.dateFormat = original.dateFormat;
+      this.dbFormat = original.dbFormat;
+      this.dboFormat = original.dboFormat;
+      this.dbeFormat = original.dbeFormat;
+      this.entryFormat = original.entryFormat;
+      this.exitFormat = original.exitFormat;
+      this.dbFormat4Instance = original.dbFormat4Instance;
+      this.dboFormat4Instance = original.dboFormat4Instance;
+      this.dbeFormat4Instance = original.dbeFormat4Instance;
+      this.entryFormat4Instance = original.entryFormat4Instance;
+      this.exitFormat4Instance = original.exitFormat4Instance;
+   }
+
+   /**
+    * Returns a copy of this <code>Configuration</code> with the given output destination.
+    *
+    * @param out the print writer to print to, or <code>null</code> for no output
+    *
+    * @param lineWriter the writer to write lines straight to, or <code>null</code>
+    *
+    * @param rolloverWriter the <code>RolloverManager</code> being written to, or <code>null</code>
+    *
+    * @param console the console
+    *
+    * @param printWriterGoesToConsole whether the print writer prints straight to the console
+    */
+   Configuration
+   withOutput(PrintWriter out, Writer lineWriter, Writer rolloverWriter, PrintStream console,
+              boolean printWriterGoesToConsole)
+   {
+      Configuration configuration = new Configuration(this);
+      configuration.out = out;
+      configuration.lineWriter = lineWriter;
+      configuration.rolloverWriter = rolloverWriter;
+      configuration.console = console;
+      configuration.printWriterGoesToConsole = printWriterGoesToConsole;
+      return configuration;
+   }
+
+   /**
+    * Returns a copy of this <code>Configuration</code> with the given print writer as the output
+    * destination, and no line writer or rollover writer.
+    */
+   Configuration
+   withWriter(PrintWriter out)
+   {
+      return withOutput(out, null, null, console, printWriterGoesToConsole);
+   }
+
+   /**
+    * Returns a copy of this <code>Configuration</code> with the given console piping flag.
+    */
+   Configuration
+   withPipingOutputToConsole(boolean pipingOutputToConsole)
+   {
+      Configuration configuration = new Configuration(this);
+      configuration.pipingOutputToConsole = pipingOutputToConsole;
+      return configuration;
+   }
+
+   /**
+    * Returns a copy of this <code>Configuration</code> with the given default level and trace
+    * flag.
+    */
+   Configuration
+   withDefaults(DebugLevel defaultLevel, boolean defaultTracing)
+   {
+      Configuration configuration = new Configuration(this);
+      configuration.defaultLevel = defaultLevel;
+      configuration.defaultTracing = defaultTracing;
+      return configuration;
+   }
+
+   /**
+    * Returns a copy of this <code>Configuration</code> with the given levels and trace flags for
+    * packages and classes.
+    */
+   Configuration
+   withLevelIndex(LevelIndex levelIndex)
+   {
+      Configuration configuration = new Configuration(this);
+      configuration.levelIndex = levelIndex;
+      return configuration;
+   }
+
+   /**
+    * Returns a copy of this <code>Configuration</code> with the given date format, which is also
+    * put into all the message formats.
+    */
+   Configuration
+   withDateFormat(DateFormat dateFormat)
+   {
+      Configuration configuration = new Configuration(this);
+      configuration.dateFormat = dateFormat;
+      if (dbFormat != null)
+      {
+         configuration.dbFormat = dbFormat.withDateFormat(dateFormat);
+         configuration.dboFormat = dboFormat.withDateFormat(dateFormat);
+         configuration.dbeFormat = dbeFormat.withDateFormat(dateFormat);
+         configuration.entryFormat = entryFormat.withDateFormat(dateFormat);
+         configuration.exitFormat = exitFormat.withDateFormat(dateFormat);
+
+         configuration.dbFormat4Instance = dbFormat4Instance.withDateFormat(dateFormat);
+         configuration.dboFormat4Instance = dboFormat4Instance.withDateFormat(dateFormat);
+         configuration.dbeFormat4Instance = dbeFormat4Instance.withDateFormat(dateFormat);
+         configuration.entryFormat4Instance = entryFormat4Instance.withDateFormat(dateFormat);
+         configuration.exitFormat4Instance = exitFormat4Instance.withDateFormat(dateFormat);
+      }
+      return configuration;
+   }
+
+   /**
+    * Returns a copy of this <code>Configuration</code> with the given message formats, which must
+    * already use this <code>Configuration</code>'s date format.
+    */
+   Configuration
+   withFormats(LogFormat dbFormat, LogFormat dboFormat, LogFormat dbeFormat,
+               LogFormat entryFormat, LogFormat exitFormat,
+               LogFormat dbFormat4Instance, LogFormat dboFormat4Instance,
+               LogFormat dbeFormat4Instance, LogFormat entryFormat4Instance,
+               LogFormat exitFormat4Instance)
+   {
+      Configuration configuration = new Configuration(this);
+      configuration.dbFormat = dbFormat;
+      configuration.dboFormat = dboFormat;
+      configuration.dbeFormat = dbeFormat;
+      configuration.entryFormat = entryFormat;
+      configuration.exitFormat = exitFormat;
+      configuration.dbFormat4Instance = dbFormat4Instance;
+      configuration.dboFormat4Instance = dboFormat4Instance;
+      configuration.dbeFormat4Instance = dbeFormat4Instance;
+      configuration.entryFormat4Instance = entryFormat4Instance;
+      configuration.exitFormat4Instance = exitFormat4Instance;
+      return configuration;
+   }
+
+   PrintWriter
+   getWriter()
+   {
+      return out;
+   }
+
+   Writer
+   getLineWriter()
+   {
+      return lineWriter;
+   }
+
+   Writer
+   getRolloverWriter()
+   {
+      return rolloverWriter;
+   }
+
+   PrintStream
+   getConsole()
+   {
+      return console;
+   }
+
+   boolean
+   isPrintWriterGoingToConsole()
+   {
+      return printWriterGoesToConsole;
+   }
+
+   boolean
+   isPipingOutputToConsole()
+   {
+      return pipingOutputToConsole;
+   }
+
+   DebugLevel
+   getDefaultLevel()
+   {
+      return defaultLevel;
+   }
+
+   boolean
+   isDefaultTracing()
+   {
+      return defaultTracing;
+   }
+
+   LevelIndex
+   getLevelIndex()
+   {
+      return levelIndex;
+   }
+
+   DateFormat
+   getDateFormat()
+   {
+      return dateFormat;
+   }
+
+   LogFormat
+   getDebugFormat()
+   {
+      return dbFormat;
+   }
+
+   LogFormat
+   getDebugInstanceFormat()
+   {
+      return dbFormat4Instance;
+   }
+
+   LogFormat
+   getDebugObjectFormat()
+   {
+      return dboFormat;
+   }
+
+   LogFormat
+   getDebugObjectInstanceFormat()
+   {
+      return dboFormat4Instance;
+   }
+
+   LogFormat
+   getDebugExceptionFormat()
+   {
+      return dbeFormat;
+   }
+
+   LogFormat
+   getDebugExceptionInstanceFormat()
+   {
+      return dbeFormat4Instance;
+   }
+
+   LogFormat
+   getEntryFormat()
+   {
+      return entryFormat;
+   }
+
+   LogFormat
+   getEntryInstanceFormat()
+   {
+      return entryFormat4Instance;
+   }
+
+   LogFormat
+   getExitFormat()
+   {
+      return exitFormat;
+   }
+
+   LogFormat
+   getExitInstanceFormat()
+   {
+      return exitFormat4Instance;
+   }
+}
@@ -0,0 +1,593 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Watches the configuration files of all the <code>SimpleLog</code>s that have reloading
+ * enabled, using a single daemon thread, and reloads a <code>SimpleLog</code>'s properties soon
+ * after any of its files changes.</p>
+ *
+ * <p>Where the JVM provides a <code>java.nio.file.WatchService</code>, the thread sleeps until the
+ * file system reports a change in one of the directories containing the files. The service is used
+ * through reflection so that Simple Log still runs on JVMs without it, in which case (or if a
+ * directory can't be registered with it) the files are polled instead.</p>
+ *
+ * <p>Whichever way a change is noticed, it is confirmed by comparing the last modified time and
+ * length of each file with those seen in the previous check. A <code>SimpleLog</code> is only
+ * reloaded once its files have stopped changing for {@link #SETTLE_PERIOD}, so that an editor
+ * saving a file in several writes causes only one reload, and not one of a half-written file.</p>
+ *
+ * <p>The <code>SimpleLog</code>s are only weakly referenced, so watching a <code>SimpleLog</code>'s
+ * files doesn't stop it from being garbage collected. The thread stops when there is nothing left
+ * to watch.</p>
+ *
+ * @version $Revision$
+ * @author $Author$
+ */
+final class
+ConfigurationWatcher
+implements Runnable
+{
+   /** The time (in milliseconds) files must stay unchanged before they are reloaded. */
+   private static final long SETTLE_PERIOD = 50;
+
+   /**
+    * The period (in milliseconds) between checks of the files when the file system reports
+    * changes to all their directories.
+    */
+   private static final long NOTIFIED_CHECK_PERIOD = 5 * 1000;
+
+   /**
+    * The period (in milliseconds) between checks of the files when any of them has to be polled.
+    */
+   private static final long POLLED_CHECK_PERIOD = 1000;
+
+   /** The name given to the watcher thread. */
+   private static final String THREAD_NAME = "SimpleLog Configuration Watcher";
+
+   /** The watcher shared by all <code>SimpleLog</code>s. */
+   private static ConfigurationWatcher instance;
+
+   /** The {@link Watch}es of the <code>SimpleLog</code>s being watched. */
+   private final List watches = new ArrayList();
+
+   /**
+    * The directories containing the watched files, mapped to the key they are registered with in
+    * the {@link #notifier}, or to <code>null</code> if they have to be polled.
+    */
+   private final Map directoryKeys = new HashMap();
+
+   /** The file system's change notifier, or <code>null</code> if the files have to be polled. */
+   private FileSystemNotifier notifier;
+
+   /** The watcher thread, or <code>null</code> if it is not running. */
+   private Thread thread;
+
+   /**
+    * Returns the watcher shared by all <code>SimpleLog</code>s.
+    */
+   static synchronized ConfigurationWatcher
+   getInstance()
+   {
+      if (instance == null)
+      {
+         instance = new ConfigurationWatcher(FileSystemNotifier.create());
+      }
+      return instance;
+   }
+
+   /**
+    * Creates a new <code>ConfigurationWatcher</code>.
+    *
+    * @param notifier the file system's change notifier, or <code>null</code> to poll the files
+    */
+   ConfigurationWatcher(FileSystemNotifier notifier)
+   {
+      this.notifier = notifier;
+   }
+
+   /**
+    * Starts watching the given files for the given <code>SimpleLog</code>, replacing any files
+    * already being watched for it. Files that were already being watched keep the state seen in
+    * the last check, so a change made while the <code>SimpleLog</code> was reloading isn't lost.
+    *
+    * @param log the <code>SimpleLog</code> to reload when any of the files changes
+    *
+    * @param files the configuration files of the <code>SimpleLog</code>
+    */
+   synchronized void
+   watch(SimpleLog log, File[] files)
+   {
+      Watch watch = null;
+      for (Iterator iter = watches.iterator(); iter.hasNext() && watch == null;)
+      {
+         Watch candidate = (Watch) iter.next();
+         if (candidate.log.get() == log)
+         {
+            watch = candidate;
+         }
+      }
+
+      if (watch == null)
+      {
+         watch = new Watch(log);
+         watches.add(watch);
+      }
+      watch.setFiles(files);
+      updateDirectories();
+
+      if (thread == null)
+      {
+         thread = new Thread(this, THREAD_NAME);
+         thread.setDaemon(true);
+         thread.start();
+      }
+   }
+
+   public void
+   run()
+   {
+      List logsToReload = new ArrayList();
+      while (true)
+      {
+         long waitTime;
+         synchronized (this)
+         {
+            waitTime = checkFiles(System.currentTimeMillis(), logsToReload);
+            if (watches.isEmpty())
+            {
+               thread = null;
+               return;
+            }
+         }
+
+         // The lock mustn't be held here, as reloading calls watch() with the new list of files.
+         for (Iterator iter = logsToReload.iterator(); iter.hasNext();)
+         {
+            SimpleLog log = (SimpleLog) iter.next();
+            try
+            {
+               log.reloadProperties();
+            }
+            catch (Throwable t)
+            {
+               SimpleLog.printError("Failed to reload properties", t, true);
+            }
+         }
+         logsToReload.clear();
+
+         awaitChange(waitTime);
+      }
+   }
+
+   /**
+    * Checks all the watched files for changes, adding to the given list each
+    * <code>SimpleLog</code> whose files have stopped changing.
+    *
+    * @return the time (in milliseconds) to wait before checking the files again.
+    */
+   private long
+   checkFiles(long now, List logsToReload)
+   {
+      long waitTime = directoryKeys.containsValue(null) ? POLLED_CHECK_PERIOD
+                                                        : NOTIFIED_CHECK_PERIOD;
+      boolean watchRemoved = false;
+      for (Iterator iter = watches.iterator(); iter.hasNext();)
+      {
+         Watch watch = (Watch) iter.next();
+         SimpleLog log = (SimpleLog) watch.log.get();
+         if (log == null)
+         {
+            iter.remove();
+            watchRemoved = true;
+            continue;
+         }
+
+         if (watch.checkFiles())
+         {
+            watch.reloadTime = now + SETTLE_PERIOD;
+         }
+
+         if (watch.reloadTime != 0)
+         {
+            if (now >= watch.reloadTime)
+            {
+               watch.reloadTime = 0;
+               logsToReload.add(log);
+            }
+            else
+            {
+               waitTime = Math.min(waitTime, watch.reloadTime - now);
+            }
+         }
+      }
+
+      if (watchRemoved)
+      {
+         updateDirectories();
+      }
+      return waitTime;
+   }
+
+   /**
+    * Registers the directories of all the watched files with the notifier, and cancels the
+    * registration of directories that no longer contain any watched files.
+    */
+   private void
+   updateDirectories()
+   {
+      Set directories = new HashSet();
+      for (Iterator iter = watches.iterator(); iter.hasNext();)
+      {
+         Watch watch = (Watch) iter.next();
+         for (int i = 0; i < watch.files.length; i++)
+         {
+            File directory = watch.files[i].getAbsoluteFile().getParentFile();
+            if (directory != null)
+            {
+               directories.add(directory);
+            }
+         }
+      }
+
+      for (Iterator iter = directoryKeys.entrySet().iterator(); iter.hasNext();)
+      {
+         Map.Entry entry = (Map.Entry) iter.next();
+         if (!directories.contains(entry.getKey()))
+         {
+            if (entry.getValue() != null)
+            {
+               notifier.cancel(entry.getValue());
+            }
+            iter.remove();
+         }
+      }
+
+      for (Iterator iter = directories.iterator(); iter.hasNext();)
+      {
+         File directory = (File) iter.next();
+         if (!directoryKeys.containsKey(directory))
+         {
+            Object key = null;
+            if (notifier != null)
+            {
+               try
+               {
+                  key = notifier.register(directory);
+               }
+               catch (Exception e)
+               {
+                  SimpleLog.printDebugIfEnabled("Polling configuration directory", directory);
+               }
+            }
+            directoryKeys.put(directory, key);
+         }
+      }
+   }
+
+   /**
+    * Waits until the file system reports a change or the given time has passed.
+    */
+   private void
+   awaitChange(long waitTime)
+   {
+      FileSystemNotifier notifier;
+      synchronized (this)
+      {
+         notifier = this.notifier;
+      }
+
+      if (notifier != null)
+      {
+         try
+         {
+            notifier.await(waitTime);
+            return;
+         }
+         catch (Exception e)
+         {
+            SimpleLog.printError("Configuration change notification failed, polling instead", e,
+                                 true);
+            synchronized (this)
+            {
+               this.notifier = null;
+               for (Iterator iter = directoryKeys.entrySet().iterator(); iter.hasNext();)
+               {
+                  ((Map.Entry) iter.next()).setValue(null);
+               }
+            }
+         }
+      }
+
+      synchronized (this)
+      {
+         try
+         {
+            wait(waitTime);
+         }
+         catch (InterruptedException e)
+         {
+            // Just check the files early.
+         }
+      }
+   }
+
+   /**
+    * The configuration files of one <code>SimpleLog</code>, with their state as seen in the last
+    * check.
+    */
+   private static final class
+   Watch
+   {
+      /** The <code>SimpleLog</code> to reload. */
+      final WeakReference log;
+
+      /** The files being watched. */
+      File[] files = new File[0];
+
+      /** The last modified time of each file, as seen in the last check. */
+      long[] lastModifieds = new long[0];
+
+      /** The length of each file, as seen in the last check. */
+      long[] lengths = new long[0];
+
+      /**
+       * The time at which the <code>SimpleLog</code> should be reloaded if its files don't change
+       * again before then, or <code>0</code> if they haven't changed.
+       */
+      long reloadTime;
+
+      Watch(SimpleLog log)
+      {
+         this.log = new WeakReference(log);
+      }
+
+      /**
+       * Sets the files to watch, reading the state of any that weren't already being watched.
+       */
+      void
+      setFiles(File[] newFiles)
+      {
+         long[] newLastModifieds = new long[newFiles.length];
+         long[] newLengths = new long[newFiles.length];
+         for (int i = 0; i < newFiles.length; i++)
+         {
+            int oldIndex = indexOf(newFiles[i]);
+            if (oldIndex != -1)
+            {
+               newLastModifieds[i] = lastModifieds[oldIndex];
+               newLengths[i] = lengths[oldIndex];
+            }
+            else
+            {
+               newLastModifieds[i] = newFiles[i].lastModified();
+               newLengths[i] = newFiles[i].length();
+            }
+         }
+         files = newFiles;
+         lastModifieds = newLastModifieds;
+         lengths = newLengths;
+      }
+
+      private int
+      indexOf(File file)
+      {
+         for (int i = 0; i < files.length; i++)
+         {
+            if (files[i].equals(file))
+            {
+               return i;
+            }
+         }
+         return -1;
+      }
+
+      /**
+       * Reads the state of the files, returning whether any of them has changed since the last
+       * check.
+       */
+      boolean
+      checkFiles()
+      {
+         boolean changed = false;
+         for (int i = 0; i < files.length; i++)
+         {
+            long lastModified = files[i].lastModified();
+            long length = files[i].length();
+            if (lastModified != lastModifieds[i] || length != lengths[i])
+            {
+               lastModifieds[i] = lastModified;
+               lengths[i] = length;
+               changed = true;
+            }
+         }
+         return changed;
+      }
+   }
+
+   /**
+    * Receives notifications of changes in directories from a
+    * <code>java.nio.file.WatchService</code>, which is accessed through reflection.
+    */
+   static final class
+   FileSystemNotifier
+   {
+      private static final Class[] NO_PARAMETERS = new Class[0];
+
+      private static final Object[] NO_ARGUMENTS = new Object[0];
+
+      private final Object watchService;
+
+      private final Object eventKinds;
+
+      private final Object milliseconds;
+
+      private final Method toPath;
+
+      private final Method register;
+
+      private final Method poll;
+
+      private final Method pollWithTimeout;
+
+      private final Method pollEvents;
+
+      private final Method reset;
+
+      private final Method cancel;
+
+      /**
+       * Returns a new notifier using the default file system's <code>WatchService</code>, or
+       * <code>null</code> if there isn't one.
+       */
+      static FileSystemNotifier
+      create()
+      {
+         try
+         {
+            return new FileSystemNotifier();
+         }
+         catch (Throwable t)
+         {
+            SimpleLog.printDebugIfEnabled("Configuration files will be polled", t);
+            return null;
+         }
+      }
+
+      private
+      FileSystemNotifier()
+      throws Exception
+      {
+         Class fileSystemsClass = Class.forName("java.nio.file.FileSystems");
+         Class fileSystemClass = Class.forName("java.nio.file.FileSystem");
+         Class watchServiceClass = Class.forName("java.nio.file.WatchService");
+         Class watchKeyClass = Class.forName("java.nio.file.WatchKey");
+         Class pathClass = Class.forName("java.nio.file.Path");
+         Class kindClass = Class.forName("java.nio.file.WatchEvent$Kind");
+         Class standardKindsClass = Class.forName("java.nio.file.StandardWatchEventKinds");
+         Class timeUnitClass = Class.forName("java.util.concurrent.TimeUnit");
+
+         eventKinds = Array.newInstance(kindClass, 3);
+         Array.set(eventKinds, 0, standardKindsClass.getField("ENTRY_CREATE").get(null));
+         Array.set(eventKinds, 1, standardKindsClass.getField("ENTRY_MODIFY").get(null));
+         Array.set(eventKinds, 2, standardKindsClass.getField("ENTRY_DELETE").get(null));
+         milliseconds = timeUnitClass.getField("MILLISECONDS").get(null);
+
+         toPath = File.class.getMethod("toPath", NO_PARAMETERS);
+         register = pathClass.getMethod("register",
+                                        new Class[] {watchServiceClass, eventKinds.getClass()});
+         poll = watchServiceClass.getMethod("poll", NO_PARAMETERS);
+         pollWithTimeout = watchServiceClass.getMethod("poll",
+                                                       new Class[] {Long.TYPE, timeUnitClass});
+         pollEvents = watchKeyClass.getMethod("pollEvents", NO_PARAMETERS);
+         reset = watchKeyClass.getMethod("reset", NO_PARAMETERS);
+         cancel = watchKeyClass.getMethod("cancel", NO_PARAMETERS);
+
+         Object fileSystem =
+            fileSystemsClass.getMethod("getDefault", NO_PARAMETERS).invoke(null, NO_ARGUMENTS);
+         watchService =
+            fileSystemClass.getMethod("newWatchService", NO_PARAMETERS).invoke(fileSystem,
+                                                                              NO_ARGUMENTS);
+      }
+
+      /**
+       * Registers the given directory to have changes to its entries reported.
+       *
+       * @return the key the directory is registered with.
+       */
+      Object
+      register(File directory)
+      throws Exception
+      {
+         Object path = invoke(toPath, directory, NO_ARGUMENTS);
+         return invoke(register, path, new Object[] {watchService, eventKinds});
+      }
+
+      /**
+       * Cancels the registration of a directory.
+       */
+      void
+      cancel(Object key)
+      {
+         try
+         {
+            invoke(cancel, key, NO_ARGUMENTS);
+         }
+         catch (Exception e)
+         {
+            // Nothing more will be reported for it either way.
+         }
+      }
+
+      /**
+       * Waits until a change is reported in any registered directory, or the given time has
+       * passed. All the changes reported are discarded, as the files are checked anyway.
+       *
+       * @return whether any changes were reported.
+       */
+      boolean
+      await(long timeout)
+      throws Exception
+      {
+         Object key = invoke(pollWithTimeout, watchService,
+                             new Object[] {Long.valueOf(String.valueOf(timeout)), milliseconds});
+         if (key == null)
+         {
+            return false;
+         }
+
+         while (key != null)
+         {
+            invoke(pollEvents, key, NO_ARGUMENTS);
+            invoke(reset, key, NO_ARGUMENTS);
+            key = invoke(poll, watchService, NO_ARGUMENTS);
+         }
+         return true;
+      }
+
+      private static Object
+      invoke(Method method, Object target, Object[] arguments)
+      throws Exception
+      {
+         try
+         {
+            return method.invoke(target, arguments);
+         }
+         catch (InvocationTargetException e)
+         {
+            Throwable cause = e.getTargetException();
+            if (cause instanceof Exception)
+            {
+               throw (Exception) cause;
+            }
+            throw e;
+         }
+      }
+   }
+}
@@ -0,0 +1,458 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>A {@link Writer} that encodes text as UTF-8 straight into direct byte buffers and writes them
+ * to a file channel, used for log files when <code>simplelog.logFile.io</code> is
+ * '<code>direct</code>'.</p>
+ *
+ * <p>Text is held in the buffers until the writer is flushed (or the buffers fill up), and then all
+ * the buffers are handed to the channel in one gathering write. Text that is pure ASCII (as most
+ * log output is) is copied into the buffers a byte per character, without going through a
+ * <code>CharsetEncoder</code>. Spare buffers are kept in a pool shared by all
+ * <code>DirectFileWriter</code>s, so that reopening a file doesn't allocate new ones.</p>
+ *
+ * <p>Simple Log writes each line to this writer with {@link #writeLine}, rather than through a
+ * <code>PrintWriter</code>, so that the line and the line separator are encoded and written with
+ * the lock taken only once.</p>
+ *
+ * @version $Revision$
+ * @author $Author$
+ */
+public final class
+DirectFileWriter
+extends Writer
+{
+   /** The size of each buffer. */
+   private static final int BUFFER_SIZE = 8 * 1024;
+
+   /** The number of buffers that can be filled before they are written to the channel. */
+   private static final int MAX_PENDING_BUFFERS = 16;
+
+   /** The number of spare buffers kept in the {@link #pool}. */
+   private static final int MAX_POOLED_BUFFERS = 32;
+
+   /** The longest sequence of bytes that a single character (or surrogate pair) encodes to. */
+   private static final int MAX_BYTES_PER_CHAR = 4;
+
+   /** The byte written in place of a surrogate character that isn't part of a pair. */
+   private static final byte REPLACEMENT = (byte) '?';
+
+   /** The line separator written by {@link #writeLine}. */
+   private static final char[] LINE_SEP = System.getProperty("line.separator").toCharArray();
+
+   /** Spare buffers, shared by all <code>DirectFileWriter</code>s. */
+   private static final List pool = new ArrayList(MAX_POOLED_BUFFERS);
+
+   /** The channel being written to. */
+   private final FileChannel channel;
+
+   /**
+    * The buffers holding text that hasn't been written to the channel yet. The last one is the
+    * buffer currently being filled. There is always at least one, until the writer is closed.
+    */
+   private final ByteBuffer[] pending = new ByteBuffer[MAX_PENDING_BUFFERS];
+
+   /** The number of buffers in {@link #pending}. */
+   private int pendingCount;
+
+   /** The buffer currently being filled, or <code>null</code> if the writer is closed. */
+   private ByteBuffer buffer;
+
+   /**
+    * The first half of a surrogate pair that was split across two writes, or <code>0</code> if the
+    * last write didn't end with one.
+    */
+   private char highSurrogate;
+
+   /**
+    * Creates a new <code>DirectFileWriter</code> that writes to the given file.
+    *
+    * @param file the file to write to. It is created if it doesn't exist.
+    *
+    * @param append <code>true</code> to add to the end of the file, <code>false</code> to replace
+    * it
+    *
+    * @throws IOException if the file can't be opened
+    */
+   public
+   DirectFileWriter(File file, boolean append)
+   throws IOException
+   {
+      this(new FileOutputStream(file, append).getChannel());
+   }
+
+   /**
+    * Creates a new <code>DirectFileWriter</code> that writes to the given channel, starting at its
+    * current position. The channel is closed when this writer is closed.
+    *
+    * @param channel the channel to write to
+    */
+   public
+   DirectFileWriter(FileChannel channel)
+   {
+      this.channel = channel;
+      buffer = acquireBuffer();
+      pending[0] = buffer;
+      pendingCount = 1;
+   }
+
+   public void
+   write(char[] cbuf, int off, int len)
+   throws IOException
+   {
+      synchronized (lock)
+      {
+         ensureOpen();
+         encode(cbuf, off, len);
+      }
+   }
+
+   public void
+   write(int c)
+   throws IOException
+   {
+      synchronized (lock)
+      {
+         ensureOpen();
+         encode((char) c);
+      }
+   }
+
+   public void
+   write(String str, int off, int len)
+   throws IOException
+   {
+      synchronized (lock)
+      {
+         ensureOpen();
+         int end = off + len;
+         for (int i = off; i < end; i++)
+         {
+            encode(str.charAt(i));
+         }
+      }
+   }
+
+   /**
+    * Writes the given characters followed by a line separator and, if asked to, flushes them to the
+    * file.
+    *
+    * @param cbuf the characters to write
+    *
+    * @param off the index of the first character to write
+    *
+    * @param len the number of characters to write
+    *
+    * @param flush whether to write the line (and anything else that is buffered) to the file before
+    * returning
+    *
+    * @throws IOException if an error occurs writing to the file
+    */
+   public void
+   writeLine(char[] cbuf, int off, int len, boolean flush)
+   throws IOException
+   {
+      synchronized (lock)
+      {
+         ensureOpen();
+         encode(cbuf, off, len);
+         encode(LINE_SEP, 0, LINE_SEP.length);
+         if (flush)
+         {
+            writePending();
+         }
+      }
+   }
+
+   private void
+   ensureOpen()
+   throws IOException
+   {
+      if (buffer == null)
+      {
+         throw new IOException("Writer closed");
+      }
+   }
+
+   /**
+    * Encodes the given characters into the pending buffers.
+    */
+   private void
+   encode(char[] cbuf, int off, int len)
+   throws IOException
+   {
+      int end = off + len;
+      int i = off;
+      while (i < end)
+      {
+         // Fast path: copy ASCII characters straight into the buffer
+         ByteBuffer buffer = this.buffer;
+         int asciiEnd = Math.min(end, i + buffer.remaining());
+         if (highSurrogate == 0)
+         {
+            while (i < asciiEnd)
+            {
+               char c = cbuf[i];
+               if (c >= 0x80)
+               {
+                  break;
+               }
+               buffer.put((byte) c);
+               i++;
+            }
+         }
+
+         if (i < end)
+         {
+            if (i == asciiEnd)
+            {
+               nextBuffer();
+            }
+            else
+            {
+               encode(cbuf[i++]);
+            }
+         }
+      }
+   }
+
+   /**
+    * Encodes a single character into the pending buffers.
+    */
+   private void
+   encode(char c)
+   throws IOException
+   {
+      if (buffer.remaining() < MAX_BYTES_PER_CHAR)
+      {
+         nextBuffer();
+      }
+
+      if (highSurrogate != 0)
+      {
+         char high = highSurrogate;
+         highSurrogate = 0;
+         if (isLowSurrogate(c))
+         {
+            int codePoint = ((high - 0xD800) << 10) + (c - 0xDC00) + 0x10000;
+            buffer.put((byte) (0xF0 | (codePoint >> 18)));
+            buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+            buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+            buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            return;
+         }
+         buffer.put(REPLACEMENT);
+         encode(c);
+      }
+      else if (c < 0x80)
+      {
+         buffer.put((byte) c);
+      }
+      else if (c < 0x800)
+      {
+         buffer.put((byte) (0xC0 | (c >> 6)));
+         buffer.put((byte) (0x80 | (c & 0x3F)));
+      }
+      else if (isHighSurrogate(c))
+      {
+         highSurrogate = c;
+      }
+      else if (isLowSurrogate(c))
+      {
+         buffer.put(REPLACEMENT);
+      }
+      else
+      {
+         buffer.put((byte) (0xE0 | (c >> 12)));
+         buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+         buffer.put((byte) (0x80 | (c & 0x3F)));
+      }
+   }
+
+   private static boolean
+   isHighSurrogate(char c)
+   {
+      return c >= '\uD800' && c <= '\uDBFF';
+   }
+
+   private static boolean
+   isLowSurrogate(char c)
+   {
+      return c >= '\uDC00' && c <= '\uDFFF';
+   }
+
+   /**
+    * Starts filling a new buffer, first writing the pending buffers to the file if there are
+    * already as many as are allowed.
+    */
+   private void
+   nextBuffer()
+   throws IOException
+   {
+      if (pendingCount == MAX_PENDING_BUFFERS)
+      {
+         writePending();
+         if (buffer.hasRemaining())
+         {
+            return;
+         }
+      }
+      buffer = acquireBuffer();
+      pending[pendingCount++] = buffer;
+   }
+
+   /**
+    * Writes all the pending buffers to the channel, then returns all but the first to the pool.
+    */
+   private void
+   writePending()
+   throws IOException
+   {
+      for (int i = 0; i < pendingCount; i++)
+      {
+         pending[i].flip();
+      }
+
+      try
+      {
+         if (pendingCount == 1)
+         {
+            ByteBuffer single = pending[0];
+            while (single.hasRemaining())
+            {
+               channel.write(single);
+            }
+         }
+         else
+         {
+            ByteBuffer last = pending[pendingCount - 1];
+            while (last.hasRemaining())
+            {
+               channel.write(pending, 0, pendingCount);
+            }
+         }
+      }
+      finally
+      {
+         // Whatever wasn't written is dropped, so that one failure doesn't block all later output.
+         for (int i = 1; i < pendingCount; i++)
+         {
+            releaseBuffer(pending[i]);
+            pending[i] = null;
+         }
+         pendingCount = 1;
+         buffer = pending[0];
+         buffer.clear();
+      }
+   }
+
+   /**
+    * Writes any buffered text to the file.
+    *
+    * @throws IOException if an error occurs writing to the file
+    */
+   public void
+   flush()
+   throws IOException
+   {
+      synchronized (lock)
+      {
+         if (buffer != null)
+         {
+            writePending();
+         }
+      }
+   }
+
+   /**
+    * Writes any buffered text to the file and closes it.
+    *
+    * @throws IOException if an error occurs writing to or closing the file
+    */
+   public void
+   close()
+   throws IOException
+   {
+      synchronized (lock)
+      {
+         if (buffer == null)
+         {
+            return;
+         }
+
+         try
+         {
+            if (highSurrogate != 0)
+            {
+               highSurrogate = 0;
+               buffer.put(REPLACEMENT);
+            }
+            writePending();
+         }
+         finally
+         {
+            releaseBuffer(buffer);
+            pending[0] = null;
+            pendingCount = 0;
+            buffer = null;
+            channel.close();
+         }
+      }
+   }
+
+   /**
+    * Takes a buffer from the pool, or allocates a new one if the pool is empty.
+    */
+   private static ByteBuffer
+   acquireBuffer()
+   {
+      synchronized (pool)
+      {
+         if (!pool.isEmpty())
+         {
+            return (ByteBuffer) pool.remove(pool.size() - 1);
+         }
+      }
+      return ByteBuffer.allocateDirect(BUFFER_SIZE);
+   }
+
+   /**
+    * Returns a buffer to the pool, unless the pool is full.
+    */
+   private static void
+   releaseBuffer(ByteBuffer buffer)
+   {
+      buffer.clear();
+      synchronized (pool)
+      {
+         if (pool.size() < MAX_POOLED_BUFFERS)
+         {
+            pool.add(buffer);
+         }
+      }
+   }
+}
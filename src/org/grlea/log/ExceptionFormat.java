@@ -0,0 +1,320 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import java.lang.reflect.Method;
+import java.text.FieldPosition;
+import java.text.Format;
+import java.text.ParsePosition;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * <p>Format implementation that prints the stack trace of an exception after the exception object's
+ * toString.</p>
+ *
+ * <p>The stack trace is appended straight to the buffer that the log line is being formatted into,
+ * one {@link StackTraceElement} at a time, rather than being printed to a separate writer and then
+ * copied in. It is laid out the same way as {@link Throwable#printStackTrace()} lays it out,
+ * including the causes of the exception (and, on JVMs that have them, suppressed exceptions).
+ * Frames that a cause shares with the trace it is printed within are left out and counted in a
+ * "<code>... n more</code>" line.</p>
+ *
+ * <p>The number of frames printed for each exception and the number of causes printed can also be
+ * limited, so that very deep stack traces don't make logging exceptions expensive. Stack traces
+ * that have been printed recently can also be replaced with a reference to the earlier trace (see
+ * {@link StackTraceCache}).</p>
+ *
+ * @version $Revision$
+ * @author $Author$
+ */
+final class
+ExceptionFormat
+extends Format
+{
+   private static final long serialVersionUID = 1L;
+
+   /** The value of the limits that means there is no limit. */
+   static final int NO_LIMIT = Integer.MAX_VALUE;
+
+   private static final String LINE_SEP = System.getProperty("line.separator");
+
+   private static final String CAUSE_CAPTION = "Caused by: ";
+
+   private static final String SUPPRESSED_CAPTION = "Suppressed: ";
+
+   private static final Throwable[] NO_THROWABLES = new Throwable[0];
+
+   private static final Object[] NO_ARGUMENTS = new Object[0];
+
+   /**
+    * <code>Throwable.getSuppressed()</code>, or <code>null</code> if the JVM doesn't have
+    * suppressed exceptions.
+    */
+   private static final Method GET_SUPPRESSED = findGetSuppressed();
+
+   /** The most frames printed for each exception. */
+   private final int maxFrames;
+
+   /** The most causes printed below the exception being logged. */
+   private final int maxCauses;
+
+   /** The stack traces printed recently, or <code>null</code> if every trace is printed. */
+   private final StackTraceCache repeatedTraces;
+
+   /**
+    * Creates a new <code>ExceptionFormat</code> that prints whole stack traces.
+    */
+   ExceptionFormat()
+   {
+      this(NO_LIMIT, NO_LIMIT);
+   }
+
+   /**
+    * Creates a new <code>ExceptionFormat</code>.
+    *
+    * @param maxFrames the most frames to print for each exception, or {@link #NO_LIMIT}
+    *
+    * @param maxCauses the most causes to print below the exception being logged, or
+    * {@link #NO_LIMIT}
+    */
+   ExceptionFormat(int maxFrames, int maxCauses)
+   {
+      this(maxFrames, maxCauses, null);
+   }
+
+   /**
+    * Creates a new <code>ExceptionFormat</code>.
+    *
+    * @param maxFrames the most frames to print for each exception, or {@link #NO_LIMIT}
+    *
+    * @param maxCauses the most causes to print below the exception being logged, or
+    * {@link #NO_LIMIT}
+    *
+    * @param repeatedTraces the cache used to print a reference in place of stack traces printed
+    * recently, or <code>null</code> to print every stack trace
+    */
+   ExceptionFormat(int maxFrames, int maxCauses, StackTraceCache repeatedTraces)
+   {
+      this.maxFrames = maxFrames;
+      this.maxCauses = maxCauses;
+      this.repeatedTraces = repeatedTraces;
+   }
+
+   private static Method
+   findGetSuppressed()
+   {
+      try
+      {
+         return Throwable.class.getMethod("getSuppressed", new Class[0]);
+      }
+      catch (Exception e)
+      {
+         return null;
+      }
+   }
+
+   public StringBuffer
+   format(Object obj, StringBuffer buf, FieldPosition pos)
+   {
+      if (!(obj instanceof Throwable))
+      {
+         throw new IllegalArgumentException(getClass().getName() + " only formats Throwables.");
+      }
+
+      Throwable t = (Throwable) obj;
+      buf.append(t).append(LINE_SEP);
+
+      if (repeatedTraces != null && repeatedTraces.appendReference(t, buf))
+      {
+         return buf.append(LINE_SEP);
+      }
+
+      // The stack trace starts with the exception again, as printStackTrace() does
+      StackTraceElement[] trace = t.getStackTrace();
+      buf.append(t).append(LINE_SEP);
+      appendFrames(trace, trace.length, "", buf);
+
+      Throwable[] suppressed = getSuppressed(t);
+      Throwable cause = t.getCause();
+      Map printed = null;
+      if (suppressed.length != 0 || cause != null)
+      {
+         // Exceptions can (wrongly) cause themselves, directly or not
+         printed = new IdentityHashMap();
+         printed.put(t, t);
+      }
+
+      for (int i = 0; i < suppressed.length; i++)
+      {
+         appendEnclosed(suppressed[i], trace, SUPPRESSED_CAPTION, "\t", 0, printed, buf);
+      }
+      if (cause != null)
+      {
+         appendEnclosed(cause, trace, CAUSE_CAPTION, "", 1, printed, buf);
+      }
+
+      return buf;
+   }
+
+   /**
+    * Appends the stack trace of an exception that is a cause or suppressed exception of the
+    * exception being printed (or of one of its causes).
+    *
+    * @param t the exception to print
+    *
+    * @param enclosingTrace the stack trace of the exception this one is printed within
+    *
+    * @param caption the text to put before the exception
+    *
+    * @param prefix the indent to put before each line
+    *
+    * @param causeDepth how many causes down from the logged exception this one is
+    *
+    * @param printed the exceptions printed so far
+    *
+    * @param buf the buffer to append to
+    */
+   private void
+   appendEnclosed(Throwable t, StackTraceElement[] enclosingTrace, String caption, String prefix,
+                  int causeDepth, Map printed, StringBuffer buf)
+   {
+      if (causeDepth > maxCauses)
+      {
+         int omittedCauses = 0;
+         for (Throwable cause = t; cause != null && !printed.containsKey(cause);
+              cause = cause.getCause())
+         {
+            printed.put(cause, cause);
+            omittedCauses++;
+         }
+         buf.append(prefix).append("\t... ").append(omittedCauses).append(" more cause");
+         buf.append(omittedCauses == 1 ? "" : "s").append(LINE_SEP);
+         return;
+      }
+
+      if (printed.containsKey(t))
+      {
+         buf.append(prefix).append(caption).append("[CIRCULAR REFERENCE: ").append(t).append(']');
+         buf.append(LINE_SEP);
+         return;
+      }
+      printed.put(t, t);
+
+      StackTraceElement[] trace = t.getStackTrace();
+      int framesInCommon = 0;
+      for (int m = trace.length - 1, n = enclosingTrace.length - 1;
+           m >= 0 && n >= 0 && trace[m].equals(enclosingTrace[n]); m--, n--)
+      {
+         framesInCommon++;
+      }
+
+      buf.append(prefix).append(caption).append(t).append(LINE_SEP);
+      appendFrames(trace, trace.length - framesInCommon, prefix, buf);
+
+      Throwable[] suppressed = getSuppressed(t);
+      for (int i = 0; i < suppressed.length; i++)
+      {
+         appendEnclosed(suppressed[i], trace, SUPPRESSED_CAPTION, prefix + "\t", causeDepth,
+                        printed, buf);
+      }
+
+      Throwable cause = t.getCause();
+      if (cause != null)
+      {
+         appendEnclosed(cause, trace, CAUSE_CAPTION, prefix, causeDepth + 1, printed, buf);
+      }
+   }
+
+   /**
+    * Appends the first <code>count</code> frames of the given trace (or as many as are allowed),
+    * followed by a count of the frames left out, if there are any.
+    */
+   private void
+   appendFrames(StackTraceElement[] trace, int count, String prefix, StringBuffer buf)
+   {
+      int printed = Math.min(count, maxFrames);
+      for (int i = 0; i < printed; i++)
+      {
+         StackTraceElement frame = trace[i];
+         buf.append(prefix).append("\tat ").append(frame.getClassName()).append('.');
+         buf.append(frame.getMethodName()).append('(');
+         appendLocation(frame, buf);
+         buf.append(')').append(LINE_SEP);
+      }
+
+      int omitted = trace.length - printed;
+      if (omitted != 0)
+      {
+         buf.append(prefix).append("\t... ").append(omitted).append(" more").append(LINE_SEP);
+      }
+   }
+
+   /**
+    * Appends the file name and line number of the given frame, in the same form as
+    * {@link StackTraceElement#toString()}.
+    */
+   private static void
+   appendLocation(StackTraceElement frame, StringBuffer buf)
+   {
+      String fileName = frame.getFileName();
+      int lineNumber = frame.getLineNumber();
+      if (frame.isNativeMethod())
+      {
+         buf.append("Native Method");
+      }
+      else if (fileName == null)
+      {
+         buf.append("Unknown Source");
+      }
+      else
+      {
+         buf.append(fileName);
+         if (lineNumber >= 0)
+         {
+            buf.append(':').append(lineNumber);
+         }
+      }
+   }
+
+   /**
+    * Returns the exceptions suppressed by the given one, or an empty array if there are none or
+    * the JVM doesn't support them.
+    */
+   private static Throwable[]
+   getSuppressed(Throwable t)
+   {
+      if (GET_SUPPRESSED != null)
+      {
+         try
+         {
+            return (Throwable[]) GET_SUPPRESSED.invoke(t, NO_ARGUMENTS);
+         }
+         catch (Exception e)
+         {
+            // Print the trace without them
+         }
+      }
+      return NO_THROWABLES;
+   }
+
+   public Object
+   parseObject (String source, ParsePosition pos)
+   {
+      // Parsing not supported.
+      throw new UnsupportedOperationException();
+   }
+}
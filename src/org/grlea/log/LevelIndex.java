@@ -0,0 +1,393 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import java.util.Enumeration;
+import java.util.Properties;
+
+/**
+ * <p>The debug levels and trace flags in a set of properties, compiled into a tree keyed by the
+ * dot-separated parts of the property names, so that a logger's settings can be found without
+ * looking up every prefix of its name in the properties.</p>
+ *
+ * <p>Finding a logger's settings walks down the tree once, one part of the logger's name at a
+ * time, and takes the setting of the deepest node that has one. This gives the same result as
+ * trying the logger's full name and then each shorter prefix in turn, but doesn't create any
+ * strings. Each level is parsed once, when the index is created.</p>
+ *
+ * <p>An index is never changed after it has been created, so it can be used by any number of
+ * threads at once.</p>
+ *
+ * @version $Revision$
+ * @author $Author$
+ */
+final class
+LevelIndex
+{
+   /** The node for the empty name, which is the parent of all the others. */
+   private final Node root = new Node("", 0);
+
+   /**
+    * Creates a new <code>LevelIndex</code> containing the levels and trace flags in the given
+    * properties.
+    *
+    * @param properties the properties to read the levels and trace flags from
+    *
+    * @param traceSuffix the suffix that marks the name of a trace flag property
+    */
+   LevelIndex(Properties properties, String traceSuffix)
+   {
+      for (Enumeration names = properties.propertyNames(); names.hasMoreElements();)
+      {
+         String name = (String) names.nextElement();
+         String value = properties.getProperty(name);
+         if (name.endsWith(traceSuffix))
+         {
+            Node node = getOrCreateNode(name, name.length() - traceSuffix.length());
+            node.trace = Boolean.valueOf(value);
+         }
+         else
+         {
+            getOrCreateNode(name, name.length()).setLevel(name, value.trim());
+         }
+      }
+   }
+
+   /**
+    * Returns the node for the first <code>length</code> characters of the given name, creating it
+    * and its parents if necessary.
+    */
+   private Node
+   getOrCreateNode(String name, int length)
+   {
+      Node node = root;
+      int start = 0;
+      while (true)
+      {
+         int end = name.indexOf('.', start);
+         if (end == -1 || end > length)
+         {
+            end = length;
+         }
+
+         Node child = node.getChild(name, start, end);
+         if (child == null)
+         {
+            child = new Node(name.substring(start, end), hash(name, start, end));
+            node.addChild(child);
+         }
+         node = child;
+
+         if (end == length)
+         {
+            return node;
+         }
+         start = end + 1;
+      }
+   }
+
+   /**
+    * Returns the debug level set for the logger with the given configuration name, or
+    * <code>null</code> if no level is set for it or any of its packages.
+    *
+    * @param configName the configuration name of a logger
+    */
+   DebugLevel
+   getDebugLevel(String configName)
+   {
+      DebugLevel level = null;
+      int levelEnd = 0;
+      boolean errorsPassed = false;
+
+      Node node = root;
+      int start = 0;
+      int length = configName.length();
+      while (node != null && start <= length)
+      {
+         int end = configName.indexOf('.', start);
+         if (end == -1)
+         {
+            end = length;
+         }
+
+         node = node.getChild(configName, start, end);
+         if (node != null)
+         {
+            if (node.level != null)
+            {
+               level = node.level;
+               levelEnd = end;
+               errorsPassed = false;
+            }
+            else if (node.levelErrors != null)
+            {
+               errorsPassed = true;
+            }
+         }
+         start = end + 1;
+      }
+
+      if (errorsPassed)
+      {
+         reportLevelErrors(configName, levelEnd);
+      }
+      return level;
+   }
+
+   /**
+    * Reports the errors parsing the levels set for the parts of the given name after the given
+    * index, as these were tried and ignored while looking for the level.
+    */
+   private void
+   reportLevelErrors(String configName, int from)
+   {
+      Node node = root;
+      int start = 0;
+      int length = configName.length();
+      while (node != null && start <= length)
+      {
+         int end = configName.indexOf('.', start);
+         if (end == -1)
+         {
+            end = length;
+         }
+
+         node = node.getChild(configName, start, end);
+         if (node != null && end > from && node.levelErrors != null)
+         {
+            String description = "Error parsing debug level for '" + node.name + "'";
+            SimpleLog.printError(description, node.levelErrors[0], true);
+            SimpleLog.printError(description, node.levelErrors[1], false);
+         }
+         start = end + 1;
+      }
+   }
+
+   /**
+    * Returns the trace flag set for the logger with the given configuration name, or
+    * <code>null</code> if no flag is set for it or any of its packages.
+    *
+    * @param configName the configuration name of a logger
+    */
+   Boolean
+   getTracingFlag(String configName)
+   {
+      Boolean trace = null;
+      Node node = root;
+      int start = 0;
+      int length = configName.length();
+      while (node != null && start <= length)
+      {
+         int end = configName.indexOf('.', start);
+         if (end == -1)
+         {
+            end = length;
+         }
+
+         node = node.getChild(configName, start, end);
+         if (node != null && node.trace != null)
+         {
+            trace = node.trace;
+         }
+         start = end + 1;
+      }
+      return trace;
+   }
+
+   /**
+    * Returns whether a level (valid or not) or trace flag is set for the logger with the given
+    * configuration name or any of its packages.
+    *
+    * @param configName the configuration name of a logger
+    */
+   boolean
+   hasSettingFor(String configName)
+   {
+      Node node = root;
+      int start = 0;
+      int length = configName.length();
+      while (node != null && start <= length)
+      {
+         int end = configName.indexOf('.', start);
+         if (end == -1)
+         {
+            end = length;
+         }
+
+         node = node.getChild(configName, start, end);
+         if (node != null && (node.name != null || node.trace != null))
+         {
+            return true;
+         }
+         start = end + 1;
+      }
+      return false;
+   }
+
+   /**
+    * Returns the same hash code as <code>name.substring(start, end).hashCode()</code>, without
+    * creating the substring.
+    */
+   private static int
+   hash(String name, int start, int end)
+   {
+      int hash = 0;
+      for (int i = start; i < end; i++)
+      {
+         hash = 31 * hash + name.charAt(i);
+      }
+      return hash;
+   }
+
+   /**
+    * One part of a dotted name, with the settings for the name that ends with it.
+    */
+   private static final class
+   Node
+   {
+      /** The part of the name this node is for. */
+      final String segment;
+
+      /** The hash code of {@link #segment}. */
+      final int hash;
+
+      /** The name of the property that set this node's level, used in error messages. */
+      String name;
+
+      /** The level set for this name, or <code>null</code> if none is set (or it is invalid). */
+      DebugLevel level;
+
+      /**
+       * The errors that occurred parsing the level set for this name as a number and as a name, or
+       * <code>null</code> if the level is valid or none is set.
+       */
+      Throwable[] levelErrors;
+
+      /** The trace flag set for this name, or <code>null</code> if none is set. */
+      Boolean trace;
+
+      /**
+       * This node's children, in an open-addressed hash table, or <code>null</code> if it has
+       * none.
+       */
+      private Node[] children;
+
+      /** The number of children this node has. */
+      private int childCount;
+
+      Node(String segment, int hash)
+      {
+         this.segment = segment;
+         this.hash = hash;
+      }
+
+      /**
+       * Parses the level set by the given property and sets it (or the errors that occurred
+       * parsing it) on this node.
+       */
+      void
+      setLevel(String name, String value)
+      {
+         this.name = name;
+         try
+         {
+            // Try to read it as an int first...
+            level = DebugLevel.fromInt(Integer.parseInt(value));
+         }
+         catch (NumberFormatException e1)
+         {
+            // ... then try it as a name.
+            try
+            {
+               level = DebugLevel.fromName(value);
+            }
+            catch (IllegalArgumentException e2)
+            {
+               levelErrors = new Throwable[] {e1, e2};
+            }
+         }
+      }
+
+      /**
+       * Returns the child for the part of the given name between the given indexes, or
+       * <code>null</code> if there isn't one.
+       */
+      Node
+      getChild(String name, int start, int end)
+      {
+         Node[] children = this.children;
+         if (children == null)
+         {
+            return null;
+         }
+
+         int hash = LevelIndex.hash(name, start, end);
+         int length = end - start;
+         int mask = children.length - 1;
+         for (int i = hash & mask; ; i = (i + 1) & mask)
+         {
+            Node child = children[i];
+            if (child == null)
+            {
+               return null;
+            }
+            if (child.hash == hash && child.segment.length() == length &&
+                child.segment.regionMatches(0, name, start, length))
+            {
+               return child;
+            }
+         }
+      }
+
+      /**
+       * Adds a child, which mustn't have the same segment as an existing one.
+       */
+      void
+      addChild(Node child)
+      {
+         if (children == null)
+         {
+            children = new Node[4];
+         }
+         else if ((childCount + 1) * 4 > children.length * 3)
+         {
+            Node[] oldChildren = children;
+            children = new Node[oldChildren.length * 2];
+            for (int i = 0; i < oldChildren.length; i++)
+            {
+               if (oldChildren[i] != null)
+               {
+                  insert(oldChildren[i]);
+               }
+            }
+         }
+         insert(child);
+         childCount++;
+      }
+
+      private void
+      insert(Node child)
+      {
+         int mask = children.length - 1;
+         int i = child.hash & mask;
+         while (children[i] != null)
+         {
+            i = (i + 1) & mask;
+         }
+         children[i] = child;
+      }
+   }
+}
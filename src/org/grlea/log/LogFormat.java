@@ -0,0 +1,375 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import java.text.AttributedCharacterIterator;
+import java.text.CharacterIterator;
+import java.text.ChoiceFormat;
+import java.text.DateFormat;
+import java.text.FieldPosition;
+import java.text.Format;
+import java.text.MessageFormat;
+import java.text.NumberFormat;
+import java.text.ParsePosition;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * <p>A log message format, compiled from a {@link MessageFormat} into a flat list of segments,
+ * each of which is either literal text or a reference to one of the message arguments.</p>
+ *
+ * <p>Formatting a message with a <code>LogFormat</code> simply appends each segment in turn to a
+ * buffer supplied by the caller. Unlike <code>MessageFormat</code>, it doesn't re-examine the
+ * pattern or create any intermediate buffers on each call, but the output is exactly the same as
+ * the <code>MessageFormat</code> it was compiled from would produce.</p>
+ *
+ * <p>The sub-formats used by a <code>MessageFormat</code> (most importantly the
+ * <code>SimpleDateFormat</code> for the date argument) are not thread-safe. Rather than lock around
+ * them, each thread that uses a <code>LogFormat</code> is given its own copies of its sub-formats.
+ * A <code>LogFormat</code> never changes once created, so when the formats are changed (e.g. by
+ * reloading the configuration), new <code>LogFormat</code>s are created and the copies held for the
+ * old ones are simply discarded.</p>
+ *
+ * <p>Date sub-formats are wrapped in a {@link TimestampFormat}, so that most lines can reuse the
+ * date text of the line before.</p>
+ *
+ * @version $Revision$
+ * @author $Author$
+ */
+final class
+LogFormat
+{
+   /** The argument index used to mark a segment as literal text. */
+   private static final int LITERAL = -1;
+
+   /**
+    * {@link #LITERAL}, boxed for the lists used while compiling. (<code>new Integer()</code> is
+    * deprecated and <code>Integer.valueOf(int)</code> doesn't exist before Java 5.)
+    */
+   private static final Integer LITERAL_INDEX = Integer.valueOf(String.valueOf(LITERAL));
+
+   /** A format used while compiling to mark where each format element is in the output. */
+   private static final Format PLACEHOLDER = new PlaceholderFormat();
+
+   /** The message format this format was compiled from. */
+   private final MessageFormat source;
+
+   /** The locale of the source message format. */
+   private final Locale locale;
+
+   /** The argument index of each segment, or {@link #LITERAL} for literal segments. */
+   private final int[] argumentIndexes;
+
+   /** The text of each literal segment (<code>null</code> for argument segments). */
+   private final String[] literals;
+
+   /**
+    * The sub-format of each argument segment (<code>null</code> if it has none). These are never
+    * used directly: each thread uses its own copies, from {@link #threadFormats}.
+    */
+   private final Format[] formats;
+
+   /** Each thread's copies of the sub-formats. */
+   private final ThreadLocal threadFormats = new ThreadLocal()
+   {
+      protected Object
+      initialValue()
+      {
+         return new ThreadFormats(formats, locale);
+      }
+   };
+
+   /**
+    * Creates a new <code>LogFormat</code> by compiling the given message format. The message format
+    * must not be changed after it is given to this constructor.
+    *
+    * @param source the message format to compile.
+    */
+   LogFormat(MessageFormat source)
+   {
+      this.source = source;
+      this.locale = source.getLocale();
+
+      Format[] sourceFormats = source.getFormats();
+
+      // Format the message with every format element printing one placeholder character, then
+      // read back which parts of the output were literal text and which were arguments.
+      MessageFormat placeholderFormat = (MessageFormat) source.clone();
+      Format[] placeholders = new Format[sourceFormats.length];
+      for (int i = 0; i < placeholders.length; i++)
+      {
+         placeholders[i] = PLACEHOLDER;
+      }
+      placeholderFormat.setFormats(placeholders);
+
+      Object[] placeholderArguments = new Object[source.getFormatsByArgumentIndex().length];
+      for (int i = 0; i < placeholderArguments.length; i++)
+      {
+         placeholderArguments[i] = PLACEHOLDER;
+      }
+
+      AttributedCharacterIterator iterator =
+         placeholderFormat.formatToCharacterIterator(placeholderArguments);
+
+      List segmentIndexes = new ArrayList();
+      List segmentLiterals = new ArrayList();
+      List segmentFormats = new ArrayList();
+      int formatElement = 0;
+      StringBuffer literal = new StringBuffer();
+      for (char c = iterator.first(); c != CharacterIterator.DONE; c = iterator.current())
+      {
+         int runLimit = iterator.getRunLimit(MessageFormat.Field.ARGUMENT);
+         Integer argumentIndex = (Integer) iterator.getAttribute(MessageFormat.Field.ARGUMENT);
+         if (argumentIndex == null)
+         {
+            literal.setLength(0);
+            while (iterator.getIndex() < runLimit)
+            {
+               literal.append(iterator.current());
+               iterator.next();
+            }
+            segmentIndexes.add(LITERAL_INDEX);
+            segmentLiterals.add(literal.toString());
+            segmentFormats.add(null);
+         }
+         else
+         {
+            // Each placeholder is one character, so adjacent elements for the same argument
+            // (e.g. "{5}{5}") share a run, but have one character each.
+            while (iterator.getIndex() < runLimit)
+            {
+               segmentIndexes.add(argumentIndex);
+               segmentLiterals.add(null);
+               segmentFormats.add(sourceFormats[formatElement++]);
+               iterator.next();
+            }
+         }
+      }
+
+      int segmentCount = segmentIndexes.size();
+      argumentIndexes = new int[segmentCount];
+      literals = new String[segmentCount];
+      formats = new Format[segmentCount];
+      for (int i = 0; i < segmentCount; i++)
+      {
+         argumentIndexes[i] = ((Integer) segmentIndexes.get(i)).intValue();
+         literals[i] = (String) segmentLiterals.get(i);
+         formats[i] = (Format) segmentFormats.get(i);
+      }
+   }
+
+   /**
+    * Returns a new <code>LogFormat</code> that is the same as this one, except that it uses the
+    * given date format for argument 0.
+    *
+    * @param dateFormat the date format to use
+    */
+   LogFormat
+   withDateFormat(DateFormat dateFormat)
+   {
+      MessageFormat newSource = (MessageFormat) source.clone();
+      newSource.setFormatByArgumentIndex(0, dateFormat);
+      return new LogFormat(newSource);
+   }
+
+   /**
+    * Formats the given arguments and appends the result to the given buffer.
+    *
+    * @param arguments the message arguments
+    *
+    * @param buffer the buffer to which the formatted message will be appended
+    */
+   void
+   format(Object[] arguments, StringBuffer buffer)
+   {
+      ThreadFormats copies = (ThreadFormats) threadFormats.get();
+      for (int i = 0; i < argumentIndexes.length; i++)
+      {
+         int argumentIndex = argumentIndexes[i];
+         if (argumentIndex == LITERAL)
+         {
+            buffer.append(literals[i]);
+         }
+         else if (argumentIndex >= arguments.length)
+         {
+            // MessageFormat prints references to missing arguments as they were in the pattern.
+            buffer.append('{').append(argumentIndex).append('}');
+         }
+         else
+         {
+            appendArgument(arguments[argumentIndex], copies.formats[i], copies, arguments, buffer);
+         }
+      }
+   }
+
+   /**
+    * Formats the given arguments into a new string.
+    *
+    * @param arguments the message arguments
+    *
+    * @return the formatted message
+    */
+   String
+   format(Object[] arguments)
+   {
+      StringBuffer buffer = new StringBuffer(128);
+      format(arguments, buffer);
+      return buffer.toString();
+   }
+
+   /**
+    * Appends one argument to the buffer, following the same rules as <code>MessageFormat</code>.
+    */
+   private void
+   appendArgument(Object argument, Format format, ThreadFormats copies, Object[] arguments,
+                  StringBuffer buffer)
+   {
+      if (argument == null)
+      {
+         buffer.append("null");
+      }
+      else if (format != null)
+      {
+         if (argument instanceof LogValue)
+         {
+            // Sub-formats are given the text of the value, as they would have been given before
+            // there were LogValues.
+            argument = argument.toString();
+         }
+
+         if (format instanceof ChoiceFormat)
+         {
+            String choice = format.format(argument);
+            if (choice.indexOf('{') != -1)
+            {
+               choice = new MessageFormat(choice, locale).format(arguments);
+            }
+            buffer.append(choice);
+         }
+         else
+         {
+            format.format(argument, buffer, copies.fieldPosition);
+         }
+      }
+      else if (argument instanceof String)
+      {
+         buffer.append((String) argument);
+      }
+      else if (argument instanceof LogValue)
+      {
+         ((LogValue) argument).appendTo(buffer);
+      }
+      else if (argument instanceof Number)
+      {
+         copies.getNumberFormat().format(argument, buffer, copies.fieldPosition);
+      }
+      else if (argument instanceof Date)
+      {
+         copies.getDateFormat().format(argument, buffer, copies.fieldPosition);
+      }
+      else
+      {
+         String string = argument.toString();
+         buffer.append(string != null ? string : "null");
+      }
+   }
+
+   /**
+    * One thread's copies of the formats used by a <code>LogFormat</code>.
+    */
+   private static final class
+   ThreadFormats
+   {
+      /** This thread's copies of the sub-formats of each segment. */
+      private final Format[] formats;
+
+      /** The locale in which to create the default formats. */
+      private final Locale locale;
+
+      /** A field position to pass to the formats (which is never read). */
+      private final FieldPosition fieldPosition = new FieldPosition(0);
+
+      /** The format for numbers without a sub-format, created when first needed. */
+      private NumberFormat numberFormat;
+
+      /** The format for dates without a sub-format, created when first needed. */
+      private DateFormat dateFormat;
+
+      private
+      ThreadFormats(Format[] formats, Locale locale)
+      {
+         this.formats = new Format[formats.length];
+         for (int i = 0; i < formats.length; i++)
+         {
+            if (formats[i] instanceof DateFormat)
+            {
+               this.formats[i] = new TimestampFormat((DateFormat) formats[i].clone());
+            }
+            else if (formats[i] != null)
+            {
+               this.formats[i] = (Format) formats[i].clone();
+            }
+         }
+         this.locale = locale;
+      }
+
+      private NumberFormat
+      getNumberFormat()
+      {
+         if (numberFormat == null)
+         {
+            numberFormat = NumberFormat.getInstance(locale);
+         }
+         return numberFormat;
+      }
+
+      private DateFormat
+      getDateFormat()
+      {
+         if (dateFormat == null)
+         {
+            dateFormat = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT, locale);
+         }
+         return dateFormat;
+      }
+   }
+
+   /**
+    * A format that prints a single character for any object. Used to find the format elements in
+    * the output of a <code>MessageFormat</code>.
+    */
+   private static final class
+   PlaceholderFormat
+   extends Format
+   {
+      private static final long serialVersionUID = 1L;
+
+      public StringBuffer
+      format(Object obj, StringBuffer buf, FieldPosition pos)
+      {
+         return buf.append('?');
+      }
+
+      public Object
+      parseObject(String source, ParsePosition pos)
+      {
+         // Parsing not supported.
+         throw new UnsupportedOperationException();
+      }
+   }
+}
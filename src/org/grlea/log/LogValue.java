@@ -0,0 +1,38 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+/**
+ * <p>A value in the data of a log message that {@link LogFormat} appends straight into the output
+ * buffer, rather than creating a <code>String</code> for it.</p>
+ *
+ * <p>Implementations must print the same text from {@link #appendTo} as from
+ * <code>toString()</code>, which is used whenever a <code>String</code> is needed.</p>
+ *
+ * @version $Revision$
+ * @author $Author$
+ */
+interface
+LogValue
+{
+   /**
+    * Appends this value to the given buffer.
+    *
+    * @param buffer the buffer to append the value to
+    */
+   void
+   appendTo(StringBuffer buffer);
+}
@@ -0,0 +1,268 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * <p>The {@link SimpleLogger}s registered with a <code>SimpleLog</code>, kept so that they can be
+ * re-configured when the properties change.</p>
+ *
+ * <p>The loggers are spread over a number of stripes, each a doubly-linked list with its own lock,
+ * so threads creating loggers at the same time rarely wait for each other. Each logger's entry is a
+ * weak reference that is also a link in its stripe's list, so adding a logger and removing the
+ * entry of one that has been garbage collected both take constant time. Entries of collected
+ * loggers are removed by the threads registering loggers and visiting them, rather than by a
+ * thread of their own.</p>
+ *
+ * <p>Instance loggers are only weakly referenced, as they are much more likely to be garbage
+ * collected. Other loggers are also referenced strongly by their entries, so they stay registered
+ * for as long as the <code>SimpleLog</code> exists.</p>
+ *
+ * <p>A visit holds each stripe's lock while visiting the loggers in it, and a logger is visited by
+ * {@link #add} while its stripe's lock is held. So a logger added while the loggers are being
+ * visited is either visited after it has been added or added after its stripe has been visited,
+ * but never both missed by the visit and visited by <code>add</code> before the visit starts.</p>
+ *
+ * @version $Revision$
+ * @author $Author$
+ */
+final class
+LoggerRegistry
+{
+   /** The number of stripes. Must be a power of 2. */
+   private static final int STRIPE_COUNT = 16;
+
+   /** The stripes the entries are spread over. */
+   private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+
+   /** The queue that the entries of garbage-collected loggers are added to. */
+   private final ReferenceQueue collectedLoggers = new ReferenceQueue();
+
+   /**
+    * Creates a new, empty <code>LoggerRegistry</code>.
+    */
+   LoggerRegistry()
+   {
+      for (int i = 0; i < stripes.length; i++)
+      {
+         stripes[i] = new Stripe();
+      }
+   }
+
+   /**
+    * Adds the given logger to this registry and then, while no visit can pass it, passes it to the
+    * given visitor.
+    *
+    * @param logger the logger to add
+    *
+    * @param visitor a visitor to pass the logger to once it has been added
+    */
+   void
+   add(SimpleLogger logger, Visitor visitor)
+   {
+      removeCollectedLoggers();
+
+      Stripe stripe = stripes[System.identityHashCode(logger) & (STRIPE_COUNT - 1)];
+      Entry entry = new Entry(logger, stripe, collectedLoggers);
+      synchronized (stripe)
+      {
+         stripe.link(entry);
+         visitor.visit(logger);
+      }
+   }
+
+   /**
+    * Passes every registered logger to the given visitor.
+    *
+    * @param visitor the visitor to pass the loggers to
+    */
+   void
+   visitAll(Visitor visitor)
+   {
+      removeCollectedLoggers();
+
+      for (int i = 0; i < stripes.length; i++)
+      {
+         Stripe stripe = stripes[i];
+         synchronized (stripe)
+         {
+            for (Entry entry = stripe.head; entry != null; entry = entry.next)
+            {
+               SimpleLogger logger = (SimpleLogger) entry.get();
+               if (logger != null)
+               {
+                  visitor.visit(logger);
+               }
+            }
+         }
+      }
+   }
+
+   /**
+    * Returns whether any loggers are registered. Loggers that have been garbage collected may still
+    * be counted.
+    */
+   boolean
+   isEmpty()
+   {
+      for (int i = 0; i < stripes.length; i++)
+      {
+         synchronized (stripes[i])
+         {
+            if (stripes[i].head != null)
+            {
+               return false;
+            }
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Returns the number of entries in this registry, including any for loggers that have been
+    * garbage collected but not removed yet.
+    */
+   int
+   size()
+   {
+      int size = 0;
+      for (int i = 0; i < stripes.length; i++)
+      {
+         synchronized (stripes[i])
+         {
+            size += stripes[i].size;
+         }
+      }
+      return size;
+   }
+
+   /**
+    * Removes the entries of all the loggers that have been garbage collected.
+    */
+   void
+   removeCollectedLoggers()
+   {
+      Entry entry;
+      while ((entry = (Entry) collectedLoggers.poll()) != null)
+      {
+         synchronized (entry.stripe)
+         {
+            entry.stripe.unlink(entry);
+         }
+      }
+   }
+
+   /**
+    * Something that is passed the loggers in a {@link LoggerRegistry}.
+    */
+   interface
+   Visitor
+   {
+      /**
+       * Called with a registered logger, while the lock of the logger's stripe is held.
+       */
+      void
+      visit(SimpleLogger logger);
+   }
+
+   /**
+    * One of the lists that the entries are spread over. All access is synchronized on the stripe.
+    */
+   private static final class
+   Stripe
+   {
+      /** The first entry in the list, or <code>null</code> if the list is empty. */
+      Entry head;
+
+      /** The number of entries in the list. */
+      int size;
+
+      void
+      link(Entry entry)
+      {
+         entry.next = head;
+         if (head != null)
+         {
+            head.previous = entry;
+         }
+         head = entry;
+         entry.linked = true;
+         size++;
+      }
+
+      /**
+       * Removes the given entry from the list, unless it has already been removed.
+       */
+      void
+      unlink(Entry entry)
+      {
+         if (!entry.linked)
+         {
+            return;
+         }
+
+         if (entry.previous != null)
+         {
+            entry.previous.next = entry.next;
+         }
+         else
+         {
+            head = entry.next;
+         }
+         if (entry.next != null)
+         {
+            entry.next.previous = entry.previous;
+         }
+         entry.previous = null;
+         entry.next = null;
+         entry.linked = false;
+         size--;
+      }
+   }
+
+   /**
+    * The entry for one logger, which is a weak reference to the logger and a link in a stripe's
+    * list.
+    */
+   private static final class
+   Entry
+   extends WeakReference
+   {
+      /** The logger if it isn't an instance logger (and so mustn't be collected), else null. */
+      private final SimpleLogger strongReference;
+
+      /** The stripe whose list this entry is in. */
+      final Stripe stripe;
+
+      /** The previous entry in the stripe's list. */
+      Entry previous;
+
+      /** The next entry in the stripe's list. */
+      Entry next;
+
+      /** Whether this entry is in the stripe's list. */
+      boolean linked;
+
+      Entry(SimpleLogger logger, Stripe stripe, ReferenceQueue queue)
+      {
+         super(logger, queue);
+         this.strongReference = logger.isInstanceDebugger() ? null : logger;
+         this.stripe = stripe;
+      }
+   }
+}
@@ -0,0 +1,358 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * <p>A {@link Writer} that appends UTF-8 text to a file through a memory-mapped window, used for
+ * log files when <code>simplelog.logFile.io</code> is '<code>mapped</code>'.</p>
+ *
+ * <p>Text is encoded and copied into the mapped window, so writing a line is a memory copy rather
+ * than a system call. When the window is full, the next part of the file is mapped, which extends
+ * the file by {@link #CHUNK_SIZE} bytes at a time. The unused end of the last chunk is cut off
+ * when the writer is closed. (<code>SimpleLog</code> closes its log file when the JVM shuts down
+ * normally, after any asynchronous output has been printed; the writer doesn't close itself.) If
+ * the writer isn't closed, the end of the file will be padded with zero bytes, which are skipped
+ * (and overwritten) when the file is next opened by a <code>MappedFileWriter</code>.</p>
+ *
+ * <p>The operating system decides when the mapped pages are written to the storage device, unless
+ * the writer is synchronous or {@link #force()} is called.</p>
+ *
+ * @version $Revision$
+ * @author $Author$
+ */
+public final class
+MappedFileWriter
+extends Writer
+{
+   /** The number of bytes mapped (and added to the file) at a time. */
+   public static final int CHUNK_SIZE = 1024 * 1024;
+
+   /** The size of the buffer that text is encoded into. */
+   private static final int ENCODING_BUFFER_SIZE = 8 * 1024;
+
+   /** The size of the blocks read when looking for the end of the text in an existing file. */
+   private static final int END_SEARCH_BLOCK_SIZE = 8 * 1024;
+
+   /** The file being written to. */
+   private final RandomAccessFile file;
+
+   /** The channel of the file being written to. */
+   private final FileChannel channel;
+
+   /** Whether every write is forced to the storage device. */
+   private final boolean synchronous;
+
+   /** The encoder used to encode text into the mapped window. */
+   private final CharsetEncoder encoder;
+
+   /**
+    * The text waiting to be encoded. Only the second half of a surrogate pair (split across two
+    * writes) is ever left in here between writes.
+    */
+   private CharBuffer text = CharBuffer.allocate(256);
+
+   /**
+    * The buffer that text is encoded into before it is copied into the window. (Encoding into an
+    * array is much quicker than encoding straight into the mapped memory.)
+    */
+   private final ByteBuffer bytes = ByteBuffer.allocate(ENCODING_BUFFER_SIZE);
+
+   /** The part of the file currently mapped, or <code>null</code> if the writer is closed. */
+   private MappedByteBuffer window;
+
+   /** The position in the file at which {@link #window} starts. */
+   private long windowStart;
+
+   /**
+    * Creates a new <code>MappedFileWriter</code> that writes to the given file.
+    *
+    * @param file the file to write to. It is created if it doesn't exist.
+    *
+    * @param append <code>true</code> to add to the end of the text already in the file,
+    * <code>false</code> to replace it
+    *
+    * @throws IOException if the file can't be opened
+    */
+   public
+   MappedFileWriter(File file, boolean append)
+   throws IOException
+   {
+      this(openFile(file, append), false);
+   }
+
+   /**
+    * Creates a new <code>MappedFileWriter</code> that writes to the end of the text in the given
+    * file. The file is closed when this writer is closed.
+    *
+    * @param file the file to write to
+    *
+    * @param synchronous whether every write should be forced to the storage device before
+    * {@link #write(char[],int,int) write()} returns
+    *
+    * @throws IOException if the file can't be mapped
+    */
+   public
+   MappedFileWriter(RandomAccessFile file, boolean synchronous)
+   throws IOException
+   {
+      this.file = file;
+      this.channel = file.getChannel();
+      this.synchronous = synchronous;
+      this.encoder = Charset.forName("UTF-8").newEncoder()
+         .onMalformedInput(CodingErrorAction.REPLACE)
+         .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      mapWindow(findEndOfText(channel));
+   }
+
+   private static RandomAccessFile
+   openFile(File file, boolean append)
+   throws IOException
+   {
+      RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+      if (!append)
+      {
+         randomAccessFile.getChannel().truncate(0);
+      }
+      return randomAccessFile;
+   }
+
+   /**
+    * Returns the position just after the last non-zero byte in the given file, skipping any
+    * padding left at the end of the file by a writer that wasn't closed.
+    */
+   private static long
+   findEndOfText(FileChannel channel)
+   throws IOException
+   {
+      ByteBuffer block = ByteBuffer.allocate(END_SEARCH_BLOCK_SIZE);
+      long end = channel.size();
+      while (end > 0)
+      {
+         long start = Math.max(0, end - END_SEARCH_BLOCK_SIZE);
+         block.clear();
+         block.limit((int) (end - start));
+         while (block.hasRemaining())
+         {
+            if (channel.read(block, start + block.position()) == -1)
+            {
+               break;
+            }
+         }
+
+         for (int i = block.position() - 1; i >= 0; i--)
+         {
+            if (block.get(i) != 0)
+            {
+               return start + i + 1;
+            }
+         }
+         end = start;
+      }
+      return 0;
+   }
+
+   /**
+    * Maps the chunk of the file starting at the given position.
+    */
+   private void
+   mapWindow(long position)
+   throws IOException
+   {
+      window = channel.map(FileChannel.MapMode.READ_WRITE, position, CHUNK_SIZE);
+      windowStart = position;
+   }
+
+   public void
+   write(char[] cbuf, int off, int len)
+   throws IOException
+   {
+      synchronized (lock)
+      {
+         if (window == null)
+         {
+            throw new IOException("Writer closed");
+         }
+
+         if (text.remaining() < len)
+         {
+            CharBuffer newText = CharBuffer.allocate(text.position() + len);
+            text.flip();
+            newText.put(text);
+            text = newText;
+         }
+         text.put(cbuf, off, len);
+         text.flip();
+         encode(false);
+         text.compact();
+
+         if (synchronous)
+         {
+            window.force();
+         }
+      }
+   }
+
+   /**
+    * Encodes the waiting text and copies it into the window.
+    */
+   private void
+   encode(boolean endOfInput)
+   throws IOException
+   {
+      CoderResult result;
+      while ((result = encoder.encode(text, bytes, endOfInput)).isOverflow())
+      {
+         copyBytes();
+      }
+      copyBytes();
+
+      if (result.isError())
+      {
+         result.throwException();
+      }
+   }
+
+   /**
+    * Copies the encoded bytes into the window, moving the window on as it fills up.
+    */
+   private void
+   copyBytes()
+   throws IOException
+   {
+      byte[] array = bytes.array();
+      int offset = 0;
+      int length = bytes.position();
+      while (offset < length)
+      {
+         if (!window.hasRemaining())
+         {
+            nextWindow();
+         }
+         int count = Math.min(length - offset, window.remaining());
+         window.put(array, offset, count);
+         offset += count;
+      }
+      bytes.clear();
+   }
+
+   /**
+    * Maps the chunk of the file following the text written so far.
+    */
+   private void
+   nextWindow()
+   throws IOException
+   {
+      if (synchronous)
+      {
+         window.force();
+      }
+      mapWindow(windowStart + window.position());
+   }
+
+   /**
+    * Does nothing, as all output is in the mapped file as soon as it is written.
+    */
+   public void
+   flush()
+   {
+   }
+
+   /**
+    * Forces everything written so far to the storage device.
+    *
+    * @throws IOException if an error occurs syncing the file
+    */
+   public void
+   force()
+   throws IOException
+   {
+      synchronized (lock)
+      {
+         if (window != null)
+         {
+            window.force();
+            channel.force(false);
+         }
+      }
+   }
+
+   /**
+    * Returns the length of the text written to the file (which is shorter than the file itself
+    * until this writer is closed).
+    */
+   public long
+   length()
+   {
+      synchronized (lock)
+      {
+         return window != null ? windowStart + window.position() : windowStart;
+      }
+   }
+
+   /**
+    * Cuts off the unused end of the file and closes it.
+    *
+    * @throws IOException if an error occurs closing the file
+    */
+   public void
+   close()
+   throws IOException
+   {
+      synchronized (lock)
+      {
+         if (window == null)
+         {
+            return;
+         }
+
+         text.flip();
+         encode(true);
+         while (encoder.flush(bytes).isOverflow())
+         {
+            copyBytes();
+         }
+         copyBytes();
+         text.clear();
+
+         long length = windowStart + window.position();
+         window = null;
+         windowStart = length;
+         try
+         {
+            channel.truncate(length);
+         }
+         catch (IOException e)
+         {
+            // Some systems can't truncate a file while it's mapped.
+            // The padding will be skipped when the file is next opened.
+         }
+         file.close();
+      }
+   }
+}
@@ -0,0 +1,47 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+/**
+ * <p>Supplies a log message that is expensive to create, so that it is only created if it is going
+ * to be logged.</p>
+ *
+ * <p>For example:<pre>
+ *    log.debug(new MessageSupplier()
+ *    {
+ *       public String getMessage()
+ *       {
+ *          return "Document: " + transform(document);
+ *       }
+ *    });
+ * </pre></p>
+ *
+ * @see SimpleLogger#dbLazy(DebugLevel,MessageSupplier)
+ *
+ * @version $Revision$
+ * @author $Author$
+ */
+public interface
+MessageSupplier
+{
+   /**
+    * Creates and returns the message to be logged.
+    *
+    * @return the message
+    */
+   String
+   getMessage();
+}
@@ -0,0 +1,229 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>The loggers of a logging API that names its loggers with strings, such as Commons Logging or
+ * SLF4J, used by the adapters that plug Simple Log in to them.</p>
+ *
+ * <p>Each logger name is given one {@link SimpleLogger}, created the first time the name is used,
+ * and one object made from it by a {@link Factory} (typically the adapter for the name). Asking for
+ * the same name again returns the same object, so an application that asks for a logger on every
+ * request doesn't look up a class, or create and register a <code>SimpleLogger</code>, each time.
+ * </p>
+ *
+ * <p>A logger name is interpreted as the fully qualified name of a class. If there is no such
+ * class, the <code>SimpleLogger</code> is created with the pool's default class as its source and
+ * the logger name as its instance ID, and a warning is printed to <code>System.err</code>, unless
+ * the pool's suppress warnings system property is <code>true</code>. At most
+ * {@link #MAX_WARNINGS_PER_PERIOD} warnings are printed each minute, so that an application
+ * creating loggers with many names that aren't class names doesn't flood <code>System.err</code>.
+ * </p>
+ *
+ * <p>The names are spread over a number of maps, each with its own lock, so threads getting
+ * loggers at the same time rarely wait for each other.</p>
+ *
+ * @version $Revision$
+ * @author $Author$
+ */
+public final class
+NamedLoggerPool
+{
+   /** The number of maps the loggers are spread over. Must be a power of 2. */
+   private static final int MAP_COUNT = 16;
+
+   /** The most warnings printed in each {@link #WARNING_PERIOD}. */
+   private static final int MAX_WARNINGS_PER_PERIOD = 10;
+
+   /** The period (in milliseconds) over which the number of warnings is limited. */
+   private static final long WARNING_PERIOD = 60 * 1000;
+
+   /** Maps of logger names to the objects created for them. */
+   private final Map[] loggers = new Map[MAP_COUNT];
+
+   /** Creates the object kept for each logger name. */
+   private final Factory factory;
+
+   /** The class used as the source of loggers whose names aren't class names. */
+   private final Class defaultClass;
+
+   /** The system property that suppresses the warnings when it is <code>true</code>. */
+   private final String supressWarningsProperty;
+
+   /** The prefix of all the warnings printed. */
+   private final String warningPrefix;
+
+   /** An object to synchronize on when printing warnings. */
+   private final Object WARNING_LOCK = new Object();
+
+   /** The time at which the current warning period started. */
+   private long warningPeriodStart = 0;
+
+   /** The number of warnings printed in the current warning period. */
+   private int warningsPrinted = 0;
+
+   /** The number of warnings not printed in the current warning period. */
+   private int warningsSkipped = 0;
+
+   /**
+    * Creates a new, empty <code>NamedLoggerPool</code>.
+    *
+    * @param factory creates the object kept for each logger name
+    *
+    * @param defaultClass the class used as the source of loggers whose names aren't class names
+    *
+    * @param supressWarningsProperty the system property that suppresses the warnings about names
+    * that aren't class names when it is <code>true</code>
+    *
+    * @param adapterName the name of the adapter using the pool, which is printed with its warnings
+    */
+   public
+   NamedLoggerPool(Factory factory, Class defaultClass, String supressWarningsProperty,
+                   String adapterName)
+   {
+      if (factory == null)
+         throw new IllegalArgumentException("factory cannot be null.");
+      if (defaultClass == null)
+         throw new IllegalArgumentException("defaultClass cannot be null.");
+
+      this.factory = factory;
+      this.defaultClass = defaultClass;
+      this.supressWarningsProperty = supressWarningsProperty;
+      this.warningPrefix = "WARNING: Simple Log (" + adapterName + "): ";
+      for (int i = 0; i < loggers.length; i++)
+      {
+         loggers[i] = new HashMap();
+      }
+   }
+
+   /**
+    * Returns the object made by this pool's factory for the given logger name, creating the
+    * <code>SimpleLogger</code> and the object if this is the first time the name has been used.
+    */
+   public Object
+   get(String loggerName)
+   {
+      Map loggerMap = loggers[loggerName.hashCode() & (MAP_COUNT - 1)];
+      synchronized (loggerMap)
+      {
+         Object logger = loggerMap.get(loggerName);
+         if (logger == null)
+         {
+            logger = factory.create(createLogger(loggerName), loggerName);
+            loggerMap.put(loggerName, logger);
+         }
+         return logger;
+      }
+   }
+
+   /**
+    * Creates a new <code>SimpleLogger</code> for the given name.
+    */
+   private SimpleLogger
+   createLogger(String loggerName)
+   {
+      try
+      {
+         // Not initialized: its static initializer could wait for a thread that is waiting for the
+         // lock held by get().
+         Class loggingClass =
+            Class.forName(loggerName, false, NamedLoggerPool.class.getClassLoader());
+         return new SimpleLogger(loggingClass);
+      }
+      catch (Exception e)
+      {
+         boolean supressWarnings = false;
+         try
+         {
+            String supressWarningsString = System.getProperty(supressWarningsProperty);
+            supressWarnings =
+               supressWarningsString != null && supressWarningsString.toLowerCase().equals("true");
+         }
+         catch (Exception e1)
+         {
+            printWarning("Failed to read system property '" + supressWarningsProperty + "'");
+         }
+
+         if (!supressWarnings)
+         {
+            printWarning("Failed to find class for logger name '" + loggerName + "'. " +
+                         "Using class '" + defaultClass.getName() + "' and instanceId '" +
+                         loggerName +"'.");
+         }
+
+         return new SimpleLogger(defaultClass, loggerName);
+      }
+   }
+
+   /**
+    * Prints the given warning to <code>System.err</code>, unless the most warnings allowed in the
+    * current period have already been printed.
+    */
+   private void
+   printWarning(String warning)
+   {
+      synchronized (WARNING_LOCK)
+      {
+         long now = System.currentTimeMillis();
+         if (now - warningPeriodStart >= WARNING_PERIOD)
+         {
+            if (warningsSkipped != 0)
+            {
+               System.err.println(warningPrefix + warningsSkipped + " more warning(s) were not " +
+                                  "printed.");
+            }
+            warningPeriodStart = now;
+            warningsPrinted = 0;
+            warningsSkipped = 0;
+         }
+
+         if (warningsPrinted < MAX_WARNINGS_PER_PERIOD)
+         {
+            System.err.println(warningPrefix + warning);
+            warningsPrinted++;
+            if (warningsPrinted == MAX_WARNINGS_PER_PERIOD)
+            {
+               System.err.println(warningPrefix + "No more warnings will be printed for " +
+                                  (WARNING_PERIOD / 1000) + " seconds.");
+            }
+         }
+         else
+         {
+            warningsSkipped++;
+         }
+      }
+   }
+
+   /**
+    * Creates the object a {@link NamedLoggerPool} keeps for each logger name.
+    */
+   public static interface
+   Factory
+   {
+      /**
+       * Creates the object to keep for the given logger name.
+       *
+       * @param logger the <code>SimpleLogger</code> created for the name
+       *
+       * @param loggerName the logger name
+       */
+      public Object
+      create(SimpleLogger logger, String loggerName);
+   }
+}
@@ -0,0 +1,385 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import java.util.Arrays;
+
+/**
+ * <p>A reusable holder for a message pattern and its arguments, logged by one of the parameterized
+ * variants of {@link SimpleLogger#db(DebugLevel,String,Object) SimpleLogger.db()}.</p>
+ *
+ * <p>The pattern follows the same rules as SLF4J's <code>MessageFormatter</code>. Each
+ * <code>{}</code> in the pattern is replaced by the next argument. A backslash before a
+ * <code>{</code> is removed and the <code>{</code> printed as it is, even if the backslash is
+ * itself after another backslash (so <code>\{}</code> prints <code>\{}</code>). A <code>{</code>
+ * that isn't escaped and isn't followed by <code>}</code> ends the substitution: the rest of the
+ * pattern is printed as it is. Placeholders left over when the arguments run out are printed as
+ * they are, and arguments left over when the placeholders run out are ignored. Unlike in
+ * <code>MessageFormatter</code>, arrays are printed element by element, e.g.
+ * <code>[1, 2, 3]</code>.</p>
+ *
+ * <p>The message is only put together when it is appended to the output buffer by
+ * {@link LogFormat}, so the arguments' <code>toString()</code> methods are only called if the
+ * message is printed.</p>
+ *
+ * @version $Revision$
+ * @author $Author$
+ */
+final class
+ParameterizedMessage
+implements LogValue
+{
+   /** The character that starts a placeholder. */
+   private static final char DELIM_START = '{';
+
+   /** The character that ends a placeholder. */
+   private static final char DELIM_STOP = '}';
+
+   /** The character that escapes a placeholder. */
+   private static final char ESCAPE_CHAR = '\\';
+
+   /** How deep arrays within arrays will be printed. */
+   private static final int MAX_ARRAY_DEPTH = 8;
+
+   /** The pattern of the message. */
+   private String pattern;
+
+   /** The first argument, when there are no more than two. */
+   private Object argument1;
+
+   /** The second argument, when there are no more than two. */
+   private Object argument2;
+
+   /** The arguments, when given as an array. */
+   private Object[] arguments;
+
+   /** The number of arguments. */
+   private int argumentCount;
+
+   /** Space that arguments given as an array are copied into when another message is copied. */
+   private Object[] argumentsCopy = null;
+
+   /** The arrays currently being printed, used to avoid printing an array inside itself. */
+   private final Object[] arrayPath = new Object[MAX_ARRAY_DEPTH];
+
+   /** Space that parts of the pattern are copied into, so each can be appended in one go. */
+   private char[] textBuffer = new char[64];
+
+   /**
+    * Sets the pattern and up to two arguments of this message.
+    *
+    * @param pattern the pattern
+    *
+    * @param argument1 the first argument
+    *
+    * @param argument2 the second argument
+    *
+    * @param argumentCount the number of arguments (1 or 2)
+    *
+    * @return this message
+    */
+   ParameterizedMessage
+   set(String pattern, Object argument1, Object argument2, int argumentCount)
+   {
+      this.pattern = pattern;
+      this.argument1 = argument1;
+      this.argument2 = argument2;
+      this.arguments = null;
+      this.argumentCount = argumentCount;
+      return this;
+   }
+
+   /**
+    * Sets the pattern and arguments of this message.
+    *
+    * @param pattern the pattern
+    *
+    * @param arguments the arguments (may be <code>null</code>)
+    *
+    * @return this message
+    */
+   ParameterizedMessage
+   set(String pattern, Object[] arguments)
+   {
+      this.pattern = pattern;
+      this.argument1 = null;
+      this.argument2 = null;
+      this.arguments = arguments;
+      this.argumentCount = arguments != null ? arguments.length : 0;
+      return this;
+   }
+
+   /**
+    * Sets the pattern and arguments of this message to those of the given message. Arguments given
+    * as an array are copied, because the array may be changed once it has been logged.
+    *
+    * @param message the message to copy
+    *
+    * @return this message
+    */
+   ParameterizedMessage
+   set(ParameterizedMessage message)
+   {
+      this.pattern = message.pattern;
+      this.argument1 = message.argument1;
+      this.argument2 = message.argument2;
+      this.argumentCount = message.argumentCount;
+      if (message.arguments == null)
+      {
+         this.arguments = null;
+      }
+      else
+      {
+         if (argumentsCopy == null || argumentsCopy.length < argumentCount)
+         {
+            argumentsCopy = new Object[argumentCount];
+         }
+         System.arraycopy(message.arguments, 0, argumentsCopy, 0, argumentCount);
+         this.arguments = argumentsCopy;
+      }
+      return this;
+   }
+
+   /**
+    * Removes the pattern and arguments from this message, so it doesn't hold on to them.
+    */
+   void
+   clear()
+   {
+      set(null, null);
+      if (argumentsCopy != null)
+      {
+         Arrays.fill(argumentsCopy, null);
+      }
+   }
+
+   private Object
+   getArgument(int index)
+   {
+      if (arguments != null)
+      {
+         return arguments[index];
+      }
+      return index == 0 ? argument1 : argument2;
+   }
+
+   public void
+   appendTo(StringBuffer buffer)
+   {
+      if (pattern == null)
+      {
+         buffer.append("null");
+         return;
+      }
+
+      int start = 0;
+      int length = pattern.length();
+      for (int argument = 0; argument < argumentCount; argument++)
+      {
+         int delimiter = pattern.indexOf(DELIM_START, start);
+         if (delimiter == -1 || delimiter + 1 == length)
+         {
+            break;
+         }
+
+         if (delimiter > 0 && pattern.charAt(delimiter - 1) == ESCAPE_CHAR)
+         {
+            // Print the brace, without the escape, and try this argument again
+            appendText(start, delimiter - 1, buffer);
+            buffer.append(DELIM_START);
+            start = delimiter + 1;
+            argument--;
+         }
+         else if (pattern.charAt(delimiter + 1) != DELIM_STOP)
+         {
+            // Not a placeholder: MessageFormatter prints the rest of the pattern as it is
+            break;
+         }
+         else
+         {
+            appendText(start, delimiter, buffer);
+            appendValue(getArgument(argument), buffer, 0);
+            start = delimiter + 2;
+         }
+      }
+
+      appendText(start, length, buffer);
+   }
+
+   /**
+    * Appends part of the pattern to the buffer.
+    */
+   private void
+   appendText(int start, int end, StringBuffer buffer)
+   {
+      int length = end - start;
+      if (length > textBuffer.length)
+      {
+         textBuffer = new char[Math.max(length, textBuffer.length * 2)];
+      }
+      pattern.getChars(start, end, textBuffer, 0);
+      buffer.append(textBuffer, 0, length);
+   }
+
+   /**
+    * Appends an argument (or an element of an array argument) to the buffer.
+    */
+   private void
+   appendValue(Object value, StringBuffer buffer, int depth)
+   {
+      if (value == null)
+      {
+         buffer.append("null");
+      }
+      else if (!value.getClass().isArray())
+      {
+         buffer.append(value);
+      }
+      else if (value instanceof Object[])
+      {
+         appendObjectArray((Object[]) value, buffer, depth);
+      }
+      else
+      {
+         appendPrimitiveArray(value, buffer);
+      }
+   }
+
+   private void
+   appendObjectArray(Object[] array, StringBuffer buffer, int depth)
+   {
+      for (int i = 0; i < depth; i++)
+      {
+         if (arrayPath[i] == array)
+         {
+            buffer.append("[...]");
+            return;
+         }
+      }
+
+      if (depth == MAX_ARRAY_DEPTH)
+      {
+         buffer.append("[...]");
+         return;
+      }
+
+      arrayPath[depth] = array;
+      buffer.append('[');
+      for (int i = 0; i < array.length; i++)
+      {
+         appendSeparator(i, buffer);
+         appendValue(array[i], buffer, depth + 1);
+      }
+      buffer.append(']');
+      arrayPath[depth] = null;
+   }
+
+   private static void
+   appendPrimitiveArray(Object array, StringBuffer buffer)
+   {
+      buffer.append('[');
+      if (array instanceof int[])
+      {
+         int[] values = (int[]) array;
+         for (int i = 0; i < values.length; i++)
+         {
+            appendSeparator(i, buffer);
+            buffer.append(values[i]);
+         }
+      }
+      else if (array instanceof long[])
+      {
+         long[] values = (long[]) array;
+         for (int i = 0; i < values.length; i++)
+         {
+            appendSeparator(i, buffer);
+            buffer.append(values[i]);
+         }
+      }
+      else if (array instanceof short[])
+      {
+         short[] values = (short[]) array;
+         for (int i = 0; i < values.length; i++)
+         {
+            appendSeparator(i, buffer);
+            buffer.append(values[i]);
+         }
+      }
+      else if (array instanceof byte[])
+      {
+         byte[] values = (byte[]) array;
+         for (int i = 0; i < values.length; i++)
+         {
+            appendSeparator(i, buffer);
+            buffer.append(values[i]);
+         }
+      }
+      else if (array instanceof char[])
+      {
+         char[] values = (char[]) array;
+         for (int i = 0; i < values.length; i++)
+         {
+            appendSeparator(i, buffer);
+            buffer.append(values[i]);
+         }
+      }
+      else if (array instanceof boolean[])
+      {
+         boolean[] values = (boolean[]) array;
+         for (int i = 0; i < values.length; i++)
+         {
+            appendSeparator(i, buffer);
+            buffer.append(values[i]);
+         }
+      }
+      else if (array instanceof float[])
+      {
+         float[] values = (float[]) array;
+         for (int i = 0; i < values.length; i++)
+         {
+            appendSeparator(i, buffer);
+            buffer.append(values[i]);
+         }
+      }
+      else if (array instanceof double[])
+      {
+         double[] values = (double[]) array;
+         for (int i = 0; i < values.length; i++)
+         {
+            appendSeparator(i, buffer);
+            buffer.append(values[i]);
+         }
+      }
+      buffer.append(']');
+   }
+
+   private static void
+   appendSeparator(int index, StringBuffer buffer)
+   {
+      if (index != 0)
+      {
+         buffer.append(", ");
+      }
+   }
+
+   public String
+   toString()
+   {
+      StringBuffer buffer = new StringBuffer(pattern != null ? pattern.length() + 32 : 4);
+      appendTo(buffer);
+      return buffer.toString();
+   }
+}
@@ -0,0 +1,120 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+/**
+ * <p>A reusable holder for a primitive value being logged by one of the primitive variants of
+ * {@link SimpleLogger#dbo(DebugLevel,String,Object) SimpleLogger.dbo()}.</p>
+ *
+ * <p>The value is appended straight into the output buffer by {@link LogFormat}, so logging a
+ * primitive doesn't create a <code>String</code> (or a wrapper object) for it. The output is the
+ * same as <code>String.valueOf()</code> would produce for the primitive.</p>
+ *
+ * @version $Revision$
+ * @author $Author$
+ */
+final class
+PrimitiveValue
+implements LogValue
+{
+   private static final int TYPE_LONG = 0;
+   private static final int TYPE_FLOAT = 1;
+   private static final int TYPE_DOUBLE = 2;
+   private static final int TYPE_BOOLEAN = 3;
+   private static final int TYPE_CHAR = 4;
+
+   /** The type of the value currently held. */
+   private int type;
+
+   /** The value, if it is an integer, boolean (1 or 0) or character. */
+   private long longValue;
+
+   /** The value, if it is a floating point number. */
+   private double doubleValue;
+
+   PrimitiveValue
+   set(long value)
+   {
+      this.type = TYPE_LONG;
+      this.longValue = value;
+      return this;
+   }
+
+   PrimitiveValue
+   set(float value)
+   {
+      this.type = TYPE_FLOAT;
+      this.doubleValue = value;
+      return this;
+   }
+
+   PrimitiveValue
+   set(double value)
+   {
+      this.type = TYPE_DOUBLE;
+      this.doubleValue = value;
+      return this;
+   }
+
+   PrimitiveValue
+   set(boolean value)
+   {
+      this.type = TYPE_BOOLEAN;
+      this.longValue = value ? 1 : 0;
+      return this;
+   }
+
+   PrimitiveValue
+   set(char value)
+   {
+      this.type = TYPE_CHAR;
+      this.longValue = value;
+      return this;
+   }
+
+   /**
+    * Sets this value to the value held by the given <code>PrimitiveValue</code>.
+    */
+   PrimitiveValue
+   set(PrimitiveValue value)
+   {
+      this.type = value.type;
+      this.longValue = value.longValue;
+      this.doubleValue = value.doubleValue;
+      return this;
+   }
+
+   public void
+   appendTo(StringBuffer buffer)
+   {
+      switch (type)
+      {
+         case TYPE_LONG: buffer.append(longValue); break;
+         case TYPE_FLOAT: buffer.append((float) doubleValue); break;
+         case TYPE_DOUBLE: buffer.append(doubleValue); break;
+         case TYPE_BOOLEAN: buffer.append(longValue != 0); break;
+         case TYPE_CHAR: buffer.append((char) longValue); break;
+      }
+   }
+
+   public String
+   toString()
+   {
+      StringBuffer buffer = new StringBuffer(24);
+      appendTo(buffer);
+      return buffer.toString();
+   }
+}
@@ -23,13 +23,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.io.StringWriter;
 import java.io.Writer;
 import java.io.UnsupportedEncodingException;
 import java.io.PrintStream;
-import java.lang.ref.Reference;
-import java.lang.ref.ReferenceQueue;
-import java.lang.ref.WeakReference;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -37,10 +33,8 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLEncoder;
 import java.text.DateFormat;
-import java.text.FieldPosition;
 import java.text.Format;
 import java.text.MessageFormat;
-import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
@@ -52,6 +46,7 @@ import java.util.Timer;
 import java.util.TimerTask;
 import java.util.Set;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * <p>Controls the configuration and formatting of a group of <code>SimpleLogger</code>s.</p>
@@ -141,6 +136,21 @@ SimpleLog
    /** The default value for the append property. */
    private static final boolean APPEND_DEFAULT = true;
 
+   /** The property key for how output is written to the log file. */
+   private static final String KEY_LOG_FILE_IO = KEY_LOG_FILE + ".io";
+
+   /** The log file I/O value for writing through a <code>FileWriter</code>. */
+   private static final String LOG_FILE_IO_STREAM = "stream";
+
+   /** The log file I/O value for writing through a {@link MappedFileWriter}. */
+   private static final String LOG_FILE_IO_MAPPED = "mapped";
+
+   /** The log file I/O value for writing through a {@link DirectFileWriter}. */
+   private static final String LOG_FILE_IO_DIRECT = "direct";
+
+   /** The default value for the log file I/O property. */
+   private static final String LOG_FILE_IO_DEFAULT = LOG_FILE_IO_STREAM;
+
    /** The property key for whether output to a log file should also be printed to the console. */
    private static final String KEY_PIPE_TO_CONSOLE = KEY_LOG_FILE + ".andConsole";
 
@@ -165,14 +175,37 @@ SimpleLog
    /** The default value for the print stack traces property. */
    private static final String PRINT_STACK_TRACES_DEFAULT = "true";
 
+   /** The property key for the most frames printed for each exception in a stack trace. */
+   private static final String KEY_STACK_TRACE_MAX_FRAMES = KEY_PRINT_STACK_TRACES + ".maxFrames";
+
+   /** The property key for the most causes printed in a stack trace. */
+   private static final String KEY_STACK_TRACE_MAX_CAUSES = KEY_PRINT_STACK_TRACES + ".maxCauses";
+
+   /** The property key for the period (in seconds) in which a stack trace is only printed once. */
+   private static final String KEY_STACK_TRACE_REPEAT_PERIOD =
+      KEY_PRINT_STACK_TRACES + ".repeatPeriod";
+
+   /** The property key for the most repeated stack traces remembered. */
+   private static final String KEY_STACK_TRACE_REPEAT_CACHE_SIZE =
+      KEY_PRINT_STACK_TRACES + ".repeatCacheSize";
+
+   /** The default value for the most repeated stack traces remembered. */
+   private static final int STACK_TRACE_REPEAT_CACHE_SIZE_DEFAULT = 1000;
+
    /** The property key for the rollover strategy. */
    private static final String KEY_ROLLOVER_STRATEGY = "simplelog.rollover";
 
-   /**
-    * The period (in milliseconds) between checks of the properties file (must be a FILE, not inside
-    * a JAR).
-    */
-   private static final int RELOAD_FILE_CHECK_PERIOD = 20 * 1000;
+   /** The property key for asynchronous output. */
+   private static final String KEY_ASYNC = KEY_PREFIX + "async";
+
+   /** The default value for the asynchronous output property. */
+   private static final boolean ASYNC_DEFAULT = false;
+
+   /** The property key for the size of the asynchronous output buffer. */
+   private static final String KEY_ASYNC_BUFFER_SIZE = KEY_ASYNC + ".bufferSize";
+
+   /** The default size of the asynchronous output buffer. */
+   private static final int ASYNC_BUFFER_SIZE_DEFAULT = 1024;
 
    /**
     * The period (in milliseconds) between checks of the properties when they're not in a file.
@@ -231,6 +264,31 @@ SimpleLog
     */
    private static final Object defaultInstanceLock = new Object();
 
+   /**
+    * Each thread's buffer for formatting log lines, so that a new buffer isn't needed for every
+    * line.
+    */
+   private static final ThreadLocal LINE_BUFFER = new ThreadLocal()
+   {
+      protected Object
+      initialValue()
+      {
+         return new LineBuffer();
+      }
+   };
+
+   /**
+    * The <code>SimpleLog</code>s whose output is finished when the JVM shuts down (as the keys of a
+    * weak map, so that registering doesn't stop them from being garbage collected).
+    */
+   private static final Map instancesToFinish = new WeakHashMap();
+
+   /**
+    * The thread that finishes the output of the {@link #instancesToFinish} when the JVM shuts
+    * down, or <code>null</code> if it hasn't been registered yet.
+    */
+   private static Thread shutdownHook = null;
+
    /**
     * Specifies whether Simple Log will output debug information about itself.
     */
@@ -261,120 +319,83 @@ SimpleLog
     */
    private final URL configurationSource;
 
-   /** The properties governing this <code>SimpleLog</code>. */
-   private final Properties properties;
-
-   /** The destination of this <code>SimpleLog</code>'s output. */
-   private PrintWriter out;
-
-   /** This <code>SimpleLog</code>'s console. */
-   private PrintStream console;
-
-   /** The writer that the print writer is printing to. */
-   private Writer currentWriter;
-
-   /** Indicates whether the output writer has been set programatically. */
-   private boolean outputSetProgramatically = false;
-
-   /**
-    * The path and name of the log file being written to, or <code>null</code> if output is going
-    * somewhere else.
-    */
-   private String logFile;
-
-   /** Whether the PrintWriter is printing straight to the console. */
-   private boolean printWriterGoesToConsole = true;
+   /** The URLs of the properties files imported by the configuration source when it was loaded. */
+   private URL[] importedSources = new URL[0];
 
-   /** Whether output is currently going to the console as well as a log file. */
-   private boolean pipingOutputToConsole = false;
-
-   /** The default level of this <code>SimpleLog</code>. */
-   private DebugLevel defaultLevel = DebugLevel.L4_INFO;
-
-   /** The default trace flag of this <code>SimpleLog</code>. */
-   private boolean defaultTracing = false;
+   /** Whether the configuration files are being watched for changes, to reload them. */
+   private boolean watchingFiles = false;
 
    /**
-    * The non-instance {@link SimpleLogger}s attached to this <code>SimpleLog</code>.
+    * The properties governing this <code>SimpleLog</code>. When the properties are loaded from the
+    * configuration source, a new object replaces this one, rather than this one being changed.
     */
-   private final List loggers = new ArrayList(32);
+   private volatile Properties properties;
 
    /**
-    * A list of {@link WeakReference}s to instance {@link SimpleLogger}s attached to this
-    * <code>SimpleLog</code>.
+    * A copy of the properties as they were when the settings were last read from them, or
+    * <code>null</code> if they haven't been read yet.
     */
-   private final List instanceLoggerReferences = new ArrayList(16);
-
-   /** Queue of references to SimpleLoggers now unreachable. */
-   private ReferenceQueue instanceLoggersReferenceQueue = null;
-
-   /** An object to synchronize on when accessing or modifying the {@link #loggers} list. */
-   private final Object LOGGERS_LOCK = new Object();
-
-   /** The date format used in all formats in this <code>SimpleLog</code>. */
-   private DateFormat dateFormat;
+   private Properties appliedProperties = null;
 
    /**
-    * Message format for a simple debug message.
-    * 4 = message (String)
+    * The settings used to print each line, which are replaced as a whole whenever any of them
+    * changes.
     */
-   private MessageFormat dbFormat;
+   private volatile Configuration configuration;
 
    /**
-    * Message format for a debug object message.
-    * 4 = object name (String)
-    * 5 = object value (Object)
+    * An object to synchronize on when changing the configuration, so that no two changes are made
+    * at once.
     */
-   private MessageFormat dboFormat;
+   private final Object CONFIGURATION_LOCK = new Object();
 
    /**
-    * Message format for a debug exception message.
-    * 4 = exception (Throwable)
+    * The cache of recently printed stack traces, kept across reloads so that the trace ids carry
+    * on rather than starting again at 1. <code>null</code> until repeated stack traces are first
+    * turned on.
     */
-   private MessageFormat dbeFormat;
+   private StackTraceCache stackTraceCache = null;
 
-   /**
-    * Message format for a trace entry message.
-    * 4 = method name (String)
-    */
-   private MessageFormat entryFormat;
+   /** The writer that the print writer is printing to. */
+   private Writer currentWriter;
 
-   /**
-    * Message format for a trace exit message.
-    * 4 = method name (String)
-    */
-   private MessageFormat exitFormat;
+   /** Indicates whether the output writer has been set programatically. */
+   private boolean outputSetProgramatically = false;
 
    /**
-    * Message format for a simple debug message (instance version).
-    * 4 = message (String)
+    * The path and name of the log file being written to, or <code>null</code> if output is going
+    * somewhere else.
     */
-   private MessageFormat dbFormat4Instance;
+   private String logFile;
 
-   /**
-    * Message format for a debug object message (instance version).
-    * 4 = object name (String)
-    * 5 = object value (Object)
-    */
-   private MessageFormat dboFormat4Instance;
+   /** How output is being written to the log file. One of the <code>LOG_FILE_IO_</code> values. */
+   private String logFileIo;
 
    /**
-    * Message format for a debug exception message (instance version).
-    * 4 = exception (Throwable)
+    * The printer that writes output on a background thread, or <code>null</code> if output is
+    * written synchronously by the logging threads.
     */
-   private MessageFormat dbeFormat4Instance;
+   private volatile AsyncPrinter asyncPrinter = null;
 
-   /**
-    * Message format for a trace entry message (instance version).
-    * 4 = method name (String)
-    */
-   private MessageFormat entryFormat4Instance;
+   /** The {@link SimpleLogger}s attached to this <code>SimpleLog</code>. */
+   private final LoggerRegistry loggers = new LoggerRegistry();
 
    /**
-    * Message format for a trace exit message (instance version).
-    * 4 = method name (String)
+    * Configures each logger as it is registered, according to the current properties. The levels
+    * compiled when the settings were last read are used, unless the properties object was passed
+    * in by the application, which may change it without reloading.
     */
-   private MessageFormat exitFormat4Instance;
+   private final LoggerRegistry.Visitor newLoggerConfigurer = new LoggerRegistry.Visitor()
+   {
+      public void
+      visit(SimpleLogger logger)
+      {
+         if (configurationSource == null)
+            configure(logger);
+         else
+            configure(logger, configuration);
+      }
+   };
 
    /**
     * Creates a new <code>SimpleLog</code> configured by the given properties object. <br>
@@ -395,8 +416,7 @@ SimpleLog
 
       this.configurationSource = null;
       this.properties = properties;
-      setConsole(properties);
-      this.out = new PrintWriter(console, true);
+      this.configuration = new Configuration(readConsole(properties));
 
       readSettingsFromProperties();
    }
@@ -414,11 +434,9 @@ SimpleLog
    throws IOException
    {
       this.configurationSource = configurationSource;
-      this.properties = new Properties();
-      setConsole(properties);
-      this.out = new PrintWriter(console, true);
+      this.configuration = new Configuration(System.err);
 
-      loadProperties();
+      this.properties = loadProperties();
       readSettingsFromProperties();
 
       // Note: Reloading is only checked on creation
@@ -428,23 +446,21 @@ SimpleLog
       {
          printDebugIfEnabled("Configuration reloading enabled");
 
-         Timer timer = new Timer(true);
-         TimerTask reloadTask;
-         int reloadPeriod;
-
-         if (configurationSource.getProtocol() != null &&
-             "file".equals(configurationSource.getProtocol().toLowerCase()))
+         if (toFile(configurationSource) != null)
          {
-            reloadTask = new FileConfigurationReloader();
-            reloadPeriod = RELOAD_FILE_CHECK_PERIOD;
+            // Files are watched by the thread shared by all SimpleLogs
+            synchronized (CONFIGURATION_LOCK)
+            {
+               watchingFiles = true;
+               ConfigurationWatcher.getInstance().watch(this, getConfigurationFiles());
+            }
          }
          else
          {
-            reloadTask = new UrlConfigurationReloader();
-            reloadPeriod = RELOAD_URL_CHECK_PERIOD;
+            Timer timer = new Timer(true);
+            timer.schedule(new UrlConfigurationReloader(),
+                           RELOAD_URL_CHECK_PERIOD, RELOAD_URL_CHECK_PERIOD);
          }
-
-         timer.schedule(reloadTask, reloadPeriod, reloadPeriod);
       }
       else
       {
@@ -472,34 +488,34 @@ SimpleLog
       this(configurationSource.toURL());
    }
 
-   private void setConsole(Properties properties)
+   /**
+    * Returns the console specified by the given properties.
+    */
+   private static PrintStream
+   readConsole(Properties properties)
    {
       String console = properties.getProperty(KEY_CONSOLE);
       if (console != null && console.trim().toLowerCase().equals("system.out"))
-         this.console = System.out;
+         return System.out;
       else
-         this.console = System.err;
+         return System.err;
    }
 
    /**
-    * Loads the properties file from this <code>SimpleLog</code>'s configuration source and reads
-    * all the special properties used to configure the <code>SimpleLog</code> (as opposed to those
-    * that configure the attached <code>SimpleLogger</code>s).
+    * Loads the properties file (and any files it imports) from this <code>SimpleLog</code>'s
+    * configuration source.
+    *
+    * @return a new properties object containing the loaded properties.
     *
     * @throws IOException if the properties file cannot be read from the URL.
     */
-   private void
+   private Properties
    loadProperties()
    throws IOException
    {
-      if (properties == null)
-      {
-         return;
-      }
-
       printDebugIfEnabled("Loading properties");
 
-      // Load the properties into a new object, then replace the current ones if the read suceeds.
+      // Load the properties into a new object, which replaces the current one if the read suceeds.
       InputStream inputStream = configurationSource.openStream();
       Properties newProperties = new Properties();
       try
@@ -512,6 +528,7 @@ SimpleLog
       }
 
       // Import any properties files as specified
+      List urlsImported = new ArrayList();
       String importList = newProperties.getProperty(KEY_IMPORT);
       if (importList != null)
       {
@@ -529,6 +546,7 @@ SimpleLog
                {
                   String filenameToImport = filesToImport[i];
                   URL urlToImport = new URL(configurationContext + filenameToImport);
+                  urlsImported.add(urlToImport);
                   InputStream importStream = null;
                   try
                   {
@@ -550,6 +568,10 @@ SimpleLog
             }
          }
       }
+      importedSources = (URL[]) urlsImported.toArray(new URL[urlsImported.size()]);
+
+      // Add the inner class names before the properties are published to other threads
+      copyInnerClassProperties(newProperties);
 
       // List all loaded properties if debug is on
       if (devDebug)
@@ -564,154 +586,242 @@ SimpleLog
          printDebugIfEnabled("______ Properties List END ______");
       }
 
-      // Replace the current properties with the loaded ones
-      properties.clear();
-      properties.putAll(newProperties);
+      return newProperties;
    }
 
    /**
-    * Reads settings from this <code>SimpleLog</code>'s properties object and changes the object's
-    * state accordingly.
+    * Reads settings from this <code>SimpleLog</code>'s properties object and publishes a new
+    * configuration containing them. Formats and writers are only re-created if the properties they
+    * are read from have changed since the settings were last read.
+    *
+    * @return the properties that have changed since the settings were last read (holding the
+    * previous value of any that have been removed), or <code>null</code> if the settings hadn't
+    * been read before.
     */
-   private void
+   private Properties
    readSettingsFromProperties()
    {
-      if (!outputSetProgramatically)
+      synchronized (CONFIGURATION_LOCK)
       {
-         setConsole(properties);
-
-         try
+         if (configurationSource == null)
          {
-            String rolloverStrategyString = properties.getProperty(KEY_ROLLOVER_STRATEGY);
-            boolean useRollover =
-               rolloverStrategyString != null && rolloverStrategyString.trim().length() != 0;
+            copyInnerClassProperties(properties);
+         }
+         Properties changedProperties = getChangedProperties();
 
-            Writer newWriter;
+         Configuration configuration = this.configuration;
+         Writer oldWriter = null;
 
-            if (useRollover)
-            {
-               newWriter = configureRolloverWriter();
-            }
-            else
-            {
-               newWriter = configureFileWriter();
-            }
+         if (!outputSetProgramatically &&
+             (changedProperties == null || outputPropertiesChanged(changedProperties)))
+         {
+            PrintStream console = readConsole(properties);
 
-            if (newWriter != currentWriter)
+            try
             {
-               out = new PrintWriter(newWriter, true);
+               String rolloverStrategyString = properties.getProperty(KEY_ROLLOVER_STRATEGY);
+               boolean useRollover =
+                  rolloverStrategyString != null && rolloverStrategyString.trim().length() != 0;
+
+               Writer newWriter;
 
-               if (currentWriter != null)
+               if (useRollover)
                {
-                  try
-                  {
-                     currentWriter.close();
-                  }
-                  catch (IOException e)
-                  {
-                     printError("Error while closing log file", e, true);
-                  }
+                  newWriter = configureRolloverWriter();
+               }
+               else
+               {
+                  newWriter = configureFileWriter(console);
+               }
+
+               PrintWriter out = configuration.getWriter();
+               if (newWriter != currentWriter)
+               {
+                  out = new PrintWriter(newWriter, true);
+                  oldWriter = currentWriter;
+                  currentWriter = newWriter;
                }
 
-               currentWriter = newWriter;
+               boolean direct =
+                  newWriter instanceof DirectFileWriter ||
+                  (useRollover && readLogFileIo() == LOG_FILE_IO_DIRECT);
+
+               configuration = configuration.withOutput(out, direct ? newWriter : null,
+                                                        useRollover ? newWriter : null, console,
+                                                        !useRollover && logFile == null);
+            }
+            catch (IOException e)
+            {
+               printError("Error opening log file for writing", e, true);
             }
          }
-         catch (IOException e)
+
+         // Read the "andConsole" property
+         String pipeOutputToConsoleString = properties.getProperty(KEY_PIPE_TO_CONSOLE);
+         // The strategy here is to only turn andConsole on if the property definitely says true
+         boolean pipingOutputToConsole = PIPE_TO_CONSOLE_DEFAULT;
+         if (pipeOutputToConsoleString != null)
          {
-            printError("Error opening log file for writing", e, true);
+            pipingOutputToConsole = pipeOutputToConsoleString.trim().equalsIgnoreCase("true");
          }
-      }
+         configuration = configuration.withPipingOutputToConsole(pipingOutputToConsole);
 
-      // Read the "andConsole" property
-      String pipeOutputToConsoleString = properties.getProperty(KEY_PIPE_TO_CONSOLE);
-      // The strategy here is to only turn andConsole on if the property definitely says true
-      pipingOutputToConsole = PIPE_TO_CONSOLE_DEFAULT;
-      if (pipeOutputToConsoleString != null)
-      {
-         pipingOutputToConsole = pipeOutputToConsoleString.trim().equalsIgnoreCase("true");
-      }
+         configureAsyncPrinter();
+         finishOutputOnShutdown(this);
 
+         // Read the Default level
+         DebugLevel defaultLevel = configuration.getDefaultLevel();
+         String defaultLevelStr = properties.getProperty(KEY_DEFAULT_LEVEL);
+         if (defaultLevelStr != null)
+         {
+            defaultLevelStr = defaultLevelStr.trim();
 
-      // Read the Default level
-      String defaultLevelStr = properties.getProperty(KEY_DEFAULT_LEVEL);
-      if (defaultLevelStr != null)
-      {
-         defaultLevelStr = defaultLevelStr.trim();
+            try
+            {
+               // Try to read it as an int first...
+               int level = Integer.parseInt(defaultLevelStr);
+               defaultLevel = DebugLevel.fromInt(level);
+            }
+            catch (NumberFormatException e1)
+            {
+               // ... then try it as a name.
+               try
+               {
+                  defaultLevel = DebugLevel.fromName(defaultLevelStr);
+               }
+               catch (IllegalArgumentException e2)
+               {
+                  printError("Error parsing debug level for '" + KEY_DEFAULT_LEVEL + "'", e1, true);
+                  printError("Error parsing debug level for '" + KEY_DEFAULT_LEVEL + "'", e2, false);
+               }
+            }
+         }
 
-         try
+         // Read the Default trace
+         boolean defaultTracing = configuration.isDefaultTracing();
+         String defaultTraceStr = properties.getProperty(KEY_DEFAULT_TRACE);
+         if (defaultTraceStr != null)
          {
-            // Try to read it as an int first...
-            int level = Integer.parseInt(defaultLevelStr);
-            defaultLevel = DebugLevel.fromInt(level);
+            defaultTracing = Boolean.valueOf(defaultTraceStr).booleanValue();
          }
-         catch (NumberFormatException e1)
+         configuration = configuration.withDefaults(defaultLevel, defaultTracing);
+
+         // Compile the levels and trace flags, rather than looking up every logger in the properties
+         if (changedProperties == null || !changedProperties.isEmpty())
+         {
+            configuration =
+               configuration.withLevelIndex(new LevelIndex(properties, TRACE_SUFFIX));
+         }
+
+         // Read the Date format
+         if (changedProperties == null || changedProperties.containsKey(KEY_DATE_FORMAT))
          {
-            // ... then try it as a name.
+            String dateFormatString = properties.getProperty(KEY_DATE_FORMAT, DATE_FORMAT_DEFAULT);
             try
             {
-               defaultLevel = DebugLevel.fromName(defaultLevelStr);
+               configuration = configuration.withDateFormat(new SimpleDateFormat(dateFormatString));
             }
-            catch (IllegalArgumentException e2)
+            catch (IllegalArgumentException e)
             {
-               printError("Error parsing debug level for '" + KEY_DEFAULT_LEVEL + "'", e1, true);
-               printError("Error parsing debug level for '" + KEY_DEFAULT_LEVEL + "'", e2, false);
+               printError("Error parsing date format", e, false);
             }
          }
-      }
 
-      // Read the Default trace
-      String defaultTraceStr = properties.getProperty(KEY_DEFAULT_TRACE);
-      if (defaultTraceStr != null)
-      {
-         defaultTracing = Boolean.valueOf(defaultTraceStr).booleanValue();
-      }
+         if (changedProperties == null || formatPropertiesChanged(changedProperties))
+         {
+            configuration = readFormats(configuration);
+         }
 
-      // Read the Date format
-      String dateFormatString = properties.getProperty(KEY_DATE_FORMAT, DATE_FORMAT_DEFAULT);
-      try
-      {
-         dateFormat = new SimpleDateFormat(dateFormatString);
-      }
-      catch (IllegalArgumentException e)
-      {
-         printError("Error parsing date format", e, false);
-      }
+         // Publish all the changes at once, then close the writer that is no longer used
+         this.configuration = configuration;
+         if (oldWriter != null)
+         {
+            try
+            {
+               oldWriter.close();
+            }
+            catch (IOException e)
+            {
+               printError("Error while closing log file", e, true);
+            }
+         }
 
-      // Read formats
-      dbFormat = readFormat(KEY_FORMAT_DB, DEFAULT_FORMAT_STRING_DB);
-      dboFormat = readFormat(KEY_FORMAT_DBO, DEFAULT_FORMAT_STRING_DBO);
-      dbeFormat = readFormat(KEY_FORMAT_DBE, DEFAULT_FORMAT_STRING_DBE);
-      entryFormat = readFormat(KEY_FORMAT_ENTRY, DEFAULT_FORMAT_STRING_ENTRY);
-      exitFormat = readFormat(KEY_FORMAT_EXIT, DEFAULT_FORMAT_STRING_EXIT);
-
-      dbFormat4Instance =
-         readFormat(KEY_FORMAT_DB + KEY_FORMAT_INSTANCE_SUFFIX, DEFAULT_FORMAT_STRING_DB_INSTANCE);
-      dboFormat4Instance =
-         readFormat(KEY_FORMAT_DBO + KEY_FORMAT_INSTANCE_SUFFIX, DEFAULT_FORMAT_STRING_DBO_INSTANCE);
-      dbeFormat4Instance =
-         readFormat(KEY_FORMAT_DBE + KEY_FORMAT_INSTANCE_SUFFIX, DEFAULT_FORMAT_STRING_DBE_INSTANCE);
-      entryFormat4Instance =
-         readFormat(KEY_FORMAT_ENTRY + KEY_FORMAT_INSTANCE_SUFFIX,
-                    DEFAULT_FORMAT_STRING_ENTRY_INSTANCE);
-      exitFormat4Instance =
-         readFormat(KEY_FORMAT_EXIT + KEY_FORMAT_INSTANCE_SUFFIX,
-                    DEFAULT_FORMAT_STRING_EXIT_INSTANCE);
+         appliedProperties = copyProperties(properties);
+         return changedProperties;
+      }
+   }
 
-      updateDateFormats();
+   /**
+    * Reads all the message formats from the current properties object.
+    *
+    * @param configuration the configuration containing the date format to use in the formats
+    *
+    * @return a copy of the given configuration with the new formats.
+    */
+   private Configuration
+   readFormats(Configuration configuration)
+   {
+      DateFormat dateFormat = configuration.getDateFormat();
 
       // Read the Print stack traces property
       String printStackTracesStr =
          properties.getProperty(KEY_PRINT_STACK_TRACES, PRINT_STACK_TRACES_DEFAULT);
       boolean printStackTraces = Boolean.valueOf(printStackTracesStr).booleanValue();
+      Format exceptionFormat = null;
       if (printStackTraces)
       {
-         ExceptionFormat exceptionFormat = new ExceptionFormat();
-         dbeFormat.setFormatByArgumentIndex(DEFAULT_FORMAT_EXCEPTION_INDEX, exceptionFormat);
-         dbeFormat4Instance.setFormatByArgumentIndex(
-            DEFAULT_FORMAT_EXCEPTION_INDEX_INSTANCE, exceptionFormat);
+         StackTraceCache repeatedTraces = null;
+         int repeatPeriod = readStackTraceSetting(KEY_STACK_TRACE_REPEAT_PERIOD, 0);
+         if (repeatPeriod != 0)
+         {
+            int cacheSize = readStackTraceSetting(KEY_STACK_TRACE_REPEAT_CACHE_SIZE,
+                                                  STACK_TRACE_REPEAT_CACHE_SIZE_DEFAULT);
+            if (stackTraceCache == null || !stackTraceCache.hasSettings(repeatPeriod * 1000L,
+                                                                         cacheSize))
+            {
+               stackTraceCache =
+                  new StackTraceCache(repeatPeriod * 1000L, cacheSize, stackTraceCache);
+            }
+            repeatedTraces = stackTraceCache;
+         }
+
+         exceptionFormat =
+            new ExceptionFormat(readStackTraceSetting(KEY_STACK_TRACE_MAX_FRAMES,
+                                                      ExceptionFormat.NO_LIMIT),
+                                readStackTraceSetting(KEY_STACK_TRACE_MAX_CAUSES,
+                                                      ExceptionFormat.NO_LIMIT),
+                                repeatedTraces);
       }
 
-      // Copy any properties that have '$' in their name
+      // Read formats
+      return configuration.withFormats(
+         readFormat(KEY_FORMAT_DB, DEFAULT_FORMAT_STRING_DB, dateFormat),
+         readFormat(KEY_FORMAT_DBO, DEFAULT_FORMAT_STRING_DBO, dateFormat),
+         readFormat(KEY_FORMAT_DBE, DEFAULT_FORMAT_STRING_DBE, dateFormat,
+                    DEFAULT_FORMAT_EXCEPTION_INDEX, exceptionFormat),
+         readFormat(KEY_FORMAT_ENTRY, DEFAULT_FORMAT_STRING_ENTRY, dateFormat),
+         readFormat(KEY_FORMAT_EXIT, DEFAULT_FORMAT_STRING_EXIT, dateFormat),
+         readFormat(KEY_FORMAT_DB + KEY_FORMAT_INSTANCE_SUFFIX, DEFAULT_FORMAT_STRING_DB_INSTANCE,
+                    dateFormat),
+         readFormat(KEY_FORMAT_DBO + KEY_FORMAT_INSTANCE_SUFFIX, DEFAULT_FORMAT_STRING_DBO_INSTANCE,
+                    dateFormat),
+         readFormat(KEY_FORMAT_DBE + KEY_FORMAT_INSTANCE_SUFFIX, DEFAULT_FORMAT_STRING_DBE_INSTANCE,
+                    dateFormat, DEFAULT_FORMAT_EXCEPTION_INDEX_INSTANCE, exceptionFormat),
+         readFormat(KEY_FORMAT_ENTRY + KEY_FORMAT_INSTANCE_SUFFIX,
+                    DEFAULT_FORMAT_STRING_ENTRY_INSTANCE, dateFormat),
+         readFormat(KEY_FORMAT_EXIT + KEY_FORMAT_INSTANCE_SUFFIX,
+                    DEFAULT_FORMAT_STRING_EXIT_INSTANCE, dateFormat));
+   }
+
+   /**
+    * Copies any properties that have '$' in their name to properties named with '.' instead, so
+    * that they apply to inner classes.
+    *
+    * @param properties the properties to copy and add to
+    */
+   private static void
+   copyInnerClassProperties(Properties properties)
+   {
       Enumeration propertyNames = properties.propertyNames();
       Properties newProperties = new Properties();
       while (propertyNames.hasMoreElements())
@@ -725,14 +835,282 @@ SimpleLog
       properties.putAll(newProperties);
    }
 
+   /**
+    * Returns the properties whose values have changed since the settings were last read, holding
+    * the previous value of any that have been removed.
+    *
+    * @return the changed properties, or <code>null</code> if the settings haven't been read yet.
+    */
+   private Properties
+   getChangedProperties()
+   {
+      if (appliedProperties == null)
+      {
+         return null;
+      }
+
+      Properties changedProperties = new Properties();
+      for (Enumeration names = properties.propertyNames(); names.hasMoreElements();)
+      {
+         String name = (String) names.nextElement();
+         String value = properties.getProperty(name);
+         if (!value.equals(appliedProperties.getProperty(name)))
+         {
+            changedProperties.put(name, value);
+         }
+      }
+
+      for (Iterator iter = appliedProperties.entrySet().iterator(); iter.hasNext();)
+      {
+         Map.Entry entry = (Map.Entry) iter.next();
+         if (properties.getProperty((String) entry.getKey()) == null)
+         {
+            changedProperties.put(entry.getKey(), entry.getValue());
+         }
+      }
+
+      return changedProperties;
+   }
+
+   /**
+    * Returns a copy of the given properties, including any defaults they have, in a single
+    * properties object.
+    */
+   private static Properties
+   copyProperties(Properties properties)
+   {
+      Properties copy = new Properties();
+      for (Enumeration names = properties.propertyNames(); names.hasMoreElements();)
+      {
+         String name = (String) names.nextElement();
+         copy.put(name, properties.getProperty(name));
+      }
+      return copy;
+   }
+
+   /**
+    * Determines whether any of the given changed properties could change where or how output is
+    * written.
+    */
+   private boolean
+   outputPropertiesChanged(Properties changedProperties)
+   {
+      if (changedProperties.isEmpty())
+      {
+         return false;
+      }
+
+      // A log file name containing the date must be re-interpreted every time
+      String logFileName = properties.getProperty(KEY_LOG_FILE);
+      if (logFileName != null && logFileName.indexOf('{') != -1)
+      {
+         return true;
+      }
+
+      // A rollover strategy given by class name may be configured by any property
+      String rolloverStrategy = properties.getProperty(KEY_ROLLOVER_STRATEGY);
+      if (rolloverStrategy != null && rolloverStrategy.indexOf('.') != -1)
+      {
+         return true;
+      }
+
+      for (Iterator iter = changedProperties.keySet().iterator(); iter.hasNext();)
+      {
+         String key = (String) iter.next();
+         if (key.startsWith(KEY_PREFIX) &&
+             !key.startsWith(KEY_FORMAT_PREFIX) &&
+             !key.equals(KEY_DATE_FORMAT) &&
+             !key.startsWith(KEY_PRINT_STACK_TRACES) &&
+             !key.equals(KEY_DEFAULT_LEVEL) &&
+             !key.equals(KEY_DEFAULT_TRACE) &&
+             !key.equals(KEY_ASYNC) &&
+             !key.equals(KEY_ASYNC_BUFFER_SIZE) &&
+             !key.equals(KEY_PIPE_TO_CONSOLE) &&
+             !key.equals(KEY_RELOADING) &&
+             !key.equals(KEY_IMPORT))
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Determines whether any of the given changed properties are used to create the message
+    * formats.
+    */
+   private static boolean
+   formatPropertiesChanged(Properties changedProperties)
+   {
+      for (Iterator iter = changedProperties.keySet().iterator(); iter.hasNext();)
+      {
+         String key = (String) iter.next();
+         if (key.startsWith(KEY_FORMAT_PREFIX) || key.startsWith(KEY_PRINT_STACK_TRACES))
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Starts, stops or resizes this <code>SimpleLog</code>'s {@link AsyncPrinter}, according to the
+    * properties in the current properties object.
+    */
+   private void
+   configureAsyncPrinter()
+   {
+      // The strategy here is to only turn async on if the property definitely says true
+      boolean async = ASYNC_DEFAULT;
+      String asyncString = properties.getProperty(KEY_ASYNC);
+      if (asyncString != null)
+      {
+         async = asyncString.trim().equalsIgnoreCase("true");
+      }
+
+      int bufferSize = ASYNC_BUFFER_SIZE_DEFAULT;
+      String bufferSizeString = properties.getProperty(KEY_ASYNC_BUFFER_SIZE);
+      if (async && bufferSizeString != null)
+      {
+         try
+         {
+            bufferSize = Integer.parseInt(bufferSizeString.trim());
+            if (bufferSize < 1)
+               throw new NumberFormatException("Must be greater than 0");
+         }
+         catch (NumberFormatException e)
+         {
+            printError("Error parsing '" + KEY_ASYNC_BUFFER_SIZE + "'", e, false);
+            bufferSize = ASYNC_BUFFER_SIZE_DEFAULT;
+         }
+      }
+
+      AsyncPrinter currentPrinter = asyncPrinter;
+      if (currentPrinter != null && (!async || currentPrinter.getBufferSize() != bufferSize))
+      {
+         printDebugIfEnabled("Stopping asynchronous output");
+         asyncPrinter = null;
+         currentPrinter.shutdown();
+         currentPrinter = null;
+      }
+
+      if (async && currentPrinter == null)
+      {
+         printDebugIfEnabled("Starting asynchronous output", String.valueOf(bufferSize));
+         asyncPrinter = new AsyncPrinter(this, bufferSize);
+      }
+   }
+
+   /**
+    * Registers the given <code>SimpleLog</code> to have its output finished by
+    * {@link #finishOutput()} when the JVM shuts down. There is one shutdown hook for all instances,
+    * rather than one for the printer and one for the writer, because the JVM runs shutdown hooks at
+    * the same time, and the writer mustn't be closed until the printer has printed everything.
+    */
+   private static void
+   finishOutputOnShutdown(SimpleLog log)
+   {
+      synchronized (instancesToFinish)
+      {
+         if (shutdownHook == null)
+         {
+            Thread hook = new Thread("SimpleLog Shutdown")
+            {
+               public void
+               run()
+               {
+                  SimpleLog[] logs;
+                  synchronized (instancesToFinish)
+                  {
+                     logs = (SimpleLog[])
+                        instancesToFinish.keySet().toArray(new SimpleLog[instancesToFinish.size()]);
+                  }
+
+                  for (int i = 0; i < logs.length; i++)
+                  {
+                     logs[i].finishOutput();
+                  }
+               }
+            };
+
+            try
+            {
+               Runtime.getRuntime().addShutdownHook(hook);
+               shutdownHook = hook;
+            }
+            catch (IllegalStateException e)
+            {
+               // The JVM is already shutting down.
+               return;
+            }
+            catch (SecurityException e)
+            {
+               // Asynchronous output still queued at exit will be lost and log files left open.
+               return;
+            }
+         }
+
+         instancesToFinish.put(log, null);
+      }
+   }
+
+   /**
+    * Prints any output still queued for asynchronous printing, then flushes the output and closes
+    * the log file (or the <code>RolloverManager</code>, which syncs the active log file). Called
+    * when the JVM shuts down. Output logged to this <code>SimpleLog</code> after its log file has
+    * been closed is discarded.
+    */
+   private void
+   finishOutput()
+   {
+      AsyncPrinter printer = asyncPrinter;
+      if (printer != null)
+      {
+         printer.shutdown();
+      }
+
+      synchronized (CONFIGURATION_LOCK)
+      {
+         flushOutput();
+
+         boolean rolloverInUse =
+            currentWriter != null &&
+            currentWriter.getClass().getName().equals(ROLLOVER_WRITER_CLASS);
+         if (currentWriter == null || (logFile == null && !rolloverInUse))
+         {
+            // The console (or a writer that was set programatically) is left open
+            return;
+         }
+
+         if (!outputSetProgramatically)
+         {
+            configuration = configuration.withOutput(null, null, null, configuration.getConsole(),
+                                                     false);
+         }
+
+         try
+         {
+            currentWriter.close();
+         }
+         catch (IOException e)
+         {
+            printError("Error while closing log file", e, true);
+         }
+         currentWriter = null;
+         logFile = null;
+      }
+   }
+
    /**
     * Configures this <code>SimpleLog</code> to use a plain FileWriter, according to the properties
     * in the current properties object.
     *
+    * @param console the console to write to if there is no log file
+    *
     * @return the writer to be used to write log output.
     */
    private Writer
-   configureFileWriter()
+   configureFileWriter(PrintStream console)
    throws IOException
    {
       Writer writer;
@@ -770,6 +1148,10 @@ SimpleLog
       // or it's changed if it wasn't null and still isn't null but the name has changed.
       logFileChanged |= logFile != null && newLogFileNotNull && !newLogFile.equals(logFile);
 
+      // or it's changed if it's being written to in a different way.
+      String newLogFileIo = readLogFileIo();
+      logFileChanged |= newLogFileNotNull && !newLogFileIo.equals(logFileIo);
+
       // or it's changed if rollover was on before (but it's now off if we're in here)
       boolean rolloverWasInUse =
          currentWriter != null &&
@@ -782,7 +1164,6 @@ SimpleLog
          if (newLogFile == null)
          {
             writer = new OutputStreamWriter(console);
-            printWriterGoesToConsole = true;
          }
          else
          {
@@ -809,12 +1190,22 @@ SimpleLog
                append = !(appendStr.trim().equalsIgnoreCase("false"));
             }
 
-            writer = new FileWriter(file, append);
-
-            printWriterGoesToConsole = false;
+            if (newLogFileIo == LOG_FILE_IO_MAPPED)
+            {
+               writer = new MappedFileWriter(file, append);
+            }
+            else if (newLogFileIo == LOG_FILE_IO_DIRECT)
+            {
+               writer = new DirectFileWriter(file, append);
+            }
+            else
+            {
+               writer = new FileWriter(file, append);
+            }
          }
 
          logFile = newLogFile;
+         logFileIo = newLogFileIo;
       }
       else
       {
@@ -824,6 +1215,36 @@ SimpleLog
       return writer;
    }
 
+   /**
+    * Reads the log file I/O property from the current properties object.
+    *
+    * @return one of the <code>LOG_FILE_IO_</code> values.
+    */
+   private String
+   readLogFileIo()
+   {
+      String logFileIoString = properties.getProperty(KEY_LOG_FILE_IO);
+      if (logFileIoString == null || logFileIoString.trim().length() == 0)
+      {
+         return LOG_FILE_IO_DEFAULT;
+      }
+
+      logFileIoString = logFileIoString.trim();
+      if (logFileIoString.equals(LOG_FILE_IO_MAPPED))
+      {
+         return LOG_FILE_IO_MAPPED;
+      }
+      if (logFileIoString.equals(LOG_FILE_IO_DIRECT))
+      {
+         return LOG_FILE_IO_DIRECT;
+      }
+      if (!logFileIoString.equals(LOG_FILE_IO_STREAM))
+      {
+         printError("Unknown value for '" + KEY_LOG_FILE_IO + "': " + logFileIoString);
+      }
+      return LOG_FILE_IO_STREAM;
+   }
+
    /**
     * Configures this <code>SimpleLog</code> to use a {@link RolloverManager}, according to the
     * properties in the current properties object.
@@ -839,50 +1260,140 @@ SimpleLog
       {
          Class.forName(ROLLOVER_WRITER_CLASS);
       }
-      catch (ClassNotFoundException e)
+      catch (ClassNotFoundException e)
+      {
+         throw new IOException("The RolloverManager class is not available: " + e);
+      }
+      catch (Throwable t)
+      {
+         // Ignore anything else that might be thrown (e.g. SecurityException).
+      }
+
+      Writer writer;
+      if (currentWriter != null && currentWriter.getClass().getName().equals(ROLLOVER_WRITER_CLASS))
+      {
+         ((RolloverManager) currentWriter).configure(properties);
+         writer = currentWriter;
+      }
+      else
+      {
+         writer = RolloverManager.createRolloverManager(properties, ErrorReporter.create());
+      }
+
+      return writer;
+   }
+
+   /**
+    * Reloads this <code>SimpleLog</code>'s configuration.
+    */
+   public void
+   reloadProperties()
+   {
+      synchronized (CONFIGURATION_LOCK)
+      {
+         try
+         {
+            if (configurationSource != null)
+            {
+               properties = loadProperties();
+            }
+
+            Properties changedProperties = readSettingsFromProperties();
+            reconfigureLoggers(changedProperties);
+
+            if (watchingFiles)
+            {
+               // The list of imported files may have changed
+               ConfigurationWatcher.getInstance().watch(this, getConfigurationFiles());
+            }
+         }
+         catch (Exception e)
+         {
+            printError("Falied to reload properties", e, true);
+         }
+      }
+   }
+
+   /**
+    * Returns the files of the configuration source and the properties files it imports, leaving
+    * out any that aren't files.
+    */
+   private File[]
+   getConfigurationFiles()
+   {
+      List files = new ArrayList(importedSources.length + 1);
+      File configurationFile = toFile(configurationSource);
+      if (configurationFile != null)
+      {
+         files.add(configurationFile);
+      }
+      for (int i = 0; i < importedSources.length; i++)
       {
-         throw new IOException("The RolloverManager class is not available: " + e);
+         File importedFile = toFile(importedSources[i]);
+         if (importedFile != null)
+         {
+            files.add(importedFile);
+         }
       }
-      catch (Throwable t)
+      return (File[]) files.toArray(new File[files.size()]);
+   }
+
+   /**
+    * Returns the file the given URL refers to, or <code>null</code> if it isn't a "file" URL.
+    */
+   private static File
+   toFile(URL url)
+   {
+      if (url.getProtocol() == null || !"file".equals(url.getProtocol().toLowerCase()))
       {
-         // Ignore anything else that might be thrown (e.g. SecurityException).
+         return null;
       }
 
-      Writer writer;
-      if (currentWriter != null && currentWriter.getClass().getName().equals(ROLLOVER_WRITER_CLASS))
+      try
       {
-         ((RolloverManager) currentWriter).configure(properties);
-         writer = currentWriter;
+         return new File(new URI(url.toExternalForm()));
       }
-      else
+      catch (URISyntaxException e)
       {
-         writer = RolloverManager.createRolloverManager(properties, ErrorReporter.create());
+         printError("Failed to create URI from URL: " + url, e, true);
+         return null;
+      }
+      catch (IllegalArgumentException e)
+      {
+         printError("Failed to create file from URL: " + url, e, true);
+         return null;
       }
-
-      printWriterGoesToConsole = false;
-
-      return writer;
    }
 
    /**
-    * Reloads this <code>SimpleLog</code>'s configuration.
+    * Reads one of the settings that control how stack traces are printed.
+    *
+    * @param key the key of the setting
+    *
+    * @param defaultValue the value to use if the setting isn't set or is invalid
+    *
+    * @return the setting, which is never negative.
     */
-   public void
-   reloadProperties()
+   private int
+   readStackTraceSetting(String key, int defaultValue)
    {
-      try
+      String valueString = properties.getProperty(key);
+      if (valueString == null)
       {
-         if (configurationSource != null)
-         {
-            loadProperties();
-         }
+         return defaultValue;
+      }
 
-         readSettingsFromProperties();
-         reconfigureAllLoggers();
+      try
+      {
+         int value = Integer.parseInt(valueString.trim());
+         if (value < 0)
+            throw new NumberFormatException("Must not be negative");
+         return value;
       }
-      catch (Exception e)
+      catch (NumberFormatException e)
       {
-         printError("Falied to reload properties", e, true);
+         printError("Error parsing '" + key + "'", e, false);
+         return defaultValue;
       }
    }
 
@@ -893,10 +1404,35 @@ SimpleLog
     *
     * @param defaultPattern the default pattern to use if the property doesn't exist.
     *
-    * @return a new MessageFormat, created from the resulting message format string.
+    * @param dateFormat the date format to use for the date argument
+    *
+    * @return a new LogFormat, compiled from the resulting message format string.
+    */
+   private LogFormat
+   readFormat(String key, String defaultPattern, DateFormat dateFormat)
+   {
+      return readFormat(key, defaultPattern, dateFormat, -1, null);
+   }
+
+   /**
+    * Reads a format from a specified key, using a special format for the exception argument.
+    *
+    * @param key the key to read from the properties to obtain a new message format string.
+    *
+    * @param defaultPattern the default pattern to use if the property doesn't exist.
+    *
+    * @param dateFormat the date format to use for the date argument
+    *
+    * @param exceptionIndex the index of the exception argument in the format
+    *
+    * @param exceptionFormat the format to use for the exception argument, or <code>null</code> to
+    * use the default format.
+    *
+    * @return a new LogFormat, compiled from the resulting message format string.
     */
-   private MessageFormat
-   readFormat(String key, String defaultPattern)
+   private LogFormat
+   readFormat(String key, String defaultPattern, DateFormat dateFormat, int exceptionIndex,
+              Format exceptionFormat)
    {
       String formatString = properties.getProperty(key, defaultPattern);
       MessageFormat format;
@@ -909,7 +1445,14 @@ SimpleLog
          printError("Error reading format string from " + key, e, false);
          format = new MessageFormat(defaultPattern);
       }
-      return format;
+
+      format.setFormatByArgumentIndex(0, dateFormat);
+      if (exceptionFormat != null)
+      {
+         format.setFormatByArgumentIndex(exceptionIndex, exceptionFormat);
+      }
+
+      return new LogFormat(format);
    }
 
    /**
@@ -932,8 +1475,7 @@ SimpleLog
          printDebugIfEnabled("Default SimpleLog instance being set programatically");
 
          if (defaultInstance != null &&
-               (!defaultInstance.loggers.isEmpty() ||
-                !defaultInstance.instanceLoggerReferences.isEmpty()))
+               !defaultInstance.loggers.isEmpty())
          {
             printError("Warning: The default SimpleLog instance is being replaced, but has already " +
                        "been used to create SimpleLoggers.");
@@ -1091,24 +1633,213 @@ SimpleLog
    }
 
    /**
-    * Prints the given string to this <code>SimpleLog</code>'s output destination, followed by a
-    * newline sequence.
+    * Returns the snapshot of this <code>SimpleLog</code>'s settings currently in use. A
+    * {@link SimpleLogger} reads it once per message, so that the format it picks and the output
+    * the message is printed to come from the same configuration.
+    */
+   Configuration
+   getConfiguration()
+   {
+      return configuration;
+   }
+
+   /**
+    * Formats the given data using the given format and prints the result to the output
+    * destination of the given configuration, followed by a newline sequence. If asynchronous
+    * output is on, the data is queued and will be formatted and printed by the printing thread, to
+    * the output destination in use at that time.
+    *
+    * @param configuration the configuration that the format was taken from
+    *
+    * @param format the format to use to print the data
+    *
+    * @param data the data to print
+    */
+   void
+   println(Configuration configuration, LogFormat format, Object[] data)
+   {
+      AsyncPrinter printer = asyncPrinter;
+      if (printer != null)
+      {
+         printer.print(configuration, format, data);
+      }
+      else
+      {
+         println(format, data, true, configuration);
+      }
+   }
+
+   /**
+    * Formats the given data using the given format and prints the result to this
+    * <code>SimpleLog</code>'s output destination, followed by a newline sequence.
+    *
+    * @param format the format to use to print the data
     *
-    * @param s the string to print
+    * @param data the data to print
+    *
+    * @param flush whether to flush the output (if it is set to flush on new lines) after printing.
+    * The {@link AsyncPrinter} passes <code>false</code> so it can flush once per batch.
     *
     * @see PrintWriter#println(String)
     */
    void
-   println(String s)
+   println(LogFormat format, Object[] data, boolean flush)
    {
-      if (out != null)
+      println(format, data, flush, configuration);
+   }
+
+   /**
+    * Formats the given data using the given format and prints the result to the output
+    * destination of the given configuration, followed by a newline sequence.
+    *
+    * @see #println(LogFormat, Object[], boolean)
+    */
+   void
+   println(LogFormat format, Object[] data, boolean flush, Configuration configuration)
+   {
+      PrintWriter out = configuration.getWriter();
+      if (out == null)
+      {
+         return;
+      }
+
+      LineBuffer line = (LineBuffer) LINE_BUFFER.get();
+      if (line.inUse)
+      {
+         // Something being formatted has logged a message itself: the buffer can't be shared
+         line = new LineBuffer();
+      }
+      line.inUse = true;
+      try
+      {
+         println(format, data, flush, configuration, out, line);
+      }
+      finally
+      {
+         line.inUse = false;
+         line.trim();
+      }
+   }
+
+   /**
+    * Formats the given data using the given format into the given line buffer and prints the
+    * result to the given configuration's print writer (and the console, if output is being piped
+    * there).
+    */
+   private void
+   println(LogFormat format, Object[] data, boolean flush, Configuration configuration,
+           PrintWriter out, LineBuffer line)
+   {
+      StringBuffer text = line.text;
+      text.setLength(0);
+      format.format(data, text);
+
+      int length = text.length();
+      char[] chars = line.getChars(length);
+      text.getChars(0, length, chars, 0);
+
+      Writer lineWriter = configuration.getLineWriter();
+      if (lineWriter != null)
+      {
+         writeLine(lineWriter, chars, length, flush);
+      }
+      else
+      {
+         // The two writes are synchronized so that lines from different threads can't be
+         // interleaved
+         synchronized (out)
+         {
+            out.write(chars, 0, length);
+            if (flush)
+            {
+               out.println();
+            }
+            else
+            {
+               out.write(LINE_SEP);
+            }
+         }
+      }
+
+      if (!configuration.isPrintWriterGoingToConsole() && configuration.isPipingOutputToConsole())
+      {
+         configuration.getConsole().println(text.toString());
+      }
+
+      Writer rolloverWriter = configuration.getRolloverWriter();
+      if (rolloverWriter != null && DebugLevel.L2_ERROR.shouldLog((DebugLevel) data[4]))
+      {
+         syncRolloverWriter(rolloverWriter);
+      }
+   }
+
+   /**
+    * Writes the given line straight to the given {@link DirectFileWriter} or {@link RolloverManager}.
+    */
+   private void
+   writeLine(Writer lineWriter, char[] chars, int length, boolean flush)
+   {
+      try
       {
-         out.println(s);
-         if (!printWriterGoesToConsole && pipingOutputToConsole)
+         if (lineWriter instanceof DirectFileWriter)
+         {
+            ((DirectFileWriter) lineWriter).writeLine(chars, 0, length, flush);
+         }
+         else
          {
-            console.println(s);
+            ((RolloverManager) lineWriter).writeLine(chars, 0, length);
          }
       }
+      catch (IOException e)
+      {
+         printError("Error writing to log file", e, true);
+      }
+   }
+
+   /**
+    * Makes sure everything written to the given {@link RolloverManager} is on the storage device.
+    */
+   private void
+   syncRolloverWriter(Writer rolloverWriter)
+   {
+      try
+      {
+         ((RolloverManager) rolloverWriter).sync();
+      }
+      catch (IOException e)
+      {
+         printError("Error syncing log file", e, true);
+      }
+   }
+
+   /**
+    * Flushes this <code>SimpleLog</code>'s output destination.
+    */
+   void
+   flushOutput()
+   {
+      PrintWriter out = configuration.getWriter();
+      if (out != null)
+      {
+         out.flush();
+      }
+   }
+
+   /**
+    * <p>Waits until all output logged before this method was called has been written to this
+    * <code>SimpleLog</code>'s output destination.</p>
+    *
+    * <p>This method only has an effect when asynchronous output (<code>simplelog.async</code>) is
+    * on. Otherwise, all output is written before the logging method returns.</p>
+    */
+   public void
+   flush()
+   {
+      AsyncPrinter printer = asyncPrinter;
+      if (printer != null)
+      {
+         printer.flush();
+      }
    }
 
    /**
@@ -1124,6 +1855,27 @@ SimpleLog
       logger.setTracing(getTracingFlag(logger));
    }
 
+   /**
+    * Configures the given logger by setting its debug level and trace flag according to the levels
+    * and defaults in the given configuration.
+    *
+    * @param logger the logger to configure.
+    *
+    * @param configuration the current configuration
+    */
+   private void
+   configure(SimpleLogger logger, Configuration configuration)
+   {
+      String configName = logger.getConfigName();
+      LevelIndex levelIndex = configuration.getLevelIndex();
+
+      DebugLevel debugLevel = levelIndex.getDebugLevel(configName);
+      logger.setDebugLevel(debugLevel != null ? debugLevel : configuration.getDefaultLevel());
+
+      Boolean trace = levelIndex.getTracingFlag(configName);
+      logger.setTracing(trace != null ? trace.booleanValue() : configuration.isDefaultTracing());
+   }
+
    /**
     * Retrieves the debug level for the given class from the properties.
     *
@@ -1134,6 +1886,8 @@ SimpleLog
    private DebugLevel
    getDebugLevel(SimpleLogger logger)
    {
+      Properties properties = this.properties;
+      DebugLevel defaultLevel = configuration.getDefaultLevel();
       if (properties == null)
       {
          return defaultLevel;
@@ -1197,6 +1951,8 @@ SimpleLog
    private boolean
    getTracingFlag(SimpleLogger logger)
    {
+      Properties properties = this.properties;
+      boolean defaultTracing = configuration.isDefaultTracing();
       if (properties == null)
       {
          return defaultTracing;
@@ -1232,59 +1988,47 @@ SimpleLog
    void
    register(SimpleLogger logger)
    {
-      synchronized (LOGGERS_LOCK)
-      {
-         if (!logger.isInstanceDebugger())
-         {
-            loggers.add(logger);
-         }
-         else
-         {
-            // Instance loggers get weak referenced, because they're much more likely to be GC'd.
-            if (instanceLoggersReferenceQueue == null)
-            {
-               createInstanceLoggersReferenceQueue();
-            }
-            instanceLoggerReferences.add(new WeakReference(logger, instanceLoggersReferenceQueue));
-         }
-      }
-      configure(logger);
+      // The logger is configured before any reconfiguration can pass it, so it can't miss one
+      loggers.add(logger, newLoggerConfigurer);
    }
 
    /**
-    * Creates the {@link ReferenceQueue} for instance loggers and starts a daemon thread to clear
-    * queue.
+    * Re-configures the {@link SimpleLogger}s registered with this <code>SimpleLog</code> whose
+    * level or trace flag may have been changed by the given properties.
+    *
+    * @param changedProperties the properties that have changed, or <code>null</code> to
+    * re-configure all loggers.
     */
    private void
-   createInstanceLoggersReferenceQueue()
+   reconfigureLoggers(Properties changedProperties)
    {
-      instanceLoggersReferenceQueue = new ReferenceQueue();
-      Thread thread = new Thread(new Runnable()
+      if (changedProperties == null ||
+          changedProperties.containsKey(KEY_DEFAULT_LEVEL) ||
+          changedProperties.containsKey(KEY_DEFAULT_TRACE))
+      {
+         reconfigureAllLoggers();
+         return;
+      }
+
+      if (changedProperties.isEmpty())
+      {
+         return;
+      }
+
+      final LevelIndex changes = new LevelIndex(changedProperties, TRACE_SUFFIX);
+      final Configuration configuration = this.configuration;
+      printDebugIfEnabled("Re-configuring changed loggers");
+      loggers.visitAll(new LoggerRegistry.Visitor()
       {
          public void
-         run()
+         visit(SimpleLogger logger)
          {
-            while (true)
+            if (changes.hasSettingFor(logger.getConfigName()))
             {
-               try
-               {
-                  Thread.yield();
-                  Reference reference = instanceLoggersReferenceQueue.remove();
-                  synchronized (LOGGERS_LOCK)
-                  {
-                     instanceLoggerReferences.remove(reference);
-                  }
-               }
-               catch (Throwable t)
-               {
-                  // Ignore - who cares?
-               }
+               configure(logger, configuration);
             }
          }
-      }, "SimpleLog Instance Logger Cleaner");
-      thread.setDaemon(true);
-      thread.setPriority(Thread.MIN_PRIORITY);
-      thread.start();
+      });
    }
 
    /**
@@ -1293,23 +2037,17 @@ SimpleLog
    private void
    reconfigureAllLoggers()
    {
-      synchronized (LOGGERS_LOCK)
-      {
-         printDebugIfEnabled("Re-configuring all loggers");
-
-         for (Iterator iter = loggers.iterator(); iter.hasNext();)
-         {
-            configure((SimpleLogger) iter.next());
-         }
+      printDebugIfEnabled("Re-configuring all loggers");
 
-         for (Iterator iter = instanceLoggerReferences.iterator(); iter.hasNext();)
+      final Configuration configuration = this.configuration;
+      loggers.visitAll(new LoggerRegistry.Visitor()
+      {
+         public void
+         visit(SimpleLogger logger)
          {
-            Reference loggerReference = (Reference) iter.next();
-            SimpleLogger logger = (SimpleLogger) loggerReference.get();
-            if (logger != null)
-               configure(logger);
+            configure(logger, configuration);
          }
-      }
+      });
    }
 
    /**
@@ -1332,7 +2070,7 @@ SimpleLog
     *
     * @param value an object to print
     */
-   private static void
+   static void
    printDebugIfEnabled(String message, Object value)
    {
       if (devDebug)
@@ -1358,7 +2096,7 @@ SimpleLog
     * @param printExceptionType whether the whole toString of the exception should be printed (true)
     * of just the exception's 'message' (false).
     */
-   private static void
+   static void
    printError(String description, Throwable error, boolean printExceptionType)
    {
       boolean printStackTraces = false;
@@ -1421,7 +2159,7 @@ SimpleLog
    public DebugLevel
    getDefaultLevel()
    {
-      return defaultLevel;
+      return configuration.getDefaultLevel();
    }
 
    /**
@@ -1438,8 +2176,12 @@ SimpleLog
       {
          throw new IllegalArgumentException("defaultLevel cannot be null.");
       }
-      this.defaultLevel = defaultLevel;
-      reconfigureAllLoggers();
+      synchronized (CONFIGURATION_LOCK)
+      {
+         configuration =
+            configuration.withDefaults(defaultLevel, configuration.isDefaultTracing());
+         reconfigureAllLoggers();
+      }
    }
 
    /**
@@ -1448,7 +2190,7 @@ SimpleLog
    public boolean
    isDefaultTracing()
    {
-      return defaultTracing;
+      return configuration.isDefaultTracing();
    }
 
    /**
@@ -1460,8 +2202,11 @@ SimpleLog
    public void
    setDefaultTracing(boolean defaultTracing)
    {
-      this.defaultTracing = defaultTracing;
-      reconfigureAllLoggers();
+      synchronized (CONFIGURATION_LOCK)
+      {
+         configuration = configuration.withDefaults(configuration.getDefaultLevel(), defaultTracing);
+         reconfigureAllLoggers();
+      }
    }
 
    /**
@@ -1470,7 +2215,7 @@ SimpleLog
    public DateFormat
    getDateFormat()
    {
-      return dateFormat;
+      return configuration.getDateFormat();
    }
 
    /**
@@ -1484,14 +2229,13 @@ SimpleLog
    {
       if (newDateFormat == null)
       {
-         dateFormat = new SimpleDateFormat(DATE_FORMAT_DEFAULT);
+         newDateFormat = new SimpleDateFormat(DATE_FORMAT_DEFAULT);
       }
-      else
+
+      synchronized (CONFIGURATION_LOCK)
       {
-         dateFormat = newDateFormat;
+         configuration = configuration.withDateFormat(newDateFormat);
       }
-
-      updateDateFormats();
    }
 
    /**
@@ -1504,7 +2248,7 @@ SimpleLog
    public PrintWriter
    getWriter()
    {
-      return out;
+      return configuration.getWriter();
    }
 
    /**
@@ -1517,8 +2261,11 @@ SimpleLog
    public void
    setWriter(PrintWriter out)
    {
-      this.out = out;
-      this.outputSetProgramatically = true;
+      synchronized (CONFIGURATION_LOCK)
+      {
+         this.outputSetProgramatically = true;
+         configuration = configuration.withWriter(out);
+      }
    }
 
    /**
@@ -1527,86 +2274,67 @@ SimpleLog
    boolean
    isOutputting()
    {
-      return out != null;
-   }
-
-   /**
-    * Updates the date format in all of this <code>SimpleLog</code>'s message formats.
-    */
-   private void
-   updateDateFormats()
-   {
-      dbFormat.setFormatByArgumentIndex(0, dateFormat);
-      dboFormat.setFormatByArgumentIndex(0, dateFormat);
-      dbeFormat.setFormatByArgumentIndex(0, dateFormat);
-      entryFormat.setFormatByArgumentIndex(0, dateFormat);
-      exitFormat.setFormatByArgumentIndex(0, dateFormat);
-
-      dbFormat4Instance.setFormatByArgumentIndex(0, dateFormat);
-      dboFormat4Instance.setFormatByArgumentIndex(0, dateFormat);
-      dbeFormat4Instance.setFormatByArgumentIndex(0, dateFormat);
-      entryFormat4Instance.setFormatByArgumentIndex(0, dateFormat);
-      exitFormat4Instance.setFormatByArgumentIndex(0, dateFormat);
+      return configuration.getWriter() != null;
    }
 
-   MessageFormat
+   LogFormat
    getDebugFormat()
    {
-      return dbFormat;
+      return configuration.getDebugFormat();
    }
 
-   MessageFormat
+   LogFormat
    getDebugInstanceFormat()
    {
-      return dbFormat4Instance;
+      return configuration.getDebugInstanceFormat();
    }
 
-   MessageFormat
+   LogFormat
    getDebugObjectFormat()
    {
-      return dboFormat;
+      return configuration.getDebugObjectFormat();
    }
 
-   MessageFormat
+   LogFormat
    getDebugObjectInstanceFormat()
    {
-      return dboFormat4Instance;
+      return configuration.getDebugObjectInstanceFormat();
    }
 
-   MessageFormat
+   LogFormat
    getDebugExceptionFormat()
    {
-      return dbeFormat;
+      return configuration.getDebugExceptionFormat();
    }
 
-   MessageFormat
+   LogFormat
    getDebugExceptionInstanceFormat()
    {
-      return dbeFormat4Instance;
+      return configuration.getDebugExceptionInstanceFormat();
    }
 
-   MessageFormat
+   LogFormat
    getEntryFormat()
    {
-      return entryFormat;
+      return configuration.getEntryFormat();
    }
 
-   MessageFormat
+   LogFormat
    getEntryInstanceFormat()
    {
-      return entryFormat4Instance;
+      return configuration.getEntryInstanceFormat();
    }
 
-   MessageFormat
+   LogFormat
    getExitFormat()
    {
-      return exitFormat;
+      return configuration.getExitFormat();
    }
 
-   MessageFormat
+   LogFormat
    getExitInstanceFormat()
    {
-      return exitFormat4Instance;
+      return configuration.getExitInstanceFormat();
    }
 
    /**
@@ -1619,7 +2347,7 @@ SimpleLog
    public boolean
    isPipingOutputToConsole()
    {
-      return pipingOutputToConsole;
+      return configuration.isPipingOutputToConsole();
    }
 
    /**
@@ -1632,80 +2360,62 @@ SimpleLog
    public void
    setPipingOutputToConsole(boolean pipeOutputToConsole)
    {
-      this.pipingOutputToConsole = pipeOutputToConsole;
+      synchronized (CONFIGURATION_LOCK)
+      {
+         configuration = configuration.withPipingOutputToConsole(pipeOutputToConsole);
+      }
    }
 
    /**
-    * Format implementation that prints the stack trace of an exception after the exception object's
-    * toString.
+    * A buffer for formatting log lines, reused by one thread for every line it logs.
     */
    private static final class
-   ExceptionFormat
-   extends Format
+   LineBuffer
    {
-      public StringBuffer
-      format(Object obj, StringBuffer buf, FieldPosition pos)
-      {
-         if (!(obj instanceof Throwable))
-         {
-            throw new IllegalArgumentException(getClass().getName() + " only formats Throwables.");
-         }
-
-         Throwable t = (Throwable) obj;
-         buf.append(t);
+      /** The initial size of the buffers. */
+      private static final int INITIAL_SIZE = 256;
 
-         // Append the stack trace to the buffer.
-         StringWriter sw;
-         t.printStackTrace(new PrintWriter(sw = new StringWriter()));
-         buf.append(LINE_SEP).append(sw.toString());
-
-         return buf;
-      }
+      /**
+       * The largest size the buffers are kept at between lines. Larger buffers (usually caused by
+       * stack traces) are discarded after use rather than being held by the thread forever.
+       */
+      private static final int MAX_RETAINED_SIZE = 16 * 1024;
 
-      public Object
-      parseObject (String source, ParsePosition pos)
-      {
-         // Parsing not supported.
-         throw new UnsupportedOperationException();
-      }
-   }
+      /** The buffer the line is formatted into. */
+      private StringBuffer text = new StringBuffer(INITIAL_SIZE);
 
-   /**
-    * A {@link TimerTask} that checks to see if the last modified date of the configuration source
-    * (which must be a "file" URL) has changed and, if it has, reloads the <code>SimpleLog</code>'s
-    * configuration.
-    */
-   private final class
-   FileConfigurationReloader
-   extends TimerTask
-   {
-      private final File configurationFile;
+      /** The characters of the line, copied out of the text buffer for writing. */
+      private char[] chars = new char[INITIAL_SIZE];
 
-      private long previousLastModified;
+      /** Whether the buffer is currently being used to format a line. */
+      private boolean inUse = false;
 
-      public
-      FileConfigurationReloader()
+      /**
+       * Returns the character array, making sure that it is at least the given length.
+       */
+      private char[]
+      getChars(int length)
       {
-         try
+         if (chars.length < length)
          {
-            URI uri = new URI(configurationSource.toExternalForm());
-            this.configurationFile = new File(uri);
-            this.previousLastModified = configurationFile.lastModified();
-         }
-         catch (URISyntaxException e)
-         {
-            throw new IllegalArgumentException("Failed to create URI from URL due to " + e);
+            chars = new char[Math.max(length, chars.length * 2)];
          }
+         return chars;
       }
 
-      public void
-      run()
+      /**
+       * Discards the buffers if they have grown past {@link #MAX_RETAINED_SIZE}.
+       */
+      private void
+      trim()
       {
-         long lastModified = configurationFile.lastModified();
-         if (previousLastModified != lastModified)
+         if (text.capacity() > MAX_RETAINED_SIZE)
          {
-            reloadProperties();
-            previousLastModified = lastModified;
+            text = new StringBuffer(INITIAL_SIZE);
+         }
+         if (chars.length > MAX_RETAINED_SIZE)
+         {
+            chars = new char[INITIAL_SIZE];
          }
       }
    }
@@ -15,7 +15,6 @@ package org.grlea.log;
 // See the License for the specific language governing permissions and
 // limitations under the License.
 
-import java.text.MessageFormat;
 import java.util.Date;
 
 /**
@@ -112,6 +111,28 @@ SimpleLogger
    private static final char[] BYTE_CHARS =
       {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'};
 
+   /**
+    * The number of standard arguments at the start of every array of log data.
+    */
+   private static final int STANDARD_ARGUMENTS = 5;
+
+   /**
+    * The largest number of extra arguments that any log message has.
+    */
+   private static final int MAX_EXTRA_ARGUMENTS = 2;
+
+   /**
+    * Each thread's reusable log data (see {@link #createData}).
+    */
+   private static final ThreadLocal EVENT_DATA = new ThreadLocal()
+   {
+      protected Object
+      initialValue()
+      {
+         return new EventData();
+      }
+   };
+
    /**
     * The log that this logger logs to.
     */
@@ -530,7 +551,7 @@ SimpleLogger
    public boolean
    wouldLog(DebugLevel level)
    {
-      return log.isOutputting() && getDebugLevel().shouldLog(level);
+      return getDebugLevel().shouldLog(level) && log.isOutputting();
    }
 
    /**
@@ -585,17 +606,36 @@ SimpleLogger
     * Creates an array of data containing the standard arguments for a log message, plus empty
     * array slots for the specified number of arguments.
     *
+    * <p>The array (and the <code>Date</code> in it) belong to the current thread and are reused
+    * for every message it logs, so {@link #print} must be used to print the data, which makes the
+    * array available again afterwards. If the thread is already in the middle of logging a message
+    * (e.g. because an object's <code>toString()</code> is logging something), a new array is
+    * created instead.</p>
+    *
     * @param level the level at which this data is going to be logged.
     *
     * @param extraArguments the number of empty slots to create at the end of the array.
     *
-    * @return the newly created array of objects.
+    * @return the array of objects.
     */
    private Object[]
    createData(DebugLevel level, int extraArguments)
    {
-      Object[] result = new Object[5 + extraArguments];
-      result[0] = new Date();
+      EventData eventData = (EventData) EVENT_DATA.get();
+      Object[] result;
+      if (!eventData.inUse && extraArguments <= MAX_EXTRA_ARGUMENTS)
+      {
+         eventData.inUse = true;
+         eventData.date.setTime(System.currentTimeMillis());
+         result = eventData.data[extraArguments];
+         result[0] = eventData.date;
+      }
+      else
+      {
+         result = new Object[STANDARD_ARGUMENTS + extraArguments];
+         result[0] = new Date();
+      }
+
       result[1] = Thread.currentThread().getName();
       result[2] = useLongName ? className : classNameShort;
       result[3] = instanceId;
@@ -603,6 +643,101 @@ SimpleLogger
       return result;
    }
 
+   /**
+    * Prints the given data (which must have come from {@link #createData}) using the given format,
+    * taken from the given configuration, then makes the data array available to be reused.
+    */
+   private void
+   print(Configuration configuration, LogFormat format, Object[] data)
+   {
+      try
+      {
+         log.println(configuration, format, data);
+      }
+      finally
+      {
+         EventData eventData = (EventData) EVENT_DATA.get();
+         int extraArguments = data.length - STANDARD_ARGUMENTS;
+         if (extraArguments <= MAX_EXTRA_ARGUMENTS && eventData.data[extraArguments] == data)
+         {
+            // Don't hold on to the arguments until the next message is logged.
+            for (int i = 1; i < data.length; i++)
+            {
+               data[i] = null;
+            }
+            eventData.message.clear();
+            eventData.inUse = false;
+         }
+      }
+   }
+
+   /**
+    * Returns an object that will print the given value as <code>String.valueOf()</code> would. If
+    * the current thread's data isn't already in use, the thread's reusable
+    * {@link PrimitiveValue} is returned, so no objects are created.
+    */
+   private static Object
+   valueOf(long value)
+   {
+      EventData eventData = (EventData) EVENT_DATA.get();
+      return eventData.inUse ? (Object) String.valueOf(value) : eventData.value.set(value);
+   }
+
+   /** @see #valueOf(long) */
+   private static Object
+   valueOf(float value)
+   {
+      EventData eventData = (EventData) EVENT_DATA.get();
+      return eventData.inUse ? (Object) String.valueOf(value) : eventData.value.set(value);
+   }
+
+   /** @see #valueOf(long) */
+   private static Object
+   valueOf(double value)
+   {
+      EventData eventData = (EventData) EVENT_DATA.get();
+      return eventData.inUse ? (Object) String.valueOf(value) : eventData.value.set(value);
+   }
+
+   /** @see #valueOf(long) */
+   private static Object
+   valueOf(boolean value)
+   {
+      EventData eventData = (EventData) EVENT_DATA.get();
+      return eventData.inUse ? (Object) String.valueOf(value) : eventData.value.set(value);
+   }
+
+   /** @see #valueOf(long) */
+   private static Object
+   valueOf(char value)
+   {
+      EventData eventData = (EventData) EVENT_DATA.get();
+      return eventData.inUse ? (Object) String.valueOf(value) : eventData.value.set(value);
+   }
+
+   /**
+    * Returns a {@link ParameterizedMessage} holding the given pattern and arguments. If the current
+    * thread's data isn't already in use, the thread's reusable message is returned.
+    */
+   private static ParameterizedMessage
+   messageOf(String pattern, Object argument1, Object argument2, int argumentCount)
+   {
+      EventData eventData = (EventData) EVENT_DATA.get();
+      ParameterizedMessage message =
+         eventData.inUse ? new ParameterizedMessage() : eventData.message;
+      return message.set(pattern, argument1, argument2, argumentCount);
+   }
+
+   /** @see #messageOf(String,Object,Object,int) */
+   private static ParameterizedMessage
+   messageOf(String pattern, Object[] arguments)
+   {
+      EventData eventData = (EventData) EVENT_DATA.get();
+      ParameterizedMessage message =
+         eventData.inUse ? new ParameterizedMessage() : eventData.message;
+      return message.set(pattern, arguments);
+   }
+
    /**
     * Logs a debug message at the {@link DebugLevel#L1_FATAL Fatal} level.
     *
@@ -694,6 +829,433 @@ SimpleLogger
       db(DebugLevel.L7_LUDICROUS, message);
    }
 
+   /**
+    * Logs a parameterized debug message at the {@link DebugLevel#L1_FATAL Fatal} level.
+    *
+    * @param pattern the message pattern.
+    *
+    * @param argument the argument to put in the message.
+    *
+    * @see #db(DebugLevel,String,Object)
+    */
+   public void
+   fatal(String pattern, Object argument)
+   {
+      db(DebugLevel.L1_FATAL, pattern, argument);
+   }
+
+   /**
+    * Logs a parameterized debug message at the {@link DebugLevel#L1_FATAL Fatal} level.
+    *
+    * @param pattern the message pattern.
+    *
+    * @param argument1 the first argument to put in the message.
+    *
+    * @param argument2 the second argument to put in the message.
+    *
+    * @see #db(DebugLevel,String,Object,Object)
+    */
+   public void
+   fatal(String pattern, Object argument1, Object argument2)
+   {
+      db(DebugLevel.L1_FATAL, pattern, argument1, argument2);
+   }
+
+   /**
+    * Logs a parameterized debug message at the {@link DebugLevel#L1_FATAL Fatal} level.
+    *
+    * @param pattern the message pattern.
+    *
+    * @param arguments the arguments to put in the message.
+    *
+    * @see #db(DebugLevel,String,Object[])
+    */
+   public void
+   fatal(String pattern, Object[] arguments)
+   {
+      db(DebugLevel.L1_FATAL, pattern, arguments);
+   }
+
+   /**
+    * Logs a debug message, created only if it will be logged, at the
+    * {@link DebugLevel#L1_FATAL Fatal} level.
+    *
+    * @param messageSupplier the supplier of the message to log.
+    *
+    * @see #dbLazy(DebugLevel,MessageSupplier)
+    */
+   public void
+   fatalLazy(MessageSupplier messageSupplier)
+   {
+      dbLazy(DebugLevel.L1_FATAL, messageSupplier);
+   }
+
+   /**
+    * Logs a parameterized debug message at the {@link DebugLevel#L2_ERROR Error} level.
+    *
+    * @param pattern the message pattern.
+    *
+    * @param argument the argument to put in the message.
+    *
+    * @see #db(DebugLevel,String,Object)
+    */
+   public void
+   error(String pattern, Object argument)
+   {
+      db(DebugLevel.L2_ERROR, pattern, argument);
+   }
+
+   /**
+    * Logs a parameterized debug message at the {@link DebugLevel#L2_ERROR Error} level.
+    *
+    * @param pattern the message pattern.
+    *
+    * @param argument1 the first argument to put in the message.
+    *
+    * @param argument2 the second argument to put in the message.
+    *
+    * @see #db(DebugLevel,String,Object,Object)
+    */
+   public void
+   error(String pattern, Object argument1, Object argument2)
+   {
+      db(DebugLevel.L2_ERROR, pattern, argument1, argument2);
+   }
+
+   /**
+    * Logs a parameterized debug message at the {@link DebugLevel#L2_ERROR Error} level.
+    *
+    * @param pattern the message pattern.
+    *
+    * @param arguments the arguments to put in the message.
+    *
+    * @see #db(DebugLevel,String,Object[])
+    */
+   public void
+   error(String pattern, Object[] arguments)
+   {
+      db(DebugLevel.L2_ERROR, pattern, arguments);
+   }
+
+   /**
+    * Logs a debug message, created only if it will be logged, at the
+    * {@link DebugLevel#L2_ERROR Error} level.
+    *
+    * @param messageSupplier the supplier of the message to log.
+    *
+    * @see #dbLazy(DebugLevel,MessageSupplier)
+    */
+   public void
+   errorLazy(MessageSupplier messageSupplier)
+   {
+      dbLazy(DebugLevel.L2_ERROR, messageSupplier);
+   }
+
+   /**
+    * Logs a parameterized debug message at the {@link DebugLevel#L3_WARN Warn} level.
+    *
+    * @param pattern the message pattern.
+    *
+    * @param argument the argument to put in the message.
+    *
+    * @see #db(DebugLevel,String,Object)
+    */
+   public void
+   warn(String pattern, Object argument)
+   {
+      db(DebugLevel.L3_WARN, pattern, argument);
+   }
+
+   /**
+    * Logs a parameterized debug message at the {@link DebugLevel#L3_WARN Warn} level.
+    *
+    * @param pattern the message pattern.
+    *
+    * @param argument1 the first argument to put in the message.
+    *
+    * @param argument2 the second argument to put in the message.
+    *
+    * @see #db(DebugLevel,String,Object,Object)
+    */
+   public void
+   warn(String pattern, Object argument1, Object argument2)
+   {
+      db(DebugLevel.L3_WARN, pattern, argument1, argument2);
+   }
+
+   /**
+    * Logs a parameterized debug message at the {@link DebugLevel#L3_WARN Warn} level.
+    *
+    * @param pattern the message pattern.
+    *
+    * @param arguments the arguments to put in the message.
+    *
+    * @see #db(DebugLevel,String,Object[])
+    */
+   public void
+   warn(String pattern, Object[] arguments)
+   {
+      db(DebugLevel.L3_WARN, pattern, arguments);
+   }
+
+   /**
+    * Logs a debug message, created only if it will be logged, at the
+    * {@link DebugLevel#L3_WARN Warn} level.
+    *
+    * @param messageSupplier the supplier of the message to log.
+    *
+    * @see #dbLazy(DebugLevel,MessageSupplier)
+    */
+   public void
+   warnLazy(MessageSupplier messageSupplier)
+   {
+      dbLazy(DebugLevel.L3_WARN, messageSupplier);
+   }
+
+   /**
+    * Logs a parameterized debug message at the {@link DebugLevel#L4_INFO Info} level.
+    *
+    * @param pattern the message pattern.
+    *
+    * @param argument the argument to put in the message.
+    *
+    * @see #db(DebugLevel,String,Object)
+    */
+   public void
+   info(String pattern, Object argument)
+   {
+      db(DebugLevel.L4_INFO, pattern, argument);
+   }
+
+   /**
+    * Logs a parameterized debug message at the {@link DebugLevel#L4_INFO Info} level.
+    *
+    * @param pattern the message pattern.
+    *
+    * @param argument1 the first argument to put in the message.
+    *
+    * @param argument2 the second argument to put in the message.
+    *
+    * @see #db(DebugLevel,String,Object,Object)
+    */
+   public void
+   info(String pattern, Object argument1, Object argument2)
+   {
+      db(DebugLevel.L4_INFO, pattern, argument1, argument2);
+   }
+
+   /**
+    * Logs a parameterized debug message at the {@link DebugLevel#L4_INFO Info} level.
+    *
+    * @param pattern the message pattern.
+    *
+    * @param arguments the arguments to put in the message.
+    *
+    * @see #db(DebugLevel,String,Object[])
+    */
+   public void
+   info(String pattern, Object[] arguments)
+   {
+      db(DebugLevel.L4_INFO, pattern, arguments);
+   }
+
+   /**
+    * Logs a debug message, created only if it will be logged, at the
+    * {@link DebugLevel#L4_INFO Info} level.
+    *
+    * @param messageSupplier the supplier of the message to log.
+    *
+    * @see #dbLazy(DebugLevel,MessageSupplier)
+    */
+   public void
+   infoLazy(MessageSupplier messageSupplier)
+   {
+      dbLazy(DebugLevel.L4_INFO, messageSupplier);
+   }
+
+   /**
+    * Logs a parameterized debug message at the {@link DebugLevel#L5_DEBUG Debug} level.
+    *
+    * @param pattern the message pattern.
+    *
+    * @param argument the argument to put in the message.
+    *
+    * @see #db(DebugLevel,String,Object)
+    */
+   public void
+   debug(String pattern, Object argument)
+   {
+      db(DebugLevel.L5_DEBUG, pattern, argument);
+   }
+
+   /**
+    * Logs a parameterized debug message at the {@link DebugLevel#L5_DEBUG Debug} level.
+    *
+    * @param pattern the message pattern.
+    *
+    * @param argument1 the first argument to put in the message.
+    *
+    * @param argument2 the second argument to put in the message.
+    *
+    * @see #db(DebugLevel,String,Object,Object)
+    */
+   public void
+   debug(String pattern, Object argument1, Object argument2)
+   {
+      db(DebugLevel.L5_DEBUG, pattern, argument1, argument2);
+   }
+
+   /**
+    * Logs a parameterized debug message at the {@link DebugLevel#L5_DEBUG Debug} level.
+    *
+    * @param pattern the message pattern.
+    *
+    * @param arguments the arguments to put in the message.
+    *
+    * @see #db(DebugLevel,String,Object[])
+    */
+   public void
+   debug(String pattern, Object[] arguments)
+   {
+      db(DebugLevel.L5_DEBUG, pattern, arguments);
+   }
+
+   /**
+    * Logs a debug message, created only if it will be logged, at the
+    * {@link DebugLevel#L5_DEBUG Debug} level.
+    *
+    * @param messageSupplier the supplier of the message to log.
+    *
+    * @see #dbLazy(DebugLevel,MessageSupplier)
+    */
+   public void
+   debugLazy(MessageSupplier messageSupplier)
+   {
+      dbLazy(DebugLevel.L5_DEBUG, messageSupplier);
+   }
+
+   /**
+    * Logs a parameterized debug message at the {@link DebugLevel#L6_VERBOSE Verbose} level.
+    *
+    * @param pattern the message pattern.
+    *
+    * @param argument the argument to put in the message.
+    *
+    * @see #db(DebugLevel,String,Object)
+    */
+   public void
+   verbose(String pattern, Object argument)
+   {
+      db(DebugLevel.L6_VERBOSE, pattern, argument);
+   }
+
+   /**
+    * Logs a parameterized debug message at the {@link DebugLevel#L6_VERBOSE Verbose} level.
+    *
+    * @param pattern the message pattern.
+    *
+    * @param argument1 the first argument to put in the message.
+    *
+    * @param argument2 the second argument to put in the message.
+    *
+    * @see #db(DebugLevel,String,Object,Object)
+    */
+   public void
+   verbose(String pattern, Object argument1, Object argument2)
+   {
+      db(DebugLevel.L6_VERBOSE, pattern, argument1, argument2);
+   }
+
+   /**
+    * Logs a parameterized debug message at the {@link DebugLevel#L6_VERBOSE Verbose} level.
+    *
+    * @param pattern the message pattern.
+    *
+    * @param arguments the arguments to put in the message.
+    *
+    * @see #db(DebugLevel,String,Object[])
+    */
+   public void
+   verbose(String pattern, Object[] arguments)
+   {
+      db(DebugLevel.L6_VERBOSE, pattern, arguments);
+   }
+
+   /**
+    * Logs a debug message, created only if it will be logged, at the
+    * {@link DebugLevel#L6_VERBOSE Verbose} level.
+    *
+    * @param messageSupplier the supplier of the message to log.
+    *
+    * @see #dbLazy(DebugLevel,MessageSupplier)
+    */
+   public void
+   verboseLazy(MessageSupplier messageSupplier)
+   {
+      dbLazy(DebugLevel.L6_VERBOSE, messageSupplier);
+   }
+
+   /**
+    * Logs a parameterized debug message at the {@link DebugLevel#L7_LUDICROUS Ludicrous} level.
+    *
+    * @param pattern the message pattern.
+    *
+    * @param argument the argument to put in the message.
+    *
+    * @see #db(DebugLevel,String,Object)
+    */
+   public void
+   ludicrous(String pattern, Object argument)
+   {
+      db(DebugLevel.L7_LUDICROUS, pattern, argument);
+   }
+
+   /**
+    * Logs a parameterized debug message at the {@link DebugLevel#L7_LUDICROUS Ludicrous} level.
+    *
+    * @param pattern the message pattern.
+    *
+    * @param argument1 the first argument to put in the message.
+    *
+    * @param argument2 the second argument to put in the message.
+    *
+    * @see #db(DebugLevel,String,Object,Object)
+    */
+   public void
+   ludicrous(String pattern, Object argument1, Object argument2)
+   {
+      db(DebugLevel.L7_LUDICROUS, pattern, argument1, argument2);
+   }
+
+   /**
+    * Logs a parameterized debug message at the {@link DebugLevel#L7_LUDICROUS Ludicrous} level.
+    *
+    * @param pattern the message pattern.
+    *
+    * @param arguments the arguments to put in the message.
+    *
+    * @see #db(DebugLevel,String,Object[])
+    */
+   public void
+   ludicrous(String pattern, Object[] arguments)
+   {
+      db(DebugLevel.L7_LUDICROUS, pattern, arguments);
+   }
+
+   /**
+    * Logs a debug message, created only if it will be logged, at the
+    * {@link DebugLevel#L7_LUDICROUS Ludicrous} level.
+    *
+    * @param messageSupplier the supplier of the message to log.
+    *
+    * @see #dbLazy(DebugLevel,MessageSupplier)
+    */
+   public void
+   ludicrousLazy(MessageSupplier messageSupplier)
+   {
+      dbLazy(DebugLevel.L7_LUDICROUS, messageSupplier);
+   }
+
    /**
     * <p>Logs a simple debug message.</p>
     *
@@ -712,16 +1274,126 @@ SimpleLogger
    public void
    db(DebugLevel level, String message)
    {
-      if (!log.isOutputting() || !debugLevel.shouldLog(level))
+      if (!debugLevel.shouldLog(level) || !log.isOutputting())
+      {
+         return;
+      }
+
+      dbNoCheck(level, message);
+   }
+
+   /**
+    * <p>Logs a debug message made from a pattern and an argument.</p>
+    *
+    * <p>The first <code>{}</code> in the pattern is replaced with the argument, e.g.
+    * <code>log.debug("Connecting to {}", host)</code>. To print a <code>{}</code> in the message,
+    * put a backslash before it (<code>\\{}</code> in a Java string). If the argument is an array,
+    * its elements are printed, e.g. <code>[1, 2, 3]</code>.</p>
+    *
+    * <p>The message will be printed if the given debug level is less than or equal to the current
+    * debug level of this <code>SimpleLogger</code>. The level is checked before anything else is
+    * done, so the message is only put together (and the argument's <code>toString()</code> only
+    * called) if it is going to be printed.</p>
+    *
+    * @param pattern the message pattern.
+    *
+    * @param argument the argument to put in the message.
+    */
+   public void
+   db(DebugLevel level, String pattern, Object argument)
+   {
+      if (!debugLevel.shouldLog(level) || !log.isOutputting())
       {
          return;
       }
 
+      dbNoCheck(level, messageOf(pattern, argument, null, 1));
+   }
+
+   /**
+    * <p>Logs a debug message made from a pattern and two arguments.</p>
+    *
+    * <p>The first two <code>{}</code>s in the pattern are replaced with the arguments, in order.</p>
+    *
+    * @param pattern the message pattern.
+    *
+    * @param argument1 the first argument to put in the message.
+    *
+    * @param argument2 the second argument to put in the message.
+    *
+    * @see #db(DebugLevel,String,Object)
+    */
+   public void
+   db(DebugLevel level, String pattern, Object argument1, Object argument2)
+   {
+      if (!debugLevel.shouldLog(level) || !log.isOutputting())
+      {
+         return;
+      }
+
+      dbNoCheck(level, messageOf(pattern, argument1, argument2, 2));
+   }
+
+   /**
+    * <p>Logs a debug message made from a pattern and any number of arguments.</p>
+    *
+    * <p>Each <code>{}</code> in the pattern is replaced with the next argument. Extra
+    * <code>{}</code>s are printed as they are and extra arguments are ignored.</p>
+    *
+    * @param pattern the message pattern.
+    *
+    * @param arguments the arguments to put in the message.
+    *
+    * @see #db(DebugLevel,String,Object)
+    */
+   public void
+   db(DebugLevel level, String pattern, Object[] arguments)
+   {
+      if (!debugLevel.shouldLog(level) || !log.isOutputting())
+      {
+         return;
+      }
+
+      dbNoCheck(level, messageOf(pattern, arguments));
+   }
+
+   /**
+    * <p>Logs a debug message that is only created if it is going to be logged.</p>
+    *
+    * <p>The supplier's {@link MessageSupplier#getMessage() getMessage()} method is only called if
+    * the given debug level is less than or equal to the current debug level of this
+    * <code>SimpleLogger</code>.</p>
+    *
+    * <p>This method and the other <code>...Lazy()</code> methods aren't overloads of the
+    * <code>String</code> methods, because existing calls that pass <code>null</code> as the message
+    * wouldn't compile any more.</p>
+    *
+    * @param messageSupplier the supplier of the message to log.
+    */
+   public void
+   dbLazy(DebugLevel level, MessageSupplier messageSupplier)
+   {
+      if (!debugLevel.shouldLog(level) || !log.isOutputting())
+      {
+         return;
+      }
+
+      dbNoCheck(level, messageSupplier != null ? messageSupplier.getMessage() : null);
+   }
+
+   /**
+    * The same as {@link #db(DebugLevel,String)} but without the debug level check, and taking any
+    * object as the message.
+    */
+   private void
+   dbNoCheck(DebugLevel level, Object message)
+   {
       Object[] data = createData(level, 1);
       data[data.length - 1] = message;
-      MessageFormat format =
-         isInstanceDebugger ? log.getDebugInstanceFormat() : log.getDebugFormat();
-      log.println(format.format(data));
+      Configuration configuration = log.getConfiguration();
+      LogFormat format = isInstanceDebugger ? configuration.getDebugInstanceFormat() :
+                                              configuration.getDebugFormat();
+      print(configuration, format, data);
    }
 
    /**
@@ -778,9 +1450,10 @@ SimpleLogger
       Object[] data = createData(level, 2);
       data[data.length - 2] = objectName;
       data[data.length - 1] = val;
-      MessageFormat format = isInstanceDebugger ? log.getDebugObjectInstanceFormat() :
-                                                           log.getDebugObjectFormat();
-      log.println(format.format(data));
+      Configuration configuration = log.getConfiguration();
+      LogFormat format = isInstanceDebugger ? configuration.getDebugObjectInstanceFormat() :
+                                              configuration.getDebugObjectFormat();
+      print(configuration, format, data);
    }
 
    /**
@@ -796,7 +1469,7 @@ SimpleLogger
    public void
    dbo(DebugLevel level, String objectName, Object[] val)
    {
-      if (!log.isOutputting() || !debugLevel.shouldLog(level))
+      if (!debugLevel.shouldLog(level) || !log.isOutputting())
       {
          return;
       }
@@ -826,12 +1499,12 @@ SimpleLogger
    public void
    dbo(DebugLevel level, String objectName, short val)
    {
-      if (!log.isOutputting() || !debugLevel.shouldLog(level))
+      if (!debugLevel.shouldLog(level) || !log.isOutputting())
       {
          return;
       }
 
-      dboNoCheck(level, objectName, String.valueOf(val));
+      dboNoCheck(level, objectName, valueOf(val));
    }
 
    /**
@@ -842,12 +1515,12 @@ SimpleLogger
    public void
    dbo(DebugLevel level, String objectName, int val)
    {
-      if (!log.isOutputting() || !debugLevel.shouldLog(level))
+      if (!debugLevel.shouldLog(level) || !log.isOutputting())
       {
          return;
       }
 
-      dboNoCheck(level, objectName, String.valueOf(val));
+      dboNoCheck(level, objectName, valueOf(val));
    }
 
    /**
@@ -858,12 +1531,12 @@ SimpleLogger
    public void
    dbo(DebugLevel level, String objectName, long val)
    {
-      if (!log.isOutputting() || !debugLevel.shouldLog(level))
+      if (!debugLevel.shouldLog(level) || !log.isOutputting())
       {
          return;
       }
 
-      dboNoCheck(level, objectName, String.valueOf(val));
+      dboNoCheck(level, objectName, valueOf(val));
    }
 
    /**
@@ -874,12 +1547,12 @@ SimpleLogger
    public void
    dbo(DebugLevel level, String objectName, boolean val)
    {
-      if (!log.isOutputting() || !debugLevel.shouldLog(level))
+      if (!debugLevel.shouldLog(level) || !log.isOutputting())
       {
          return;
       }
 
-      dboNoCheck(level, objectName, String.valueOf(val));
+      dboNoCheck(level, objectName, valueOf(val));
    }
 
    /**
@@ -890,12 +1563,12 @@ SimpleLogger
    public void
    dbo(DebugLevel level, String objectName, float val)
    {
-      if (!log.isOutputting() || !debugLevel.shouldLog(level))
+      if (!debugLevel.shouldLog(level) || !log.isOutputting())
       {
          return;
       }
 
-      dboNoCheck(level, objectName, String.valueOf(val));
+      dboNoCheck(level, objectName, valueOf(val));
    }
 
    /**
@@ -906,12 +1579,12 @@ SimpleLogger
    public void
    dbo(DebugLevel level, String objectName, double val)
    {
-      if (!log.isOutputting() || !debugLevel.shouldLog(level))
+      if (!debugLevel.shouldLog(level) || !log.isOutputting())
       {
          return;
       }
 
-      dboNoCheck(level, objectName, String.valueOf(val));
+      dboNoCheck(level, objectName, valueOf(val));
    }
 
    /**
@@ -922,7 +1595,7 @@ SimpleLogger
    public void
    dbo(DebugLevel level, String objectName, byte val)
    {
-      if (!log.isOutputting() || !debugLevel.shouldLog(level))
+      if (!debugLevel.shouldLog(level) || !log.isOutputting())
       {
          return;
       }
@@ -938,7 +1611,7 @@ SimpleLogger
    public void
    dbo(DebugLevel level, String objectName, byte[] val)
    {
-      if (!log.isOutputting() || !debugLevel.shouldLog(level))
+      if (!debugLevel.shouldLog(level) || !log.isOutputting())
       {
          return;
       }
@@ -954,12 +1627,12 @@ SimpleLogger
    public void
    dbo(DebugLevel level, String objectName, char val)
    {
-      if (!log.isOutputting() || !debugLevel.shouldLog(level))
+      if (!debugLevel.shouldLog(level) || !log.isOutputting())
       {
          return;
       }
 
-      dboNoCheck(level, objectName, String.valueOf(val));
+      dboNoCheck(level, objectName, valueOf(val));
    }
 
    /**
@@ -970,7 +1643,7 @@ SimpleLogger
    public void
    dbo(DebugLevel level, String objectName, char[] val)
    {
-      if (!log.isOutputting() || !debugLevel.shouldLog(level))
+      if (!debugLevel.shouldLog(level) || !log.isOutputting())
       {
          return;
       }
@@ -1135,16 +1808,17 @@ SimpleLogger
    public void
    dbe(DebugLevel level, Throwable t)
    {
-      if (!log.isOutputting() || !debugLevel.shouldLog(level))
+      if (!debugLevel.shouldLog(level) || !log.isOutputting())
       {
          return;
       }
 
       Object[] data = createData(level, 1);
       data[data.length - 1] = t;
-      MessageFormat format = isInstanceDebugger ? log.getDebugExceptionInstanceFormat() :
-                                                           log.getDebugExceptionFormat();
-      log.println(format.format(data));
+      Configuration configuration = log.getConfiguration();
+      LogFormat format = isInstanceDebugger ? configuration.getDebugExceptionInstanceFormat() :
+                                              configuration.getDebugExceptionFormat();
+      print(configuration, format, data);
    }
 
    /**
@@ -1194,16 +1868,17 @@ SimpleLogger
    public void
    entry(String methodName)
    {
-      if (!log.isOutputting() || !tracing)
+      if (!tracing || !log.isOutputting())
       {
          return;
       }
 
       Object[] data = createData(DebugLevel.FAKE_TRACE, 1);
       data[data.length - 1] = methodName;
-      MessageFormat format = isInstanceDebugger ? log.getEntryInstanceFormat() :
-                                                           log.getEntryFormat();
-      log.println(format.format(data));
+      Configuration configuration = log.getConfiguration();
+      LogFormat format = isInstanceDebugger ? configuration.getEntryInstanceFormat() :
+                                              configuration.getEntryFormat();
+      print(configuration, format, data);
    }
 
    /**
@@ -1215,16 +1890,48 @@ SimpleLogger
    public void
    exit(String methodName)
    {
-      if (!log.isOutputting() || !tracing)
+      if (!tracing || !log.isOutputting())
       {
          return;
       }
 
       Object[] data = createData(DebugLevel.FAKE_TRACE, 1);
       data[data.length - 1] = methodName;
-      MessageFormat format = isInstanceDebugger ? log.getExitInstanceFormat() :
-                                                           log.getExitFormat();
-      log.println(format.format(data));
+      Configuration configuration = log.getConfiguration();
+      LogFormat format = isInstanceDebugger ? configuration.getExitInstanceFormat() :
+                                              configuration.getExitFormat();
+      print(configuration, format, data);
+   }
+
+   /**
+    * The log data reused by one thread for every message it logs.
+    */
+   private static final class
+   EventData
+   {
+      /** The data arrays, indexed by the number of extra arguments. */
+      private final Object[][] data = new Object[MAX_EXTRA_ARGUMENTS + 1][];
+
+      /** The date of the current message. */
+      private final Date date = new Date();
+
+      /** The holder for a primitive value being logged. */
+      private final PrimitiveValue value = new PrimitiveValue();
+
+      /** The holder for a parameterized message being logged. */
+      private final ParameterizedMessage message = new ParameterizedMessage();
+
+      /** Whether the data is currently being used to log a message. */
+      private boolean inUse = false;
+
+      private
+      EventData()
+      {
+         for (int i = 0; i < data.length; i++)
+         {
+            data[i] = new Object[STANDARD_ARGUMENTS + i];
+         }
+      }
    }
 
    /**
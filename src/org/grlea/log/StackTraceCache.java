@@ -0,0 +1,268 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Remembers the stack traces that have been printed recently, so that an exception that is
+ * logged over and over (e.g. while a database is down) only has its stack trace printed once in
+ * each period.</p>
+ *
+ * <p>Stack traces are told apart by a fingerprint made up of the classes and frames of the
+ * exception and its causes; the messages of the exceptions are not part of it. Each fingerprint is
+ * given an id the first time it is seen, which is printed with the full stack trace so that the
+ * references printed in its place later can be matched up with it.</p>
+ *
+ * <p>Only the most recently seen fingerprints are kept, so the memory used is bounded.</p>
+ *
+ * @version $Revision$
+ * @author $Author$
+ */
+final class
+StackTraceCache
+{
+   /** The most causes included in a fingerprint, in case an exception (wrongly) causes itself. */
+   private static final int MAX_FINGERPRINT_CAUSES = 64;
+
+   /** The period (in milliseconds) after which a repeated stack trace is printed in full again. */
+   private final long repeatPeriod;
+
+   /** The most fingerprints to remember. */
+   private final int maxSize;
+
+   /** Fingerprints mapped to their {@link Entry}s, least recently seen first. */
+   private final Map entries;
+
+   /** The id to give to the next new fingerprint. */
+   private int nextId = 1;
+
+   /**
+    * Creates a new <code>StackTraceCache</code>.
+    *
+    * @param repeatPeriod the period (in milliseconds) after which a repeated stack trace is printed
+    * in full again
+    *
+    * @param maxSize the most fingerprints to remember
+    */
+   StackTraceCache(long repeatPeriod, int maxSize)
+   {
+      this(repeatPeriod, maxSize, null);
+   }
+
+   /**
+    * Creates a new <code>StackTraceCache</code> that replaces another one, giving out ids where
+    * the other cache left off so that a new trace can't be given the id of an old one.
+    *
+    * @param repeatPeriod the period (in milliseconds) after which a repeated stack trace is printed
+    * in full again
+    *
+    * @param maxSize the most fingerprints to remember
+    *
+    * @param previous the cache being replaced. May be <code>null</code>.
+    */
+   StackTraceCache(long repeatPeriod, final int maxSize, StackTraceCache previous)
+   {
+      this.repeatPeriod = repeatPeriod;
+      this.maxSize = maxSize;
+      if (previous != null)
+      {
+         synchronized (previous.entries)
+         {
+            nextId = previous.nextId;
+         }
+      }
+      this.entries = new LinkedHashMap(16, 0.75F, true)
+      {
+         protected boolean
+         removeEldestEntry(Map.Entry eldest)
+         {
+            return size() > maxSize;
+         }
+      };
+   }
+
+   /**
+    * Records that the given exception is being logged and appends the reference to its stack
+    * trace.
+    *
+    * @param t the exception being logged
+    *
+    * @param buf the buffer to append the reference to
+    *
+    * @return <code>true</code> if the stack trace has been printed recently, in which case the
+    * reference appended is a whole line (e.g. "<code>[trace #3 seen 12 times]</code>") that takes
+    * the place of the stack trace, or <code>false</code> if the stack trace should be printed in
+    * full, in which case the reference (e.g. "<code>[trace #3] </code>") goes at the start of it.
+    */
+   boolean
+   appendReference(Throwable t, StringBuffer buf)
+   {
+      Fingerprint fingerprint = new Fingerprint(t);
+      long now = System.currentTimeMillis();
+
+      int id;
+      int count;
+      synchronized (entries)
+      {
+         Entry entry = (Entry) entries.get(fingerprint);
+         if (entry == null)
+         {
+            entry = new Entry(nextId++, now);
+            entries.put(fingerprint, entry);
+         }
+         else if (now - entry.printedAt >= repeatPeriod)
+         {
+            entry.printedAt = now;
+            entry.count = 1;
+         }
+         else
+         {
+            entry.count++;
+         }
+         id = entry.id;
+         count = entry.count;
+      }
+
+      buf.append("[trace #").append(id);
+      if (count == 1)
+      {
+         buf.append("] ");
+         return false;
+      }
+      buf.append(" seen ").append(count).append(" times]");
+      return true;
+   }
+
+   /**
+    * Returns whether this cache was created with the given settings.
+    */
+   boolean
+   hasSettings(long repeatPeriod, int maxSize)
+   {
+      return this.repeatPeriod == repeatPeriod && this.maxSize == maxSize;
+   }
+
+   /**
+    * Returns the number of fingerprints remembered.
+    */
+   int
+   size()
+   {
+      synchronized (entries)
+      {
+         return entries.size();
+      }
+   }
+
+   /**
+    * A stack trace printed recently.
+    */
+   private static final class
+   Entry
+   {
+      /** The id printed with the stack trace. */
+      final int id;
+
+      /** The time at which the stack trace was last printed in full. */
+      long printedAt;
+
+      /** The number of times the stack trace has been seen since it was printed in full. */
+      int count = 1;
+
+      Entry(int id, long printedAt)
+      {
+         this.id = id;
+         this.printedAt = printedAt;
+      }
+   }
+
+   /**
+    * The classes and frames of an exception and its causes.
+    */
+   private static final class
+   Fingerprint
+   {
+      private final Class[] classes;
+
+      private final StackTraceElement[][] traces;
+
+      private final int hashCode;
+
+      Fingerprint(Throwable t)
+      {
+         List causes = new ArrayList();
+         for (Throwable cause = t; cause != null && causes.size() < MAX_FINGERPRINT_CAUSES;
+              cause = cause.getCause())
+         {
+            causes.add(cause);
+         }
+
+         classes = new Class[causes.size()];
+         traces = new StackTraceElement[causes.size()][];
+         int hash = 0;
+         for (int i = 0; i < classes.length; i++)
+         {
+            Throwable cause = (Throwable) causes.get(i);
+            classes[i] = cause.getClass();
+            traces[i] = cause.getStackTrace();
+            hash = 31 * hash + classes[i].hashCode();
+            for (int j = 0; j < traces[i].length; j++)
+            {
+               hash = 31 * hash + traces[i][j].hashCode();
+            }
+         }
+         hashCode = hash;
+      }
+
+      public boolean
+      equals(Object o)
+      {
+         if (this == o)
+         {
+            return true;
+         }
+         if (!(o instanceof Fingerprint))
+         {
+            return false;
+         }
+
+         Fingerprint other = (Fingerprint) o;
+         if (hashCode != other.hashCode || !Arrays.equals(classes, other.classes))
+         {
+            return false;
+         }
+         for (int i = 0; i < traces.length; i++)
+         {
+            if (!Arrays.equals(traces[i], other.traces[i]))
+            {
+               return false;
+            }
+         }
+         return true;
+      }
+
+      public int
+      hashCode()
+      {
+         return hashCode;
+      }
+   }
+}
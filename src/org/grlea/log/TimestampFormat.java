@@ -0,0 +1,255 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import java.text.DateFormat;
+import java.text.FieldPosition;
+import java.text.Format;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * <p>A <code>Format</code> that prints dates using a <code>DateFormat</code>, but only runs the
+ * <code>DateFormat</code> once per second.</p>
+ *
+ * <p>The text for the current second is cached, along with the position of the milliseconds in it.
+ * Printing another time within the same second just copies the cached text, replacing the
+ * milliseconds digits. The cache is only rebuilt when a time from a different second is printed.
+ * </p>
+ *
+ * <p>This works for any <code>SimpleDateFormat</code> pattern that contains the milliseconds
+ * (<code>S</code>) at most once and at least three digits wide (so that it is always printed with
+ * the same width). For any other pattern or <code>DateFormat</code>, every date is formatted by the
+ * <code>DateFormat</code>, as usual.</p>
+ *
+ * <p><code>TimestampFormat</code>s are not thread-safe. {@link LogFormat} gives each thread its own.
+ * </p>
+ *
+ * @version $Revision$
+ * @author $Author$
+ */
+final class
+TimestampFormat
+extends Format
+{
+   private static final long serialVersionUID = 1L;
+
+   /** The minimum width of the milliseconds field for it to always be printed at the same width. */
+   private static final int MIN_MILLIS_WIDTH = 3;
+
+   /** The date format that does the actual formatting. */
+   private final DateFormat dateFormat;
+
+   /** Whether the text can be cached, based on the pattern of the date format. */
+   private boolean cacheable;
+
+   /** Whether the pattern contains the milliseconds field. */
+   private final boolean hasMillis;
+
+   /** The second (i.e. milliseconds / 1000) of the cached text. */
+   private long cachedSecond = Long.MIN_VALUE;
+
+   /** The text for the cached second, with the milliseconds field printed as zero. */
+   private char[] cachedText = new char[64];
+
+   /** The length of the cached text. */
+   private int cachedLength;
+
+   /** The start of the milliseconds field in the cached text. */
+   private int millisBegin;
+
+   /** The end of the milliseconds field in the cached text. */
+   private int millisEnd;
+
+   /** The zero digit printed by the date format. */
+   private char zeroDigit;
+
+   /** A date used to pass times to the date format. */
+   private final Date date = new Date();
+
+   /** A buffer used to rebuild the cached text. */
+   private final StringBuffer buffer = new StringBuffer(64);
+
+   /** Used to find the milliseconds field when rebuilding the cached text. */
+   private final FieldPosition millisPosition = new FieldPosition(DateFormat.MILLISECOND_FIELD);
+
+   /** A field position to pass to the date format when not caching (which is never read). */
+   private final FieldPosition fieldPosition = new FieldPosition(0);
+
+   /**
+    * Creates a new <code>TimestampFormat</code> that uses the given date format. The date format
+    * must not be used or changed by anything else after being given to this constructor.
+    *
+    * @param dateFormat the date format to use
+    */
+   TimestampFormat(DateFormat dateFormat)
+   {
+      this.dateFormat = dateFormat;
+
+      int millisFields = -1;
+      if (dateFormat instanceof SimpleDateFormat)
+      {
+         millisFields = countMillisFields(((SimpleDateFormat) dateFormat).toPattern());
+      }
+      this.hasMillis = millisFields != 0;
+      this.cacheable = millisFields == 0 || millisFields == 1;
+   }
+
+   /**
+    * Returns the number of milliseconds fields in the given pattern, or -1 if the pattern contains
+    * a milliseconds field narrower than {@link #MIN_MILLIS_WIDTH}.
+    */
+   private static int
+   countMillisFields(String pattern)
+   {
+      int fields = 0;
+      boolean inQuote = false;
+      for (int i = 0; i < pattern.length(); i++)
+      {
+         char c = pattern.charAt(i);
+         if (c == '\'')
+         {
+            inQuote = !inQuote;
+         }
+         else if (!inQuote && c == 'S')
+         {
+            int width = 1;
+            while (i + 1 < pattern.length() && pattern.charAt(i + 1) == 'S')
+            {
+               width++;
+               i++;
+            }
+
+            if (width < MIN_MILLIS_WIDTH)
+            {
+               return -1;
+            }
+            fields++;
+         }
+      }
+      return fields;
+   }
+
+   /**
+    * Appends the given time, formatted by this format's date format, to the given buffer.
+    *
+    * @param time the time to format, in milliseconds since the epoch
+    *
+    * @param buf the buffer to which the formatted time will be appended
+    */
+   void
+   format(long time, StringBuffer buf)
+   {
+      if (!cacheable)
+      {
+         date.setTime(time);
+         dateFormat.format(date, buf, fieldPosition);
+         return;
+      }
+
+      long second = time >= 0 ? time / 1000 : ((time + 1) / 1000) - 1;
+      if (second != cachedSecond)
+      {
+         rebuildCache(second);
+         if (!cacheable)
+         {
+            format(time, buf);
+            return;
+         }
+      }
+
+      if (!hasMillis)
+      {
+         buf.append(cachedText, 0, cachedLength);
+         return;
+      }
+
+      buf.append(cachedText, 0, millisBegin);
+      int millis = (int) (time - second * 1000);
+      for (int i = millisEnd - millisBegin - 1; i >= 0; i--)
+      {
+         int digit;
+         switch (i)
+         {
+            case 0: digit = millis % 10; break;
+            case 1: digit = (millis / 10) % 10; break;
+            case 2: digit = millis / 100; break;
+            default: digit = 0;
+         }
+         buf.append((char) (zeroDigit + digit));
+      }
+      buf.append(cachedText, millisEnd, cachedLength - millisEnd);
+   }
+
+   /**
+    * Formats the start of the given second and caches the result.
+    */
+   private void
+   rebuildCache(long second)
+   {
+      buffer.setLength(0);
+      millisPosition.setBeginIndex(0);
+      millisPosition.setEndIndex(0);
+      date.setTime(second * 1000);
+      dateFormat.format(date, buffer, millisPosition);
+
+      cachedLength = buffer.length();
+      if (cachedText.length < cachedLength)
+      {
+         cachedText = new char[cachedLength];
+      }
+      buffer.getChars(0, cachedLength, cachedText, 0);
+
+      if (hasMillis)
+      {
+         millisBegin = millisPosition.getBeginIndex();
+         millisEnd = millisPosition.getEndIndex();
+         if (millisEnd - millisBegin < MIN_MILLIS_WIDTH)
+         {
+            // Not what the pattern said: don't trust the cache.
+            cacheable = false;
+            return;
+         }
+         zeroDigit = cachedText[millisEnd - 1];
+      }
+
+      cachedSecond = second;
+   }
+
+   public StringBuffer
+   format(Object obj, StringBuffer buf, FieldPosition pos)
+   {
+      if (obj instanceof Date)
+      {
+         format(((Date) obj).getTime(), buf);
+         return buf;
+      }
+      return dateFormat.format(obj, buf, pos);
+   }
+
+   public Object
+   parseObject(String source, ParsePosition pos)
+   {
+      return dateFormat.parseObject(source, pos);
+   }
+
+   public Object
+   clone()
+   {
+      return new TimestampFormat((DateFormat) dateFormat.clone());
+   }
+}
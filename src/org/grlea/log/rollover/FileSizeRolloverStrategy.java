@@ -102,7 +102,7 @@ implements RolloverStrategy
     *
     * @throws IOException if the given string does not match the specified constraints
     */
-   private long
+   static long
    decodeFileSize(String fileSizeString)
    throws IOException
    {
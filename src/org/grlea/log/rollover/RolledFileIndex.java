@@ -0,0 +1,236 @@
+package org.grlea.log.rollover;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import java.io.File;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>An in-memory list of the rolled log files in a rollover directory, oldest first, with their
+ * sizes, used by {@link RolloverManager} to enforce its retention limits without listing the
+ * directory (which may hold tens of thousands of files) after every rollover.</p>
+ *
+ * <p>The index is built by listing the directory once, when retention is turned on (e.g. when the
+ * application starts). Whatever state a crash left the directory in, each rolled file is indexed
+ * once, under its uncompressed name, whether it is there uncompressed, compressed, or both.
+ * Partially compressed files are not counted, as the compressor deletes them.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+final class
+RolledFileIndex
+{
+   /** Orders files by their last modified time, then by name. */
+   private static final Comparator OLDEST_FIRST = new Comparator()
+   {
+      public int
+      compare(Object o1, Object o2)
+      {
+         Entry entry1 = (Entry) o1;
+         Entry entry2 = (Entry) o2;
+         if (entry1.time != entry2.time)
+         {
+            return entry1.time < entry2.time ? -1 : 1;
+         }
+         return entry1.file.compareTo(entry2.file);
+      }
+   };
+
+   /** The rolled files (by their uncompressed names) mapped to {@link Entry}s, oldest first. */
+   private final Map entries = new LinkedHashMap();
+
+   /** The total size of the rolled files. */
+   private long totalLength = 0;
+
+   /**
+    * Builds an index of the rolled files in the given directory.
+    *
+    * @param directory the directory containing the rolled files
+    *
+    * @param rolledFileNameFormat the format of the names of the rolled files
+    *
+    * @param excludedFiles files in the directory that are never rolled files, e.g. the active log
+    * file
+    */
+   static RolledFileIndex
+   build(File directory, MessageFormat rolledFileNameFormat, File[] excludedFiles)
+   {
+      Map entriesByFile = new HashMap();
+      File[] files = directory.listFiles();
+      for (int i = 0; files != null && i < files.length; i++)
+      {
+         File file = files[i];
+         String name = RolloverCompressor.getUncompressedName(file.getName());
+         if (file.getName().endsWith(RolloverCompressor.PARTIAL_SUFFIX) || !file.isFile() ||
+             Arrays.asList(excludedFiles).contains(file) ||
+             !RolloverCompressor.isRolledFile(name, rolledFileNameFormat))
+         {
+            continue;
+         }
+
+         File rolledFile = new File(directory, name);
+         Entry entry = (Entry) entriesByFile.get(rolledFile);
+         if (entry == null)
+         {
+            entry = new Entry(rolledFile);
+            entriesByFile.put(rolledFile, entry);
+         }
+
+         // A compressed copy is the one that will be kept, so it's the one that counts
+         if (entry.currentFile == null || !file.equals(rolledFile))
+         {
+            entry.currentFile = file;
+            entry.length = file.length();
+            entry.time = file.lastModified();
+         }
+      }
+
+      List sorted = new ArrayList(entriesByFile.values());
+      Collections.sort(sorted, OLDEST_FIRST);
+      RolledFileIndex index = new RolledFileIndex();
+      for (Iterator iter = sorted.iterator(); iter.hasNext();)
+      {
+         Entry entry = (Entry) iter.next();
+         index.entries.put(entry.file, entry);
+         index.totalLength += entry.length;
+      }
+      return index;
+   }
+
+   /**
+    * Adds a file that has just been rolled to the end of the index.
+    */
+   synchronized void
+   add(File file, long time)
+   {
+      remove(file);
+
+      Entry entry = new Entry(file);
+      entry.currentFile = file;
+      entry.length = file.length();
+      entry.time = time;
+      entries.put(file, entry);
+      totalLength += entry.length;
+   }
+
+   /**
+    * Records that the given rolled file has been replaced by the given compressed file.
+    */
+   synchronized void
+   compressed(File file, File compressedFile)
+   {
+      Entry entry = (Entry) entries.get(file);
+      if (entry != null)
+      {
+         totalLength -= entry.length;
+         entry.currentFile = compressedFile;
+         entry.length = compressedFile.length();
+         totalLength += entry.length;
+      }
+   }
+
+   /**
+    * Removes the oldest files from the index until it is within the given limits.
+    *
+    * @param maxFiles the most files to keep
+    *
+    * @param maxLength the largest total size of the files kept
+    *
+    * @param oldestTime the time before which no files are kept
+    *
+    * @return the files removed, with their uncompressed names, for the caller to delete.
+    */
+   synchronized File[]
+   prune(int maxFiles, long maxLength, long oldestTime)
+   {
+      List removed = new ArrayList();
+      for (Iterator iter = entries.values().iterator(); iter.hasNext();)
+      {
+         Entry entry = (Entry) iter.next();
+         if (entries.size() <= maxFiles && totalLength <= maxLength && entry.time >= oldestTime)
+         {
+            break;
+         }
+
+         iter.remove();
+         totalLength -= entry.length;
+         removed.add(entry.file);
+      }
+      return (File[]) removed.toArray(new File[removed.size()]);
+   }
+
+   private void
+   remove(File file)
+   {
+      Entry entry = (Entry) entries.remove(file);
+      if (entry != null)
+      {
+         totalLength -= entry.length;
+      }
+   }
+
+   /**
+    * Returns the number of files in the index.
+    */
+   synchronized int
+   size()
+   {
+      return entries.size();
+   }
+
+   /**
+    * Returns the total size of the files in the index.
+    */
+   synchronized long
+   getTotalLength()
+   {
+      return totalLength;
+   }
+
+   /**
+    * A rolled file.
+    */
+   private static final class
+   Entry
+   {
+      /** The file's uncompressed name, which it is indexed by. */
+      final File file;
+
+      /** The file as it currently is, which may be compressed. */
+      File currentFile;
+
+      /** The size of the current file. */
+      long length;
+
+      /** The time the file was rolled. */
+      long time;
+
+      Entry(File file)
+      {
+         this.file = file;
+      }
+   }
+}
@@ -0,0 +1,555 @@
+package org.grlea.log.rollover;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.MessageFormat;
+import java.text.ParseException;
+import java.util.LinkedList;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>Compresses rolled log files on a single, low-priority daemon thread shared by all
+ * {@link RolloverManager}s, so that no time is spent compressing in the thread that rolled the
+ * file, let alone in a thread that is logging.</p>
+ *
+ * <p>Each file is compressed into a temporary file (its name followed by the compressed suffix and
+ * {@link #PARTIAL_SUFFIX}), which is renamed to the compressed name once it is complete, after
+ * which the original file is deleted. A compressed file therefore either doesn't exist or is
+ * whole. If the application stops part way through, {@link #recover} deletes the partial file and
+ * compresses the original again. Recovery is done on the compressor thread too, so it can't see
+ * a file that is still being compressed.</p>
+ *
+ * <p>To stop a burst of rollovers from taking CPU time away from the application, files are
+ * compressed one at a time, and the thread rests for as long as it has worked after every
+ * {@link #WORK_PERIOD}, so it uses no more than half of one processor.</p>
+ *
+ * <p>When rolled log files are compressed, {@link RolloverManager} also deletes the files expired
+ * by its retention limits on this thread, so that a file is never deleted while it is still
+ * waiting to be compressed.</p>
+ *
+ * <p>The thread stops when there is nothing left to compress or delete.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+final class
+RolloverCompressor
+implements Runnable
+{
+   /** The compression method that writes gzip files. */
+   static final String GZIP = "gzip";
+
+   /** The compression method that writes zlib ('deflate') streams. */
+   static final String DEFLATE = "deflate";
+
+   /** The suffix added to the names of files compressed with {@link #GZIP}. */
+   private static final String GZIP_SUFFIX = ".gz";
+
+   /** The suffix added to the names of files compressed with {@link #DEFLATE}. */
+   private static final String DEFLATE_SUFFIX = ".zz";
+
+   /** The suffix added to the names of compressed files until they are complete. */
+   static final String PARTIAL_SUFFIX = ".part";
+
+   /** The size of the buffer used to read the files. */
+   private static final int BUFFER_SIZE = 64 * 1024;
+
+   /** The time (in milliseconds) the thread works for before resting. */
+   private static final long WORK_PERIOD = 20;
+
+   /** The name given to the compressor thread. */
+   private static final String THREAD_NAME = "SimpleLog Rollover Compressor";
+
+   /** The compressor shared by all <code>RolloverManager</code>s. */
+   private static RolloverCompressor instance;
+
+   /** The {@link Job}s waiting to be done, in the order they were added. */
+   private final LinkedList jobs = new LinkedList();
+
+   /** The compressor thread, or <code>null</code> if it is not running. */
+   private Thread thread;
+
+   /** The time the thread has worked since it last rested. */
+   private long workTime = 0;
+
+   /**
+    * Returns the compressor shared by all <code>RolloverManager</code>s.
+    */
+   static synchronized RolloverCompressor
+   getInstance()
+   {
+      if (instance == null)
+      {
+         instance = new RolloverCompressor();
+      }
+      return instance;
+   }
+
+   /**
+    * Returns the name given to files compressed with the given method.
+    *
+    * @param file the file to be compressed
+    *
+    * @param method {@link #GZIP} or {@link #DEFLATE}
+    */
+   static File
+   getCompressedFile(File file, String method)
+   {
+      String suffix = method == GZIP ? GZIP_SUFFIX : DEFLATE_SUFFIX;
+      return new File(file.getParentFile(), file.getName() + suffix);
+   }
+
+   /**
+    * Adds the given file to the files waiting to be compressed.
+    *
+    * @param file the file to compress
+    *
+    * @param method {@link #GZIP} or {@link #DEFLATE}
+    *
+    * @param manager the manager that rolled the file(s), which is told about compressed files and
+    * errors
+    */
+   void
+   compress(File file, String method, RolloverManager manager)
+   {
+      addJob(new CompressJob(file, method, manager));
+   }
+
+   /**
+    * Adds a job to the jobs waiting to be done and starts the thread if it isn't running.
+    */
+   private synchronized void
+   addJob(Job job)
+   {
+      jobs.addLast(job);
+      if (thread == null)
+      {
+         thread = new Thread(this, THREAD_NAME);
+         thread.setDaemon(true);
+         thread.setPriority(Thread.MIN_PRIORITY);
+         thread.start();
+      }
+   }
+
+   /**
+    * Adds a job to finish any compression left undone in the given directory when the application
+    * last stopped: partially compressed files are deleted, rolled files that have already been
+    * compressed are deleted, and any other rolled files are compressed.
+    *
+    * @param directory the directory containing the rolled files
+    *
+    * @param rolledFileNameFormat the format of the names of the rolled files
+    *
+    * @param excludedFiles files in the directory that must not be touched, e.g. the active log file
+    *
+    * @param method {@link #GZIP} or {@link #DEFLATE}
+    *
+    * @param manager the manager that rolled the file(s), which is told about compressed files and
+    * errors
+    */
+   void
+   recover(File directory, MessageFormat rolledFileNameFormat, File[] excludedFiles,
+           String method, RolloverManager manager)
+   {
+      addJob(new RecoverJob(directory, rolledFileNameFormat, excludedFiles, method, manager));
+   }
+
+   /**
+    * Does the work of {@link #recover}.
+    */
+   private void
+   recoverDirectory(File directory, MessageFormat rolledFileNameFormat, File[] excludedFiles,
+                    String method, RolloverManager manager)
+   {
+      File[] files = directory.listFiles();
+      for (int i = 0; files != null && i < files.length; i++)
+      {
+         File file = files[i];
+         String name = getUncompressedName(file.getName());
+         if (!file.isFile() || isExcluded(file, excludedFiles) ||
+             !isRolledFile(name, rolledFileNameFormat))
+         {
+            continue;
+         }
+
+         if (file.getName().endsWith(PARTIAL_SUFFIX))
+         {
+            // Only this thread writes partial files, so this one isn't being written.
+            file.delete();
+         }
+         else if (name.equals(file.getName()))
+         {
+            if (getCompressedFile(file, GZIP).exists() || getCompressedFile(file, DEFLATE).exists())
+            {
+               // The compressed file was renamed into place, but the original wasn't deleted.
+               file.delete();
+            }
+            else
+            {
+               compress(file, method, manager);
+            }
+         }
+      }
+   }
+
+   /**
+    * Returns the given file name without any compressed and partial suffixes.
+    */
+   static String
+   getUncompressedName(String name)
+   {
+      if (name.endsWith(PARTIAL_SUFFIX))
+         name = name.substring(0, name.length() - PARTIAL_SUFFIX.length());
+
+      if (name.endsWith(GZIP_SUFFIX))
+         return name.substring(0, name.length() - GZIP_SUFFIX.length());
+      if (name.endsWith(DEFLATE_SUFFIX))
+         return name.substring(0, name.length() - DEFLATE_SUFFIX.length());
+      return name;
+   }
+
+   private static boolean
+   isExcluded(File file, File[] excludedFiles)
+   {
+      for (int i = 0; i < excludedFiles.length; i++)
+      {
+         if (file.equals(excludedFiles[i]))
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Returns whether the given name is that of a rolled file, i.e. it has the format of the rolled
+    * file names.
+    */
+   static boolean
+   isRolledFile(String name, MessageFormat rolledFileNameFormat)
+   {
+      try
+      {
+         // parse() accepts names with anything after the pattern, so the name is checked by
+         // formatting the parsed values again.
+         Object[] values = rolledFileNameFormat.parse(name);
+         return name.equals(rolledFileNameFormat.format(values));
+      }
+      catch (ParseException e)
+      {
+         return false;
+      }
+      catch (IllegalArgumentException e)
+      {
+         return false;
+      }
+   }
+
+   public void
+   run()
+   {
+      try
+      {
+         while (true)
+         {
+            Job job;
+            synchronized (this)
+            {
+               if (jobs.isEmpty())
+               {
+                  thread = null;
+                  return;
+               }
+               job = (Job) jobs.removeFirst();
+            }
+
+            try
+            {
+               job.run();
+            }
+            catch (Throwable t)
+            {
+               // Anything else thrown would stop the jobs behind this one from ever being done.
+               job.manager.reportError(
+                  "SimpleLog ERROR: Failed to compress or delete rolled log files", t, true);
+            }
+         }
+      }
+      finally
+      {
+         // If this thread is dying for any other reason, the next job must start a new one.
+         synchronized (this)
+         {
+            if (thread == Thread.currentThread())
+            {
+               thread = null;
+            }
+         }
+      }
+   }
+
+   /**
+    * Compresses the given file into its compressed file, and deletes it.
+    *
+    * @return the compressed file, or <code>null</code> if the file no longer exists.
+    */
+   private File
+   compressFile(File file, String method)
+   throws IOException
+   {
+      if (!file.exists())
+      {
+         // Compressed (or deleted) since it was added, e.g. by recover()
+         return null;
+      }
+
+      File compressedFile = getCompressedFile(file, method);
+      File partialFile = new File(compressedFile.getPath() + PARTIAL_SUFFIX);
+
+      InputStream in = new FileInputStream(file);
+      OutputStream out = null;
+      try
+      {
+         FileOutputStream fileOut = new FileOutputStream(partialFile);
+         out = fileOut;
+         out = method == GZIP ? (OutputStream) new GZIPOutputStream(fileOut, BUFFER_SIZE)
+                              : new DeflaterOutputStream(fileOut);
+
+         byte[] buffer = new byte[BUFFER_SIZE];
+         long start = System.currentTimeMillis();
+         int read;
+         while ((read = in.read(buffer)) != -1)
+         {
+            out.write(buffer, 0, read);
+            start = restIfNecessary(start);
+         }
+
+         out.close();
+         out = null;
+      }
+      finally
+      {
+         in.close();
+         if (out != null)
+         {
+            try
+            {
+               out.close();
+            }
+            catch (IOException e)
+            {
+               // The partial file is deleted next, so this doesn't matter.
+            }
+            partialFile.delete();
+         }
+      }
+
+      if (compressedFile.exists())
+         compressedFile.delete();
+
+      if (!partialFile.renameTo(compressedFile))
+      {
+         partialFile.delete();
+         throw new IOException("Failed to rename " + partialFile + " to " + compressedFile);
+      }
+
+      // The compressed file keeps the age of the rolled file, as retention goes by it
+      compressedFile.setLastModified(file.lastModified());
+      file.delete();
+      return compressedFile;
+   }
+
+   /**
+    * Adds a job to delete the given rolled files, along with any compressed copies of them. The
+    * files are deleted after any compression of them that is already waiting has finished.
+    *
+    * @param files the rolled files, with their uncompressed names
+    *
+    * @param manager the manager that rolled the files, which is told about errors
+    */
+   void
+   delete(File[] files, RolloverManager manager)
+   {
+      addJob(new DeleteJob(files, manager));
+   }
+
+   /**
+    * Deletes the given rolled file, along with any compressed copies of it.
+    *
+    * @param file the rolled file, with its uncompressed name
+    *
+    * @return <code>true</code> if nothing is left of the file.
+    */
+   static boolean
+   deleteRolledFile(File file)
+   {
+      boolean deleted = true;
+      File[] copies = {file, getCompressedFile(file, GZIP), getCompressedFile(file, DEFLATE)};
+      for (int i = 0; i < copies.length; i++)
+      {
+         if (copies[i].exists() && !copies[i].delete())
+         {
+            deleted = false;
+         }
+      }
+      return deleted;
+   }
+
+   /**
+    * Adds the time worked since the given time to the time worked and, once it reaches the
+    * {@link #WORK_PERIOD}, sleeps for the same amount of time.
+    *
+    * @return the time the thread starts working again.
+    */
+   private long
+   restIfNecessary(long start)
+   {
+      long now = System.currentTimeMillis();
+      workTime += now - start;
+      if (workTime < WORK_PERIOD)
+      {
+         return now;
+      }
+
+      try
+      {
+         Thread.sleep(workTime);
+      }
+      catch (InterruptedException e)
+      {
+         // Carry on compressing.
+      }
+      workTime = 0;
+      return System.currentTimeMillis();
+   }
+
+   /**
+    * Work waiting to be done by the compressor thread.
+    */
+   private abstract static class
+   Job
+   {
+      /** The manager that rolled the file(s). */
+      final RolloverManager manager;
+
+      Job(RolloverManager manager)
+      {
+         this.manager = manager;
+      }
+
+      abstract void
+      run()
+      throws IOException;
+   }
+
+   /**
+    * A file waiting to be compressed.
+    */
+   private final class
+   CompressJob
+   extends Job
+   {
+      private final File file;
+
+      private final String method;
+
+      CompressJob(File file, String method, RolloverManager manager)
+      {
+         super(manager);
+         this.file = file;
+         this.method = method;
+      }
+
+      void
+      run()
+      throws IOException
+      {
+         File compressedFile = compressFile(file, method);
+         if (compressedFile != null)
+         {
+            manager.rolledFileCompressed(file, compressedFile);
+         }
+      }
+   }
+
+   /**
+    * Rolled files waiting to be deleted.
+    */
+   private static final class
+   DeleteJob
+   extends Job
+   {
+      private final File[] files;
+
+      DeleteJob(File[] files, RolloverManager manager)
+      {
+         super(manager);
+         this.files = files;
+      }
+
+      void
+      run()
+      throws IOException
+      {
+         for (int i = 0; i < files.length; i++)
+         {
+            if (!deleteRolledFile(files[i]))
+            {
+               throw new IOException("Failed to delete rolled log file " + files[i]);
+            }
+         }
+      }
+   }
+
+   /**
+    * A directory waiting to be recovered.
+    */
+   private final class
+   RecoverJob
+   extends Job
+   {
+      private final File directory;
+
+      private final MessageFormat rolledFileNameFormat;
+
+      private final File[] excludedFiles;
+
+      private final String method;
+
+      RecoverJob(File directory, MessageFormat rolledFileNameFormat, File[] excludedFiles,
+                 String method, RolloverManager manager)
+      {
+         super(manager);
+         this.directory = directory;
+         this.rolledFileNameFormat = rolledFileNameFormat;
+         this.excludedFiles = excludedFiles;
+         this.method = method;
+      }
+
+      void
+      run()
+      {
+         recoverDirectory(directory, rolledFileNameFormat, excludedFiles, method, manager);
+      }
+   }
+}
@@ -15,6 +15,9 @@ package org.grlea.log.rollover;
 // See the License for the specific language governing permissions and
 // limitations under the License.
 
+import org.grlea.log.DirectFileWriter;
+import org.grlea.log.MappedFileWriter;
+
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -25,6 +28,7 @@ import java.io.RandomAccessFile;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.text.Format;
 import java.text.MessageFormat;
@@ -65,6 +69,21 @@ extends Writer
    /** The property key for the active log file name. */
    private static final String KEY_ACTIVE_LOG_FILE = KEY_PREFIX + "logFile";
 
+   /** The property key for how output is written to the active log file. */
+   private static final String KEY_ACTIVE_LOG_FILE_IO = KEY_ACTIVE_LOG_FILE + ".io";
+
+   /** The log file I/O value for writing through a charset encoder on the file's channel. */
+   private static final String LOG_FILE_IO_STREAM = "stream";
+
+   /** The log file I/O value for writing through a {@link MappedFileWriter}. */
+   private static final String LOG_FILE_IO_MAPPED = "mapped";
+
+   /** The log file I/O value for writing through a {@link DirectFileWriter}. */
+   private static final String LOG_FILE_IO_DIRECT = "direct";
+
+   /** The default log file I/O value. */
+   private static final String DEFAULT_LOG_FILE_IO = LOG_FILE_IO_STREAM;
+
    /** The property key for rolled log file names. */
    private static final String KEY_ROLLOVER_LOG_FILE = KEY_PREFIX + "rollover.filename";
 
@@ -77,23 +96,72 @@ extends Writer
    /** The default rollover period. */
    private static final String DEFAULT_ROLLOVER_PERIOD = "60";
 
-   /**
-    * A semaphore lock which, in concert which {@link #printerCount} is used to monitor the number
-    * of printing threads and to notify a thread waiting to change the writer.
-    */
-   private final Object PRINTERS_SEMAPHORE = new Object();
+   /** The property key for the way in which the active log file is rolled. */
+   private static final String KEY_ROLLOVER_METHOD = KEY_PREFIX + "rollover.method";
+
+   /** The rollover method that copies the active log file and truncates it. */
+   private static final String ROLLOVER_METHOD_COPY = "copy";
+
+   /** The rollover method that renames the active log file and opens a new one. */
+   private static final String ROLLOVER_METHOD_RENAME = "rename";
+
+   /** The default rollover method. */
+   private static final String DEFAULT_ROLLOVER_METHOD = ROLLOVER_METHOD_COPY;
+
+   /** The property key for the durability of the active log file's output. */
+   private static final String KEY_DURABILITY = KEY_PREFIX + "rollover.durability";
+
+   /** The property key for the maximum time between syncs of the active log file. */
+   private static final String KEY_DURABILITY_INTERVAL = KEY_PREFIX + "rollover.durability.interval";
+
+   /** The property key for the maximum amount of output between syncs of the active log file. */
+   private static final String KEY_DURABILITY_BYTES = KEY_PREFIX + "rollover.durability.bytes";
+
+   /** The durability under which every write is synchronously written to the storage device. */
+   private static final String DURABILITY_SYNC = "sync";
+
+   /** The durability under which output is buffered and synced periodically. */
+   private static final String DURABILITY_INTERVAL = "interval";
+
+   /** The durability under which output is handed to the operating system after every write. */
+   private static final String DURABILITY_OS = "os";
+
+   /** The default durability. */
+   private static final String DEFAULT_DURABILITY = DURABILITY_SYNC;
+
+   /** The property key for the compression of rolled log files. */
+   private static final String KEY_COMPRESS = KEY_PREFIX + "rollover.compress";
+
+   /** The compression value that leaves rolled log files uncompressed. */
+   private static final String COMPRESS_NONE = "none";
+
+   /** The property key for the most rolled log files kept. */
+   private static final String KEY_RETENTION_FILES = KEY_PREFIX + "rollover.retention.files";
+
+   /** The property key for the largest total size of the rolled log files kept. */
+   private static final String KEY_RETENTION_SIZE = KEY_PREFIX + "rollover.retention.size";
 
-   /** The number of threads currently executing a printing operation. */
-   private int printerCount = 0;
+   /** The property key for the most days rolled log files are kept for. */
+   private static final String KEY_RETENTION_DAYS = KEY_PREFIX + "rollover.retention.days";
+
+   /** The number of milliseconds in a day. */
+   private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+   /** The default maximum time (in milliseconds) between syncs. */
+   private static final String DEFAULT_DURABILITY_INTERVAL = "1000";
+
+   /** The default maximum amount of output between syncs. */
+   private static final String DEFAULT_DURABILITY_BYTES = "65536";
+
+   /** The line separator written after each line by {@link #writeLine}. */
+   private static final String LINE_SEP = System.getProperty("line.separator");
 
    /**
-    * Lock object used as a gate to prevent new printing threads from acquiring a printing semaphore
-    * when another thread is waiting to change the writer. Basically, it is used to ensure priority
-    * for the writer-changing thread.
+    * The current writer. It is only written to or changed while holding this writer's
+    * {@link #lock}, which is the lock that a <code>PrintWriter</code> printing to this
+    * <code>RolloverManager</code> already holds while it writes, so no line can be lost or split
+    * while the writer is changed.
     */
-   private final Object WRITER_CHANGE_GATE = new Object();
-
-   /** The current writer. */
    private Writer writer;
 
    /** The temporary writer, used while the rollover is occurring. */
@@ -129,12 +197,74 @@ extends Writer
    /** The timer used to prompt rollover to occur. */
    private Timer timer;
 
+   /** How output is written to the active log file. One of the <code>LOG_FILE_IO_</code> values. */
+   private String logFileIo;
+
+   /** The way the active log file is rolled. One of the <code>ROLLOVER_METHOD_</code> values. */
+   private String rolloverMethod;
+
+   /**
+    * The way rolled log files are compressed ({@link RolloverCompressor#GZIP} or
+    * {@link RolloverCompressor#DEFLATE}), or <code>null</code> if they are left uncompressed.
+    */
+   private String compression;
+
+   /** The most rolled log files kept. */
+   private int retentionFiles = Integer.MAX_VALUE;
+
+   /** The largest total size of the rolled log files kept. */
+   private long retentionSize = Long.MAX_VALUE;
+
+   /** The longest time (in milliseconds) rolled log files are kept for. */
+   private long retentionAge = Long.MAX_VALUE;
+
+   /**
+    * The index of the rolled log files, or <code>null</code> if there are no retention limits. It
+    * is read by the {@link RolloverCompressor}'s thread.
+    */
+   private volatile RolledFileIndex rolledFiles;
+
    /** The current unique file ID */
    private int uniqueFileId = 0;
 
+   /**
+    * The time the active log file was created, or <code>null</code> if it hasn't been read from
+    * the creation time file yet. It is kept here so that checking for rollover doesn't read the
+    * file every time.
+    */
+   private volatile Date activeFileCreationDate;
+
    /** An object to which errors should be reported. */
    private ErrorReporter errorReporter;
 
+   /** The durability of the output currently in use. One of the <code>DURABILITY_</code> values. */
+   private volatile String durability;
+
+   /** The maximum time (in milliseconds) between syncs when the durability is 'interval'. */
+   private long syncInterval;
+
+   /** The maximum amount of output between syncs when the durability is 'interval'. */
+   private long syncBytes;
+
+   /** The amount of output written since the active log file was last synced. */
+   private long unsyncedBytes = 0;
+
+   /**
+    * Held while checking whether to roll the active log file and rolling it, so that a rollover
+    * started by the timer and one started by a direct call can't run over the top of each other.
+    */
+   private final Object rolloverLock = new Object();
+
+   /**
+    * Whether {@link #close} has been called. Guarded by the {@link #rolloverLock}, so that a
+    * rollover check the timer had already started when it was cancelled doesn't use the closed
+    * file.
+    */
+   private boolean closed = false;
+
+   /** The timer task that periodically syncs the active log file, if there is one. */
+   private TimerTask syncTask;
+
    /**
     * Creates a new <code>RolloverManager</code>, configuring it with provided properties. The given
     * {@link ErrorReporter} object is retained and used to report errors for the life of the new
@@ -349,6 +479,86 @@ extends Writer
                                e.getMessage() + ")");
       }
 
+      // Rollover method
+      String newRolloverMethod = properties.getProperty(KEY_ROLLOVER_METHOD);
+      if (newRolloverMethod == null || newRolloverMethod.trim().length() == 0)
+         newRolloverMethod = DEFAULT_ROLLOVER_METHOD;
+
+      newRolloverMethod = newRolloverMethod.trim();
+      if (ROLLOVER_METHOD_COPY.equals(newRolloverMethod))
+         newRolloverMethod = ROLLOVER_METHOD_COPY;
+      else if (ROLLOVER_METHOD_RENAME.equals(newRolloverMethod))
+         newRolloverMethod = ROLLOVER_METHOD_RENAME;
+      else
+         throw new IOException("Invalid rollover method specified: " + newRolloverMethod);
+
+      // Log file I/O
+      String newLogFileIo = properties.getProperty(KEY_ACTIVE_LOG_FILE_IO);
+      if (newLogFileIo == null || newLogFileIo.trim().length() == 0)
+         newLogFileIo = DEFAULT_LOG_FILE_IO;
+
+      newLogFileIo = newLogFileIo.trim();
+      if (LOG_FILE_IO_STREAM.equals(newLogFileIo))
+         newLogFileIo = LOG_FILE_IO_STREAM;
+      else if (LOG_FILE_IO_MAPPED.equals(newLogFileIo))
+         newLogFileIo = LOG_FILE_IO_MAPPED;
+      else if (LOG_FILE_IO_DIRECT.equals(newLogFileIo))
+         newLogFileIo = LOG_FILE_IO_DIRECT;
+      else
+         throw new IOException("Invalid log file I/O specified: " + newLogFileIo);
+
+      // Durability
+      String newDurability = properties.getProperty(KEY_DURABILITY);
+      if (newDurability == null || newDurability.trim().length() == 0)
+         newDurability = DEFAULT_DURABILITY;
+
+      newDurability = newDurability.trim();
+      if (DURABILITY_SYNC.equals(newDurability))
+         newDurability = DURABILITY_SYNC;
+      else if (DURABILITY_INTERVAL.equals(newDurability))
+         newDurability = DURABILITY_INTERVAL;
+      else if (DURABILITY_OS.equals(newDurability))
+         newDurability = DURABILITY_OS;
+      else
+         throw new IOException("Invalid durability specified: " + newDurability);
+
+      // Compression
+      String newCompression = properties.getProperty(KEY_COMPRESS);
+      if (newCompression == null || newCompression.trim().length() == 0)
+         newCompression = COMPRESS_NONE;
+
+      newCompression = newCompression.trim();
+      if (COMPRESS_NONE.equals(newCompression))
+         newCompression = null;
+      else if (RolloverCompressor.GZIP.equals(newCompression))
+         newCompression = RolloverCompressor.GZIP;
+      else if (RolloverCompressor.DEFLATE.equals(newCompression))
+         newCompression = RolloverCompressor.DEFLATE;
+      else
+         throw new IOException("Invalid rollover compression specified: " + newCompression);
+
+      // Retention
+      int newRetentionFiles =
+         (int) Math.min(readPositiveLong(properties, KEY_RETENTION_FILES,
+                                         String.valueOf(Integer.MAX_VALUE), "retention files"),
+                        Integer.MAX_VALUE);
+      long newRetentionDays =
+         Math.min(readPositiveLong(properties, KEY_RETENTION_DAYS,
+                                   String.valueOf(Long.MAX_VALUE / MILLIS_PER_DAY),
+                                   "retention days"),
+                  Long.MAX_VALUE / MILLIS_PER_DAY);
+      String retentionSizeString = properties.getProperty(KEY_RETENTION_SIZE);
+      long newRetentionSize = Long.MAX_VALUE;
+      if (retentionSizeString != null && retentionSizeString.trim().length() != 0)
+         newRetentionSize = FileSizeRolloverStrategy.decodeFileSize(retentionSizeString.trim());
+
+      long newSyncInterval =
+         readPositiveLong(properties, KEY_DURABILITY_INTERVAL, DEFAULT_DURABILITY_INTERVAL,
+                          "durability interval");
+      long newSyncBytes =
+         readPositiveLong(properties, KEY_DURABILITY_BYTES, DEFAULT_DURABILITY_BYTES,
+                          "durability bytes");
+
       // Determine the current unique ID if one is required
       Format[] formats = newRolloverLogFileNameFormat.getFormatsByArgumentIndex();
       boolean uniqueIdUsedInPattern = formats.length > 1;
@@ -383,18 +593,70 @@ extends Writer
          uniqueFileId = maximumFileId + 1;
       }
 
+      // Finish any compression that was left undone, e.g. when the application last stopped
+      boolean compressionStarted = newCompression != null &&
+         (compression == null || !newRolloverDirectory.equals(rolloverDirectory) ||
+          !newRolloverLogFileNameFormat.equals(rolloverLogFileFormat));
+      File[] excludedFiles = {newActiveLogFile,
+                              getCreationTimeFile(newActiveLogFileDirectory, newActiveLogFile)};
+      if (compressionStarted && newRolloverDirectory.isDirectory())
+      {
+         RolloverCompressor.getInstance().recover(
+            newRolloverDirectory, (MessageFormat) newRolloverLogFileNameFormat.clone(),
+            excludedFiles, newCompression, this);
+      }
+
+      // Index the rolled files the first time there are retention limits
+      boolean retentionLimited = newRetentionFiles != Integer.MAX_VALUE ||
+                                 newRetentionSize != Long.MAX_VALUE ||
+                                 newRetentionDays != Long.MAX_VALUE / MILLIS_PER_DAY;
+      RolledFileIndex newRolledFiles = null;
+      if (retentionLimited)
+      {
+         if (rolledFiles != null && newRolloverDirectory.equals(rolloverDirectory) &&
+             newRolloverLogFileNameFormat.equals(rolloverLogFileFormat))
+            newRolledFiles = rolledFiles;
+         else
+            newRolledFiles = RolledFileIndex.build(newRolloverDirectory,
+                                                   newRolloverLogFileNameFormat, excludedFiles);
+      }
+
       rolloverDirectory = newRolloverDirectory;
       rolloverLogFileFormat = newRolloverLogFileNameFormat;
+      rolloverMethod = newRolloverMethod;
+      compression = newCompression;
+      synchronized (rolloverLock)
+      {
+         retentionFiles = newRetentionFiles;
+         retentionSize = newRetentionSize;
+         retentionAge = newRetentionDays * MILLIS_PER_DAY;
+         rolledFiles = newRolledFiles;
+         pruneRolledFiles();
+      }
 
       // Create/Open standard log file
-      if (!newActiveLogFile.equals(currentActiveLogFile))
+      // (The file has to be reopened when moving to or from 'sync' durability or changing the I/O.)
+      boolean durabilityChanged = newDurability != durability;
+      boolean syncModeChanged =
+         durability != null && (newDurability == DURABILITY_SYNC) != (durability == DURABILITY_SYNC);
+      boolean logFileIoChanged = logFileIo != null && newLogFileIo != logFileIo;
+      if (!newActiveLogFile.equals(currentActiveLogFile) || syncModeChanged || logFileIoChanged)
       {
-         openWriter(newActiveLogFile, newActiveLogFileDirectory);
+         openWriter(newActiveLogFile, newActiveLogFileDirectory, newDurability == DURABILITY_SYNC,
+                    newLogFileIo);
          currentActiveLogFile = newActiveLogFile;
          currentActiveLogFileDirectory = newActiveLogFileDirectory;
       }
 
+      synchronized (lock)
+      {
+         syncBytes = newSyncBytes;
+         durability = newDurability;
+         logFileIo = newLogFileIo;
+      }
+
       // Setup the timer
+      boolean timerCreated = false;
       if (timer == null || newRolloverPeriod != rolloverPeriod)
       {
          if (timer != null)
@@ -403,6 +665,57 @@ extends Writer
          timer = new Timer(true);
          timer.schedule(new RolloverTask(), 0, newRolloverPeriod * 1000L);
          rolloverPeriod = newRolloverPeriod;
+         timerCreated = true;
+      }
+
+      if (timerCreated || durabilityChanged || newSyncInterval != syncInterval)
+      {
+         if (syncTask != null)
+            syncTask.cancel();
+
+         syncTask = null;
+         if (newDurability == DURABILITY_INTERVAL)
+         {
+            syncTask = new SyncTask();
+            timer.schedule(syncTask, newSyncInterval, newSyncInterval);
+         }
+         syncInterval = newSyncInterval;
+      }
+   }
+
+   /**
+    * Reads a positive integer from the given properties.
+    *
+    * @param properties the properties to read the value from
+    *
+    * @param key the key of the value
+    *
+    * @param defaultValue the value to use if the property is not specified
+    *
+    * @param description a description of the value, used in any error message
+    *
+    * @throws IOException if the value is not a positive integer
+    */
+   private long
+   readPositiveLong(Properties properties, String key, String defaultValue, String description)
+   throws IOException
+   {
+      String valueString = properties.getProperty(key);
+      if (valueString == null || valueString.trim().length() == 0)
+         valueString = defaultValue;
+
+      valueString = valueString.trim();
+      try
+      {
+         long value = Long.parseLong(valueString);
+         if (value < 1)
+            throw new NumberFormatException("Must be greater than 0");
+         return value;
+      }
+      catch (NumberFormatException e)
+      {
+         throw new IOException("Invalid " + description + " specified: " + valueString + " (" +
+                               e.getMessage() + ")");
       }
    }
 
@@ -413,55 +726,81 @@ extends Writer
     * @param newActiveLogFile the file that will be opened as the active log file
     *
     * @param activeLogFileDirectory the directory in which the active log file resides
+    *
+    * @param synchronous whether every write to the file should be synchronously written to the
+    * storage device
+    *
+    * @param io how the file should be written. One of the <code>LOG_FILE_IO_</code> values.
     */
    private void
-   openWriter(File newActiveLogFile, File activeLogFileDirectory)
+   openWriter(File newActiveLogFile, File activeLogFileDirectory, boolean synchronous, String io)
    throws IOException
    {
-      synchronized (WRITER_CHANGE_GATE)
+      synchronized (lock)
       {
-         synchronized (PRINTERS_SEMAPHORE)
+         if (writer != tempWriter)
          {
-            if (printerCount != 0)
+            if (writer != null)
             {
                try
                {
-                  PRINTERS_SEMAPHORE.wait();
+                  writer.close();
                }
-               catch (InterruptedException e)
+               catch (IOException e)
                {
-                  throw new IllegalStateException("Interrupted while attempting to configure writer");
+                  throw new IOException("Failed to close open file: " + e);
                }
             }
 
-            if (writer != tempWriter)
-            {
-               if (writer != null)
-               {
-                  try
-                  {
-                     writer.close();
-                  }
-                  catch (IOException e)
-                  {
-                     throw new IOException("Failed to close open file: " + e);
-                  }
-               }
-
-               RandomAccessFile newFileOut = new RandomAccessFile(newActiveLogFile, "rws");
-               FileChannel channel = newFileOut.getChannel();
-               long initialChannelSize = channel.size();
-               newFileOut.seek(initialChannelSize);
-               Writer newFileWriter = Channels.newWriter(newFileOut.getChannel(), "UTF-8");
-               // Record the time the file was created if it is new
-               storeFileCreationTimeIfNecessary(activeLogFileDirectory, newActiveLogFile);
-               fileOut = newFileOut;
-               writer = newFileWriter;
-            }
+            openActiveFile(newActiveLogFile, activeLogFileDirectory, synchronous, io);
          }
       }
    }
 
+   /**
+    * Opens the specified file (creating it if necessary) and makes it the active log file, with
+    * output being appended to the end of it. The caller must hold the {@link #lock} and have closed
+    * the previous writer, if there was one.
+    *
+    * @param newActiveLogFile the file that will be opened as the active log file
+    *
+    * @param activeLogFileDirectory the directory in which the active log file resides
+    *
+    * @param synchronous whether every write to the file should be synchronously written to the
+    * storage device
+    *
+    * @param io how the file should be written. One of the <code>LOG_FILE_IO_</code> values.
+    */
+   private void
+   openActiveFile(File newActiveLogFile, File activeLogFileDirectory, boolean synchronous,
+                  String io)
+   throws IOException
+   {
+      Writer newFileWriter;
+      RandomAccessFile newFileOut;
+      if (io == LOG_FILE_IO_MAPPED)
+      {
+         // The MappedFileWriter finds the end of the file and does any syncing itself
+         newFileOut = new RandomAccessFile(newActiveLogFile, "rw");
+         newFileWriter = new MappedFileWriter(newFileOut, synchronous);
+      }
+      else
+      {
+         newFileOut = new RandomAccessFile(newActiveLogFile, synchronous ? "rws" : "rw");
+         FileChannel channel = newFileOut.getChannel();
+         long initialChannelSize = channel.size();
+         newFileOut.seek(initialChannelSize);
+         if (io == LOG_FILE_IO_DIRECT)
+            newFileWriter = new DirectFileWriter(channel);
+         else
+            newFileWriter = Channels.newWriter(channel, "UTF-8");
+      }
+      // Record the time the file was created if it is new
+      storeFileCreationTimeIfNecessary(activeLogFileDirectory, newActiveLogFile);
+      fileOut = newFileOut;
+      writer = newFileWriter;
+   }
+
    /**
     * Writes the creation time (which is the current time) of the active log file to a new file if
     * necessary (i.e. if the creation file doesn't already exist).
@@ -487,6 +826,12 @@ extends Writer
             FileWriter creationTimeFileOut = new FileWriter(creationTimeFile);
             creationTimeFileOut.write(String.valueOf(creationTime));
             creationTimeFileOut.close();
+            activeFileCreationDate = new Date(creationTime);
+         }
+         else
+         {
+            // The existing file is read when it's first needed
+            activeFileCreationDate = null;
          }
       }
       catch (IOException e)
@@ -558,43 +903,45 @@ extends Writer
    public void
    close()
    {
-      synchronized (WRITER_CHANGE_GATE)
+      synchronized (rolloverLock)
       {
-         synchronized (PRINTERS_SEMAPHORE)
+         closed = true;
+         timer.cancel();
+
+         synchronized (lock)
          {
-            if (printerCount != 0)
+            if (writer != tempWriter)
             {
                try
                {
-                  PRINTERS_SEMAPHORE.wait();
+                  syncOutput();
+                  writer.close();
                }
-               catch (InterruptedException e)
+               catch (IOException e)
                {
-                  throw new IllegalStateException("Interrupted while attempting to configure writer");
+                  reportError("Error syncing RolloverManager's file", e, true);
                }
             }
 
             writer = tempWriter;
-         }
-
-         timer.cancel();
 
-         try
-         {
-            writer.close();
-         }
-         catch (IOException e)
-         {
-            reportError("Error closing RolloverManager's writer", e, true);
-         }
+            try
+            {
+               writer.close();
+            }
+            catch (IOException e)
+            {
+               reportError("Error closing RolloverManager's writer", e, true);
+            }
 
-         try
-         {
-            fileOut.close();
-         }
-         catch (IOException e)
-         {
-            reportError("Error closing RolloverManager's file", e, true);
+            try
+            {
+               fileOut.close();
+            }
+            catch (IOException e)
+            {
+               reportError("Error closing RolloverManager's file", e, true);
+            }
          }
       }
    }
@@ -609,15 +956,16 @@ extends Writer
     * @param printExceptionType a flag indicating whether the type of the exception should be
     * printed.
     */
-   private void
-   reportError(String description, IOException e, boolean printExceptionType)
+   void
+   reportError(String description, Throwable e, boolean printExceptionType)
    {
       if (errorReporter != null)
          errorReporter.error(description, e, printExceptionType);
    }
 
    /**
-    * Does nothing, as the <code>RolloverManager</code> auto-flushes after every write()
+    * Does nothing, as the <code>RolloverManager</code> flushes its output according to its
+    * durability setting (see {@link #sync()}).
     */
    public void
    flush()
@@ -625,7 +973,9 @@ extends Writer
    }
 
    /**
-    * Writes the output to the current writer and flushes it.
+    * Writes the output to the current writer and, unless the durability is 'interval', flushes it.
+    * When the durability is 'interval', the output is synced once enough has been written since
+    * the last sync.
     *
     * @throws IOException if an error occurs writing to the current writer.
     */
@@ -633,39 +983,129 @@ extends Writer
    write(char cbuf[], int off, int len)
    throws IOException
    {
-      // Writer priority:
-      // Waiting for this lock prevents new printers from starting once a Writer Change starts
-      synchronized (WRITER_CHANGE_GATE)
-      {}
+      // When printing through a PrintWriter, the lock is already held, so this costs next to nothing
+      synchronized (lock)
+      {
+         writer.write(cbuf, off, len);
+         written(len);
+      }
+   }
 
-      // Increment the printers semaphore
-      synchronized (PRINTERS_SEMAPHORE)
+   /**
+    * Writes the given characters followed by a line separator, in the same way as
+    * {@link #write(char[],int,int) write()}. Simple Log calls this method directly (rather than
+    * printing through a <code>PrintWriter</code>) when the active log file is written through a
+    * {@link DirectFileWriter}, so that a line is written with the lock taken only once.
+    *
+    * @throws IOException if an error occurs writing to the current writer.
+    */
+   public void
+   writeLine(char cbuf[], int off, int len)
+   throws IOException
+   {
+      synchronized (lock)
       {
-         printerCount++;
+         if (writer instanceof DirectFileWriter)
+         {
+            ((DirectFileWriter) writer).writeLine(cbuf, off, len, false);
+         }
+         else
+         {
+            writer.write(cbuf, off, len);
+            writer.write(LINE_SEP);
+         }
+         written(len + LINE_SEP.length());
       }
+   }
 
-      try
+   /**
+    * Flushes the output just written unless the durability is 'interval', in which case it syncs
+    * the output once enough has been written since the last sync. The caller must hold the
+    * {@link #lock}.
+    */
+   private void
+   written(int len)
+   throws IOException
+   {
+      if (durability != DURABILITY_INTERVAL)
       {
-         writer.write(cbuf, off, len);
          writer.flush();
       }
-      finally
+      else
       {
-         // Decrement the printers semaphore and notify if we are last out
-         synchronized (PRINTERS_SEMAPHORE)
+         unsyncedBytes += len;
+         if (unsyncedBytes >= syncBytes)
          {
-            printerCount--;
-            if (printerCount == 0)
-            {
-               PRINTERS_SEMAPHORE.notifyAll();
-            }
+            syncOutput();
          }
       }
    }
 
+   /**
+    * <p>Flushes any buffered output and forces everything written so far to the storage device.</p>
+    *
+    * <p>When the durability is 'sync', this method does nothing, as every write is already written
+    * synchronously. Simple Log calls this method after printing a Fatal or Error message, so that
+    * these are never lost, whatever the durability.</p>
+    *
+    * @throws IOException if an error occurs flushing or syncing the active log file.
+    */
+   public void
+   sync()
+   throws IOException
+   {
+      if (durability == DURABILITY_SYNC)
+      {
+         return;
+      }
+
+      FileChannel channel;
+      synchronized (lock)
+      {
+         writer.flush();
+         unsyncedBytes = 0;
+         if (writer instanceof MappedFileWriter)
+         {
+            ((MappedFileWriter) writer).force();
+            return;
+         }
+         channel = fileOut.getChannel();
+      }
+
+      // Forcing outside the lock lets other threads keep printing while the device catches up
+      try
+      {
+         channel.force(false);
+      }
+      catch (ClosedChannelException e)
+      {
+         // The active log file has been closed (and so flushed) by a change of file.
+      }
+   }
+
+   /**
+    * Flushes the current writer and forces the active log file's content to the storage device.
+    * The caller must hold the {@link #lock}.
+    */
+   private void
+   syncOutput()
+   throws IOException
+   {
+      writer.flush();
+      if (writer instanceof MappedFileWriter)
+      {
+         ((MappedFileWriter) writer).force();
+      }
+      else if (durability != DURABILITY_SYNC)
+      {
+         fileOut.getChannel().force(false);
+      }
+      unsyncedBytes = 0;
+   }
+
    /**
     * Prompts the <code>RolloverManager</code> to check whether the log file needs to be rolled and
-    * to perform that rolling if necessary.
+    * to perform that rolling if necessary. Does nothing once the manager has been closed.
     *
     * @throws IOException if an error occurs while rolling the log file.
     */
@@ -673,92 +1113,267 @@ extends Writer
    rolloverIfNecessary()
    throws IOException
    {
-      long creationTime = readCreationTime();
-      FileChannel activeFileChannel = fileOut.getChannel();
-      long fileLength = activeFileChannel.size();
-      Date creationDate = new Date(creationTime);
+      synchronized (rolloverLock)
+      {
+         if (closed)
+            return;
 
-      boolean rolloverNow = strategy.rolloverNow(creationDate, fileLength);
+         Date creationDate = activeFileCreationDate;
+         if (creationDate == null)
+         {
+            creationDate = new Date(readCreationTime());
+            activeFileCreationDate = creationDate;
+         }
 
-      if (rolloverNow)
-      {
-         // Switch to the temporary writer
-         synchronized (WRITER_CHANGE_GATE)
+         long fileLength;
+         synchronized (lock)
          {
-            synchronized (PRINTERS_SEMAPHORE)
+            if (writer instanceof MappedFileWriter)
+               fileLength = ((MappedFileWriter) writer).length();
+            else
+               fileLength = fileOut.getChannel().size();
+         }
+
+         boolean rolloverNow = strategy.rolloverNow(creationDate, fileLength);
+
+         if (rolloverNow)
+         {
+            File rolloverFile = createRolloverFile();
+            if (rolloverMethod != ROLLOVER_METHOD_RENAME || !renameActiveFile(rolloverFile))
             {
-               if (printerCount != 0)
-               {
-                  try
-                  {
-                     PRINTERS_SEMAPHORE.wait();
-                  }
-                  catch (InterruptedException e)
-                  {
-                     throw new IllegalStateException("Interrupted while attempting to configure writer");
-                  }
-               }
+               copyActiveFile(rolloverFile);
+            }
 
-               writer = tempWriter;
+            if (rolledFiles != null)
+            {
+               rolledFiles.add(rolloverFile, System.currentTimeMillis());
+            }
+            if (compression != null)
+            {
+               RolloverCompressor.getInstance().compress(rolloverFile, compression, this);
             }
+            pruneRolledFiles();
          }
+      }
+   }
 
-         // Create the rollover file
-         int fileIdNumber = uniqueFileId++;
-         StringBuffer fileIdString = new StringBuffer();
-         fileIdString.append(Integer.toHexString(fileIdNumber).toUpperCase());
-         char[] zeroes = new char[8 - fileIdString.length()];
-         Arrays.fill(zeroes, '0');
-         fileIdString.insert(0, zeroes);
-         String rolloverFileName =
-            rolloverLogFileFormat.format(new Object[] {new Date(), fileIdString.toString()});
-         if (!rolloverDirectory.exists())
-            rolloverDirectory.mkdirs();
-         File rolloverFile = new File(rolloverDirectory, rolloverFileName);
-         FileOutputStream rolloverOut = new FileOutputStream(rolloverFile, false);
-
-         // Copy all the contents of the real file over to the rollover file
-         FileChannel rolloverChannel = rolloverOut.getChannel();
-         activeFileChannel.transferTo(0, activeFileChannel.size(), rolloverChannel);
-
-         // Close the rollover file
-         rolloverOut.close();
-
-         // Truncate the real file and create a new writer
-         activeFileChannel.truncate(0);
-         fileOut.seek(0);
-         Writer newFileWriter = Channels.newWriter(activeFileChannel, "UTF-8");
-
-         //Write the active file creation time
-         File creationTimeFile =
-            getCreationTimeFile(currentActiveLogFileDirectory, currentActiveLogFile);
-         creationTimeFile.delete();
-         storeFileCreationTimeIfNecessary(currentActiveLogFileDirectory, currentActiveLogFile);
+   /**
+    * Deletes the oldest rolled log files until those left are within the retention limits. When
+    * rolled log files are compressed, the files are deleted by the {@link RolloverCompressor}, once
+    * it has finished compressing them. The caller must hold the {@link #rolloverLock}.
+    */
+   private void
+   pruneRolledFiles()
+   {
+      if (rolledFiles == null)
+      {
+         return;
+      }
+
+      long oldestTime = System.currentTimeMillis() - retentionAge;
+      File[] expiredFiles = rolledFiles.prune(retentionFiles, retentionSize, oldestTime);
+      if (expiredFiles.length == 0)
+      {
+         return;
+      }
+
+      if (compression != null)
+      {
+         RolloverCompressor.getInstance().delete(expiredFiles, this);
+         return;
+      }
 
-         // Switch back to the active file writer
-         synchronized (WRITER_CHANGE_GATE)
+      for (int i = 0; i < expiredFiles.length; i++)
+      {
+         if (!RolloverCompressor.deleteRolledFile(expiredFiles[i]))
          {
-            synchronized (PRINTERS_SEMAPHORE)
+            reportError("SimpleLog ERROR: Failed to delete rolled log file",
+                        new IOException("Failed to delete " + expiredFiles[i]), true);
+         }
+      }
+   }
+
+   /**
+    * Records that the given rolled log file has been replaced by the given compressed file. Called
+    * by the {@link RolloverCompressor}.
+    */
+   void
+   rolledFileCompressed(File rolledFile, File compressedFile)
+   {
+      RolledFileIndex index = rolledFiles;
+      if (index != null)
+      {
+         index.compressed(rolledFile, compressedFile);
+      }
+   }
+
+   /**
+    * Works out the name of the next rollover file and creates the rollover directory if necessary.
+    *
+    * @return the file that the active log file should be rolled into
+    */
+   private File
+   createRolloverFile()
+   {
+      int fileIdNumber = uniqueFileId++;
+      StringBuffer fileIdString = new StringBuffer();
+      fileIdString.append(Integer.toHexString(fileIdNumber).toUpperCase());
+      char[] zeroes = new char[8 - fileIdString.length()];
+      Arrays.fill(zeroes, '0');
+      fileIdString.insert(0, zeroes);
+      String rolloverFileName =
+         rolloverLogFileFormat.format(new Object[] {new Date(), fileIdString.toString()});
+      if (!rolloverDirectory.exists())
+         rolloverDirectory.mkdirs();
+      return new File(rolloverDirectory, rolloverFileName);
+   }
+
+   /**
+    * Rolls the active log file by renaming it to the given rollover file and opening a new active
+    * log file. As nothing is copied, the writing threads are only held up for as long as it takes
+    * to close, rename and open the file.
+    *
+    * @param rolloverFile the file to move the active log file to
+    *
+    * @return <code>true</code> if the active log file was rolled, or <code>false</code> if it
+    * couldn't be renamed (e.g. because the rollover directory is on another file system), in which
+    * case the active log file has been reopened as it was.
+    *
+    * @throws IOException if the active log file can't be reopened.
+    */
+   private boolean
+   renameActiveFile(File rolloverFile)
+   throws IOException
+   {
+      synchronized (lock)
+      {
+         try
+         {
+            writer.close();
+            fileOut.close();
+         }
+         catch (IOException e)
+         {
+            reportError("Error closing active log file for rollover", e, true);
+         }
+
+         if (rolloverFile.exists())
+            rolloverFile.delete();
+
+         boolean renamed = currentActiveLogFile.renameTo(rolloverFile);
+         if (renamed)
+         {
+            // Deleting the creation time file makes the new active file record its creation time
+            getCreationTimeFile(currentActiveLogFileDirectory, currentActiveLogFile).delete();
+         }
+
+         openActiveFile(currentActiveLogFile, currentActiveLogFileDirectory,
+                        durability == DURABILITY_SYNC, logFileIo);
+         unsyncedBytes = 0;
+         return renamed;
+      }
+   }
+
+   /**
+    * Rolls the active log file by copying its contents into the given rollover file and truncating
+    * it. While the copy is made, output is written to a temporary buffer.
+    *
+    * @param rolloverFile the file to copy the active log file's contents into
+    *
+    * @throws IOException if an error occurs copying the file
+    */
+   private void
+   copyActiveFile(File rolloverFile)
+   throws IOException
+   {
+      Writer activeFileWriter;
+      FileChannel activeFileChannel;
+
+      // Switch to the temporary writer
+      synchronized (lock)
+      {
+         // Any output buffered in the active file writer must be in the file before it's copied
+         activeFileWriter = writer;
+         writer = tempWriter;
+         activeFileWriter.flush();
+         if (activeFileWriter instanceof MappedFileWriter)
+         {
+            // Closing cuts the padding off the end of the file
+            activeFileWriter.close();
+            fileOut = new RandomAccessFile(currentActiveLogFile, "rw");
+         }
+         activeFileChannel = fileOut.getChannel();
+      }
+
+      FileOutputStream rolloverOut = new FileOutputStream(rolloverFile, false);
+
+      // Copy all the contents of the real file over to the rollover file
+      FileChannel rolloverChannel = rolloverOut.getChannel();
+      activeFileChannel.transferTo(0, activeFileChannel.size(), rolloverChannel);
+
+      // Close the rollover file
+      rolloverOut.close();
+
+      // Truncate the real file and create a new writer
+      activeFileChannel.truncate(0);
+      fileOut.seek(0);
+      Writer newFileWriter;
+      if (activeFileWriter instanceof MappedFileWriter)
+         newFileWriter = new MappedFileWriter(fileOut, durability == DURABILITY_SYNC);
+      else if (activeFileWriter instanceof DirectFileWriter)
+         // It has just been flushed and writes at the channel's position, which is now 0. Keeping
+         // it keeps its pooled buffer, rather than taking another from the pool every rollover.
+         newFileWriter = activeFileWriter;
+      else
+         newFileWriter = Channels.newWriter(activeFileChannel, "UTF-8");
+
+      //Write the active file creation time
+      File creationTimeFile =
+         getCreationTimeFile(currentActiveLogFileDirectory, currentActiveLogFile);
+      creationTimeFile.delete();
+      storeFileCreationTimeIfNecessary(currentActiveLogFileDirectory, currentActiveLogFile);
+
+      // Switch back to the active file writer
+      synchronized (lock)
+      {
+         // Switch back to a real file writer.
+         writer = newFileWriter;
+         // Write the temporary contents to the file writer and clear it
+         StringBuffer tempBuffer = tempWriter.getBuffer();
+         newFileWriter.write(tempBuffer.toString());
+         tempBuffer.delete(0, tempBuffer.length());
+         if (durability != DURABILITY_INTERVAL)
+         {
+            newFileWriter.flush();
+         }
+      }
+   }
+
+   /**
+    * A {@link TimerTask} used to sync the active log file periodically when the durability is
+    * 'interval'.
+    */
+   private final class
+   SyncTask
+   extends TimerTask
+   {
+      public void
+      run()
+      {
+         try
+         {
+            synchronized (lock)
             {
-               if (printerCount != 0)
+               if (unsyncedBytes == 0)
                {
-                  try
-                  {
-                     PRINTERS_SEMAPHORE.wait();
-                  }
-                  catch (InterruptedException e)
-                  {
-                     throw new IllegalStateException("Interrupted while attempting to configure writer");
-                  }
+                  return;
                }
-
-               // Switch back to a real file writer.
-               writer = newFileWriter;
-               // Write the temporary contents to the file writer and clear it
-               StringBuffer tempBuffer = tempWriter.getBuffer();
-               newFileWriter.write(tempBuffer.toString());
-               tempBuffer.delete(0, tempBuffer.length());
             }
+            sync();
+         }
+         catch (IOException e)
+         {
+            reportError("SimpleLog ERROR: Failed to sync log file", e, true);
          }
       }
    }
@@ -64,6 +64,19 @@ implements RolloverStrategy
     */
    private boolean timeSetProgramatically = false;
 
+   /**
+    * The creation time of the log file that {@link #nextRolloverTime} was calculated for. This and
+    * {@link #nextRolloverTime} are only used while synchronized on this strategy, so that the two
+    * always go together even when rollover checks and configuration happen on different threads.
+    */
+   private long nextRolloverTimeFileCreated = Long.MIN_VALUE;
+
+   /**
+    * The time at which the log file created at {@link #nextRolloverTimeFileCreated} should be
+    * rolled over. It's kept so that the calendar arithmetic is only done once for each log file.
+    */
+   private long nextRolloverTime;
+
    /**
     * <p>Creates a new <code>SetTimeRolloverStrategy</code>.</p>
     *
@@ -90,7 +103,7 @@ implements RolloverStrategy
       setRolloverTime(timeZone, hour, minute);
    }
 
-   public void
+   public synchronized void
    configure(Map properties)
    throws IOException
    {
@@ -143,7 +156,7 @@ implements RolloverStrategy
     * @param hour the hour of the day at which to roll over (in 24 hour time, where 0 = midnight)
     * @param minute the minute of the hour to roll over
     */
-   public void
+   public synchronized void
    setRolloverTime(TimeZone timeZone, int hour, int minute)
    {
       setRolloverTimeInternal(timeZone, hour, minute);
@@ -152,7 +165,7 @@ implements RolloverStrategy
 
    /**
     * Sets the time at which a rollover should be requested. This method does not set
-    * {@link #timeSetProgramatically}.
+    * {@link #timeSetProgramatically}. The caller must be synchronized on this strategy.
     *
     * @param timeZone the time zone in which the time is being specified
     * @param hour the hour of the day at which to roll over (in 24 hour time, where 0 = midnight)
@@ -179,9 +192,10 @@ implements RolloverStrategy
       this.timeZone = timeZone;
       this.hour = hour;
       this.minute = minute;
+      this.nextRolloverTimeFileCreated = Long.MIN_VALUE;
    }
 
-   public boolean
+   public synchronized boolean
    rolloverNow(Date fileCreated, long fileLength)
    {
       if (timeZone == null)
@@ -189,34 +203,41 @@ implements RolloverStrategy
          throw new IllegalStateException("TimeOfDayRolloverStrategy has not been configured.");
       }
 
-      // Calculate the next rollover time
+      long fileCreatedTime = fileCreated.getTime();
+      if (fileCreatedTime != nextRolloverTimeFileCreated)
+      {
+         nextRolloverTime = calculateNextRolloverTime(fileCreated);
+         nextRolloverTimeFileCreated = fileCreatedTime;
+      }
+
+      // If now < nextRolloverTime, not ready to rollover yet
+      return System.currentTimeMillis() >= nextRolloverTime;
+   }
+
+   /**
+    * Calculates the first rollover time after the given log file creation time.
+    */
+   private long
+   calculateNextRolloverTime(Date fileCreated)
+   {
       Calendar rolloverCalendar = Calendar.getInstance(timeZone);
       rolloverCalendar.setTime(fileCreated);
       rolloverCalendar.set(Calendar.HOUR_OF_DAY, hour);
       rolloverCalendar.set(Calendar.MINUTE, minute);
       rolloverCalendar.set(Calendar.SECOND, 0);
       rolloverCalendar.set(Calendar.MILLISECOND, 0);
-      long nextRolloverTime = rolloverCalendar.getTime().getTime();
+      long rolloverTime = rolloverCalendar.getTime().getTime();
 
-      while (nextRolloverTime <= fileCreated.getTime())
+      while (rolloverTime <= fileCreated.getTime())
       {
          int day = rolloverCalendar.get(Calendar.DAY_OF_MONTH);
          rolloverCalendar.set(Calendar.DAY_OF_MONTH, day + 1);
-         nextRolloverTime = rolloverCalendar.getTime().getTime();
+         rolloverTime = rolloverCalendar.getTime().getTime();
       }
 
-//      System.out.println("nextRolloverTime = " +
-//                         new SimpleDateFormat("dd/MM HH:mm").format(new Date(nextRolloverTime)));
+//      System.out.println("rolloverTime = " +
+//                         new SimpleDateFormat("dd/MM HH:mm").format(new Date(rolloverTime)));
 
-      // If now < rolloverTime, not ready to rollover yet
-      long now = System.currentTimeMillis();
-      if (now < nextRolloverTime)
-      {
-         return false;
-      }
-      else
-      {
-         return true;
-      }
+      return rolloverTime;
    }
 }
\ No newline at end of file
@@ -0,0 +1,302 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.text.MessageFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Properties;
+
+/**
+ * <p>Tests that {@link Configuration}s are never changed once created and that
+ * {@link SimpleLog} replaces its configuration as a whole.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+public class
+TestOfConfigurationSnapshots
+extends TestCase
+{
+   public
+   TestOfConfigurationSnapshots(String name)
+   {
+      // Standard TestCase constructor. You shouldn't edit this.
+      super(name);
+   }
+
+   public void
+   testInitialConfiguration()
+   {
+      Configuration configuration = new Configuration(System.out);
+
+      assertNotNull("writer", configuration.getWriter());
+      assertSame("console", System.out, configuration.getConsole());
+      assertTrue("printWriterGoesToConsole", configuration.isPrintWriterGoingToConsole());
+      assertFalse("pipingOutputToConsole", configuration.isPipingOutputToConsole());
+      assertNull("lineWriter", configuration.getLineWriter());
+      assertNull("rolloverWriter", configuration.getRolloverWriter());
+      assertSame("defaultLevel", DebugLevel.L4_INFO, configuration.getDefaultLevel());
+      assertFalse("defaultTracing", configuration.isDefaultTracing());
+   }
+
+   public void
+   testWithMethodsLeaveOriginalUnchanged()
+   {
+      Configuration original = new Configuration(System.err);
+      PrintWriter originalWriter = original.getWriter();
+
+      PrintWriter newWriter = new PrintWriter(new StringWriter());
+      Configuration changed = original
+         .withWriter(newWriter)
+         .withPipingOutputToConsole(true)
+         .withDefaults(DebugLevel.L7_LUDICROUS, true);
+
+      assertSame("original writer", originalWriter, original.getWriter());
+      assertFalse("original pipingOutputToConsole", original.isPipingOutputToConsole());
+      assertSame("original defaultLevel", DebugLevel.L4_INFO, original.getDefaultLevel());
+      assertFalse("original defaultTracing", original.isDefaultTracing());
+
+      assertSame("changed writer", newWriter, changed.getWriter());
+      assertTrue("changed pipingOutputToConsole", changed.isPipingOutputToConsole());
+      assertSame("changed defaultLevel", DebugLevel.L7_LUDICROUS, changed.getDefaultLevel());
+      assertTrue("changed defaultTracing", changed.isDefaultTracing());
+      assertSame("changed console", System.err, changed.getConsole());
+   }
+
+   public void
+   testWithDateFormatUpdatesFormats()
+   {
+      LogFormat format = new LogFormat(new MessageFormat("{0}|{5}"));
+      Configuration original = new Configuration(System.err)
+         .withDateFormat(new SimpleDateFormat("'before'"))
+         .withFormats(format, format, format, format, format,
+                      format, format, format, format, format);
+
+      Configuration changed = original.withDateFormat(new SimpleDateFormat("'after'"));
+
+      Object[] data = {new Date(), null, null, null, null, "Message"};
+      assertSame("original format", format, original.getDebugFormat());
+      assertEquals("after|Message", changed.getDebugFormat().format(data));
+      assertEquals("after|Message", changed.getExitInstanceFormat().format(data));
+      assertEquals("'after'", ((SimpleDateFormat) changed.getDateFormat()).toPattern());
+      assertEquals("'before'", ((SimpleDateFormat) original.getDateFormat()).toPattern());
+   }
+
+   public void
+   testReloadReplacesConfiguration()
+   {
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.format.debug", "{5}");
+      SimpleLog log = new SimpleLog(properties);
+      LogFormat oldFormat = log.getDebugFormat();
+      StringWriter output = new StringWriter();
+      log.setWriter(new PrintWriter(output));
+
+      properties.setProperty("simplelog.format.debug", "[{5}]");
+      properties.setProperty("simplelog.defaultLevel", "Error");
+      log.reloadProperties();
+
+      assertNotSame("format", oldFormat, log.getDebugFormat());
+      assertSame("defaultLevel", DebugLevel.L2_ERROR, log.getDefaultLevel());
+
+      // The writer set programmatically is kept
+      new SimpleLogger(log, getClass()).error("Message");
+      assertEquals("[Message]" + System.getProperty("line.separator"), output.toString());
+   }
+
+   public void
+   testFormatAndWriterTakenFromSameConfiguration()
+   throws Exception
+   {
+      final SimpleLog log = new SimpleLog(new Properties());
+      StringWriter outputA = new StringWriter();
+      StringWriter outputB = new StringWriter();
+      final Configuration configurationA = createConfiguration(log, "A", outputA);
+      final Configuration configurationB = createConfiguration(log, "B", outputB);
+      final Field configurationField = SimpleLog.class.getDeclaredField("configuration");
+      configurationField.setAccessible(true);
+      configurationField.set(log, configurationA);
+
+      final boolean[] logging = {true};
+      Thread switcher = new Thread()
+      {
+         public void
+         run()
+         {
+            try
+            {
+               boolean useA = false;
+               while (logging[0])
+               {
+                  configurationField.set(log, useA ? configurationA : configurationB);
+                  useA = !useA;
+               }
+            }
+            catch (IllegalAccessException e)
+            {
+               e.printStackTrace();
+            }
+         }
+      };
+      switcher.start();
+
+      SimpleLogger logger = new SimpleLogger(log, getClass());
+      try
+      {
+         for (int i = 0; i < 100000; i++)
+         {
+            logger.info("Message");
+         }
+      }
+      finally
+      {
+         logging[0] = false;
+         switcher.join();
+      }
+
+      assertOnlyLinesStartingWith("A", outputA.toString());
+      assertOnlyLinesStartingWith("B", outputB.toString());
+   }
+
+   public void
+   testNewLoggersUseCompiledLevels()
+   throws Exception
+   {
+      Properties properties = new Properties();
+      properties.setProperty(getClass().getName(), "Error");
+      File file = writePropertiesFile(properties);
+      try
+      {
+         SimpleLog log = new SimpleLog(file.toURI().toURL());
+         LevelIndex levelIndex = log.getConfiguration().getLevelIndex();
+         assertNotNull("levelIndex", levelIndex);
+         assertSame("level", DebugLevel.L2_ERROR,
+                    new SimpleLogger(log, getClass()).getDebugLevel());
+
+         // Levels compiled from other properties are used by the next logger registered
+         Properties otherProperties = new Properties();
+         otherProperties.setProperty(getClass().getName(), "Verbose");
+         Field configurationField = SimpleLog.class.getDeclaredField("configuration");
+         configurationField.setAccessible(true);
+         configurationField.set(log, log.getConfiguration().withLevelIndex(
+            new LevelIndex(otherProperties, "#trace")));
+         assertSame("level from configuration", DebugLevel.L6_VERBOSE,
+                    new SimpleLogger(log, getClass()).getDebugLevel());
+
+         // Reloading unchanged properties doesn't compile the levels again
+         configurationField.set(log, log.getConfiguration().withLevelIndex(levelIndex));
+         log.reloadProperties();
+         assertSame("levelIndex after reload", levelIndex,
+                    log.getConfiguration().getLevelIndex());
+      }
+      finally
+      {
+         file.delete();
+      }
+   }
+
+   public void
+   testLoadedPropertiesIncludeInnerClassNames()
+   throws Exception
+   {
+      String innerClassName = getClass().getName() + "$Inner";
+      Properties properties = new Properties();
+      properties.setProperty(innerClassName, "Error");
+      File file = writePropertiesFile(properties);
+      try
+      {
+         SimpleLog log = new SimpleLog(file.toURI().toURL());
+
+         // The inner class name is in the properties before they are published
+         Method loadMethod = SimpleLog.class.getDeclaredMethod("loadProperties", new Class[0]);
+         loadMethod.setAccessible(true);
+         Properties loaded = (Properties) loadMethod.invoke(log, new Object[0]);
+         assertEquals("Error", loaded.getProperty(innerClassName.replace('$', '.')));
+
+         assertSame("level", DebugLevel.L2_ERROR,
+                    log.getConfiguration().getLevelIndex().getDebugLevel(
+                       innerClassName.replace('$', '.')));
+      }
+      finally
+      {
+         file.delete();
+      }
+   }
+
+   private File
+   writePropertiesFile(Properties properties)
+   throws IOException
+   {
+      File file = File.createTempFile("TestOfConfigurationSnapshots", ".properties");
+      OutputStream out = new FileOutputStream(file);
+      try
+      {
+         properties.store(out, null);
+      }
+      finally
+      {
+         out.close();
+      }
+      return file;
+   }
+
+   private Configuration
+   createConfiguration(SimpleLog log, String prefix, StringWriter output)
+   {
+      LogFormat format = new LogFormat(new MessageFormat(prefix + "|{5}"));
+      return log.getConfiguration()
+         .withWriter(new PrintWriter(output))
+         .withFormats(format, format, format, format, format,
+                      format, format, format, format, format);
+   }
+
+   private void
+   assertOnlyLinesStartingWith(String prefix, String output)
+   throws IOException
+   {
+      BufferedReader in = new BufferedReader(new StringReader(output));
+      String line;
+      while ((line = in.readLine()) != null)
+      {
+         assertEquals("Line printed with the other configuration's format", prefix + "|Message",
+                      line);
+      }
+   }
+
+   /**
+    * Returns a test suite that will automatically run all test methods in this
+    * class beginning with "test".
+    */
+   public static TestSuite
+   suite()
+   {
+      return new TestSuite(TestOfConfigurationSnapshots.class);
+   }
+}
@@ -0,0 +1,159 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Properties;
+
+/**
+ * <p>Tests {@link ConfigurationWatcher}, both with the file system's change notifier and polling
+ * the files.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+public class
+TestOfConfigurationWatcher
+extends TestCase
+{
+   /**
+    * How long (in milliseconds) to wait for a change to be reloaded when it is reported by the file
+    * system. This is less than the period between checks of the files, so the test fails if the
+    * change isn't reported.
+    */
+   private static final long NOTIFIED_RELOAD_TIMEOUT = 2 * 1000;
+
+   /** How long (in milliseconds) to wait for a change to be reloaded when the file is polled. */
+   private static final long POLLED_RELOAD_TIMEOUT = 5 * 1000;
+
+   private File file;
+
+   private Properties properties;
+
+   private SimpleLog log;
+
+   private SimpleLogger logger;
+
+   public
+   TestOfConfigurationWatcher(String name)
+   {
+      // Standard TestCase constructor. You shouldn't edit this.
+      super(name);
+   }
+
+   protected void
+   setUp()
+   throws IOException
+   {
+      file = File.createTempFile("simplelog", ".properties");
+      properties = new Properties();
+      properties.setProperty("org.grlea.log", "Warn");
+      log = new SimpleLog(properties);
+      logger = new SimpleLogger(log, TestOfConfigurationWatcher.class);
+   }
+
+   protected void
+   tearDown()
+   {
+      file.delete();
+      file = null;
+      properties = null;
+      log = null;
+      logger = null;
+   }
+
+   public void
+   testNotifiedChange()
+   throws Exception
+   {
+      ConfigurationWatcher.FileSystemNotifier notifier =
+         ConfigurationWatcher.FileSystemNotifier.create();
+      assertNotNull("This JVM has no WatchService", notifier);
+      checkChangeIsReloaded(new ConfigurationWatcher(notifier), NOTIFIED_RELOAD_TIMEOUT);
+   }
+
+   public void
+   testPolledChange()
+   throws Exception
+   {
+      checkChangeIsReloaded(new ConfigurationWatcher(null), POLLED_RELOAD_TIMEOUT);
+   }
+
+   public void
+   testUnchangedFileIsNotReloaded()
+   throws Exception
+   {
+      ConfigurationWatcher watcher = new ConfigurationWatcher(null);
+      watcher.watch(log, new File[] {file});
+
+      properties.setProperty("org.grlea.log", "Debug");
+      Thread.sleep(1500);
+      assertEquals(DebugLevel.L3_WARN, logger.getDebugLevel());
+   }
+
+   public void
+   testMissingFileIsWatched()
+   throws Exception
+   {
+      file.delete();
+      ConfigurationWatcher.FileSystemNotifier notifier =
+         ConfigurationWatcher.FileSystemNotifier.create();
+      checkChangeIsReloaded(new ConfigurationWatcher(notifier), NOTIFIED_RELOAD_TIMEOUT);
+   }
+
+   private void
+   checkChangeIsReloaded(ConfigurationWatcher watcher, long timeout)
+   throws Exception
+   {
+      watcher.watch(log, new File[] {file});
+
+      // The watcher only reloads the properties, so they can be changed before the file
+      properties.setProperty("org.grlea.log", "Debug");
+      Writer out = new FileWriter(file);
+      try
+      {
+         out.write("Changed\n");
+      }
+      finally
+      {
+         out.close();
+      }
+
+      long giveUpTime = System.currentTimeMillis() + timeout;
+      while (logger.getDebugLevel() != DebugLevel.L5_DEBUG &&
+             System.currentTimeMillis() < giveUpTime)
+      {
+         Thread.sleep(10);
+      }
+      assertEquals(DebugLevel.L5_DEBUG, logger.getDebugLevel());
+   }
+
+   /**
+    * Returns a test suite that will automatically run all test methods in this
+    * class beginning with "test".
+    */
+   public static TestSuite
+   suite()
+   {
+      return new TestSuite(TestOfConfigurationWatcher.class);
+   }
+}
@@ -0,0 +1,262 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * <p>Tests {@link ExceptionFormat}.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+public class
+TestOfExceptionFormat
+extends TestCase
+{
+   private static final String LINE_SEP = System.getProperty("line.separator");
+
+   public
+   TestOfExceptionFormat(String name)
+   {
+      // Standard TestCase constructor. You shouldn't edit this.
+      super(name);
+   }
+
+   public void
+   testSameAsPrintStackTrace()
+   {
+      Throwable t = createNestedException(3);
+      String expected = t + LINE_SEP + printStackTrace(t);
+      assertEquals(expected, new ExceptionFormat().format(t));
+   }
+
+   public void
+   testSuppressedExceptions()
+   throws Exception
+   {
+      Throwable t = createNestedException(1);
+      try
+      {
+         Throwable.class.getMethod("addSuppressed", new Class[] {Throwable.class})
+            .invoke(t, new Object[] {createNestedException(1)});
+      }
+      catch (NoSuchMethodException e)
+      {
+         // No suppressed exceptions in this JVM
+      }
+
+      String expected = t + LINE_SEP + printStackTrace(t);
+      assertEquals(expected, new ExceptionFormat().format(t));
+   }
+
+   public void
+   testCircularCause()
+   {
+      Exception first = new Exception("First");
+      Exception second = new Exception("Second", first);
+      first.initCause(second);
+
+      String expected = first + LINE_SEP + printStackTrace(first);
+      assertEquals(expected, new ExceptionFormat().format(first));
+   }
+
+   public void
+   testMaxFrames()
+   {
+      Throwable t = createNestedException(0);
+      int depth = t.getStackTrace().length;
+      assertTrue(depth > 3);
+
+      String[] lines = new ExceptionFormat(3, ExceptionFormat.NO_LIMIT).format(t).split(LINE_SEP);
+      assertEquals(6, lines.length);
+      assertEquals(t.toString(), lines[0]);
+      assertEquals(t.toString(), lines[1]);
+      assertTrue(lines[2].startsWith("\tat " + TestOfExceptionFormat.class.getName() + "."));
+      assertEquals("\t... " + (depth - 3) + " more", lines[5]);
+   }
+
+   public void
+   testMaxFramesWithCause()
+   {
+      Throwable t = createNestedException(1);
+      String[] lines = new ExceptionFormat(1, ExceptionFormat.NO_LIMIT).format(t).split(LINE_SEP);
+
+      // The cause shares all its frames but one with the exception
+      assertEquals(7, lines.length);
+      assertEquals("Caused by: " + t.getCause(), lines[4]);
+      assertTrue(lines[5].startsWith("\tat "));
+      assertTrue(lines[6].startsWith("\t... "));
+   }
+
+   public void
+   testMaxCauses()
+   {
+      Throwable t = createNestedException(4);
+      String formatted = new ExceptionFormat(ExceptionFormat.NO_LIMIT, 1).format(t);
+
+      assertTrue(formatted.indexOf("Caused by: " + t.getCause()) != -1);
+      assertTrue(formatted.indexOf("Caused by: " + t.getCause().getCause()) == -1);
+      assertTrue(formatted.endsWith("\t... 3 more causes" + LINE_SEP));
+   }
+
+   public void
+   testNoCauses()
+   {
+      Throwable t = createNestedException(1);
+      String formatted = new ExceptionFormat(ExceptionFormat.NO_LIMIT, 0).format(t);
+
+      assertTrue(formatted.indexOf("Caused by: ") == -1);
+      assertTrue(formatted.endsWith("\t... 1 more cause" + LINE_SEP));
+   }
+
+   public void
+   testRepeatedTraceIsReferenced()
+   {
+      ExceptionFormat format =
+         new ExceptionFormat(ExceptionFormat.NO_LIMIT, ExceptionFormat.NO_LIMIT,
+                             new StackTraceCache(60 * 1000, 10));
+
+      Throwable[] exceptions = new Throwable[3];
+      for (int i = 0; i < exceptions.length; i++)
+      {
+         // Created on the same line, so they have the same stack trace
+         exceptions[i] = createNestedException(2);
+      }
+
+      String expected = exceptions[0] + LINE_SEP + "[trace #1] " + printStackTrace(exceptions[0]);
+      assertEquals(expected, format.format(exceptions[0]));
+      assertEquals(exceptions[1] + LINE_SEP + "[trace #1 seen 2 times]" + LINE_SEP,
+                   format.format(exceptions[1]));
+      assertEquals(exceptions[2] + LINE_SEP + "[trace #1 seen 3 times]" + LINE_SEP,
+                   format.format(exceptions[2]));
+
+      // A different stack trace gets its own id
+      Throwable other = createNestedException(1);
+      assertTrue(format.format(other).startsWith(other + LINE_SEP + "[trace #2] " + other));
+   }
+
+   public void
+   testRepeatedTraceIsPrintedAfterPeriod()
+   throws Exception
+   {
+      ExceptionFormat format =
+         new ExceptionFormat(ExceptionFormat.NO_LIMIT, ExceptionFormat.NO_LIMIT,
+                             new StackTraceCache(50, 10));
+
+      Throwable[] exceptions = new Throwable[3];
+      for (int i = 0; i < exceptions.length; i++)
+      {
+         exceptions[i] = createNestedException(0);
+      }
+
+      format.format(exceptions[0]);
+      assertTrue(format.format(exceptions[1]).endsWith("[trace #1 seen 2 times]" + LINE_SEP));
+      Thread.sleep(100);
+      String expected = exceptions[2] + LINE_SEP + "[trace #1] " + printStackTrace(exceptions[2]);
+      assertEquals(expected, format.format(exceptions[2]));
+   }
+
+   public void
+   testOldTracesAreForgotten()
+   {
+      StackTraceCache cache = new StackTraceCache(60 * 1000, 2);
+      Throwable first = createNestedException(0);
+      Throwable second = createNestedException(1);
+      Throwable third = createNestedException(2);
+
+      assertFalse(cache.appendReference(first, new StringBuffer()));
+      assertFalse(cache.appendReference(second, new StringBuffer()));
+      assertTrue(cache.appendReference(first, new StringBuffer()));
+      assertFalse(cache.appendReference(third, new StringBuffer()));
+      assertEquals(2, cache.size());
+
+      // The second trace was the least recently seen, so it has been forgotten
+      StringBuffer reference = new StringBuffer();
+      assertFalse(cache.appendReference(second, reference));
+      assertEquals("[trace #4] ", reference.toString());
+      assertTrue(cache.appendReference(third, new StringBuffer()));
+   }
+
+   public void
+   testReplacementCacheCarriesOnIds()
+   {
+      StackTraceCache cache = new StackTraceCache(60 * 1000, 10);
+      cache.appendReference(createNestedException(0), new StringBuffer());
+      cache.appendReference(createNestedException(1), new StringBuffer());
+      assertTrue(cache.hasSettings(60 * 1000, 10));
+      assertFalse(cache.hasSettings(60 * 1000, 20));
+
+      StackTraceCache replacement = new StackTraceCache(60 * 1000, 20, cache);
+      StringBuffer reference = new StringBuffer();
+      assertFalse(replacement.appendReference(createNestedException(2), reference));
+      assertEquals("[trace #3] ", reference.toString());
+   }
+
+   public void
+   testNotAThrowable()
+   {
+      try
+      {
+         new ExceptionFormat().format("Not a Throwable");
+         fail("IllegalArgumentException expected");
+      }
+      catch (IllegalArgumentException e)
+      {
+         // Expected
+      }
+   }
+
+   /**
+    * Creates an exception with the given number of nested causes, each thrown from one method call
+    * deeper than the exception it causes.
+    */
+   private static Throwable
+   createNestedException(int causes)
+   {
+      if (causes == 0)
+      {
+         return new Exception("Cause 0");
+      }
+      return new RuntimeException("Cause " + causes, createNestedException(causes - 1));
+   }
+
+   /**
+    * Returns the output of the given exception's <code>printStackTrace()</code>, leaving out the
+    * module names that newer JVMs put in front of some class names.
+    */
+   private static String
+   printStackTrace(Throwable t)
+   {
+      StringWriter text = new StringWriter();
+      t.printStackTrace(new PrintWriter(text));
+      return text.toString().replaceAll("\tat [^ (/]+/", "\tat ");
+   }
+
+   /**
+    * Returns a test suite that will automatically run all test methods in this
+    * class beginning with "test".
+    */
+   public static TestSuite
+   suite()
+   {
+      return new TestSuite(TestOfExceptionFormat.class);
+   }
+}
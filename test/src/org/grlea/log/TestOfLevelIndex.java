@@ -0,0 +1,199 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Properties;
+
+/**
+ * <p>Tests {@link LevelIndex}.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+public class
+TestOfLevelIndex
+extends TestCase
+{
+   private Properties properties;
+
+   public
+   TestOfLevelIndex(String name)
+   {
+      // Standard TestCase constructor. You shouldn't edit this.
+      super(name);
+   }
+
+   protected void
+   setUp()
+   {
+      properties = new Properties();
+   }
+
+   protected void
+   tearDown()
+   {
+      properties = null;
+   }
+
+   public void
+   testNoMatch()
+   {
+      properties.setProperty("org.grlea", "Debug");
+      LevelIndex index = new LevelIndex(properties, "#trace");
+
+      assertNull(index.getDebugLevel("org.apache.Foo"));
+      assertNull(index.getDebugLevel("org.grleaFoo"));
+      assertNull(index.getDebugLevel("org"));
+      assertNull(index.getTracingFlag("org.grlea.Foo"));
+   }
+
+   public void
+   testDeepestPrefixWins()
+   {
+      properties.setProperty("org", "Fatal");
+      properties.setProperty("org.grlea", "Warn");
+      properties.setProperty("org.grlea.log.Foo", "Verbose");
+      LevelIndex index = new LevelIndex(properties, "#trace");
+
+      assertSame(DebugLevel.L1_FATAL, index.getDebugLevel("org"));
+      assertSame(DebugLevel.L1_FATAL, index.getDebugLevel("org.apache.Bar"));
+      assertSame(DebugLevel.L3_WARN, index.getDebugLevel("org.grlea"));
+      assertSame(DebugLevel.L3_WARN, index.getDebugLevel("org.grlea.log.Bar"));
+      assertSame(DebugLevel.L6_VERBOSE, index.getDebugLevel("org.grlea.log.Foo"));
+      assertSame(DebugLevel.L3_WARN, index.getDebugLevel("org.grlea.log.FooBar"));
+   }
+
+   public void
+   testInstanceNames()
+   {
+      properties.setProperty("org.grlea.Foo", "Warn");
+      properties.setProperty("org.grlea.Foo.instance", "Ludicrous");
+      LevelIndex index = new LevelIndex(properties, "#trace");
+
+      assertSame(DebugLevel.L3_WARN, index.getDebugLevel("org.grlea.Foo.other"));
+      assertSame(DebugLevel.L7_LUDICROUS, index.getDebugLevel("org.grlea.Foo.instance"));
+   }
+
+   public void
+   testNumbersAndNames()
+   {
+      properties.setProperty("a", "2");
+      properties.setProperty("b", " info ");
+      properties.setProperty("c", "DEBUG");
+      LevelIndex index = new LevelIndex(properties, "#trace");
+
+      assertSame(DebugLevel.L2_ERROR, index.getDebugLevel("a.X"));
+      assertSame(DebugLevel.L4_INFO, index.getDebugLevel("b.X"));
+      assertSame(DebugLevel.L5_DEBUG, index.getDebugLevel("c.X"));
+   }
+
+   public void
+   testInvalidLevelFallsBackToParent()
+   {
+      properties.setProperty("org.grlea", "Debug");
+      properties.setProperty("org.grlea.log", "Chatty");
+      properties.setProperty("other", "Chatty");
+      LevelIndex index = new LevelIndex(properties, "#trace");
+
+      assertSame(DebugLevel.L5_DEBUG, index.getDebugLevel("org.grlea.log.Foo"));
+      assertNull(index.getDebugLevel("other.Foo"));
+   }
+
+   public void
+   testTraceFlags()
+   {
+      properties.setProperty("org.grlea#trace", "true");
+      properties.setProperty("org.grlea.log.Foo#trace", "false");
+      properties.setProperty("org.grlea.log.Foo", "Debug");
+      LevelIndex index = new LevelIndex(properties, "#trace");
+
+      assertEquals(Boolean.TRUE, index.getTracingFlag("org.grlea.Bar"));
+      assertEquals(Boolean.FALSE, index.getTracingFlag("org.grlea.log.Foo"));
+      assertEquals(Boolean.TRUE, index.getTracingFlag("org.grlea.log.Foo$Inner"));
+
+      // Trace flags don't set levels and levels don't set trace flags
+      assertNull(index.getDebugLevel("org.grlea.Bar"));
+      assertSame(DebugLevel.L5_DEBUG, index.getDebugLevel("org.grlea.log.Foo"));
+   }
+
+   public void
+   testEmptyParts()
+   {
+      properties.setProperty("a..b", "Error");
+      properties.setProperty("a.", "Warn");
+      LevelIndex index = new LevelIndex(properties, "#trace");
+
+      assertSame(DebugLevel.L2_ERROR, index.getDebugLevel("a..b.C"));
+      assertSame(DebugLevel.L3_WARN, index.getDebugLevel("a..c"));
+      assertSame(DebugLevel.L3_WARN, index.getDebugLevel("a."));
+      assertNull(index.getDebugLevel("a.b"));
+   }
+
+   public void
+   testManySiblings()
+   {
+      for (int i = 0; i < 1000; i++)
+      {
+         properties.setProperty("org.grlea.C" + i, String.valueOf(i % 7 + 1));
+      }
+      LevelIndex index = new LevelIndex(properties, "#trace");
+
+      for (int i = 0; i < 1000; i++)
+      {
+         assertSame("C" + i, DebugLevel.fromInt(i % 7 + 1), index.getDebugLevel("org.grlea.C" + i));
+      }
+      assertNull(index.getDebugLevel("org.grlea.C1000"));
+   }
+
+   public void
+   testDefaultProperties()
+   {
+      properties.setProperty("org.grlea", "Warn");
+      Properties withDefaults = new Properties(properties);
+      withDefaults.setProperty("org.grlea.log", "Error");
+      LevelIndex index = new LevelIndex(withDefaults, "#trace");
+
+      assertSame(DebugLevel.L3_WARN, index.getDebugLevel("org.grlea.Foo"));
+      assertSame(DebugLevel.L2_ERROR, index.getDebugLevel("org.grlea.log.Foo"));
+   }
+
+   public void
+   testHasSettingFor()
+   {
+      properties.setProperty("org.grlea.log", "Chatty");
+      properties.setProperty("org.apache#trace", "true");
+      LevelIndex index = new LevelIndex(properties, "#trace");
+
+      assertTrue(index.hasSettingFor("org.grlea.log"));
+      assertTrue(index.hasSettingFor("org.grlea.log.Foo"));
+      assertTrue(index.hasSettingFor("org.apache.Foo"));
+      assertFalse(index.hasSettingFor("org.grlea.Foo"));
+      assertFalse(index.hasSettingFor("org"));
+   }
+
+   /**
+    * Returns a test suite that will automatically run all test methods in this
+    * class beginning with "test".
+    */
+   public static TestSuite
+   suite()
+   {
+      return new TestSuite(TestOfLevelIndex.class);
+   }
+}
@@ -0,0 +1,141 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.math.BigDecimal;
+import java.text.MessageFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * <p>Tests that {@link LogFormat} produces exactly the same output as the {@link MessageFormat} it
+ * was compiled from.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+public class
+TestOfLogFormat
+extends TestCase
+{
+   private static final Object[] DATA =
+      {new Date(1152792000123L), "main", "TestOfLogFormat", "instance", DebugLevel.L4_INFO,
+       "Message", Integer.valueOf("12345")};
+
+   public
+   TestOfLogFormat(String name)
+   {
+      // Standard TestCase constructor. You shouldn't edit this.
+      super(name);
+   }
+
+   public void
+   testDefaultFormats()
+   {
+      assertSameOutput("{0}|   |{1}|{2}|{5}", DATA);
+      assertSameOutput("{0}|---|{1}|{2}|{5}|{6}", DATA);
+      assertSameOutput("{0}|***|{1}|{2}[{3}]|{5}", DATA);
+   }
+
+   public void
+   testLiteralsOnly()
+   {
+      assertSameOutput("", DATA);
+      assertSameOutput("No arguments at all", DATA);
+   }
+
+   public void
+   testQuotedText()
+   {
+      assertSameOutput("'{0}' is ''{1}''", DATA);
+   }
+
+   public void
+   testRepeatedAndAdjacentArguments()
+   {
+      assertSameOutput("{5}{5}{1}{2}{0}{0}", DATA);
+   }
+
+   public void
+   testMissingArguments()
+   {
+      assertSameOutput("{5}|{8}|{6}", DATA);
+      assertSameOutput("{5}|{6}", new Object[] {null, null, null, null, null, "Only five"});
+   }
+
+   public void
+   testNullArguments()
+   {
+      assertSameOutput("{0}|{5}|{6,number}", new Object[] {null, null, null, null, null, null, null});
+   }
+
+   public void
+   testDefaultFormatsForNumbersAndDates()
+   {
+      Object[] data = {null, null, null, null, null, new BigDecimal("12345.678"), new Date(0)};
+      assertSameOutput("{5}|{6}", data);
+   }
+
+   public void
+   testSubFormats()
+   {
+      assertSameOutput("{6,number,#.00}|{0,time}|{6,number,integer}", DATA);
+      assertSameOutput("{6,choice,0#none|1#one|1<many ({6})}", DATA);
+   }
+
+   public void
+   testDateFormatReplaced()
+   {
+      MessageFormat messageFormat = new MessageFormat("{0}|{5}");
+      LogFormat logFormat =
+         new LogFormat(messageFormat).withDateFormat(new SimpleDateFormat("yyyy-MM-dd HH:mm"));
+
+      messageFormat.setFormatByArgumentIndex(0, new SimpleDateFormat("yyyy-MM-dd HH:mm"));
+      assertEquals("output", messageFormat.format(DATA), logFormat.format(DATA));
+   }
+
+   public void
+   testAppendsToBuffer()
+   {
+      LogFormat logFormat = new LogFormat(new MessageFormat("{1}|{5}"));
+      StringBuffer buffer = new StringBuffer("Existing|");
+      logFormat.format(DATA, buffer);
+      assertEquals("buffer", "Existing|main|Message", buffer.toString());
+   }
+
+   private void
+   assertSameOutput(String pattern, Object[] data)
+   {
+      MessageFormat messageFormat = new MessageFormat(pattern);
+      messageFormat.setFormatByArgumentIndex(0, new SimpleDateFormat("d/MM/yy H:mm:ss.SSS"));
+      String expected = messageFormat.format(data);
+      String actual = new LogFormat(messageFormat).format(data);
+      assertEquals("output of '" + pattern + "'", expected, actual);
+   }
+
+   /**
+    * Returns a test suite that will automatically run all test methods in this
+    * class beginning with "test".
+    */
+   public static TestSuite
+   suite()
+   {
+      return new TestSuite(TestOfLogFormat.class);
+   }
+}
@@ -0,0 +1,216 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * <p>Tests {@link LoggerRegistry}.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+public class
+TestOfLoggerRegistry
+extends TestCase
+{
+   /** The number of times to run the garbage collector while waiting for loggers to be collected. */
+   private static final int GC_ATTEMPTS = 20;
+
+   private SimpleLog log;
+
+   private LoggerRegistry registry;
+
+   public
+   TestOfLoggerRegistry(String name)
+   {
+      // Standard TestCase constructor. You shouldn't edit this.
+      super(name);
+   }
+
+   protected void
+   setUp()
+   {
+      log = new SimpleLog(new Properties());
+      registry = new LoggerRegistry();
+   }
+
+   protected void
+   tearDown()
+   {
+      log = null;
+      registry = null;
+   }
+
+   public void
+   testAddAndVisit()
+   {
+      List loggers = new ArrayList();
+      for (int i = 0; i < 100; i++)
+      {
+         SimpleLogger logger =
+            new SimpleLogger(log, TestOfLoggerRegistry.class, Integer.valueOf(String.valueOf(i)));
+         loggers.add(logger);
+         RecordingVisitor added = new RecordingVisitor();
+         registry.add(logger, added);
+         assertEquals(1, added.visited.size());
+         assertTrue(added.visited.contains(logger));
+      }
+
+      RecordingVisitor visitor = new RecordingVisitor();
+      registry.visitAll(visitor);
+      assertEquals(new HashSet(loggers), visitor.visited);
+      assertEquals(100, registry.size());
+      assertFalse(registry.isEmpty());
+   }
+
+   public void
+   testEmpty()
+   {
+      assertTrue(registry.isEmpty());
+      RecordingVisitor visitor = new RecordingVisitor();
+      registry.visitAll(visitor);
+      assertTrue(visitor.visited.isEmpty());
+   }
+
+   public void
+   testCollectedInstanceLoggersAreRemoved()
+   throws Exception
+   {
+      SimpleLogger kept = new SimpleLogger(log, TestOfLoggerRegistry.class, "kept");
+      registry.add(kept, new RecordingVisitor());
+      for (int i = 0; i < 1000; i++)
+      {
+         Integer instanceId = Integer.valueOf(String.valueOf(i));
+         registry.add(new SimpleLogger(log, TestOfLoggerRegistry.class, instanceId),
+                      new RecordingVisitor());
+      }
+
+      for (int i = 0; i < GC_ATTEMPTS && registry.size() > 1; i++)
+      {
+         System.gc();
+         Thread.sleep(50);
+         registry.removeCollectedLoggers();
+      }
+
+      assertEquals(1, registry.size());
+      RecordingVisitor visitor = new RecordingVisitor();
+      registry.visitAll(visitor);
+      assertTrue(visitor.visited.contains(kept));
+   }
+
+   public void
+   testOtherLoggersAreNotCollected()
+   throws Exception
+   {
+      for (int i = 0; i < 10; i++)
+      {
+         registry.add(new SimpleLogger(log, TestOfLoggerRegistry.class), new RecordingVisitor());
+      }
+
+      for (int i = 0; i < 3; i++)
+      {
+         System.gc();
+         Thread.sleep(50);
+         registry.removeCollectedLoggers();
+      }
+
+      assertEquals(10, registry.size());
+      RecordingVisitor visitor = new RecordingVisitor();
+      registry.visitAll(visitor);
+      assertEquals(10, visitor.visited.size());
+   }
+
+   public void
+   testConcurrentAdds()
+   throws Exception
+   {
+      final int threadCount = 8;
+      final int loggersPerThread = 1000;
+      final List loggers = new ArrayList();
+      Thread[] threads = new Thread[threadCount];
+      for (int i = 0; i < threadCount; i++)
+      {
+         final int threadIndex = i;
+         threads[i] = new Thread()
+         {
+            public void
+            run()
+            {
+               for (int j = 0; j < loggersPerThread; j++)
+               {
+                  SimpleLogger logger = new SimpleLogger(log, TestOfLoggerRegistry.class,
+                                                         threadIndex + "." + j);
+                  synchronized (loggers)
+                  {
+                     loggers.add(logger);
+                  }
+                  registry.add(logger, new RecordingVisitor());
+               }
+            }
+         };
+         threads[i].start();
+      }
+
+      // Visiting while the loggers are being added mustn't fail
+      while (threads[0].isAlive())
+      {
+         registry.visitAll(new RecordingVisitor());
+      }
+      for (int i = 0; i < threadCount; i++)
+      {
+         threads[i].join();
+      }
+
+      RecordingVisitor visitor = new RecordingVisitor();
+      registry.visitAll(visitor);
+      assertEquals(threadCount * loggersPerThread, visitor.visited.size());
+      assertEquals(new HashSet(loggers), visitor.visited);
+   }
+
+   /**
+    * A visitor that records the loggers it is passed.
+    */
+   private static final class
+   RecordingVisitor
+   implements LoggerRegistry.Visitor
+   {
+      final Set visited = new HashSet();
+
+      public void
+      visit(SimpleLogger logger)
+      {
+         visited.add(logger);
+      }
+   }
+
+   /**
+    * Returns a test suite that will automatically run all test methods in this
+    * class beginning with "test".
+    */
+   public static TestSuite
+   suite()
+   {
+      return new TestSuite(TestOfLoggerRegistry.class);
+   }
+}
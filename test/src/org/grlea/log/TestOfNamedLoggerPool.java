@@ -0,0 +1,119 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+/**
+ * <p>Tests {@link NamedLoggerPool}.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+public class
+TestOfNamedLoggerPool
+extends TestCase
+{
+   private static final String SUPRESS_WARNINGS_PROPERTY = "org.grlea.log.test.supressWarnings";
+
+   private int created;
+
+   private NamedLoggerPool pool;
+
+   public
+   TestOfNamedLoggerPool(String name)
+   {
+      // Standard TestCase constructor. You shouldn't edit this.
+      super(name);
+   }
+
+   protected void
+   setUp()
+   {
+      created = 0;
+      pool = new NamedLoggerPool(new NamedLoggerPool.Factory()
+      {
+         public Object
+         create(SimpleLogger logger, String loggerName)
+         {
+            created++;
+            return logger;
+         }
+      }, TestOfNamedLoggerPool.class, SUPRESS_WARNINGS_PROPERTY, "Test");
+   }
+
+   protected void
+   tearDown()
+   {
+      pool = null;
+   }
+
+   public void
+   testClassNameUsedAsSource()
+   {
+      SimpleLogger logger = (SimpleLogger) pool.get(String.class.getName());
+      assertSame(String.class, logger.getSourceClass());
+      assertNull(logger.getInstanceID());
+   }
+
+   public void
+   testSameObjectReturnedForSameName()
+   {
+      Object first = pool.get(String.class.getName());
+      assertSame(first, pool.get(String.class.getName()));
+      assertNotSame(first, pool.get(Integer.class.getName()));
+      assertEquals(2, created);
+   }
+
+   public void
+   testOtherNamesUseDefaultClass()
+   {
+      PrintStream originalErr = System.err;
+      ByteArrayOutputStream err = new ByteArrayOutputStream();
+      System.setErr(new PrintStream(err, true));
+      try
+      {
+         SimpleLogger logger = (SimpleLogger) pool.get("NotAClassName");
+         assertSame(logger, pool.get("NotAClassName"));
+         assertSame(TestOfNamedLoggerPool.class, logger.getSourceClass());
+         assertEquals("NotAClassName", logger.getInstanceID());
+      }
+      finally
+      {
+         System.setErr(originalErr);
+      }
+
+      // Warned about once
+      String warning = "WARNING: Simple Log (Test): Failed to find class";
+      String warnings = err.toString();
+      assertTrue(warnings, warnings.startsWith(warning));
+      assertEquals(warnings, -1, warnings.indexOf(warning, 1));
+   }
+
+   /**
+    * Returns a test suite that will automatically run all test methods in this
+    * class beginning with "test".
+    */
+   public static TestSuite
+   suite()
+   {
+      return new TestSuite(TestOfNamedLoggerPool.class);
+   }
+}
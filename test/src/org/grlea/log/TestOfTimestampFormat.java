@@ -0,0 +1,150 @@
+package org.grlea.log;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * <p>Tests that {@link TimestampFormat} produces exactly the same output as the
+ * <code>DateFormat</code> it uses.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+public class
+TestOfTimestampFormat
+extends TestCase
+{
+   /** A time just before the end of a second. */
+   private static final long START_TIME = 1152792000990L;
+
+   public
+   TestOfTimestampFormat(String name)
+   {
+      // Standard TestCase constructor. You shouldn't edit this.
+      super(name);
+   }
+
+   public void
+   testDefaultPattern()
+   {
+      assertSameOutput("EEE yyyy/MM/dd HH:mm:ss.SSS");
+   }
+
+   public void
+   testPatternWithoutMillis()
+   {
+      assertSameOutput("yyyy-MM-dd HH:mm:ss");
+   }
+
+   public void
+   testWideMillis()
+   {
+      assertSameOutput("HH:mm:ss.SSSSS");
+   }
+
+   public void
+   testNarrowMillis()
+   {
+      assertSameOutput("HH:mm:ss.S");
+      assertSameOutput("HH:mm:ss.SS");
+   }
+
+   public void
+   testRepeatedMillis()
+   {
+      assertSameOutput("SSS HH:mm:ss.SSS");
+   }
+
+   public void
+   testQuotedMillis()
+   {
+      assertSameOutput("'SS' HH:mm:ss.SSS 'S'");
+   }
+
+   public void
+   testMillisAtStartAndEnd()
+   {
+      assertSameOutput("SSS");
+      assertSameOutput("yyyyMMddHHmmssSSS");
+   }
+
+   public void
+   testTimeZone()
+   {
+      SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+      dateFormat.setTimeZone(TimeZone.getTimeZone("Australia/Sydney"));
+      assertSameOutput(dateFormat);
+   }
+
+   public void
+   testTimesBeforeEpoch()
+   {
+      SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+      TimestampFormat timestampFormat = new TimestampFormat((DateFormat) dateFormat.clone());
+      for (long time = -2001; time <= 1001; time += 7)
+      {
+         assertSameOutput(dateFormat, timestampFormat, time);
+      }
+   }
+
+   public void
+   testOtherDateFormat()
+   {
+      assertSameOutput(DateFormat.getDateTimeInstance(DateFormat.FULL, DateFormat.FULL));
+   }
+
+   private void
+   assertSameOutput(String pattern)
+   {
+      assertSameOutput(new SimpleDateFormat(pattern));
+   }
+
+   private void
+   assertSameOutput(DateFormat dateFormat)
+   {
+      TimestampFormat timestampFormat = new TimestampFormat((DateFormat) dateFormat.clone());
+      for (long time = START_TIME; time < START_TIME + 2500; time += 3)
+      {
+         assertSameOutput(dateFormat, timestampFormat, time);
+      }
+      // Going backwards in time must work, too
+      assertSameOutput(dateFormat, timestampFormat, START_TIME);
+   }
+
+   private void
+   assertSameOutput(DateFormat dateFormat, TimestampFormat timestampFormat, long time)
+   {
+      Date date = new Date(time);
+      assertEquals("output for " + time, dateFormat.format(date), timestampFormat.format(date));
+   }
+
+   /**
+    * Returns a test suite that will automatically run all test methods in this
+    * class beginning with "test".
+    */
+   public static TestSuite
+   suite()
+   {
+      return new TestSuite(TestOfTimestampFormat.class);
+   }
+}
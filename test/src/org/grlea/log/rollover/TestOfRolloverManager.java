@@ -16,15 +16,35 @@ package org.grlea.log.rollover;
 // limitations under the License.
 
 
+import org.grlea.log.SimpleLog;
+import org.grlea.log.SimpleLogger;
+import org.grlea.log.test.ExitingLogGenerator;
+
 import junit.framework.TestCase;
 
-import java.io.IOException;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.TimeZone;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
  * <p>Tests the public interface of {@link RolloverManager}.</p>
@@ -38,6 +58,27 @@ extends TestCase
 {
    private static final String KEY_ROLLOVER = "simplelog.rollover";
 
+   private static final String KEY_ROLLOVER_METHOD = "simplelog.rollover.method";
+
+   private static final String KEY_DURABILITY = "simplelog.rollover.durability";
+
+   private static final String KEY_DURABILITY_INTERVAL = "simplelog.rollover.durability.interval";
+
+   private static final String KEY_DURABILITY_BYTES = "simplelog.rollover.durability.bytes";
+
+   private static final String KEY_COMPRESS = "simplelog.rollover.compress";
+
+   private static final String KEY_RETENTION_FILES = "simplelog.rollover.retention.files";
+
+   private static final String KEY_RETENTION_SIZE = "simplelog.rollover.retention.size";
+
+   private static final String KEY_RETENTION_DAYS = "simplelog.rollover.retention.days";
+
+   /** The longest time (in milliseconds) to wait for the compressor thread. */
+   private static final long COMPRESSION_TIMEOUT = 10 * 1000;
+
+   private static final File DURABILITY_TEST_FILE = new File("durability.log");
+
    public
    TestOfRolloverManager(String name)
    {
@@ -225,6 +266,951 @@ extends TestCase
       rolloverDirectory.delete();
    }
 
+   public void
+   testInvalidDurabilityNotAllowed()
+   {
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.logFile", "foo.log");
+      properties.setProperty(KEY_ROLLOVER, "fileSize");
+      properties.setProperty(KEY_DURABILITY, "sometimes");
+      try
+      {
+         new RolloverManager(properties, null);
+         fail("IOException expected");
+      }
+      catch (IOException e)
+      {}
+   }
+
+   public void
+   testInvalidDurabilityIntervalNotAllowed()
+   {
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.logFile", "foo.log");
+      properties.setProperty(KEY_ROLLOVER, "fileSize");
+      properties.setProperty(KEY_DURABILITY, "interval");
+      properties.setProperty(KEY_DURABILITY_INTERVAL, "0");
+      try
+      {
+         new RolloverManager(properties, null);
+         fail("IOException expected");
+      }
+      catch (IOException e)
+      {}
+   }
+
+   public void
+   testSyncDurabilityWritesImmediately()
+   throws Exception
+   {
+      RolloverManager rollover = createDurabilityTestManager("sync");
+      try
+      {
+         rollover.write("Hello");
+         assertEquals(5, DURABILITY_TEST_FILE.length());
+      }
+      finally
+      {
+         closeDurabilityTestManager(rollover);
+      }
+   }
+
+   public void
+   testOsDurabilityWritesImmediately()
+   throws Exception
+   {
+      RolloverManager rollover = createDurabilityTestManager("os");
+      try
+      {
+         rollover.write("Hello");
+         assertEquals(5, DURABILITY_TEST_FILE.length());
+      }
+      finally
+      {
+         closeDurabilityTestManager(rollover);
+      }
+   }
+
+   public void
+   testIntervalDurabilityBuffersUntilSynced()
+   throws Exception
+   {
+      RolloverManager rollover = createDurabilityTestManager("interval");
+      try
+      {
+         rollover.write("Hello");
+         assertEquals(0, DURABILITY_TEST_FILE.length());
+         rollover.sync();
+         assertEquals(5, DURABILITY_TEST_FILE.length());
+      }
+      finally
+      {
+         closeDurabilityTestManager(rollover);
+      }
+   }
+
+   public void
+   testIntervalDurabilitySyncsAfterBytes()
+   throws Exception
+   {
+      Properties properties = createDurabilityTestProperties("interval");
+      properties.setProperty(KEY_DURABILITY_BYTES, "10");
+      RolloverManager rollover = new RolloverManager(properties, null);
+      try
+      {
+         rollover.write("Hello");
+         assertEquals(0, DURABILITY_TEST_FILE.length());
+         rollover.write("World!");
+         assertEquals(11, DURABILITY_TEST_FILE.length());
+      }
+      finally
+      {
+         closeDurabilityTestManager(rollover);
+      }
+   }
+
+   public void
+   testIntervalDurabilitySyncsAfterInterval()
+   throws Exception
+   {
+      Properties properties = createDurabilityTestProperties("interval");
+      properties.setProperty(KEY_DURABILITY_INTERVAL, "50");
+      RolloverManager rollover = new RolloverManager(properties, null);
+      try
+      {
+         rollover.write("Hello");
+         long giveUpTime = System.currentTimeMillis() + 5000;
+         while (DURABILITY_TEST_FILE.length() == 0 && System.currentTimeMillis() < giveUpTime)
+         {
+            Thread.sleep(10);
+         }
+         assertEquals(5, DURABILITY_TEST_FILE.length());
+      }
+      finally
+      {
+         closeDurabilityTestManager(rollover);
+      }
+   }
+
+   public void
+   testDurabilityChangedByReconfiguring()
+   throws Exception
+   {
+      Properties properties = createDurabilityTestProperties("interval");
+      RolloverManager rollover = new RolloverManager(properties, null);
+      try
+      {
+         rollover.write("Hello");
+         assertEquals(0, DURABILITY_TEST_FILE.length());
+         properties.setProperty(KEY_DURABILITY, "sync");
+         rollover.configure(properties);
+         assertEquals(5, DURABILITY_TEST_FILE.length());
+         rollover.write("World");
+         assertEquals(10, DURABILITY_TEST_FILE.length());
+      }
+      finally
+      {
+         closeDurabilityTestManager(rollover);
+      }
+   }
+
+   public void
+   testCloseWritesBufferedOutput()
+   throws Exception
+   {
+      RolloverManager rollover = createDurabilityTestManager("interval");
+      rollover.write("Hello");
+      rollover.close();
+      assertEquals(5, DURABILITY_TEST_FILE.length());
+      deleteDurabilityTestFiles();
+   }
+
+   public void
+   testErrorsSyncedBySimpleLog()
+   throws Exception
+   {
+      Properties properties = createDurabilityTestProperties("interval");
+      properties.setProperty("simplelog.format.debug", "{5}");
+      SimpleLog log = new SimpleLog(properties);
+      SimpleLogger logger = new SimpleLogger(log, getClass());
+      try
+      {
+         logger.info("Info");
+         assertEquals(0, DURABILITY_TEST_FILE.length());
+         logger.error("Error");
+         String lineSep = System.getProperty("line.separator");
+         assertEquals(("Info" + lineSep + "Error" + lineSep).length(), DURABILITY_TEST_FILE.length());
+      }
+      finally
+      {
+         deleteDurabilityTestFiles();
+      }
+   }
+
+   public void
+   testInvalidRolloverMethodNotAllowed()
+   {
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.logFile", "foo.log");
+      properties.setProperty(KEY_ROLLOVER, "fileSize");
+      properties.setProperty(KEY_ROLLOVER_METHOD, "move");
+      try
+      {
+         new RolloverManager(properties, null);
+         fail("IOException expected");
+      }
+      catch (IOException e)
+      {}
+   }
+
+   public void
+   testRenameRollover()
+   throws Exception
+   {
+      File directory = new File("renameRolloverTest");
+      File activeFile = new File(directory, "active.log");
+      File rolledFile = new File(directory, "rolled.log");
+      deleteDirectory(directory);
+
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.logFile", activeFile.getPath());
+      properties.setProperty("simplelog.rollover.filename", "rolled.log");
+      properties.setProperty(KEY_ROLLOVER, TestRolloverStrategy.class.getName());
+      properties.setProperty(KEY_ROLLOVER_METHOD, "rename");
+      RolloverManager rollover = new RolloverManager(properties, null);
+      try
+      {
+         rollover.write("Before");
+         rollover.setStrategy(new NonEmptyRolloverStrategy());
+         rollover.rolloverIfNecessary();
+         rollover.write("After");
+         rollover.close();
+
+         assertEquals("Before".length(), rolledFile.length());
+         assertEquals("After".length(), activeFile.length());
+         assertTrue(new File(directory, "active.log-CREATED").exists());
+      }
+      finally
+      {
+         deleteDirectory(directory);
+      }
+   }
+
+   public void
+   testDirectWriterKeptByCopyRollover()
+   throws Exception
+   {
+      File directory = new File("directCopyRolloverTest");
+      File activeFile = new File(directory, "active.log");
+      File rolledFile = new File(directory, "rolled.log");
+      deleteDirectory(directory);
+
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.logFile", activeFile.getPath());
+      properties.setProperty("simplelog.rollover.filename", "rolled.log");
+      properties.setProperty(KEY_ROLLOVER, TestRolloverStrategy.class.getName());
+      properties.setProperty("simplelog.logFile.io", "direct");
+      RolloverManager rollover = new RolloverManager(properties, null);
+      try
+      {
+         Field writerField = RolloverManager.class.getDeclaredField("writer");
+         writerField.setAccessible(true);
+         Object writer = writerField.get(rollover);
+
+         rollover.write("Before");
+         rollover.setStrategy(new NonEmptyRolloverStrategy());
+         rollover.rolloverIfNecessary();
+         assertSame("writer", writer, writerField.get(rollover));
+         rollover.write("After");
+         rollover.close();
+
+         assertEquals("Before".length(), rolledFile.length());
+         assertEquals("After".length(), activeFile.length());
+      }
+      finally
+      {
+         deleteDirectory(directory);
+      }
+   }
+
+   public void
+   testIntervalDurabilityWrittenAtExit()
+   throws Exception
+   {
+      File directory = new File("durabilityExitTest");
+      deleteDirectory(directory);
+      File logFile = new File(directory, "app.log");
+
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.logFile", logFile.getAbsolutePath());
+      properties.setProperty(KEY_ROLLOVER, "fileSize");
+      properties.setProperty(KEY_DURABILITY, "interval");
+      properties.setProperty(KEY_DURABILITY_INTERVAL, "60000");
+      try
+      {
+         // Nothing is synced by the interval or the byte count before the JVM exits
+         assertEquals("exit value", 0, ExitingLogGenerator.run(properties, 1));
+
+         BufferedReader in = new BufferedReader(new FileReader(logFile));
+         try
+         {
+            String line = in.readLine();
+            assertNotNull("Line not written", line);
+            assertTrue(line.endsWith("|Line 0"));
+         }
+         finally
+         {
+            in.close();
+         }
+      }
+      finally
+      {
+         deleteDirectory(directory);
+      }
+   }
+
+   public void
+   testCreationTimeReadOnce()
+   throws Exception
+   {
+      File directory = new File("creationTimeTest");
+      deleteDirectory(directory);
+      directory.mkdirs();
+      File creationTimeFile = createFile(directory, "active.log-CREATED", "1000");
+
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.logFile", new File(directory, "active.log").getPath());
+      properties.setProperty(KEY_ROLLOVER, TestRolloverStrategy.class.getName());
+      RolloverManager rollover = new RolloverManager(properties, null);
+      try
+      {
+         CreationDateRecordingStrategy strategy = new CreationDateRecordingStrategy();
+         rollover.setStrategy(strategy);
+         rollover.rolloverIfNecessary();
+         assertEquals(1000, strategy.fileCreated.getTime());
+
+         // The creation time is only read from the file once
+         createFile(directory, "active.log-CREATED", "2000");
+         rollover.rolloverIfNecessary();
+         assertEquals(1000, strategy.fileCreated.getTime());
+
+         // Rolling the file records a new creation time
+         long beforeRollover = System.currentTimeMillis();
+         rollover.write("Before");
+         rollover.rolloverIfNecessary();
+         rollover.rolloverIfNecessary();
+         assertTrue(strategy.fileCreated.getTime() >= beforeRollover);
+         BufferedReader in = new BufferedReader(new FileReader(creationTimeFile));
+         try
+         {
+            assertEquals(String.valueOf(strategy.fileCreated.getTime()), in.readLine());
+         }
+         finally
+         {
+            in.close();
+         }
+      }
+      finally
+      {
+         rollover.close();
+         deleteDirectory(directory);
+      }
+   }
+
+   public void
+   testGzipCompressedRollover()
+   throws Exception
+   {
+      assertRolledFileCompressed("gzip", "rolled.log.gz");
+   }
+
+   public void
+   testDeflateCompressedRollover()
+   throws Exception
+   {
+      assertRolledFileCompressed("deflate", "rolled.log.zz");
+   }
+
+   private void
+   assertRolledFileCompressed(String compression, String compressedFileName)
+   throws Exception
+   {
+      File directory = new File("compressedRolloverTest");
+      File activeFile = new File(directory, "active.log");
+      File rolledFile = new File(directory, "rolled.log");
+      File compressedFile = new File(directory, compressedFileName);
+      deleteDirectory(directory);
+
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.logFile", activeFile.getPath());
+      properties.setProperty("simplelog.rollover.filename", "rolled.log");
+      properties.setProperty(KEY_ROLLOVER, TestRolloverStrategy.class.getName());
+      properties.setProperty(KEY_COMPRESS, compression);
+      RolloverManager rollover = new RolloverManager(properties, null);
+      try
+      {
+         rollover.write("Before");
+         rollover.setStrategy(new NonEmptyRolloverStrategy());
+         rollover.rolloverIfNecessary();
+         rollover.close();
+
+         waitForFile(compressedFile, true);
+         waitForFile(rolledFile, false);
+         assertEquals("Before", readCompressedFile(compressedFile, compression));
+         assertFalse(new File(directory, compressedFileName + ".part").exists());
+      }
+      finally
+      {
+         deleteDirectory(directory);
+      }
+   }
+
+   public void
+   testCompressionContinuesAfterUnexpectedException()
+   throws Exception
+   {
+      File directory = new File("compressorFailureTest");
+      deleteDirectory(directory);
+      directory.mkdirs();
+      File rolledFile = createFile(directory, "00000001-active.log", "Rolled");
+
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.logFile", new File(directory, "active.log").getPath());
+      properties.setProperty(KEY_ROLLOVER, TestRolloverStrategy.class.getName());
+      final List errors = Collections.synchronizedList(new ArrayList());
+      RolloverManager rollover = new RolloverManager(properties, new RolloverManager.ErrorReporter()
+      {
+         public void
+         error(String description, Throwable t, boolean printExceptionType)
+         {
+            errors.add(t);
+         }
+      });
+      try
+      {
+         // No excluded files array: the job fails with a NullPointerException
+         RolloverCompressor compressor = RolloverCompressor.getInstance();
+         compressor.recover(directory, new MessageFormat("{0}-active.log"), null,
+                            RolloverCompressor.GZIP, rollover);
+         compressor.compress(rolledFile, RolloverCompressor.GZIP, rollover);
+
+         waitForFile(new File(directory, "00000001-active.log.gz"), true);
+         assertEquals(1, errors.size());
+         assertTrue(errors.get(0) instanceof NullPointerException);
+      }
+      finally
+      {
+         rollover.close();
+         deleteDirectory(directory);
+      }
+   }
+
+   public void
+   testUnfinishedCompressionRecovered()
+   throws Exception
+   {
+      File directory = new File("compressionRecoveryTest");
+      deleteDirectory(directory);
+      directory.mkdirs();
+
+      // Rolled before the application stopped
+      File uncompressed = createFile(directory, "00000001-active.log", "First");
+      // Stopped part way through compressing
+      File interrupted = createFile(directory, "00000002-active.log", "Second");
+      File partial = createFile(directory, "00000002-active.log.gz.part", "Rubbish");
+      // Stopped after compressing, but before deleting the original
+      File compressed = createFile(directory, "00000003-active.log", "Third");
+      File alreadyCompressed = createFile(directory, "00000003-active.log.gz", "Compressed");
+      // Not a rolled file
+      File other = createFile(directory, "other.log.part", "Other");
+
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.logFile", new File(directory, "active.log").getPath());
+      properties.setProperty(KEY_ROLLOVER, TestRolloverStrategy.class.getName());
+      properties.setProperty(KEY_COMPRESS, "gzip");
+      RolloverManager rollover = new RolloverManager(properties, null);
+      try
+      {
+         rollover.close();
+
+         waitForFile(new File(directory, "00000002-active.log.gz"), true);
+         waitForFile(interrupted, false);
+         waitForFile(uncompressed, false);
+         assertEquals("First", readCompressedFile(new File(directory, "00000001-active.log.gz"),
+                                                  "gzip"));
+         assertEquals("Second", readCompressedFile(new File(directory, "00000002-active.log.gz"),
+                                                   "gzip"));
+         assertFalse(partial.exists());
+         assertFalse(compressed.exists());
+         assertTrue(alreadyCompressed.exists());
+         assertTrue(other.exists());
+         assertTrue(new File(directory, "active.log").exists());
+      }
+      finally
+      {
+         deleteDirectory(directory);
+      }
+   }
+
+   public void
+   testInvalidCompressionNotAllowed()
+   {
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.logFile", "foo.log");
+      properties.setProperty(KEY_ROLLOVER, "fileSize");
+      properties.setProperty(KEY_COMPRESS, "zip");
+      try
+      {
+         new RolloverManager(properties, null);
+         fail("IOException expected");
+      }
+      catch (IOException e)
+      {}
+   }
+
+   public void
+   testRetentionByFileCount()
+   throws Exception
+   {
+      File directory = new File("retentionTest");
+      File[] rolledFiles = createRolledFiles(directory, 3);
+
+      Properties properties = createRetentionTestProperties(directory);
+      properties.setProperty(KEY_RETENTION_FILES, "2");
+      RolloverManager rollover = new RolloverManager(properties, null);
+      try
+      {
+         // The oldest file goes as soon as the limit is configured...
+         assertFalse(rolledFiles[0].exists());
+         assertTrue(rolledFiles[1].exists());
+         assertTrue(rolledFiles[2].exists());
+
+         // ... and the next oldest when another file is rolled
+         rollover.write("Active");
+         rollover.setStrategy(new NonEmptyRolloverStrategy());
+         rollover.rolloverIfNecessary();
+         assertFalse(rolledFiles[1].exists());
+         assertTrue(rolledFiles[2].exists());
+         assertTrue(new File(directory, "00000004-active.log").exists());
+      }
+      finally
+      {
+         rollover.close();
+         deleteDirectory(directory);
+      }
+   }
+
+   public void
+   testRetentionBySize()
+   throws Exception
+   {
+      File directory = new File("retentionTest");
+      File[] rolledFiles = createRolledFiles(directory, 3);
+
+      // Each file is 10 bytes long
+      Properties properties = createRetentionTestProperties(directory);
+      properties.setProperty(KEY_RETENTION_SIZE, "25B");
+      RolloverManager rollover = new RolloverManager(properties, null);
+      try
+      {
+         assertFalse(rolledFiles[0].exists());
+         assertTrue(rolledFiles[1].exists());
+         assertTrue(rolledFiles[2].exists());
+      }
+      finally
+      {
+         rollover.close();
+         deleteDirectory(directory);
+      }
+   }
+
+   public void
+   testRetentionByAge()
+   throws Exception
+   {
+      File directory = new File("retentionTest");
+      File[] rolledFiles = createRolledFiles(directory, 3);
+      long now = System.currentTimeMillis();
+      rolledFiles[0].setLastModified(now - 3 * 24 * 60 * 60 * 1000L);
+      rolledFiles[1].setLastModified(now - 49 * 60 * 60 * 1000L);
+
+      Properties properties = createRetentionTestProperties(directory);
+      properties.setProperty(KEY_RETENTION_DAYS, "2");
+      RolloverManager rollover = new RolloverManager(properties, null);
+      try
+      {
+         assertFalse(rolledFiles[0].exists());
+         assertFalse(rolledFiles[1].exists());
+         assertTrue(rolledFiles[2].exists());
+      }
+      finally
+      {
+         rollover.close();
+         deleteDirectory(directory);
+      }
+   }
+
+   public void
+   testRetentionWithCompression()
+   throws Exception
+   {
+      File directory = new File("retentionTest");
+      File[] rolledFiles = createRolledFiles(directory, 2);
+      File compressedFile = new File(directory, rolledFiles[0].getName() + ".gz");
+      rolledFiles[0].renameTo(compressedFile);
+
+      Properties properties = createRetentionTestProperties(directory);
+      properties.setProperty(KEY_COMPRESS, "gzip");
+      properties.setProperty(KEY_RETENTION_FILES, "1");
+      RolloverManager rollover = new RolloverManager(properties, null);
+      try
+      {
+         // The compressed file is indexed under its uncompressed name, and the other is compressed
+         waitForFile(compressedFile, false);
+         waitForFile(new File(directory, rolledFiles[1].getName() + ".gz"), true);
+         waitForFile(rolledFiles[1], false);
+         // The active file, its creation time file and the one rolled file kept
+         assertEquals(3, directory.list().length);
+      }
+      finally
+      {
+         rollover.close();
+         deleteDirectory(directory);
+      }
+   }
+
+   /**
+    * Creates the given number of rolled files, each 10 bytes long and each a minute older than the
+    * next.
+    */
+   private File[]
+   createRolledFiles(File directory, int count)
+   throws IOException
+   {
+      deleteDirectory(directory);
+      directory.mkdirs();
+
+      File[] files = new File[count];
+      long time = System.currentTimeMillis() - count * 60 * 1000L;
+      for (int i = 0; i < count; i++)
+      {
+         files[i] = createFile(directory, "0000000" + (i + 1) + "-active.log", "Rolled #" + i);
+         files[i].setLastModified(time + i * 60 * 1000L);
+      }
+      return files;
+   }
+
+   private Properties
+   createRetentionTestProperties(File directory)
+   {
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.logFile", new File(directory, "active.log").getPath());
+      properties.setProperty(KEY_ROLLOVER, TestRolloverStrategy.class.getName());
+      return properties;
+   }
+
+   private File
+   createFile(File directory, String name, String content)
+   throws IOException
+   {
+      File file = new File(directory, name);
+      FileWriter out = new FileWriter(file);
+      out.write(content);
+      out.close();
+      return file;
+   }
+
+   /**
+    * Waits for the compressor thread to create or delete the given file.
+    */
+   private void
+   waitForFile(File file, boolean exists)
+   throws InterruptedException
+   {
+      long end = System.currentTimeMillis() + COMPRESSION_TIMEOUT;
+      while (file.exists() != exists && System.currentTimeMillis() < end)
+      {
+         Thread.sleep(20);
+      }
+      assertEquals(file.getPath(), exists, file.exists());
+   }
+
+   private String
+   readCompressedFile(File file, String compression)
+   throws IOException
+   {
+      InputStream fileIn = new FileInputStream(file);
+      InputStream in = compression.equals("gzip") ? (InputStream) new GZIPInputStream(fileIn)
+                                                  : new InflaterInputStream(fileIn);
+      BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+      try
+      {
+         return reader.readLine();
+      }
+      finally
+      {
+         reader.close();
+      }
+   }
+
+   public void
+   testNoLinesLostOrSplitDuringCopyRollover()
+   throws Exception
+   {
+      assertNoLinesLostOrSplitDuringRollover("copy", "stream");
+   }
+
+   public void
+   testNoLinesLostOrSplitDuringRenameRollover()
+   throws Exception
+   {
+      assertNoLinesLostOrSplitDuringRollover("rename", "stream");
+   }
+
+   public void
+   testNoLinesLostOrSplitDuringMappedCopyRollover()
+   throws Exception
+   {
+      assertNoLinesLostOrSplitDuringRollover("copy", "mapped");
+   }
+
+   public void
+   testNoLinesLostOrSplitDuringMappedRenameRollover()
+   throws Exception
+   {
+      assertNoLinesLostOrSplitDuringRollover("rename", "mapped");
+   }
+
+   public void
+   testNoLinesLostOrSplitDuringDirectCopyRollover()
+   throws Exception
+   {
+      assertNoLinesLostOrSplitDuringRollover("copy", "direct");
+   }
+
+   public void
+   testNoLinesLostOrSplitDuringDirectRenameRollover()
+   throws Exception
+   {
+      assertNoLinesLostOrSplitDuringRollover("rename", "direct");
+   }
+
+   public void
+   testTimerAndDirectRolloversDontOverlap()
+   throws Exception
+   {
+      assertNoLinesLostOrSplitDuringRollover("copy", "mapped", true);
+   }
+
+   public void
+   testTimerAndDirectRenameRolloversDontOverlap()
+   throws Exception
+   {
+      assertNoLinesLostOrSplitDuringRollover("rename", "mapped", true);
+   }
+
+   private void
+   assertNoLinesLostOrSplitDuringRollover(String rolloverMethod, String logFileIo)
+   throws Exception
+   {
+      assertNoLinesLostOrSplitDuringRollover(rolloverMethod, logFileIo, false);
+   }
+
+   /**
+    * Writes lines from several threads while rolling the file over as often as possible and checks
+    * that every line ends up whole in exactly one file. If <code>timerRollovers</code> is
+    * <code>true</code>, the manager's own timer also rolls the file every millisecond, so that
+    * timer rollovers run at the same time as the direct ones.
+    */
+   private void
+   assertNoLinesLostOrSplitDuringRollover(String rolloverMethod, String logFileIo,
+                                          boolean timerRollovers)
+   throws Exception
+   {
+      final int threadCount = 8;
+      final int linesPerThread = 2000;
+      final String padding = "..........................................................";
+
+      File directory = new File("concurrentRolloverTest");
+      File rolloverDirectory = new File(directory, "rolled");
+      deleteDirectory(directory);
+
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.logFile", new File(directory, "active.log").getPath());
+      properties.setProperty("simplelog.rollover.directory", rolloverDirectory.getPath());
+      properties.setProperty(KEY_ROLLOVER, AlwaysRolloverStrategy.class.getName());
+      properties.setProperty(KEY_DURABILITY, "os");
+      properties.setProperty(KEY_ROLLOVER_METHOD, rolloverMethod);
+      properties.setProperty("simplelog.logFile.io", logFileIo);
+      final List errors = Collections.synchronizedList(new ArrayList());
+      RolloverManager.ErrorReporter errorReporter = new RolloverManager.ErrorReporter()
+      {
+         public void
+         error(String description, Throwable t, boolean printExceptionType)
+         {
+            errors.add(description + ": " + t);
+         }
+      };
+      final RolloverManager rollover = new RolloverManager(properties, errorReporter);
+      final PrintWriter out = new PrintWriter(rollover, true);
+      if (timerRollovers)
+         scheduleTimerRollovers(rollover, 1);
+      // Simple Log writes lines straight to the RolloverManager when the I/O is 'direct'
+      final boolean writeLines = logFileIo.equals("direct");
+
+      Thread[] threads = new Thread[threadCount];
+      for (int i = 0; i < threadCount; i++)
+      {
+         final int threadNumber = i;
+         threads[i] = new Thread()
+         {
+            public void
+            run()
+            {
+               try
+               {
+                  for (int line = 0; line < linesPerThread; line++)
+                  {
+                     String text = threadNumber + ":" + line + ":" + padding;
+                     if (writeLines)
+                        rollover.writeLine(text.toCharArray(), 0, text.length());
+                     else
+                        out.println(text);
+                  }
+               }
+               catch (IOException e)
+               {
+                  e.printStackTrace();
+               }
+            }
+         };
+         threads[i].start();
+      }
+
+      boolean writing = true;
+      while (writing)
+      {
+         rollover.rolloverIfNecessary();
+         writing = false;
+         for (int i = 0; i < threadCount; i++)
+         {
+            writing |= threads[i].isAlive();
+         }
+      }
+      rollover.close();
+
+      try
+      {
+         int[] linesRead = new int[threadCount];
+         File[] rolledFiles = rolloverDirectory.listFiles();
+         assertTrue("At least one rollover should have happened", rolledFiles.length > 0);
+         countLines(new File(directory, "active.log"), linesRead, padding);
+         for (int i = 0; i < rolledFiles.length; i++)
+         {
+            countLines(rolledFiles[i], linesRead, padding);
+         }
+
+         for (int i = 0; i < threadCount; i++)
+         {
+            assertEquals("Lines from thread " + i, linesPerThread, linesRead[i]);
+         }
+         assertEquals("Errors reported", Collections.EMPTY_LIST, errors);
+      }
+      finally
+      {
+         deleteDirectory(directory);
+      }
+   }
+
+   /**
+    * Schedules an extra rollover check on the given manager's timer, with a period shorter than
+    * <code>simplelog.rollover.period</code> allows.
+    */
+   private void
+   scheduleTimerRollovers(RolloverManager rollover, long period)
+   throws Exception
+   {
+      Field timerField = RolloverManager.class.getDeclaredField("timer");
+      timerField.setAccessible(true);
+      Class taskClass = Class.forName(RolloverManager.class.getName() + "$RolloverTask");
+      Constructor taskConstructor =
+         taskClass.getDeclaredConstructor(new Class[] {RolloverManager.class});
+      taskConstructor.setAccessible(true);
+      TimerTask task = (TimerTask) taskConstructor.newInstance(new Object[] {rollover});
+      ((Timer) timerField.get(rollover)).schedule(task, 0, period);
+   }
+
+   /**
+    * Checks that every line in the given file is whole and counts the lines from each thread.
+    */
+   private void
+   countLines(File file, int[] linesRead, String padding)
+   throws IOException
+   {
+      BufferedReader in = new BufferedReader(new FileReader(file));
+      try
+      {
+         String line;
+         while ((line = in.readLine()) != null)
+         {
+            assertTrue("Split line: " + line, line.endsWith(":" + padding));
+            int threadNumber = Integer.parseInt(line.substring(0, line.indexOf(':')));
+            linesRead[threadNumber]++;
+         }
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
+   private void
+   deleteDirectory(File directory)
+   {
+      File[] files = directory.listFiles();
+      for (int i = 0; files != null && i < files.length; i++)
+      {
+         if (files[i].isDirectory())
+            deleteDirectory(files[i]);
+         else
+            files[i].delete();
+      }
+      directory.delete();
+   }
+
+   private Properties
+   createDurabilityTestProperties(String durability)
+   {
+      deleteDurabilityTestFiles();
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.logFile", DURABILITY_TEST_FILE.getPath());
+      properties.setProperty(KEY_ROLLOVER, "fileSize");
+      properties.setProperty(KEY_DURABILITY, durability);
+      properties.setProperty(KEY_DURABILITY_INTERVAL, "60000");
+      return properties;
+   }
+
+   private RolloverManager
+   createDurabilityTestManager(String durability)
+   throws IOException
+   {
+      return new RolloverManager(createDurabilityTestProperties(durability), null);
+   }
+
+   private void
+   closeDurabilityTestManager(RolloverManager rollover)
+   {
+      rollover.close();
+      deleteDurabilityTestFiles();
+   }
+
+   private void
+   deleteDurabilityTestFiles()
+   {
+      DURABILITY_TEST_FILE.delete();
+      new File(DURABILITY_TEST_FILE.getPath() + "-CREATED").delete();
+   }
+
    public static class
    TestRolloverStrategy
    implements RolloverStrategy
@@ -260,6 +1246,51 @@ extends TestCase
       }
    }
 
+   public static class
+   AlwaysRolloverStrategy
+   extends TestRolloverStrategy
+   {
+      public boolean
+      rolloverNow(Date fileCreated, long fileLength)
+      {
+         return true;
+      }
+   }
+
+   /**
+    * Rolls the log file whenever there is anything in it. Tests that expect a particular rolled
+    * file use this so that they don't depend on whether the timer's first check of the empty
+    * file happens before or after theirs.
+    */
+   public static class
+   NonEmptyRolloverStrategy
+   extends TestRolloverStrategy
+   {
+      public boolean
+      rolloverNow(Date fileCreated, long fileLength)
+      {
+         return fileLength > 0;
+      }
+   }
+
+   /**
+    * Rolls the log file whenever there is anything in it and remembers the last creation time it
+    * was given.
+    */
+   public static class
+   CreationDateRecordingStrategy
+   extends NonEmptyRolloverStrategy
+   {
+      private Date fileCreated;
+
+      public boolean
+      rolloverNow(Date fileCreated, long fileLength)
+      {
+         this.fileCreated = fileCreated;
+         return super.rolloverNow(fileCreated, fileLength);
+      }
+   }
+
    public static class
    ExceptionThrowingTestRolloverStrategy
    extends TestRolloverStrategy
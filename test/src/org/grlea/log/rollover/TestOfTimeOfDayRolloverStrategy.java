@@ -223,6 +223,59 @@ extends TestCase
       assertEquals("rolloverNow", false, rolloverNow);
    }
 
+   public void
+   testNewRolloverTimeForSameFile()
+   throws Exception
+   {
+      Calendar calendar = createCalendar(-60);
+      rollover.setRolloverTime(TimeZone.getDefault(), getHour(calendar), getMinute(calendar));
+
+      Date fileCreationTime = createCalendar(0, 0).getTime();
+      boolean rolloverNow = rollover.rolloverNow(fileCreationTime, 0);
+      assertEquals("rolloverNow", true, rolloverNow);
+
+      // The rollover time worked out for the file must not be reused once the time is changed
+      calendar = createCalendar(60);
+      rollover.setRolloverTime(TimeZone.getDefault(), getHour(calendar), getMinute(calendar));
+      rolloverNow = rollover.rolloverNow(fileCreationTime, 0);
+      assertEquals("rolloverNow", false, rolloverNow);
+   }
+
+   public void
+   testConcurrentChecksOfDifferentFiles()
+   throws Exception
+   {
+      Calendar calendar = createCalendar(-5);
+      rollover.setRolloverTime(TimeZone.getDefault(), getHour(calendar), getMinute(calendar));
+
+      // The rollover time calculated for one file must never be used for the other
+      final Date oldFileCreationTime = createCalendar(0, 0).getTime();
+      final Date newFileCreationTime = new Date();
+      final boolean[] wrongResult = {false};
+      Thread oldFileChecker = new Thread()
+      {
+         public void
+         run()
+         {
+            for (int i = 0; i < 100000 && !wrongResult[0]; i++)
+            {
+               if (!rollover.rolloverNow(oldFileCreationTime, 0))
+                  wrongResult[0] = true;
+            }
+         }
+      };
+      oldFileChecker.start();
+
+      for (int i = 0; i < 100000 && !wrongResult[0]; i++)
+      {
+         if (rollover.rolloverNow(newFileCreationTime, 0))
+            wrongResult[0] = true;
+      }
+      oldFileChecker.join();
+
+      assertFalse("Rollover time used for the wrong file", wrongResult[0]);
+   }
+
    public void
    testConfigure()
    throws Exception
@@ -0,0 +1,103 @@
+package org.grlea.log.test;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import org.grlea.log.SimpleLog;
+import org.grlea.log.SimpleLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * <p>A program that logs a number of lines and then calls <code>System.exit()</code> straight
+ * away, used to test what Simple Log writes when the JVM shuts down.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+public final class
+ExitingLogGenerator
+{
+   private
+   ExitingLogGenerator()
+   {
+   }
+
+   /**
+    * Runs an <code>ExitingLogGenerator</code> in a new JVM and waits for it to exit.
+    *
+    * @param properties the properties to configure the <code>SimpleLog</code> with
+    *
+    * @param lines the number of lines to log
+    *
+    * @return the exit value of the JVM
+    */
+   public static int
+   run(Properties properties, int lines)
+   throws IOException, InterruptedException
+   {
+      File javaBin = new File(System.getProperty("java.home"), "bin");
+      File javaExe = new File(javaBin, "java");
+      if (!javaExe.exists())
+         javaExe = new File(javaBin, "java.exe");
+
+      List commandLine = new ArrayList();
+      commandLine.add(javaExe.getAbsolutePath());
+      commandLine.add("-cp");
+      commandLine.add(System.getProperty("java.class.path"));
+      commandLine.add(ExitingLogGenerator.class.getName());
+      commandLine.add(String.valueOf(lines));
+      for (Enumeration keys = properties.propertyNames(); keys.hasMoreElements();)
+      {
+         String key = (String) keys.nextElement();
+         commandLine.add(key + "=" + properties.getProperty(key));
+      }
+
+      Process process =
+         Runtime.getRuntime().exec((String[]) commandLine.toArray(new String[commandLine.size()]));
+      process.getInputStream().close();
+      process.getErrorStream().close();
+      return process.waitFor();
+   }
+
+   /**
+    * Logs the number of lines given by the first argument through a <code>SimpleLog</code>
+    * configured by the other arguments (each a <code>key=value</code> property) and exits.
+    */
+   public static void
+   main(String[] args)
+   {
+      Properties properties = new Properties();
+      for (int i = 1; i < args.length; i++)
+      {
+         int equals = args[i].indexOf('=');
+         properties.setProperty(args[i].substring(0, equals), args[i].substring(equals + 1));
+      }
+
+      SimpleLog log = new SimpleLog(properties);
+      SimpleLogger logger = new SimpleLogger(log, ExitingLogGenerator.class);
+      int lines = Integer.parseInt(args[0]);
+      for (int i = 0; i < lines; i++)
+      {
+         logger.info("Line " + i);
+      }
+      System.exit(0);
+   }
+}
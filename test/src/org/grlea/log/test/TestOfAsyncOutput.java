@@ -0,0 +1,334 @@
+package org.grlea.log.test;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import org.grlea.log.SimpleLog;
+import org.grlea.log.SimpleLogger;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * <p>Tests that asynchronous output (<code>simplelog.async</code>) prints everything it is given,
+ * in order, without making the logging thread wait for the output to be written.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+public class
+TestOfAsyncOutput
+extends TestCase
+{
+   private Properties properties;
+   private SimpleLog log;
+   private BlockingWriter writer;
+
+   public
+   TestOfAsyncOutput(String name)
+   {
+      // Standard TestCase constructor. You shouldn't edit this.
+      super(name);
+   }
+
+   protected void
+   setUp()
+   {
+      properties = new Properties();
+      properties.setProperty("simplelog.async", "true");
+      properties.setProperty("simplelog.async.bufferSize", "16");
+      log = new SimpleLog(properties);
+
+      writer = new BlockingWriter();
+      log.setWriter(new PrintWriter(writer, true));
+   }
+
+   protected void
+   tearDown()
+   {
+      writer.release();
+      properties.setProperty("simplelog.async", "false");
+      log.reloadProperties();
+
+      log = null;
+      properties = null;
+      writer = null;
+   }
+
+   public void
+   testAllOutputPrintedInOrder()
+   throws Exception
+   {
+      writer.release();
+
+      SimpleLogger logger = new SimpleLogger(log, getClass());
+      for (int i = 0; i < 100; i++)
+      {
+         logger.info("Line " + i);
+      }
+      log.flush();
+
+      String[] lines = writer.getLines();
+      assertEquals("output lines", 100, lines.length);
+      for (int i = 0; i < lines.length; i++)
+      {
+         assertTrue("'Line " + i + "' found in '" + lines[i] + "'",
+                    lines[i].endsWith("|main|TestOfAsyncOutput|Line " + i));
+      }
+   }
+
+   public void
+   testLoggingDoesntWaitForOutput()
+   throws Exception
+   {
+      final SimpleLogger logger = new SimpleLogger(log, getClass());
+      Thread loggingThread = new Thread()
+      {
+         public void
+         run()
+         {
+            for (int i = 0; i < 10; i++)
+            {
+               logger.info("Line " + i);
+            }
+         }
+      };
+
+      loggingThread.start();
+      loggingThread.join(5000);
+      assertFalse("Logging thread blocked by output", loggingThread.isAlive());
+
+      writer.release();
+      log.flush();
+      assertEquals("output lines", 10, writer.getLines().length);
+   }
+
+   public void
+   testObjectValueCapturedWhenLogged()
+   throws Exception
+   {
+      writer.release();
+
+      SimpleLogger logger = new SimpleLogger(log, getClass());
+      StringBuffer value = new StringBuffer("before");
+      logger.infoObject("value", value);
+      value.setLength(0);
+      value.append("after");
+      log.flush();
+
+      String[] lines = writer.getLines();
+      assertEquals("output lines", 1, lines.length);
+      assertTrue("'before' found in '" + lines[0] + "'", lines[0].endsWith("|value|before"));
+   }
+
+   public void
+   testArgumentsFormattedOnPrintingThread()
+   throws Exception
+   {
+      final List toStringThreads = Collections.synchronizedList(new ArrayList());
+      Object argument = new Object()
+      {
+         public String
+         toString()
+         {
+            toStringThreads.add(Thread.currentThread());
+            return "argument";
+         }
+      };
+
+      // The writer is still blocked, so these are all queued while the holders are reused
+      SimpleLogger logger = new SimpleLogger(log, getClass());
+      Object[] arguments = {argument, "before"};
+      logger.info("First {}", argument);
+      logger.info("Second {} {}", arguments);
+      arguments[1] = "after";
+      logger.infoObject("first", 1);
+      logger.infoObject("second", true);
+      writer.release();
+      log.flush();
+
+      String[] lines = writer.getLines();
+      assertEquals("output lines", 4, lines.length);
+      assertTrue("'First' found in '" + lines[0] + "'", lines[0].endsWith("|First argument"));
+      assertTrue("'Second' found in '" + lines[1] + "'",
+                 lines[1].endsWith("|Second argument before"));
+      assertTrue("'first' found in '" + lines[2] + "'", lines[2].endsWith("|first|1"));
+      assertTrue("'second' found in '" + lines[3] + "'", lines[3].endsWith("|second|true"));
+
+      assertEquals("toString() calls", 2, toStringThreads.size());
+      assertFalse("toString() called on the logging thread",
+                  toStringThreads.contains(Thread.currentThread()));
+   }
+
+   public void
+   testTurningAsyncOffFlushesOutput()
+   throws Exception
+   {
+      writer.release();
+
+      SimpleLogger logger = new SimpleLogger(log, getClass());
+      logger.info("Async");
+      properties.setProperty("simplelog.async", "false");
+      log.reloadProperties();
+      logger.info("Sync");
+
+      String[] lines = writer.getLines();
+      assertEquals("output lines", 2, lines.length);
+      assertTrue("'Async' found in '" + lines[0] + "'", lines[0].endsWith("|Async"));
+      assertTrue("'Sync' found in '" + lines[1] + "'", lines[1].endsWith("|Sync"));
+   }
+
+   public void
+   testQueuedOutputWrittenAtExit()
+   throws Exception
+   {
+      assertAllLinesWrittenAtExit("stream");
+   }
+
+   public void
+   testQueuedOutputWrittenToMappedFileAtExit()
+   throws Exception
+   {
+      assertAllLinesWrittenAtExit("mapped");
+   }
+
+   /**
+    * Logs lines asynchronously in another JVM, which exits straight away, and checks that they
+    * all reached the log file.
+    */
+   private void
+   assertAllLinesWrittenAtExit(String logFileIo)
+   throws Exception
+   {
+      int lineCount = 200000;
+      File logFile = new File("asyncExitTest.log");
+      logFile.delete();
+
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.async", "true");
+      properties.setProperty("simplelog.logFile", logFile.getAbsolutePath());
+      properties.setProperty("simplelog.logFile.io", logFileIo);
+      try
+      {
+         assertEquals("exit value", 0, ExitingLogGenerator.run(properties, lineCount));
+
+         BufferedReader in = new BufferedReader(new FileReader(logFile));
+         int linesRead = 0;
+         String line;
+         while ((line = in.readLine()) != null)
+         {
+            assertTrue("'Line " + linesRead + "' found in '" + line + "'",
+                       line.endsWith("|Line " + linesRead));
+            linesRead++;
+         }
+         in.close();
+         assertEquals("lines written", lineCount, linesRead);
+      }
+      finally
+      {
+         logFile.delete();
+      }
+   }
+
+   /**
+    * A writer that blocks all writes until it is released.
+    */
+   private static final class
+   BlockingWriter
+   extends StringWriter
+   {
+      private boolean released = false;
+
+      public synchronized void
+      release()
+      {
+         released = true;
+         notifyAll();
+      }
+
+      private synchronized void
+      waitForRelease()
+      {
+         while (!released)
+         {
+            try
+            {
+               wait();
+            }
+            catch (InterruptedException e)
+            {
+               return;
+            }
+         }
+      }
+
+      public void
+      write(char[] cbuf, int off, int len)
+      {
+         waitForRelease();
+         super.write(cbuf, off, len);
+      }
+
+      public void
+      write(String str, int off, int len)
+      {
+         waitForRelease();
+         super.write(str, off, len);
+      }
+
+      public void
+      write(int c)
+      {
+         waitForRelease();
+         super.write(c);
+      }
+
+      public String[]
+      getLines()
+      throws IOException
+      {
+         BufferedReader in = new BufferedReader(new StringReader(toString()));
+         List lines = new ArrayList();
+         String line;
+         while ((line = in.readLine()) != null)
+         {
+            lines.add(line);
+         }
+         return (String[]) lines.toArray(new String[lines.size()]);
+      }
+   }
+
+   /**
+    * Returns a test suite that will automatically run all test methods in this
+    * class beginning with "test".
+    */
+   public static TestSuite
+   suite()
+   {
+      return new TestSuite(TestOfAsyncOutput.class);
+   }
+}
@@ -0,0 +1,142 @@
+package org.grlea.log.test;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import org.grlea.log.DebugLevel;
+import org.grlea.log.SimpleLog;
+import org.grlea.log.SimpleLogger;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.text.DecimalFormat;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Properties;
+
+/**
+ * <p>Tests that many threads logging through the same <code>SimpleLog</code> at the same time all
+ * produce correctly formatted output.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+public class
+TestOfConcurrentLogging
+extends TestCase
+{
+   private static final int THREADS = 64;
+
+   private static final int LINES_PER_THREAD = 500;
+
+   private static final String DATE_FORMAT = "EEE yyyy/MM/dd HH:mm:ss.SSS";
+
+   private static final String NUMBER_FORMAT = "#,##0.00";
+
+   public
+   TestOfConcurrentLogging(String name)
+   {
+      // Standard TestCase constructor. You shouldn't edit this.
+      super(name);
+   }
+
+   public void
+   testNoCorruptedLines()
+   throws Exception
+   {
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.dateFormat", DATE_FORMAT);
+      properties.setProperty("simplelog.format.debugObject",
+                             "{0}|{1}|{5}|{6,number," + NUMBER_FORMAT + "}");
+      SimpleLog log = new SimpleLog(properties);
+      StringWriter output = new StringWriter();
+      log.setWriter(new PrintWriter(output, true));
+
+      final SimpleLogger logger = new SimpleLogger(log, getClass());
+      Thread[] threads = new Thread[THREADS];
+      for (int i = 0; i < threads.length; i++)
+      {
+         final int threadNumber = i;
+         threads[i] = new Thread("Logger-" + threadNumber)
+         {
+            public void
+            run()
+            {
+               for (int line = 0; line < LINES_PER_THREAD; line++)
+               {
+                  double value = threadNumber * 1000000.5 + line;
+                  logger.dbo(DebugLevel.L4_INFO, "line", Double.valueOf(String.valueOf(value)));
+               }
+            }
+         };
+      }
+
+      for (int i = 0; i < threads.length; i++)
+      {
+         threads[i].start();
+      }
+      for (int i = 0; i < threads.length; i++)
+      {
+         threads[i].join();
+      }
+
+      SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+      dateFormat.setLenient(false);
+      DecimalFormat numberFormat = new DecimalFormat(NUMBER_FORMAT);
+
+      BufferedReader in = new BufferedReader(new StringReader(output.toString()));
+      int lineCount = 0;
+      String line;
+      while ((line = in.readLine()) != null)
+      {
+         lineCount++;
+         String[] fields = line.split("\\|");
+         assertEquals("fields in '" + line + "'", 4, fields.length);
+
+         ParsePosition position = new ParsePosition(0);
+         Date date = dateFormat.parse(fields[0], position);
+         assertTrue("Date parsed in '" + line + "'",
+                    date != null && position.getIndex() == fields[0].length());
+         assertEquals("Date reformatted in '" + line + "'", fields[0], dateFormat.format(date));
+
+         assertTrue("Thread name in '" + line + "'", fields[1].startsWith("Logger-"));
+         int threadNumber = Integer.parseInt(fields[1].substring("Logger-".length()));
+
+         assertEquals("Object name in '" + line + "'", "line", fields[2]);
+
+         double value = numberFormat.parse(fields[3]).doubleValue();
+         assertEquals("Number reformatted in '" + line + "'", fields[3], numberFormat.format(value));
+         assertEquals("Value thread in '" + line + "'", threadNumber, (int) (value / 1000000));
+      }
+
+      assertEquals("output lines", THREADS * LINES_PER_THREAD, lineCount);
+   }
+
+   /**
+    * Returns a test suite that will automatically run all test methods in this
+    * class beginning with "test".
+    */
+   public static TestSuite
+   suite()
+   {
+      return new TestSuite(TestOfConcurrentLogging.class);
+   }
+}
@@ -0,0 +1,176 @@
+package org.grlea.log.test;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import org.grlea.log.DebugLevel;
+import org.grlea.log.SimpleLog;
+import org.grlea.log.SimpleLogger;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * <p>Tests that changes to configuration files, and the files they import, are reloaded soon
+ * after they are made when reloading is enabled.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+public class
+TestOfConfigurationWatching
+extends TestCase
+{
+   /** How long (in milliseconds) to wait for a change to be reloaded before failing. */
+   private static final long RELOAD_TIMEOUT = 5 * 1000;
+
+   private File directory;
+
+   private File configurationFile;
+
+   private File importedFile;
+
+   public
+   TestOfConfigurationWatching(String name)
+   {
+      // Standard TestCase constructor. You shouldn't edit this.
+      super(name);
+   }
+
+   protected void
+   setUp()
+   throws IOException
+   {
+      directory = File.createTempFile("simplelog", "");
+      directory.delete();
+      directory.mkdir();
+      configurationFile = new File(directory, "simplelog.properties");
+      importedFile = new File(directory, "levels.properties");
+   }
+
+   protected void
+   tearDown()
+   {
+      configurationFile.delete();
+      importedFile.delete();
+      directory.delete();
+   }
+
+   public void
+   testChangeIsReloaded()
+   throws Exception
+   {
+      write(configurationFile, "simplelog.reloading = true\n" +
+                               "org.grlea.log.test = Warn\n");
+      SimpleLog log = new SimpleLog(configurationFile);
+      SimpleLogger logger = new SimpleLogger(log, SimpleLoggingClass.class);
+      assertEquals(DebugLevel.L3_WARN, logger.getDebugLevel());
+
+      write(configurationFile, "simplelog.reloading = true\n" +
+                               "org.grlea.log.test = Verbose\n");
+      waitForLevel(logger, DebugLevel.L6_VERBOSE);
+   }
+
+   public void
+   testImportedFileChangeIsReloaded()
+   throws Exception
+   {
+      write(importedFile, "org.grlea.log.test = Warn\n");
+      write(configurationFile, "simplelog.reloading = true\n" +
+                               "simplelog.import = " + importedFile.getName() + "\n");
+      SimpleLog log = new SimpleLog(configurationFile);
+      SimpleLogger logger = new SimpleLogger(log, SimpleLoggingClass.class);
+      assertEquals(DebugLevel.L3_WARN, logger.getDebugLevel());
+
+      write(importedFile, "org.grlea.log.test = Ludicrous\n");
+      waitForLevel(logger, DebugLevel.L7_LUDICROUS);
+   }
+
+   public void
+   testNewlyImportedFileIsWatched()
+   throws Exception
+   {
+      write(configurationFile, "simplelog.reloading = true\n");
+      SimpleLog log = new SimpleLog(configurationFile);
+      SimpleLogger logger = new SimpleLogger(log, SimpleLoggingClass.class);
+
+      write(importedFile, "org.grlea.log.test = Error\n");
+      write(configurationFile, "simplelog.reloading = true\n" +
+                               "simplelog.import = " + importedFile.getName() + "\n");
+      waitForLevel(logger, DebugLevel.L2_ERROR);
+
+      write(importedFile, "org.grlea.log.test = Debug\n");
+      waitForLevel(logger, DebugLevel.L5_DEBUG);
+   }
+
+   public void
+   testChangeIsIgnoredWithoutReloading()
+   throws Exception
+   {
+      write(configurationFile, "org.grlea.log.test = Warn\n");
+      SimpleLog log = new SimpleLog(configurationFile);
+      SimpleLogger logger = new SimpleLogger(log, SimpleLoggingClass.class);
+
+      write(configurationFile, "org.grlea.log.test = Verbose\n");
+      Thread.sleep(500);
+      assertEquals(DebugLevel.L3_WARN, logger.getDebugLevel());
+   }
+
+   /**
+    * Waits for the given logger's level to change to the given level, failing if it takes longer
+    * than {@link #RELOAD_TIMEOUT}.
+    */
+   private void
+   waitForLevel(SimpleLogger logger, DebugLevel expected)
+   throws InterruptedException
+   {
+      long giveUpTime = System.currentTimeMillis() + RELOAD_TIMEOUT;
+      while (logger.getDebugLevel() != expected && System.currentTimeMillis() < giveUpTime)
+      {
+         Thread.sleep(10);
+      }
+      assertEquals(expected, logger.getDebugLevel());
+   }
+
+   private void
+   write(File file, String text)
+   throws IOException
+   {
+      Writer out = new FileWriter(file);
+      try
+      {
+         out.write(text);
+      }
+      finally
+      {
+         out.close();
+      }
+   }
+
+   /**
+    * Returns a test suite that will automatically run all test methods in this
+    * class beginning with "test".
+    */
+   public static TestSuite
+   suite()
+   {
+      return new TestSuite(TestOfConfigurationWatching.class);
+   }
+}
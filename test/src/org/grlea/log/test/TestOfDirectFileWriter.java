@@ -0,0 +1,235 @@
+package org.grlea.log.test;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import org.grlea.log.DirectFileWriter;
+import org.grlea.log.SimpleLog;
+import org.grlea.log.SimpleLogger;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * <p>Tests {@link DirectFileWriter}.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+public class
+TestOfDirectFileWriter
+extends TestCase
+{
+   private File file;
+
+   public
+   TestOfDirectFileWriter(String name)
+   {
+      // Standard TestCase constructor. You shouldn't edit this.
+      super(name);
+   }
+
+   protected void
+   setUp()
+   {
+      file = new File("directFileWriterTest.log");
+      file.delete();
+   }
+
+   protected void
+   tearDown()
+   {
+      file.delete();
+      file = null;
+   }
+
+   public void
+   testWriteAndClose()
+   throws Exception
+   {
+      DirectFileWriter writer = new DirectFileWriter(file, false);
+      writer.write("Hello, ");
+      writer.write("W\u00f6rld \u20ac");
+      assertEquals("Nothing should be written before flushing", 0, file.length());
+      writer.close();
+
+      assertEquals("Hello, W\u00f6rld \u20ac", readFile());
+      assertEquals("File length", 17, file.length());
+   }
+
+   public void
+   testWriteLine()
+   throws Exception
+   {
+      DirectFileWriter writer = new DirectFileWriter(file, false);
+      char[] line = "One line".toCharArray();
+      writer.writeLine(line, 4, 4, true);
+
+      String lineSep = System.getProperty("line.separator");
+      assertEquals("line" + lineSep, readFile());
+      writer.close();
+   }
+
+   public void
+   testSurrogatePairSplitAcrossWrites()
+   throws Exception
+   {
+      DirectFileWriter writer = new DirectFileWriter(file, false);
+      writer.write("a\ud834");
+      writer.write("\udd1eb");
+      writer.close();
+
+      assertEquals("a\ud834\udd1eb", readFile());
+   }
+
+   public void
+   testUnpairedSurrogatesReplaced()
+   throws Exception
+   {
+      DirectFileWriter writer = new DirectFileWriter(file, false);
+      writer.write("a\ud834b\udd1ec\ud834");
+      writer.close();
+
+      assertEquals("a?b?c?", readFile());
+   }
+
+   public void
+   testOutputLargerThanBuffers()
+   throws Exception
+   {
+      StringBuffer line = new StringBuffer();
+      for (int i = 0; i < 999; i++)
+      {
+         line.append((char) ('a' + i % 26));
+      }
+      line.append('\u00e9');
+      line.append('\n');
+      String lineString = line.toString();
+      int lines = 1000;
+
+      DirectFileWriter writer = new DirectFileWriter(file, false);
+      for (int i = 0; i < lines; i++)
+      {
+         writer.write(lineString);
+      }
+      writer.close();
+
+      String contents = readFile();
+      assertEquals("Length", lines * lineString.length(), contents.length());
+      for (int i = 0; i < lines; i++)
+      {
+         assertTrue("Line " + i, contents.startsWith(lineString, i * lineString.length()));
+      }
+   }
+
+   public void
+   testAppend()
+   throws Exception
+   {
+      DirectFileWriter writer = new DirectFileWriter(file, false);
+      writer.write("One");
+      writer.close();
+
+      writer = new DirectFileWriter(file, true);
+      writer.write("Two");
+      writer.close();
+
+      assertEquals("OneTwo", readFile());
+   }
+
+   public void
+   testReplace()
+   throws Exception
+   {
+      DirectFileWriter writer = new DirectFileWriter(file, false);
+      writer.write("One");
+      writer.close();
+
+      writer = new DirectFileWriter(file, false);
+      writer.write("Two");
+      writer.close();
+
+      assertEquals("Two", readFile());
+   }
+
+   public void
+   testWriteAfterCloseFails()
+   throws Exception
+   {
+      DirectFileWriter writer = new DirectFileWriter(file, false);
+      writer.close();
+      writer.close();
+      try
+      {
+         writer.write("Too late");
+         fail("IOException expected");
+      }
+      catch (IOException e)
+      {}
+   }
+
+   public void
+   testSimpleLogWritesThroughDirectFile()
+   throws Exception
+   {
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.logFile", file.getPath());
+      properties.setProperty("simplelog.logFile.io", "direct");
+      properties.setProperty("simplelog.format.debug", "{5}");
+      SimpleLog log = new SimpleLog(properties);
+      SimpleLogger logger = new SimpleLogger(log, getClass());
+      logger.info("Direct \u00e9");
+      log.getWriter().close();
+
+      String lineSep = System.getProperty("line.separator");
+      assertEquals("Direct \u00e9" + lineSep, readFile());
+   }
+
+   private String
+   readFile()
+   throws IOException
+   {
+      byte[] bytes = new byte[(int) file.length()];
+      FileInputStream in = new FileInputStream(file);
+      try
+      {
+         int read = 0;
+         while (read < bytes.length)
+         {
+            read += in.read(bytes, read, bytes.length - read);
+         }
+      }
+      finally
+      {
+         in.close();
+      }
+      return new String(bytes, "UTF-8");
+   }
+
+   /**
+    * Returns a test suite that will automatically run all test methods in this
+    * class beginning with "test".
+    */
+   public static TestSuite
+   suite()
+   {
+      return new TestSuite(TestOfDirectFileWriter.class);
+   }
+}
@@ -0,0 +1,346 @@
+package org.grlea.log.test;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import org.grlea.log.DebugLevel;
+import org.grlea.log.SimpleLog;
+import org.grlea.log.SimpleLogger;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.util.Properties;
+
+/**
+ * <p>Tests that, once warmed up, logging doesn't allocate any memory (other than what the output
+ * writer itself allocates).</p>
+ *
+ * <p>Allocation is measured using <code>com.sun.management.ThreadMXBean</code>, which is only
+ * available on some JVMs. On others, these tests don't check anything.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+public class
+TestOfGarbageFreeLogging
+extends TestCase
+{
+   private static final int WARM_UP_CALLS = 20000;
+
+   private static final int MEASURED_CALLS = 10000;
+
+   private SimpleLogger logger;
+
+   private SimpleLogger instanceLogger;
+
+   private AllocationCounter allocationCounter;
+
+   public
+   TestOfGarbageFreeLogging(String name)
+   {
+      // Standard TestCase constructor. You shouldn't edit this.
+      super(name);
+   }
+
+   protected void
+   setUp()
+   throws Exception
+   {
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.defaultLevel", "Debug");
+      properties.setProperty("simplelog.defaultTrace", "true");
+      SimpleLog log = new SimpleLog(properties);
+      log.setWriter(new PrintWriter(new NullWriter(), true));
+
+      logger = new SimpleLogger(log, getClass());
+      instanceLogger = new SimpleLogger(log, getClass(), "instance");
+      allocationCounter = AllocationCounter.create();
+   }
+
+   protected void
+   tearDown()
+   {
+      logger = null;
+      instanceLogger = null;
+      allocationCounter = null;
+   }
+
+   public void
+   testMessages()
+   throws Exception
+   {
+      assertNoAllocation(new Runnable()
+      {
+         public void
+         run()
+         {
+            logger.info("Message");
+            logger.info("Message {} {}", "one", "two");
+            instanceLogger.debug("Message");
+            logger.verbose("Not logged");
+         }
+      });
+   }
+
+   public void
+   testObjects()
+   throws Exception
+   {
+      assertNoAllocation(new Runnable()
+      {
+         public void
+         run()
+         {
+            logger.infoObject("string", "value");
+            logger.infoObject("int", 123456789);
+            logger.dbo(DebugLevel.L4_INFO, "long", -123456789012L);
+            logger.infoObject("boolean", true);
+            logger.dbo(DebugLevel.L4_INFO, "char", 'c');
+            instanceLogger.dbo(DebugLevel.L5_DEBUG, "short", (short) 12);
+         }
+      });
+   }
+
+   public void
+   testTracing()
+   throws Exception
+   {
+      assertNoAllocation(new Runnable()
+      {
+         public void
+         run()
+         {
+            logger.entry("run()");
+            logger.exit("run()");
+         }
+      });
+   }
+
+   public void
+   testPrimitivesPrintedAsBefore()
+   {
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.format.debugObject", "{5}={6}");
+      SimpleLog log = new SimpleLog(properties);
+      StringWriter output = new StringWriter();
+      log.setWriter(new PrintWriter(output, true));
+      SimpleLogger logger = new SimpleLogger(log, getClass());
+
+      logger.infoObject("int", Integer.MIN_VALUE);
+      logger.dbo(DebugLevel.L4_INFO, "long", Long.MAX_VALUE);
+      logger.dbo(DebugLevel.L4_INFO, "float", 1.1f);
+      logger.dbo(DebugLevel.L4_INFO, "double", -0.0);
+      logger.infoObject("boolean", false);
+      logger.dbo(DebugLevel.L4_INFO, "char", 'x');
+
+      String lineSep = System.getProperty("line.separator");
+      assertEquals("output",
+                   "int=" + Integer.MIN_VALUE + lineSep +
+                   "long=" + Long.MAX_VALUE + lineSep +
+                   "float=" + String.valueOf(1.1f) + lineSep +
+                   "double=" + String.valueOf(-0.0) + lineSep +
+                   "boolean=false" + lineSep +
+                   "char=x" + lineSep,
+                   output.toString());
+   }
+
+   public void
+   testLoggingWhileFormatting()
+   {
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.format.debugObject", "{5}={6}");
+      properties.setProperty("simplelog.format.debug", "{5}");
+      SimpleLog log = new SimpleLog(properties);
+      StringWriter output = new StringWriter();
+      log.setWriter(new PrintWriter(output, true));
+      final SimpleLogger logger = new SimpleLogger(log, getClass());
+
+      Object loggingObject = new Object()
+      {
+         public String
+         toString()
+         {
+            logger.info("Inner");
+            return "Outer";
+         }
+      };
+      logger.infoObject("object", loggingObject);
+
+      String lineSep = System.getProperty("line.separator");
+      assertEquals("output", "Inner" + lineSep + "object=Outer" + lineSep, output.toString());
+   }
+
+   private void
+   assertNoAllocation(Runnable logging)
+   {
+      if (allocationCounter == null)
+      {
+         System.err.println(getName() + ": Allocation can't be measured on this JVM.");
+         return;
+      }
+
+      for (int i = 0; i < WARM_UP_CALLS; i++)
+      {
+         logging.run();
+      }
+
+      long overhead = allocationCounter.getOverhead();
+      long before = allocationCounter.getAllocatedBytes();
+      for (int i = 0; i < MEASURED_CALLS; i++)
+      {
+         logging.run();
+      }
+      long allocated = allocationCounter.getAllocatedBytes() - before - overhead;
+
+      // Any allocation in the logging itself would be at least 16 bytes per call.
+      assertTrue("Allocated " + allocated + " bytes in " + MEASURED_CALLS + " calls",
+                 allocated < MEASURED_CALLS);
+   }
+
+   /**
+    * Reads the number of bytes allocated by the current thread from
+    * <code>com.sun.management.ThreadMXBean</code>, using reflection.
+    */
+   private static final class
+   AllocationCounter
+   {
+      private final Object threadMXBean;
+      private final Method getThreadAllocatedBytes;
+      private final Object[] threadId;
+
+      private
+      AllocationCounter(Object threadMXBean, Method getThreadAllocatedBytes, Object threadId)
+      {
+         this.threadMXBean = threadMXBean;
+         this.getThreadAllocatedBytes = getThreadAllocatedBytes;
+         this.threadId = new Object[] {threadId};
+      }
+
+      /**
+       * Returns a new <code>AllocationCounter</code>, or <code>null</code> if allocation can't be
+       * measured on this JVM.
+       */
+      static AllocationCounter
+      create()
+      {
+         try
+         {
+            Class managementFactory = Class.forName("java.lang.management.ManagementFactory");
+            Object threadMXBean =
+               managementFactory.getMethod("getThreadMXBean", new Class[0]).invoke(null, new Object[0]);
+            Class sunThreadMXBean = Class.forName("com.sun.management.ThreadMXBean");
+            if (!sunThreadMXBean.isInstance(threadMXBean))
+            {
+               return null;
+            }
+
+            Method isSupported =
+               sunThreadMXBean.getMethod("isThreadAllocatedMemorySupported", new Class[0]);
+            Method setEnabled =
+               sunThreadMXBean.getMethod("setThreadAllocatedMemoryEnabled", new Class[] {boolean.class});
+            if (!((Boolean) isSupported.invoke(threadMXBean, new Object[0])).booleanValue())
+            {
+               return null;
+            }
+            setEnabled.invoke(threadMXBean, new Object[] {Boolean.TRUE});
+
+            Object threadId =
+               Thread.class.getMethod("getId", new Class[0]).invoke(Thread.currentThread(), new Object[0]);
+            Method getThreadAllocatedBytes =
+               sunThreadMXBean.getMethod("getThreadAllocatedBytes", new Class[] {long.class});
+            AllocationCounter counter =
+               new AllocationCounter(threadMXBean, getThreadAllocatedBytes, threadId);
+
+            // Warm up the reflection
+            for (int i = 0; i < 1000; i++)
+            {
+               counter.getAllocatedBytes();
+            }
+            return counter;
+         }
+         catch (Exception e)
+         {
+            return null;
+         }
+      }
+
+      long
+      getAllocatedBytes()
+      {
+         try
+         {
+            return ((Long) getThreadAllocatedBytes.invoke(threadMXBean, threadId)).longValue();
+         }
+         catch (Exception e)
+         {
+            throw new RuntimeException("Failed to read allocated bytes: " + e);
+         }
+      }
+
+      /**
+       * Returns the number of bytes allocated by reading the number of bytes allocated.
+       */
+      long
+      getOverhead()
+      {
+         long overhead = Long.MAX_VALUE;
+         for (int i = 0; i < 10; i++)
+         {
+            long before = getAllocatedBytes();
+            overhead = Math.min(overhead, getAllocatedBytes() - before);
+         }
+         return overhead;
+      }
+   }
+
+   /**
+    * A writer that throws away everything written to it.
+    */
+   private static final class
+   NullWriter
+   extends Writer
+   {
+      public void
+      write(char[] cbuf, int off, int len)
+      {}
+
+      public void
+      write(String str, int off, int len)
+      {}
+
+      public void
+      flush()
+      {}
+
+      public void
+      close()
+      {}
+   }
+
+   /**
+    * Returns a test suite that will automatically run all test methods in this
+    * class beginning with "test".
+    */
+   public static TestSuite
+   suite()
+   {
+      return new TestSuite(TestOfGarbageFreeLogging.class);
+   }
+}
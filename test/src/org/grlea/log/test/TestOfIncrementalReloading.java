@@ -0,0 +1,335 @@
+package org.grlea.log.test;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import org.grlea.log.DebugLevel;
+import org.grlea.log.SimpleLog;
+import org.grlea.log.SimpleLogger;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * <p>Tests that reloading the properties only re-configures the loggers, formats and writers
+ * affected by the properties that have changed.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+public class
+TestOfIncrementalReloading
+extends TestCase
+{
+   private Properties properties;
+
+   private SimpleLog log;
+
+   private File logFile;
+
+   public
+   TestOfIncrementalReloading(String name)
+   {
+      // Standard TestCase constructor. You shouldn't edit this.
+      super(name);
+   }
+
+   protected void
+   setUp()
+   {
+      logFile = new File("incrementalReloadingTest.log");
+      logFile.delete();
+
+      properties = new Properties();
+      properties.setProperty("simplelog.logFile", logFile.getPath());
+      properties.setProperty("simplelog.logFile.append", "false");
+      properties.setProperty("simplelog.format.debug", "{5}");
+      properties.setProperty("simplelog.format.debug.instance", "{3}:{5}");
+      log = new SimpleLog(properties);
+   }
+
+   protected void
+   tearDown()
+   {
+      properties.remove("simplelog.logFile");
+      log.reloadProperties();
+      log = null;
+      properties = null;
+      logFile.delete();
+      logFile = null;
+   }
+
+   public void
+   testOnlyChangedLoggersAreReconfigured()
+   {
+      properties.setProperty("org.grlea.log.test", "Warn");
+      log.reloadProperties();
+
+      SimpleLogger changed = new SimpleLogger(log, SimpleLoggingClass.class);
+      SimpleLogger unchanged = new SimpleLogger(log, String.class);
+      SimpleLogger changedInstance = new SimpleLogger(log, SimpleLoggingClass.class, "one");
+      assertEquals(DebugLevel.L3_WARN, changed.getDebugLevel());
+      assertEquals(DebugLevel.L4_INFO, unchanged.getDebugLevel());
+
+      // An unaffected logger keeps a level that was set on it directly
+      unchanged.setDebugLevel(DebugLevel.L7_LUDICROUS);
+
+      properties.setProperty("org.grlea.log.test", "Debug");
+      log.reloadProperties();
+
+      assertEquals(DebugLevel.L5_DEBUG, changed.getDebugLevel());
+      assertEquals(DebugLevel.L5_DEBUG, changedInstance.getDebugLevel());
+      assertEquals(DebugLevel.L7_LUDICROUS, unchanged.getDebugLevel());
+   }
+
+   public void
+   testRemovedLevelFallsBackToParent()
+   {
+      properties.setProperty("org.grlea.log", "Error");
+      properties.setProperty("org.grlea.log.test.SimpleLoggingClass", "Verbose");
+      properties.setProperty("org.grlea.log.test.SimpleLoggingClass.one", "Debug");
+      log.reloadProperties();
+
+      SimpleLogger logger = new SimpleLogger(log, SimpleLoggingClass.class);
+      SimpleLogger instanceLogger = new SimpleLogger(log, SimpleLoggingClass.class, "one");
+      assertEquals(DebugLevel.L6_VERBOSE, logger.getDebugLevel());
+      assertEquals(DebugLevel.L5_DEBUG, instanceLogger.getDebugLevel());
+
+      properties.remove("org.grlea.log.test.SimpleLoggingClass");
+      properties.remove("org.grlea.log.test.SimpleLoggingClass.one");
+      log.reloadProperties();
+
+      assertEquals(DebugLevel.L2_ERROR, logger.getDebugLevel());
+      assertEquals(DebugLevel.L2_ERROR, instanceLogger.getDebugLevel());
+   }
+
+   public void
+   testTraceFlagChange()
+   {
+      SimpleLogger logger = new SimpleLogger(log, SimpleLoggingClass.class);
+      assertFalse(logger.isTracing());
+
+      properties.setProperty("org.grlea.log.test#trace", "true");
+      log.reloadProperties();
+      assertTrue(logger.isTracing());
+
+      properties.remove("org.grlea.log.test#trace");
+      log.reloadProperties();
+      assertFalse(logger.isTracing());
+   }
+
+   public void
+   testDefaultLevelChangeReconfiguresAllLoggers()
+   {
+      SimpleLogger logger = new SimpleLogger(log, String.class);
+      logger.setDebugLevel(DebugLevel.L7_LUDICROUS);
+
+      properties.setProperty("simplelog.defaultLevel", "Fatal");
+      log.reloadProperties();
+
+      assertEquals(DebugLevel.L1_FATAL, logger.getDebugLevel());
+   }
+
+   public void
+   testLevelChangeDoesntReopenLogFile()
+   throws Exception
+   {
+      SimpleLogger logger = new SimpleLogger(log, SimpleLoggingClass.class);
+      logger.info("Before");
+
+      // The log file isn't appended to, so it would lose the first line if it were re-opened
+      properties.setProperty("org.grlea.log.test", "Debug");
+      log.reloadProperties();
+      logger.debug("After");
+
+      assertEquals("Before", readLine(0));
+      assertEquals("After", readLine(1));
+   }
+
+   public void
+   testFormatChangeIsApplied()
+   throws Exception
+   {
+      SimpleLogger logger = new SimpleLogger(log, SimpleLoggingClass.class);
+      SimpleLogger instanceLogger = new SimpleLogger(log, SimpleLoggingClass.class, "one");
+      logger.info("Before");
+      instanceLogger.info("Before");
+
+      properties.setProperty("simplelog.format.debug", "[{5}]");
+      log.reloadProperties();
+      logger.info("After");
+      instanceLogger.info("After");
+
+      assertEquals("Before", readLine(0));
+      assertEquals("one:Before", readLine(1));
+      assertEquals("[After]", readLine(2));
+      assertEquals("one:After", readLine(3));
+   }
+
+   public void
+   testDateFormatChangeIsApplied()
+   throws Exception
+   {
+      properties.setProperty("simplelog.format.debug", "{0}");
+      properties.setProperty("simplelog.dateFormat", "'Before'");
+      log.reloadProperties();
+      SimpleLogger logger = new SimpleLogger(log, SimpleLoggingClass.class);
+      logger.info("");
+
+      properties.setProperty("simplelog.dateFormat", "'After'");
+      log.reloadProperties();
+      logger.info("");
+
+      assertEquals("Before", readLine(0));
+      assertEquals("After", readLine(1));
+   }
+
+   public void
+   testLogFileChangeIsApplied()
+   throws Exception
+   {
+      File newLogFile = new File("incrementalReloadingTest2.log");
+      newLogFile.delete();
+      try
+      {
+         SimpleLogger logger = new SimpleLogger(log, SimpleLoggingClass.class);
+         logger.info("Before");
+
+         properties.setProperty("simplelog.logFile", newLogFile.getPath());
+         log.reloadProperties();
+         logger.info("After");
+
+         assertEquals("Before", readLine(0));
+         assertNull(readLine(1));
+
+         File oldLogFile = logFile;
+         logFile = newLogFile;
+         assertEquals("After", readLine(0));
+         logFile = oldLogFile;
+      }
+      finally
+      {
+         properties.remove("simplelog.logFile");
+         log.reloadProperties();
+         newLogFile.delete();
+      }
+   }
+
+   public void
+   testRepeatedTracesRememberedAcrossFormatChange()
+   throws Exception
+   {
+      properties.setProperty("simplelog.format.debugException", "{5}");
+      properties.setProperty("simplelog.printStackTraces.repeatPeriod", "60");
+      log.reloadProperties();
+      Exception[] exceptions = new Exception[2];
+      for (int i = 0; i < exceptions.length; i++)
+      {
+         // Created on the same line, so they have the same stack trace
+         exceptions[i] = new Exception(i == 0 ? "First" : "Second");
+      }
+      SimpleLogger logger = new SimpleLogger(log, SimpleLoggingClass.class);
+      logger.errorException(exceptions[0]);
+
+      properties.setProperty("simplelog.format.debug", "[{5}]");
+      log.reloadProperties();
+      logger.errorException(exceptions[1]);
+
+      assertEquals("[trace #1 seen 2 times]", readLine(lineAfter("java.lang.Exception: Second")));
+   }
+
+   public void
+   testTraceIdsCarryOnWhenRepeatSettingsChange()
+   throws Exception
+   {
+      properties.setProperty("simplelog.format.debugException", "{5}");
+      properties.setProperty("simplelog.printStackTraces.repeatPeriod", "60");
+      log.reloadProperties();
+      SimpleLogger logger = new SimpleLogger(log, SimpleLoggingClass.class);
+      logger.errorException(new Exception("First"));
+
+      properties.setProperty("simplelog.printStackTraces.repeatCacheSize", "5");
+      log.reloadProperties();
+      logger.errorException(new IllegalStateException("Second"));
+
+      String line = readLine(lineAfter("java.lang.IllegalStateException: Second"));
+      assertTrue(line, line.startsWith("[trace #2] "));
+   }
+
+   /**
+    * Returns the index of the line after the first one in the log file that equals the given text.
+    */
+   private int
+   lineAfter(String text)
+   throws IOException
+   {
+      BufferedReader in = new BufferedReader(new FileReader(logFile));
+      try
+      {
+         int index = 1;
+         String line;
+         while ((line = in.readLine()) != null && !line.equals(text))
+         {
+            index++;
+         }
+         assertNotNull("Line not found: " + text, line);
+         return index;
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
+   /**
+    * Returns the line with the given index in the log file, or <code>null</code> if the file
+    * doesn't have that many lines.
+    */
+   private String
+   readLine(int index)
+   throws IOException
+   {
+      BufferedReader in = new BufferedReader(new FileReader(logFile));
+      try
+      {
+         String line = null;
+         for (int i = 0; i <= index; i++)
+         {
+            line = in.readLine();
+         }
+         return line;
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
+   /**
+    * Returns a test suite that will automatically run all test methods in this
+    * class beginning with "test".
+    */
+   public static TestSuite
+   suite()
+   {
+      return new TestSuite(TestOfIncrementalReloading.class);
+   }
+}
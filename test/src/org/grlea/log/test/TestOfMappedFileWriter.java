@@ -0,0 +1,229 @@
+package org.grlea.log.test;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import org.grlea.log.MappedFileWriter;
+import org.grlea.log.SimpleLog;
+import org.grlea.log.SimpleLogger;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * <p>Tests {@link MappedFileWriter}.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+public class
+TestOfMappedFileWriter
+extends TestCase
+{
+   private File file;
+
+   public
+   TestOfMappedFileWriter(String name)
+   {
+      // Standard TestCase constructor. You shouldn't edit this.
+      super(name);
+   }
+
+   protected void
+   setUp()
+   {
+      file = new File("mappedFileWriterTest.log");
+      file.delete();
+   }
+
+   protected void
+   tearDown()
+   {
+      file.delete();
+      file = null;
+   }
+
+   public void
+   testWriteAndClose()
+   throws Exception
+   {
+      MappedFileWriter writer = new MappedFileWriter(file, false);
+      writer.write("Hello, ");
+      writer.write("W\u00f6rld");
+      assertEquals("length()", 13, writer.length());
+      assertTrue("File should be extended", file.length() > 13);
+      writer.close();
+
+      assertEquals("Hello, W\u00f6rld", readFile());
+      assertEquals("File length", 13, file.length());
+   }
+
+   public void
+   testSurrogatePairSplitAcrossWrites()
+   throws Exception
+   {
+      MappedFileWriter writer = new MappedFileWriter(file, false);
+      writer.write("a\ud834");
+      writer.write("\udd1eb");
+      writer.close();
+
+      assertEquals("a\ud834\udd1eb", readFile());
+   }
+
+   public void
+   testOutputLargerThanChunk()
+   throws Exception
+   {
+      StringBuffer line = new StringBuffer();
+      for (int i = 0; i < 999; i++)
+      {
+         line.append((char) ('a' + i % 26));
+      }
+      line.append('\n');
+      String lineString = line.toString();
+      int lines = (MappedFileWriter.CHUNK_SIZE * 5 / 2) / lineString.length();
+
+      MappedFileWriter writer = new MappedFileWriter(file, false);
+      for (int i = 0; i < lines; i++)
+      {
+         writer.write(lineString);
+      }
+      writer.close();
+
+      String contents = readFile();
+      assertEquals("Length", lines * lineString.length(), contents.length());
+      for (int i = 0; i < lines; i++)
+      {
+         assertTrue("Line " + i, contents.startsWith(lineString, i * lineString.length()));
+      }
+   }
+
+   public void
+   testAppend()
+   throws Exception
+   {
+      MappedFileWriter writer = new MappedFileWriter(file, false);
+      writer.write("One");
+      writer.close();
+
+      writer = new MappedFileWriter(file, true);
+      writer.write("Two");
+      writer.close();
+
+      assertEquals("OneTwo", readFile());
+   }
+
+   public void
+   testReplace()
+   throws Exception
+   {
+      MappedFileWriter writer = new MappedFileWriter(file, false);
+      writer.write("One");
+      writer.close();
+
+      writer = new MappedFileWriter(file, false);
+      writer.write("Two");
+      writer.close();
+
+      assertEquals("Two", readFile());
+   }
+
+   public void
+   testAppendSkipsPaddingOfUnclosedFile()
+   throws Exception
+   {
+      FileOutputStream out = new FileOutputStream(file);
+      out.write("Before".getBytes("UTF-8"));
+      out.write(new byte[20000]);
+      out.close();
+
+      MappedFileWriter writer = new MappedFileWriter(file, true);
+      writer.write("After");
+      writer.close();
+
+      assertEquals("BeforeAfter", readFile());
+   }
+
+   public void
+   testWriteAfterCloseFails()
+   throws Exception
+   {
+      MappedFileWriter writer = new MappedFileWriter(file, false);
+      writer.close();
+      writer.close();
+      try
+      {
+         writer.write("Too late");
+         fail("IOException expected");
+      }
+      catch (IOException e)
+      {}
+   }
+
+   public void
+   testSimpleLogWritesThroughMappedFile()
+   throws Exception
+   {
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.logFile", file.getPath());
+      properties.setProperty("simplelog.logFile.io", "mapped");
+      properties.setProperty("simplelog.format.debug", "{5}");
+      SimpleLog log = new SimpleLog(properties);
+      SimpleLogger logger = new SimpleLogger(log, getClass());
+      logger.info("Mapped");
+
+      // The file is still open, so it is padded with zeros
+      String contents = readFile();
+      String lineSep = System.getProperty("line.separator");
+      assertEquals("Mapped" + lineSep, contents.substring(0, contents.indexOf('\0')));
+   }
+
+   private String
+   readFile()
+   throws IOException
+   {
+      byte[] bytes = new byte[(int) file.length()];
+      FileInputStream in = new FileInputStream(file);
+      try
+      {
+         int read = 0;
+         while (read < bytes.length)
+         {
+            read += in.read(bytes, read, bytes.length - read);
+         }
+      }
+      finally
+      {
+         in.close();
+      }
+      return new String(bytes, "UTF-8");
+   }
+
+   /**
+    * Returns a test suite that will automatically run all test methods in this
+    * class beginning with "test".
+    */
+   public static TestSuite
+   suite()
+   {
+      return new TestSuite(TestOfMappedFileWriter.class);
+   }
+}
@@ -0,0 +1,224 @@
+package org.grlea.log.test;
+
+// $Id$
+// Copyright (c) 2004-2006 Graham Lea. All rights reserved.
+
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import org.grlea.log.DebugLevel;
+import org.grlea.log.MessageSupplier;
+import org.grlea.log.SimpleLog;
+import org.grlea.log.SimpleLogger;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Properties;
+
+/**
+ * <p>Tests the parameterized and {@link MessageSupplier} variants of the logging methods in
+ * {@link SimpleLogger}.</p>
+ *
+ * @author $Author$
+ * @version $Revision$
+ */
+public class
+TestOfParameterizedMessages
+extends TestCase
+{
+   private static final String LINE_SEP = System.getProperty("line.separator");
+
+   private StringWriter output;
+
+   private SimpleLogger logger;
+
+   public
+   TestOfParameterizedMessages(String name)
+   {
+      // Standard TestCase constructor. You shouldn't edit this.
+      super(name);
+   }
+
+   protected void
+   setUp()
+   {
+      Properties properties = new Properties();
+      properties.setProperty("simplelog.defaultLevel", "Info");
+      properties.setProperty("simplelog.format.debug", "{5}");
+      SimpleLog log = new SimpleLog(properties);
+      output = new StringWriter();
+      log.setWriter(new PrintWriter(output, true));
+      logger = new SimpleLogger(log, getClass());
+   }
+
+   protected void
+   tearDown()
+   {
+      output = null;
+      logger = null;
+   }
+
+   public void
+   testOneArgument()
+   {
+      logger.info("Connecting to {}...", "localhost");
+      assertOutput("Connecting to localhost...");
+   }
+
+   public void
+   testTwoArguments()
+   {
+      logger.warn("{} of {}", Integer.valueOf("1"), Integer.valueOf("2"));
+      assertOutput("1 of 2");
+   }
+
+   public void
+   testArrayOfArguments()
+   {
+      logger.error("{}{}{}", new Object[] {"a", null, "c"});
+      assertOutput("anullc");
+   }
+
+   public void
+   testMissingAndExtraArguments()
+   {
+      logger.info("{} and {}", "one");
+      logger.info("just {}", "one", "two");
+      logger.info("no placeholders", "one");
+      logger.info("null array {}", (Object[]) null);
+      assertOutput("one and {}" + LINE_SEP + "just one" + LINE_SEP + "no placeholders" + LINE_SEP +
+                   "null array {}");
+   }
+
+   public void
+   testEscapedPlaceholders()
+   {
+      logger.info("\\{} is {}", "placeholder");
+      // As in SLF4J's MessageFormatter, an escaped backslash doesn't stop the brace being escaped
+      logger.info("C:\\\\{}", "dir");
+      assertOutput("{} is placeholder" + LINE_SEP + "C:\\{}");
+   }
+
+   public void
+   testBracesThatArentPlaceholders()
+   {
+      logger.info("File name is \\{{}}.", "app.zip");
+      logger.info("a {x} {}", "b");
+      logger.info("ends with {", "b");
+      assertOutput("File name is {app.zip}." + LINE_SEP + "a {x} {}" + LINE_SEP + "ends with {");
+   }
+
+   public void
+   testArrayArguments()
+   {
+      Object[] recursive = new Object[2];
+      recursive[0] = "self";
+      recursive[1] = recursive;
+
+      logger.info("{} {} {}", new Object[] {new int[] {1, 2, 3}, new Object[] {"a", new char[] {'b'}},
+                                            recursive});
+      assertOutput("[1, 2, 3] [a, [b]] [self, [...]]");
+   }
+
+   public void
+   testNullPattern()
+   {
+      logger.info((String) null, "argument");
+      assertOutput("null");
+   }
+
+   public void
+   testArgumentsNotConvertedWhenNotLogged()
+   {
+      CountingObject argument = new CountingObject();
+      logger.debug("{}", argument);
+      logger.debug("{} {}", argument, argument);
+      logger.verbose("{}", new Object[] {argument});
+      assertEquals("toString() calls", 0, argument.toStringCalls);
+      assertOutput("");
+
+      logger.info("{}", argument);
+      assertEquals("toString() calls", 1, argument.toStringCalls);
+   }
+
+   public void
+   testSupplier()
+   {
+      logger.infoLazy(new MessageSupplier()
+      {
+         public String
+         getMessage()
+         {
+            return "Supplied";
+         }
+      });
+      assertOutput("Supplied");
+   }
+
+   public void
+   testSupplierNotCalledWhenNotLogged()
+   {
+      final int[] calls = {0};
+      logger.dbLazy(DebugLevel.L5_DEBUG, new MessageSupplier()
+      {
+         public String
+         getMessage()
+         {
+            calls[0]++;
+            return "Supplied";
+         }
+      });
+      assertEquals("getMessage() calls", 0, calls[0]);
+      assertOutput("");
+   }
+
+   public void
+   testNullMessage()
+   {
+      // Calls like these were written before the parameterized and lazy methods were added
+      logger.info(null);
+      logger.db(DebugLevel.L4_INFO, null);
+      assertOutput("null" + LINE_SEP + "null");
+   }
+
+   private void
+   assertOutput(String expected)
+   {
+      assertEquals("output", expected.length() == 0 ? "" : expected + LINE_SEP, output.toString());
+   }
+
+   private static final class
+   CountingObject
+   {
+      private int toStringCalls = 0;
+
+      public String
+      toString()
+      {
+         toStringCalls++;
+         return "counted";
+      }
+   }
+
+   /**
+    * Returns a test suite that will automatically run all test methods in this
+    * class beginning with "test".
+    */
+   public static TestSuite
+   suite()
+   {
+      return new TestSuite(TestOfParameterizedMessages.class);
+   }
+}
@@ -28,6 +28,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
@@ -123,6 +124,10 @@ extends TestCase
    reconfigureLoggers()
    throws NoSuchMethodException, IllegalAccessException, InvocationTargetException
    {
+      // The levels are compiled when the settings are read, so read them again first
+      Method readSettingsMethod = SimpleLog.class.getDeclaredMethod("readSettingsFromProperties", new Class[0]);
+      readSettingsMethod.setAccessible(true);
+      readSettingsMethod.invoke(SimpleLog.defaultInstance(), new Object[0]);
       Method reconfigureMethod = SimpleLog.class.getDeclaredMethod("reconfigureAllLoggers", new Class[0]);
       reconfigureMethod.setAccessible(true);
       reconfigureMethod.invoke(SimpleLog.defaultInstance(), new Object[0]);
@@ -209,6 +214,70 @@ extends TestCase
       checkOutput(expectedOutputLineParts, true);
    }
 
+   public void
+   testAdaptersShareLoggers()
+   throws Exception
+   {
+      String loggerName = "SharedMadeUpLoggerName";
+      new CommonsLoggingAdapter(loggerName);
+
+      String warnings = captureWarnings(new String[] {loggerName, loggerName});
+      assertEquals("Warnings printed for a name already used", "", warnings);
+
+      // Reconfiguring the shared logger affects all the adapters
+      CommonsLoggingAdapter adapter1 = new CommonsLoggingAdapter(loggerName);
+      CommonsLoggingAdapter adapter2 = new CommonsLoggingAdapter(loggerName);
+      getLogProperties(SimpleLog.defaultInstance())
+         .setProperty("org.apache.commons.logging.Log." + loggerName, "Error");
+      reconfigureLoggers();
+      assertFalse(adapter1.isWarnEnabled());
+      assertFalse(adapter2.isWarnEnabled());
+   }
+
+   public void
+   testWarningsAreLimited()
+   throws Exception
+   {
+      String[] loggerNames = new String[50];
+      for (int i = 0; i < loggerNames.length; i++)
+      {
+         loggerNames[i] = "LimitedMadeUpLoggerName" + i;
+      }
+
+      String warnings = captureWarnings(loggerNames);
+      int warningCount = 0;
+      for (int i = warnings.indexOf("Failed to find class"); i != -1;
+           i = warnings.indexOf("Failed to find class", i + 1))
+      {
+         warningCount++;
+      }
+      assertTrue("Too many warnings: " + warningCount, warningCount <= 10);
+   }
+
+   /**
+    * Creates an adapter for each of the given logger names and returns what was printed to
+    * <code>System.err</code>.
+    */
+   private String
+   captureWarnings(String[] loggerNames)
+   {
+      PrintStream originalErr = System.err;
+      ByteArrayOutputStream errors = new ByteArrayOutputStream();
+      System.setErr(new PrintStream(errors, true));
+      try
+      {
+         for (int i = 0; i < loggerNames.length; i++)
+         {
+            new CommonsLoggingAdapter(loggerNames[i]);
+         }
+      }
+      finally
+      {
+         System.setErr(originalErr);
+      }
+      return errors.toString();
+   }
+
    /**
     * Returns a test suite that will automatically run all test methods in this
     * class beginning with "test".
@@ -20,6 +20,10 @@ import org.grlea.log.DebugLevel;
 import org.grlea.log.SimpleLog;
 import org.grlea.log.adapters.commons.CommonsLoggingAdapter;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.impl.MessageFormatter;
+
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
@@ -120,6 +124,10 @@ extends TestCase
    reconfigureLoggers()
    throws NoSuchMethodException, IllegalAccessException, InvocationTargetException
    {
+      // The levels are compiled when the settings are read, so read them again first
+      Method readSettingsMethod = SimpleLog.class.getDeclaredMethod("readSettingsFromProperties", new Class[0]);
+      readSettingsMethod.setAccessible(true);
+      readSettingsMethod.invoke(SimpleLog.defaultInstance(), new Object[0]);
       Method reconfigureMethod = SimpleLog.class.getDeclaredMethod("reconfigureAllLoggers", new Class[0]);
       reconfigureMethod.setAccessible(true);
       reconfigureMethod.invoke(SimpleLog.defaultInstance(), new Object[0]);
@@ -177,6 +185,88 @@ extends TestCase
       checkOutput(expectedOutputLineParts, true);
    }
 
+   public void
+   testParameterizedLogging()
+   throws Exception
+   {
+      Logger log = new SimpleSlf4jLoggingClass().getLogger();
+      log.error("One {}", "argument");
+      log.warn("Two {} {}", "arguments", Integer.valueOf("2"));
+      log.info("Array {}, {} and {}", new Object[] {"one", new int[] {1, 2}, null});
+      log.info("Escaped \\{} and {}", "argument");
+      log.debug("Not printed {}", "argument");
+
+      String[] expectedOutputLineParts =
+      {
+         "   |main|SimpleSlf4jLoggingClass|One argument",
+         "   |main|SimpleSlf4jLoggingClass|Two arguments 2",
+         "   |main|SimpleSlf4jLoggingClass|Array one, [1, 2] and null",
+         "   |main|SimpleSlf4jLoggingClass|Escaped {} and argument",
+      };
+
+      checkOutput(expectedOutputLineParts, true);
+   }
+
+   public void
+   testEscapesAndBracesFormattedLikeMessageFormatter()
+   throws Exception
+   {
+      String[] patterns =
+      {
+         "File name is \\{{}}.",
+         "a \\{ b {}",
+         "\\\\{}",
+         "a {x} {}",
+         "ends with \\{",
+      };
+      String[] expectedMessages =
+      {
+         "File name is {ARG}.",
+         "a { b ARG",
+         "\\{}",
+         "a {x} {}",
+         "ends with \\{",
+      };
+
+      Logger log = new SimpleSlf4jLoggingClass().getLogger();
+      String[] expectedOutputLineParts = new String[patterns.length];
+      for (int i = 0; i < patterns.length; i++)
+      {
+         assertEquals(expectedMessages[i], MessageFormatter.format(patterns[i], "ARG"));
+         log.info(patterns[i], "ARG");
+         expectedOutputLineParts[i] = "   |main|SimpleSlf4jLoggingClass|" + expectedMessages[i];
+      }
+
+      checkOutput(expectedOutputLineParts, true);
+   }
+
+   public void
+   testLoggersAreReused()
+   throws Exception
+   {
+      Logger classLogger = LoggerFactory.getLogger(SimpleSlf4jLoggingClass.class);
+      assertSame(classLogger, LoggerFactory.getLogger(SimpleSlf4jLoggingClass.class.getName()));
+
+      Logger namedLogger = LoggerFactory.getLogger("MadeUpLoggerName");
+      assertSame(namedLogger, LoggerFactory.getLogger("MadeUpLoggerName"));
+      assertNotSame(classLogger, namedLogger);
+   }
+
+   public void
+   testReusedLoggerIsReconfigured()
+   throws Exception
+   {
+      Logger logger = LoggerFactory.getLogger("AnotherMadeUpLoggerName");
+      assertTrue(logger.isInfoEnabled());
+
+      getLogProperties(SimpleLog.defaultInstance())
+         .setProperty("org.slf4j.Logger.AnotherMadeUpLoggerName", "Error");
+      reconfigureLoggers();
+
+      assertSame(logger, LoggerFactory.getLogger("AnotherMadeUpLoggerName"));
+      assertFalse(logger.isInfoEnabled());
+   }
+
    /**
     * Returns a test suite that will automatically run all test methods in this
     * class beginning with "test".